@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.config.HttpSecurityBuilder;
+import org.picketlink.config.SecurityConfigurationBuilder;
+import org.picketlink.config.http.PathConfiguration;
+import org.picketlink.http.HttpMethod;
+import org.picketlink.http.internal.PathMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link PathMatcher#matches(HttpServletRequest)} for a growing number of configured paths. Requests
+ * are a mix of exact, prefix and suffix matches, matches by method and requests that match no path.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathMatcherBenchmark {
+
+    private static final String CONTEXT_PATH = "/context";
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private PathMatcher pathMatcher;
+    private HttpServletRequest[] requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HttpSecurityBuilder builder = new SecurityConfigurationBuilder().http();
+
+        builder
+            .forPath("/*.jsf")
+            .forPath("/public/*");
+
+        for (int i = 0; i < this.size; i++) {
+            builder
+                .forPath("/app" + i + "/*")
+                .forPath("/app" + i + "/resource").withMethod(HttpMethod.POST)
+                .forPath("/app" + i + "/profile/{identity.account.id}");
+        }
+
+        this.pathMatcher = new PathMatcher(builder.build().getHttpSecurityConfiguration().getPaths(), null);
+
+        int last = this.size - 1;
+
+        this.requests = new HttpServletRequest[] {
+            createRequest("/app" + last + "/resource", "POST"),
+            createRequest("/app" + last + "/resource", "GET"),
+            createRequest("/app" + (last / 2) + "/some/nested/resource", "GET"),
+            createRequest("/app" + (last / 2) + "/profile/john", "GET"),
+            createRequest("/app0/index.jsf", "GET"),
+            createRequest("/public/images/logo.png", "GET"),
+            createRequest("/unprotected/resource", "GET")
+        };
+    }
+
+    @Benchmark
+    public PathConfiguration matches() {
+        HttpServletRequest request = this.requests[this.next];
+
+        this.next = (this.next + 1) % this.requests.length;
+
+        return this.pathMatcher.matches(request);
+    }
+
+    private HttpServletRequest createRequest(final String path, final String method) {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method invokedMethod, Object[] args) throws Throwable {
+                    String name = invokedMethod.getName();
+
+                    if ("getContextPath".equals(name)) {
+                        return CONTEXT_PATH;
+                    } else if ("getRequestURI".equals(name)) {
+                        return CONTEXT_PATH + path;
+                    } else if ("getServletPath".equals(name)) {
+                        return path;
+                    } else if ("getMethod".equals(name)) {
+                        return method;
+                    }
+
+                    // the matcher must only depend on the request path and method
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+    }
+}
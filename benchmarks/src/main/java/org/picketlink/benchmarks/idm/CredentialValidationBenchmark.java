@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.idm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.Password;
+import org.picketlink.idm.credential.UsernamePasswordCredentials;
+import org.picketlink.idm.credential.encoder.BCryptPasswordEncoder;
+import org.picketlink.idm.credential.encoder.PBKDF2PasswordEncoder;
+import org.picketlink.idm.credential.encoder.PasswordEncoder;
+import org.picketlink.idm.credential.encoder.SHAPasswordEncoder;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link IdentityManager#validateCredentials(Credentials)} for username/password credentials with each
+ * of the built-in {@link PasswordEncoder} implementations.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CredentialValidationBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"sha", "pbkdf2", "bcrypt"})
+    public String encoder;
+
+    @Param({IdentityStoreFixture.FILE, IdentityStoreFixture.JPA})
+    public String store;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private IdentityStoreFixture fixture;
+    private IdentityManager identityManager;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.fixture = new IdentityStoreFixture(this.store);
+        this.identityManager = this.fixture.start(createPasswordEncoder()).createIdentityManager();
+
+        for (int i = 0; i < this.size; i++) {
+            User user = new User("user" + i);
+
+            this.identityManager.add(user);
+            this.identityManager.updateCredential(user, new Password(PASSWORD));
+        }
+
+        this.random = new Random(this.size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.fixture.stop();
+    }
+
+    @Benchmark
+    public Credentials.Status validValidation() {
+        return validate(PASSWORD);
+    }
+
+    @Benchmark
+    public Credentials.Status invalidValidation() {
+        return validate("invalid-password");
+    }
+
+    private Credentials.Status validate(String password) {
+        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials("user" + this.random.nextInt(this.size),
+            new Password(password));
+
+        this.identityManager.validateCredentials(credentials);
+
+        return credentials.getStatus();
+    }
+
+    private PasswordEncoder createPasswordEncoder() {
+        if ("sha".equals(this.encoder)) {
+            return new SHAPasswordEncoder(512);
+        } else if ("pbkdf2".equals(this.encoder)) {
+            return new PBKDF2PasswordEncoder("picketlink-benchmarks".getBytes(), 1000, 256);
+        } else if ("bcrypt".equals(this.encoder)) {
+            return new BCryptPasswordEncoder(10);
+        }
+
+        throw new IllegalArgumentException("Unsupported encoder [" + this.encoder + "].");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.idm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.idm.internal.DefaultIdentityCache;
+import org.picketlink.idm.internal.util.IdentityTypeCopier;
+import org.picketlink.idm.internal.util.IdentityTypeUtil;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures a cache hit of {@link DefaultIdentityCache#lookupUser(Realm, String)}, which returns a copy of the cached
+ * user, and the cost of copying a user field by field and using serialization.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityCacheBenchmark {
+
+    private DefaultIdentityCache identityCache;
+    private IdentityTypeCopier copier;
+    private Realm realm;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.realm = new Realm(Realm.DEFAULT_REALM);
+        this.realm.setId("realm");
+
+        this.user = new User("john");
+        this.user.setId("john");
+        this.user.setPartition(this.realm);
+        this.user.setFirstName("John");
+        this.user.setLastName("Doe");
+        this.user.setEmail("john@picketlink.org");
+        this.user.setAttribute(new Attribute<String>("department", "sales"));
+        this.user.setAttribute(new Attribute<Integer>("level", 3));
+
+        this.identityCache = new DefaultIdentityCache();
+        this.identityCache.putUser(this.realm, this.user);
+
+        this.copier = new IdentityTypeCopier();
+    }
+
+    @Benchmark
+    public User lookupUser() {
+        return this.identityCache.lookupUser(this.realm, "john");
+    }
+
+    @Benchmark
+    public User copyFields() {
+        return this.copier.copy(this.user);
+    }
+
+    @Benchmark
+    public User copySerialization() {
+        return IdentityTypeUtil.copy(this.user);
+    }
+}
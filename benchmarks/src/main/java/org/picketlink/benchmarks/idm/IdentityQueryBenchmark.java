@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.idm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link IdentityQuery} execution against the file, JPA and JDBC stores for a growing number of stored
+ * users.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityQueryBenchmark {
+
+    /**
+     * <p>Number of distinct first names, each one is shared by <code>size / FIRST_NAMES</code> users.</p>
+     */
+    private static final int FIRST_NAMES = 10;
+
+    private static final int PAGE_SIZE = 5;
+
+    @Param({IdentityStoreFixture.FILE, IdentityStoreFixture.JPA, IdentityStoreFixture.JDBC})
+    public String store;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private IdentityStoreFixture fixture;
+    private IdentityManager identityManager;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.fixture = new IdentityStoreFixture(this.store);
+
+        PartitionManager partitionManager = this.fixture.start(null);
+
+        this.identityManager = partitionManager.createIdentityManager();
+
+        for (int i = 0; i < this.size; i++) {
+            User user = new User("user" + i);
+
+            user.setFirstName("First" + (i % FIRST_NAMES));
+            user.setLastName("Last" + i);
+            user.setEmail("user" + i + "@picketlink.org");
+
+            this.identityManager.add(user);
+        }
+
+        this.random = new Random(this.size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.fixture.stop();
+    }
+
+    @Benchmark
+    public List<User> findByLoginName() {
+        IdentityQueryBuilder builder = this.identityManager.getQueryBuilder();
+
+        return builder.createIdentityQuery(User.class)
+            .where(builder.equal(User.LOGIN_NAME, "user" + this.random.nextInt(this.size)))
+            .getResultList();
+    }
+
+    @Benchmark
+    public List<User> findByFirstNameSortedAndPaginated() {
+        IdentityQueryBuilder builder = this.identityManager.getQueryBuilder();
+        IdentityQuery<User> query = builder.createIdentityQuery(User.class)
+            .where(builder.equal(User.FIRST_NAME, "First" + this.random.nextInt(FIRST_NAMES)))
+            .sortBy(builder.asc(User.LOGIN_NAME));
+
+        query.setOffset(PAGE_SIZE);
+        query.setLimit(PAGE_SIZE);
+
+        return query.getResultList();
+    }
+
+    @Benchmark
+    public List<User> findByLoginNamePattern() {
+        IdentityQueryBuilder builder = this.identityManager.getQueryBuilder();
+
+        return builder.createIdentityQuery(User.class)
+            .where(builder.like(User.LOGIN_NAME, "%user" + this.random.nextInt(FIRST_NAMES) + "%"))
+            .getResultList();
+    }
+
+    @Benchmark
+    public int countByFirstName() {
+        IdentityQueryBuilder builder = this.identityManager.getQueryBuilder();
+
+        return builder.createIdentityQuery(User.class)
+            .where(builder.equal(User.FIRST_NAME, "First" + this.random.nextInt(FIRST_NAMES)))
+            .getResultCount();
+    }
+}
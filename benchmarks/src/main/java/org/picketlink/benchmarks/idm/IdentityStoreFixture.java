@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.idm;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.config.IdentityStoreConfigurationBuilder;
+import org.picketlink.idm.credential.encoder.PasswordEncoder;
+import org.picketlink.idm.credential.handler.PasswordCredentialHandler;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.jpa.internal.JPAIdentityStore;
+import org.picketlink.idm.jpa.model.sample.simple.AccountTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.AttributeTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.GroupTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.IdentityTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.PartitionTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.PasswordCredentialTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.RelationshipIdentityTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.RelationshipTypeEntity;
+import org.picketlink.idm.jpa.model.sample.simple.RoleTypeEntity;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.spi.ContextInitializer;
+import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * <p>Sets up a {@link PartitionManager} backed by one of the identity stores exercised by the benchmarks.</p>
+ *
+ * <p>The JPA and JDBC stores use an in-memory H2 database, the file store uses a temporary working directory. All of
+ * them are discarded when the fixture is stopped.</p>
+ *
+ * @author Pedro Igor
+ */
+public class IdentityStoreFixture {
+
+    public static final String FILE = "file";
+    public static final String JPA = "jpa";
+    public static final String JDBC = "jdbc";
+
+    private static final String CONFIGURATION_NAME = "benchmark";
+
+    /**
+     * <p>The JDBC store always resolves partitions to this configuration name.</p>
+     */
+    private static final String JDBC_CONFIGURATION_NAME = "SIMPLE_JDBC_STORE_CONFIG";
+    private static final String PERSISTENCE_UNIT_NAME = "picketlink-benchmarks-pu";
+
+    private final String store;
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Connection keepAliveConnection;
+    private File workingDirectory;
+
+    public IdentityStoreFixture(String store) {
+        this.store = store;
+    }
+
+    /**
+     * <p>Creates the store and returns a {@link PartitionManager} with the default realm.</p>
+     *
+     * @param passwordEncoder The encoder used to store and validate passwords, or null to use the default.
+     *
+     * @return
+     */
+    public PartitionManager start(PasswordEncoder passwordEncoder) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+        IdentityStoreConfigurationBuilder<?, ?> storeBuilder;
+
+        if (FILE.equals(this.store)) {
+            this.workingDirectory = createWorkingDirectory();
+
+            storeBuilder = builder
+                .named(CONFIGURATION_NAME)
+                    .stores()
+                        .file()
+                            .workingDirectory(this.workingDirectory.getAbsolutePath())
+                            .preserveState(false);
+        } else if (JPA.equals(this.store)) {
+            this.entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+            this.entityManager = this.entityManagerFactory.createEntityManager();
+            this.entityManager.getTransaction().begin();
+
+            storeBuilder = builder
+                .named(CONFIGURATION_NAME)
+                    .stores()
+                        .jpa()
+                            .mappedEntity(
+                                PartitionTypeEntity.class,
+                                IdentityTypeEntity.class,
+                                AccountTypeEntity.class,
+                                RoleTypeEntity.class,
+                                GroupTypeEntity.class,
+                                RelationshipTypeEntity.class,
+                                RelationshipIdentityTypeEntity.class,
+                                PasswordCredentialTypeEntity.class,
+                                AttributeTypeEntity.class
+                            )
+                            .addContextInitializer(new ContextInitializer() {
+                                @Override
+                                public void initContextForStore(IdentityContext context, IdentityStore<?> store) {
+                                    if (store instanceof JPAIdentityStore) {
+                                        context.setParameter(JPAIdentityStore.INVOCATION_CTX_ENTITY_MANAGER, entityManager);
+                                    }
+                                }
+                            });
+        } else if (JDBC.equals(this.store)) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+
+            dataSource.setURL("jdbc:h2:mem:picketlink-benchmarks-jdbc");
+            dataSource.setUser("sa");
+            dataSource.setPassword("");
+
+            // the in-memory database only lives while a connection is open
+            this.keepAliveConnection = createSchema(dataSource);
+
+            storeBuilder = builder
+                .named(JDBC_CONFIGURATION_NAME)
+                    .stores()
+                        .jdbc()
+                            .setDataSource(dataSource)
+                            .supportType(User.class, Role.class, Group.class);
+        } else {
+            throw new IllegalArgumentException("Unsupported store [" + this.store + "].");
+        }
+
+        if (passwordEncoder != null) {
+            storeBuilder.setCredentialHandlerProperty(PasswordCredentialHandler.PASSWORD_ENCODER, passwordEncoder);
+        }
+
+        storeBuilder.supportAllFeatures();
+
+        DefaultPartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll());
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        return partitionManager;
+    }
+
+    /**
+     * <p>Discards the store created by {@link #start(PasswordEncoder)}.</p>
+     */
+    public void stop() {
+        if (this.entityManager != null) {
+            this.entityManager.getTransaction().rollback();
+            this.entityManager.close();
+            this.entityManager = null;
+        }
+
+        if (this.entityManagerFactory != null) {
+            this.entityManagerFactory.close();
+            this.entityManagerFactory = null;
+        }
+
+        if (this.keepAliveConnection != null) {
+            try {
+                this.keepAliveConnection.close();
+            } catch (SQLException ignore) {
+            }
+
+            this.keepAliveConnection = null;
+        }
+
+        if (this.workingDirectory != null) {
+            delete(this.workingDirectory);
+            this.workingDirectory = null;
+        }
+    }
+
+    private Connection createSchema(JdbcDataSource dataSource) {
+        try {
+            Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+
+            statement.executeUpdate("drop table if exists User");
+            statement.executeUpdate("create table User(id varchar,firstName varchar,lastName varchar,email varchar," +
+                "loginName varchar,enabled varchar,createdDate timestamp,expirationDate timestamp,partitionID varchar)");
+            statement.executeUpdate("drop table if exists Role");
+            statement.executeUpdate("create table Role(id varchar,name varchar,enabled varchar,createdDate timestamp," +
+                "expirationDate timestamp,partitionID varchar)");
+            statement.executeUpdate("drop table if exists Groups");
+            statement.executeUpdate("create table Groups(id varchar,name varchar,enabled varchar,createdDate timestamp," +
+                "expirationDate timestamp,parentGroup varchar,path varchar,partitionID varchar)");
+            statement.executeUpdate("drop table if exists Partition");
+            statement.executeUpdate("create table Partition(id varchar,name varchar,typeName varchar,configurationName varchar)");
+            statement.executeUpdate("drop table if exists Attributes");
+            statement.executeUpdate("create table Attributes(owner varchar,name varchar,value varchar,attributeType varchar)");
+            statement.executeUpdate("drop table if exists Relationship");
+            statement.executeUpdate("create table Relationship(id varchar,relBegin varchar,relEnd varchar,type varchar," +
+                "enabled varchar)");
+
+            statement.close();
+
+            return connection;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not create the JDBC store schema.", e);
+        }
+    }
+
+    private File createWorkingDirectory() {
+        try {
+            File directory = File.createTempFile("picketlink-benchmarks", "");
+
+            if (!directory.delete() || !directory.mkdirs()) {
+                throw new IllegalStateException("Could not create working directory [" + directory + "].");
+            }
+
+            return directory;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create working directory.", e);
+        }
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.idm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Grant;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.GroupMembership;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures relationship checks for users that are members of the innermost group of a group hierarchy, where the
+ * role is granted to the outermost group.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelationshipBenchmark {
+
+    @Param({IdentityStoreFixture.FILE, IdentityStoreFixture.JPA})
+    public String store;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    @Param({"1", "5", "10"})
+    public int depth;
+
+    private IdentityStoreFixture fixture;
+    private RelationshipManager relationshipManager;
+    private User[] users;
+    private Group rootGroup;
+    private Role grantedRole;
+    private Role unrelatedRole;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.fixture = new IdentityStoreFixture(this.store);
+
+        PartitionManager partitionManager = this.fixture.start(null);
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+
+        this.relationshipManager = partitionManager.createRelationshipManager();
+
+        this.grantedRole = new Role("granted");
+        identityManager.add(this.grantedRole);
+
+        this.unrelatedRole = new Role("unrelated");
+        identityManager.add(this.unrelatedRole);
+
+        this.rootGroup = new Group("group0");
+        identityManager.add(this.rootGroup);
+
+        this.relationshipManager.add(new Grant(this.rootGroup, this.grantedRole));
+
+        Group innermostGroup = this.rootGroup;
+
+        for (int i = 1; i < this.depth; i++) {
+            innermostGroup = new Group("group" + i, innermostGroup);
+            identityManager.add(innermostGroup);
+        }
+
+        this.users = new User[this.size];
+
+        for (int i = 0; i < this.size; i++) {
+            User user = new User("user" + i);
+
+            identityManager.add(user);
+            this.relationshipManager.add(new GroupMembership(user, innermostGroup));
+
+            this.users[i] = user;
+        }
+
+        this.random = new Random(this.size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.fixture.stop();
+    }
+
+    @Benchmark
+    public boolean inheritsPrivileges() {
+        return this.relationshipManager.inheritsPrivileges(nextUser(), this.grantedRole);
+    }
+
+    @Benchmark
+    public boolean hasInheritedRole() {
+        return BasicModel.hasRole(this.relationshipManager, nextUser(), this.grantedRole);
+    }
+
+    @Benchmark
+    public boolean hasUnrelatedRole() {
+        return BasicModel.hasRole(this.relationshipManager, nextUser(), this.unrelatedRole);
+    }
+
+    @Benchmark
+    public boolean isMemberOfRootGroup() {
+        return BasicModel.isMember(this.relationshipManager, nextUser(), this.rootGroup);
+    }
+
+    private User nextUser() {
+        return this.users[this.random.nextInt(this.size)];
+    }
+}
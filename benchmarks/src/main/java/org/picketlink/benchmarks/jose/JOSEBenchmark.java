@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.jose;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.json.jose.JWE;
+import org.picketlink.json.jose.JWEBuilder;
+import org.picketlink.json.jose.JWS;
+import org.picketlink.json.jose.JWSBuilder;
+import org.picketlink.json.jose.crypto.JWEDecrypter;
+import org.picketlink.json.jose.crypto.JWEEncrypter;
+import org.picketlink.json.util.JOSEUtil;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import static org.picketlink.json.JsonConstants.JWE.ALG_RSA_OAEP;
+import static org.picketlink.json.JsonConstants.JWE.ENC_A128GCM;
+
+/**
+ * <p>Measures the encoding and decoding of signed (JWS) and encrypted (JWE) tokens with a growing number of
+ * claims. The JWE payload is the HMAC signed token, as when nesting a signed token into an encrypted one.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JOSEBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int claims;
+
+    private byte[] hmacKey;
+    private KeyPair keyPair;
+    private String hmacToken;
+    private String rsaToken;
+    private JWE jwe;
+    private JWEEncrypter encrypter;
+    private JWEDecrypter decrypter;
+    private String encryptedToken;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.hmacKey = "picketlink-benchmarks-hmac-secret".getBytes();
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+
+        keyPairGenerator.initialize(2048);
+
+        this.keyPair = keyPairGenerator.generateKeyPair();
+        this.hmacToken = encodeHMAC();
+        this.rsaToken = encodeRSA();
+
+        this.jwe = new JWEBuilder()
+            .algorithm(ALG_RSA_OAEP)
+            .encryptionAlgorithm(ENC_A128GCM, 128)
+            .compressionAlgorithm("DEF")
+            .build();
+        this.encrypter = new JWEEncrypter((RSAPublicKey) this.keyPair.getPublic());
+        this.decrypter = new JWEDecrypter((RSAPrivateKey) this.keyPair.getPrivate());
+        this.encryptedToken = encrypt();
+    }
+
+    @Benchmark
+    public String encodeHMAC() {
+        return createToken().hmac256(this.hmacKey).build().encode();
+    }
+
+    @Benchmark
+    public JWS decodeHMAC() {
+        return new JWSBuilder().build(this.hmacToken, this.hmacKey);
+    }
+
+    @Benchmark
+    public String encodeRSA() {
+        return createToken().rsa256(this.keyPair.getPrivate().getEncoded()).build().encode();
+    }
+
+    @Benchmark
+    public JWS decodeRSA() {
+        return new JWSBuilder().build(this.rsaToken, this.keyPair.getPublic().getEncoded());
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return this.encrypter.encrypt(this.jwe, this.hmacToken.getBytes());
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws ParseException {
+        String[] parts = JOSEUtil.split(this.encryptedToken);
+
+        return this.decrypter.decrypt(this.jwe, parts[1], parts[2], parts[3], parts[4]);
+    }
+
+    private JWSBuilder createToken() {
+        JWSBuilder builder = new JWSBuilder()
+            .id("token-id")
+            .issuer("https://idp.picketlink.org")
+            .subject("john")
+            .expiration(Integer.MAX_VALUE);
+
+        for (int i = 0; i < this.claims; i++) {
+            builder.claim("claim" + i, "value" + i);
+        }
+
+        return builder;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.benchmarks.saml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.picketlink.common.constants.JBossSAMLURIConstants;
+import org.picketlink.common.util.StaxUtil;
+import org.picketlink.identity.federation.api.saml.v2.response.SAML2Response;
+import org.picketlink.identity.federation.api.saml.v2.sig.SAML2Signature;
+import org.picketlink.identity.federation.core.parsers.saml.SAMLParser;
+import org.picketlink.identity.federation.core.saml.v2.common.IDGenerator;
+import org.picketlink.identity.federation.core.saml.v2.holders.IssuerInfoHolder;
+import org.picketlink.identity.federation.core.saml.v2.util.AssertionUtil;
+import org.picketlink.identity.federation.core.saml.v2.writers.SAMLResponseWriter;
+import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
+import org.picketlink.identity.federation.saml.v2.assertion.AttributeStatementType;
+import org.picketlink.identity.federation.saml.v2.assertion.AttributeStatementType.ASTChoiceType;
+import org.picketlink.identity.federation.saml.v2.protocol.ResponseType;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the parsing, writing, signing and signature validation of SAML responses carrying an assertion with a
+ * growing number of attributes.</p>
+ *
+ * @author Pedro Igor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SAMLBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int attributes;
+
+    private ResponseType response;
+    private byte[] serializedResponse;
+    private Document unsignedDocument;
+    private Document signedDocument;
+    private KeyPair keyPair;
+    private SAML2Signature signature;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        IssuerInfoHolder issuerInfo = new IssuerInfoHolder("https://idp.picketlink.org");
+        AssertionType assertion = AssertionUtil.createAssertion(IDGenerator.create("ID_"), issuerInfo.getIssuer());
+
+        assertion.setSubject(AssertionUtil.createAssertionSubject("john"));
+
+        AttributeStatementType attributeStatement = new AttributeStatementType();
+
+        for (int i = 0; i < this.attributes; i++) {
+            attributeStatement.addAttribute(new ASTChoiceType(AssertionUtil.createAttribute("attribute" + i,
+                JBossSAMLURIConstants.ATTRIBUTE_FORMAT_BASIC.get(), "value" + i)));
+        }
+
+        assertion.addStatement(attributeStatement);
+
+        SAML2Response saml2Response = new SAML2Response();
+
+        this.response = saml2Response.createResponseType(IDGenerator.create("ID_"), issuerInfo, assertion);
+        this.serializedResponse = writeResponse().toByteArray();
+        this.unsignedDocument = saml2Response.convert(this.response);
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+
+        keyPairGenerator.initialize(2048);
+
+        this.keyPair = keyPairGenerator.generateKeyPair();
+        this.signature = new SAML2Signature();
+        this.signedDocument = signResponse();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeResponse() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new SAMLResponseWriter(StaxUtil.getXMLStreamWriter(outputStream)).write(this.response);
+
+        return outputStream;
+    }
+
+    @Benchmark
+    public Object parseResponse() throws Exception {
+        return new SAMLParser().parse(new ByteArrayInputStream(this.serializedResponse));
+    }
+
+    @Benchmark
+    public Document signResponse() throws Exception {
+        // signing modifies the document, always start from a fresh copy
+        Document document = (Document) this.unsignedDocument.cloneNode(true);
+
+        this.signature.signSAMLDocument(document, this.keyPair);
+
+        return document;
+    }
+
+    @Benchmark
+    public boolean validateSignature() throws Exception {
+        return this.signature.validate(this.signedDocument, this.keyPair.getPublic());
+    }
+}
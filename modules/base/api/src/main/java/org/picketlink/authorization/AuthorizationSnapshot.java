@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.authorization;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>The authorization state of an authenticated account, loaded once and used to answer role, group and permission
+ * checks from memory.</p>
+ *
+ * <p>Roles and groups are the ones directly granted to the account. The ancestors of the groups the account is member
+ * of are kept separately. Permission decisions are cached as they are resolved, up to a maximum number of entries,
+ * and are not serialized with the snapshot.</p>
+ *
+ * <p>Snapshots are immutable, except for the permission decisions. It is up to the {@link AuthorizationSnapshotProvider}
+ * to decide when a snapshot must be replaced. The identifiers of the account, roles and groups from which the snapshot
+ * was loaded are kept, so that a snapshot is replaced only when one of them changes. Permission decisions may depend on
+ * any identity, they are discarded separately using {@link #withPermissionVersion(long)}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class AuthorizationSnapshot implements Serializable {
+
+    private static final long serialVersionUID = -2184016203446271733L;
+
+    private final String accountId;
+    private final Set<String> roles;
+    private final Set<String> groups;
+    private final Set<String> ancestorGroups;
+    private final Set<String> identityIds;
+    private final long version;
+    private final long permissionVersion;
+    private final long createdAt;
+    private final int permissionCacheSize;
+    private transient Map<List<Object>, Boolean> permissionDecisions;
+
+    /**
+     * <p>Creates a new instance.</p>
+     *
+     * @param accountId The identifier of the account.
+     * @param roles The names of the roles granted to the account.
+     * @param groups The names of the groups the account is member of.
+     * @param ancestorGroups The names of the ancestors of the groups the account is member of.
+     * @param identityIds The identifiers of the account, roles, groups and ancestor groups.
+     * @param version The version of the identity data from which this snapshot was loaded.
+     * @param permissionCacheSize The maximum number of permission decisions cached by this snapshot.
+     */
+    public AuthorizationSnapshot(String accountId, Set<String> roles, Set<String> groups, Set<String> ancestorGroups,
+                                 Set<String> identityIds, long version, int permissionCacheSize) {
+        this(accountId, Collections.unmodifiableSet(roles), Collections.unmodifiableSet(groups),
+            Collections.unmodifiableSet(ancestorGroups), Collections.unmodifiableSet(identityIds), version, version,
+            System.currentTimeMillis(), permissionCacheSize);
+    }
+
+    private AuthorizationSnapshot(String accountId, Set<String> roles, Set<String> groups, Set<String> ancestorGroups,
+                                  Set<String> identityIds, long version, long permissionVersion, long createdAt,
+                                  int permissionCacheSize) {
+        this.accountId = accountId;
+        this.roles = roles;
+        this.groups = groups;
+        this.ancestorGroups = ancestorGroups;
+        this.identityIds = identityIds;
+        this.version = version;
+        this.permissionVersion = permissionVersion;
+        this.createdAt = createdAt;
+        this.permissionCacheSize = permissionCacheSize;
+    }
+
+    /**
+     * <p>Returns a copy of this snapshot, with the same roles, groups and age, but without any permission decision.</p>
+     *
+     * @param permissionVersion The version of the identity data from which permissions are resolved.
+     * @return
+     */
+    public AuthorizationSnapshot withPermissionVersion(long permissionVersion) {
+        return new AuthorizationSnapshot(this.accountId, this.roles, this.groups, this.ancestorGroups, this.identityIds,
+            this.version, permissionVersion, this.createdAt, this.permissionCacheSize);
+    }
+
+    public String getAccountId() {
+        return this.accountId;
+    }
+
+    public Set<String> getRoles() {
+        return this.roles;
+    }
+
+    public Set<String> getGroups() {
+        return this.groups;
+    }
+
+    public Set<String> getAncestorGroups() {
+        return this.ancestorGroups;
+    }
+
+    public Set<String> getIdentityIds() {
+        return this.identityIds;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public long getPermissionVersion() {
+        return this.permissionVersion;
+    }
+
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * <p>Checks if a role with the given name is granted to the account.</p>
+     *
+     * @param roleName
+     * @return
+     */
+    public boolean hasRole(String roleName) {
+        return this.roles.contains(roleName);
+    }
+
+    /**
+     * <p>Checks if the account is member of a group with the given name.</p>
+     *
+     * @param groupName
+     * @return
+     */
+    public boolean isMember(String groupName) {
+        return this.groups.contains(groupName);
+    }
+
+    /**
+     * <p>Returns a cached permission decision, or null if the permission was not resolved yet.</p>
+     *
+     * @param resource The resource, if specified.
+     * @param resourceClass The resource class, if specified.
+     * @param identifier The resource identifier, if specified.
+     * @param operation The operation.
+     * @return
+     */
+    public Boolean getPermissionDecision(Object resource, Class<?> resourceClass, Serializable identifier, String operation) {
+        if (this.permissionCacheSize == 0) {
+            return null;
+        }
+
+        synchronized (this) {
+            return getPermissionDecisions().get(createPermissionKey(resource, resourceClass, identifier, operation));
+        }
+    }
+
+    /**
+     * <p>Caches a permission decision, evicting the least recently used decision if the cache is full.</p>
+     *
+     * @param resource The resource, if specified.
+     * @param resourceClass The resource class, if specified.
+     * @param identifier The resource identifier, if specified.
+     * @param operation The operation.
+     * @param granted The decision.
+     */
+    public void putPermissionDecision(Object resource, Class<?> resourceClass, Serializable identifier, String operation,
+                                      boolean granted) {
+        if (this.permissionCacheSize == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            getPermissionDecisions().put(createPermissionKey(resource, resourceClass, identifier, operation), granted);
+        }
+    }
+
+    private Map<List<Object>, Boolean> getPermissionDecisions() {
+        if (this.permissionDecisions == null) {
+            this.permissionDecisions = new LinkedHashMap<List<Object>, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, Boolean> eldest) {
+                    return size() > permissionCacheSize;
+                }
+            };
+        }
+
+        return this.permissionDecisions;
+    }
+
+    private static List<Object> createPermissionKey(Object resource, Class<?> resourceClass, Serializable identifier, String operation) {
+        return Arrays.asList(resource, resourceClass, identifier, operation);
+    }
+}
@@ -23,27 +23,27 @@ package org.picketlink.authorization.util;
 
 import org.picketlink.Identity;
 import org.picketlink.authentication.levels.Level;
+import org.picketlink.authorization.AuthorizationSnapshot;
+import org.picketlink.authorization.AuthorizationSnapshotProvider;
 import org.picketlink.common.properties.Property;
-import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
-import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.RelationshipManager;
-import org.picketlink.idm.config.IdentityConfiguration;
-import org.picketlink.idm.config.IdentityStoreConfiguration;
+import org.picketlink.idm.config.StereotypeRegistry;
 import org.picketlink.idm.model.Account;
 import org.picketlink.idm.model.AttributedType;
 import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.model.annotation.IdentityStereotype;
-import org.picketlink.idm.model.annotation.RelationshipStereotype;
 import org.picketlink.idm.model.annotation.StereotypeProperty;
 import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.spi.StereotypeLookup;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.picketlink.common.util.StringUtil.isNullOrEmpty;
 import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.GROUP;
@@ -52,6 +52,10 @@ import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereot
 import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereotype.GROUP_MEMBERSHIP;
 import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_GROUP_NAME;
 import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_ROLE_NAME;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GRANT_ASSIGNEE;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GRANT_ROLE;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_GROUP;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_MEMBER;
 
 /**
  * <p>Provides some comon authorization methods.</p>
@@ -124,102 +128,18 @@ public class AuthorizationUtil {
             return false;
         }
 
-        List<Class<? extends IdentityType>> roleTypes = new ArrayList<Class<? extends IdentityType>>();
-        List<Class<? extends Relationship>> grantRelationshipTypes = new ArrayList<Class<? extends Relationship>>();
+        AuthorizationSnapshot snapshot = getAuthorizationSnapshot(identity);
 
-        // let's get all role and grant relationship types supported by the configuration
-        for (IdentityConfiguration configuration : partitionManager.getConfigurations()) {
-            for (IdentityStoreConfiguration storeConfiguration : configuration.getStoreConfiguration()) {
-                for (Class<? extends AttributedType> attributedType : storeConfiguration.getSupportedTypes().keySet()) {
-                    if (IdentityType.class.isAssignableFrom(attributedType)) {
-                        IdentityStereotype identityStereotype = attributedType.getAnnotation(IdentityStereotype.class);
-
-                        if (identityStereotype != null && ROLE.equals(identityStereotype.value())) {
-                            roleTypes.add((Class<? extends IdentityType>) attributedType);
-                        }
-                    }
-
-                    if (Relationship.class.isAssignableFrom(attributedType)) {
-                        RelationshipStereotype relationshipStereotype = attributedType.getAnnotation(RelationshipStereotype.class);
-
-                        if (relationshipStereotype != null && GRANT.equals(relationshipStereotype.value())) {
-                            grantRelationshipTypes.add((Class<? extends Relationship>) attributedType);
-                        }
-                    }
-                }
-            }
-        }
-
-        List<IdentityType> roles = new ArrayList<IdentityType>();
-
-        // now we need to get the role instance by its name against all stored partitions
-        for (Class<? extends IdentityType> attributedType : roleTypes) {
-            List<Property<Object>> identityStereotypeProperties = PropertyQueries
-                .createQuery(attributedType)
-                .addCriteria(new AnnotatedPropertyCriteria(StereotypeProperty.class))
-                .getResultList();
-
-            for (Property<Object> property : identityStereotypeProperties) {
-                StereotypeProperty attributeProperty = property.getAnnotatedElement().getAnnotation(StereotypeProperty.class);
-                StereotypeProperty.Property stereotypeProperty = attributeProperty.value();
-
-                if (IDENTITY_ROLE_NAME.equals(stereotypeProperty)) {
-                    for (Partition partition : partitionManager.getPartitions(Partition.class)) {
-                        IdentityManager identityManager = partitionManager.createIdentityManager(partition);
-                        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
-
-                        List<? extends IdentityType> result = queryBuilder
-                            .createIdentityQuery(attributedType)
-                            .where(queryBuilder.equal(AttributedType.QUERY_ATTRIBUTE.byName(property.getName()), roleName))
-                            .getResultList();
-
-                        if (!result.isEmpty()) {
-                            roles.add(result.get(0));
-                        }
-                    }
-                }
-            }
+        if (snapshot != null) {
+            return snapshot.hasRole(roleName);
         }
 
-        RelationshipManager relationshipManager = partitionManager.createRelationshipManager();
-
-        // now we check the relationship between the authenticated account and roles considering the grant types supported by the configuration.
-        for (IdentityType role : roles) {
-            for (Class<? extends Relationship> relationshipType : grantRelationshipTypes) {
-                List<Property<Object>> relationshipStereotypeProperties = PropertyQueries
-                    .createQuery(relationshipType)
-                    .addCriteria(new AnnotatedPropertyCriteria(StereotypeProperty.class))
-                    .getResultList();
-                Property roleProperty = null;
-                Property accountProperty = null;
-
-                for (Property<Object> property : relationshipStereotypeProperties) {
-                    StereotypeProperty attributeProperty = property.getAnnotatedElement().getAnnotation(StereotypeProperty.class);
-                    StereotypeProperty.Property stereotypeProperty = attributeProperty.value();
-
-                    if (StereotypeProperty.Property.RELATIONSHIP_GRANT_ROLE.equals(stereotypeProperty)) {
-                        roleProperty = property;
-                    } else if (StereotypeProperty.Property.RELATIONSHIP_GRANT_ASSIGNEE.equals(stereotypeProperty)) {
-                        accountProperty = property;
-                    }
-                }
-
-                if (roleProperty != null && accountProperty != null) {
-                    List<? extends Relationship> result = relationshipManager
-                        .createRelationshipQuery(relationshipType)
-                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(roleProperty.getName()), role)
-                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(accountProperty.getName()), identity
-                            .getAccount())
-                        .getResultList();
+        StereotypeRegistry stereotypeRegistry = getStereotypeRegistry(partitionManager);
 
-                    if (!result.isEmpty()) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
+        // roles are resolved by name from all partitions
+        return hasRelationship(identity, partitionManager, stereotypeRegistry,
+            lookupIdentityTypesByName(partitionManager, stereotypeRegistry, ROLE, roleName),
+            stereotypeRegistry.getRelationshipTypes(GRANT), RELATIONSHIP_GRANT_ROLE, RELATIONSHIP_GRANT_ASSIGNEE);
     }
 
     /**
@@ -236,91 +156,113 @@ public class AuthorizationUtil {
             return false;
         }
 
-        List<Class<? extends IdentityType>> groupTypes = new ArrayList<Class<? extends IdentityType>>();
-        List<Class<? extends Relationship>> groupMembershipTypes = new ArrayList<Class<? extends Relationship>>();
+        AuthorizationSnapshot snapshot = getAuthorizationSnapshot(identity);
 
-        // let's get all group and grant relationship types supported by the configuration
-        for (IdentityConfiguration configuration : partitionManager.getConfigurations()) {
-            for (IdentityStoreConfiguration storeConfiguration : configuration.getStoreConfiguration()) {
-                for (Class<? extends AttributedType> attributedType : storeConfiguration.getSupportedTypes().keySet()) {
-                    if (IdentityType.class.isAssignableFrom(attributedType)) {
-                        IdentityStereotype identityStereotype = attributedType.getAnnotation(IdentityStereotype.class);
+        if (snapshot != null) {
+            return snapshot.isMember(groupName);
+        }
 
-                        if (identityStereotype != null && GROUP.equals(identityStereotype.value())) {
-                            groupTypes.add((Class<? extends IdentityType>) attributedType);
-                        }
-                    }
+        StereotypeRegistry stereotypeRegistry = getStereotypeRegistry(partitionManager);
 
-                    if (Relationship.class.isAssignableFrom(attributedType)) {
-                        RelationshipStereotype relationshipStereotype = attributedType.getAnnotation(RelationshipStereotype.class);
+        // groups are resolved by name from all partitions
+        return hasRelationship(identity, partitionManager, stereotypeRegistry,
+            lookupIdentityTypesByName(partitionManager, stereotypeRegistry, GROUP, groupName),
+            stereotypeRegistry.getRelationshipTypes(GROUP_MEMBERSHIP), RELATIONSHIP_GROUP_MEMBERSHIP_GROUP,
+            RELATIONSHIP_GROUP_MEMBERSHIP_MEMBER);
+    }
 
-                        if (relationshipStereotype != null && GROUP_MEMBERSHIP.equals(relationshipStereotype.value())) {
-                            groupMembershipTypes.add((Class<? extends Relationship>) attributedType);
-                        }
-                    }
-                }
-            }
+    /**
+     * <p>Returns the {@link AuthorizationSnapshot} kept by the given identity, if any.</p>
+     */
+    private static AuthorizationSnapshot getAuthorizationSnapshot(Identity identity) {
+        if (AuthorizationSnapshotProvider.class.isInstance(identity)) {
+            return ((AuthorizationSnapshotProvider) identity).getAuthorizationSnapshot();
         }
 
-        List<IdentityType> groups = new ArrayList<IdentityType>();
+        return null;
+    }
 
-        // now we need to get the group instance by its name against all stored partitions
-        for (Class<? extends IdentityType> attributedType : groupTypes) {
-            List<Property<Object>> identityStereotypeProperties = PropertyQueries
-                .createQuery(attributedType)
-                .addCriteria(new AnnotatedPropertyCriteria(StereotypeProperty.class))
-                .getResultList();
+    /**
+     * <p>Returns the {@link StereotypeRegistry} computed by the given partition manager, or computes it from its
+     * configuration if the partition manager does not provide one.</p>
+     *
+     * @param partitionManager
+     *
+     * @return
+     */
+    public static StereotypeRegistry getStereotypeRegistry(PartitionManager partitionManager) {
+        if (StereotypeLookup.class.isInstance(partitionManager)) {
+            return ((StereotypeLookup) partitionManager).getStereotypeRegistry();
+        }
 
-            for (Property<Object> property : identityStereotypeProperties) {
-                StereotypeProperty attributeProperty = property.getAnnotatedElement().getAnnotation(StereotypeProperty.class);
-                StereotypeProperty.Property stereotypeProperty = attributeProperty.value();
+        return new StereotypeRegistry(partitionManager.getConfigurations());
+    }
 
-                if (IDENTITY_GROUP_NAME.equals(stereotypeProperty)) {
-                    for (Partition partition : partitionManager.getPartitions(Partition.class)) {
-                        IdentityManager identityManager = partitionManager.createIdentityManager(partition);
-                        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+    /**
+     * <p>Looks up the identity types with the given stereotype and name from all partitions, using the given partition
+     * manager if it supports lookups by name. Otherwise, the first identity type of each supported type is queried
+     * from each partition.</p>
+     */
+    private static List<IdentityType> lookupIdentityTypesByName(PartitionManager partitionManager,
+                                                                StereotypeRegistry stereotypeRegistry,
+                                                                IdentityStereotype.Stereotype stereotype, String name) {
+        if (StereotypeLookup.class.isInstance(partitionManager)) {
+            return ((StereotypeLookup) partitionManager).lookupIdentityTypesByName(stereotype, name);
+        }
+
+        StereotypeProperty.Property nameProperty = ROLE.equals(stereotype) ? IDENTITY_ROLE_NAME : IDENTITY_GROUP_NAME;
+        List<IdentityType> identityTypes = new ArrayList<IdentityType>();
+
+        for (Partition partition : partitionManager.getPartitions(Partition.class)) {
+            IdentityManager identityManager = partitionManager.createIdentityManager(partition);
+            IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
 
-                        List<? extends IdentityType> result = queryBuilder
-                            .createIdentityQuery(attributedType)
-                            .where(queryBuilder.equal(AttributedType.QUERY_ATTRIBUTE.byName(property.getName()), groupName))
-                            .getResultList();
+            for (Class<? extends IdentityType> identityType : stereotypeRegistry.getIdentityTypes(stereotype)) {
+                Property<Object> property = stereotypeRegistry.getProperty(identityType, nameProperty);
 
-                        if (!result.isEmpty()) {
-                            groups.add(result.get(0));
-                        }
+                if (property != null) {
+                    List<? extends IdentityType> result = queryBuilder
+                        .createIdentityQuery(identityType)
+                        .where(queryBuilder.equal(AttributedType.QUERY_ATTRIBUTE.byName(property.getName()), name))
+                        .getResultList();
+
+                    if (!result.isEmpty()) {
+                        identityTypes.add(result.get(0));
                     }
                 }
             }
         }
 
+        return identityTypes;
+    }
+
+    /**
+     * <p>Checks if the account of an authenticated user is related with any of the given identity types through any of
+     * the given relationship types.</p>
+     */
+    private static boolean hasRelationship(Identity identity, PartitionManager partitionManager,
+                                           StereotypeRegistry stereotypeRegistry,
+                                           List<IdentityType> identityTypes,
+                                           Set<Class<? extends Relationship>> relationshipTypes,
+                                           StereotypeProperty.Property identityTypeProperty,
+                                           StereotypeProperty.Property accountProperty) {
+        if (identityTypes.isEmpty()) {
+            return false;
+        }
+
         RelationshipManager relationshipManager = partitionManager.createRelationshipManager();
 
-        // now we check the relationship between the authenticated account and groups considering the group membership types supported by the configuration.
-        for (IdentityType group : groups) {
-            for (Class<? extends Relationship> relationshipType : groupMembershipTypes) {
-                List<Property<Object>> relationshipStereotypeProperties = PropertyQueries
-                    .createQuery(relationshipType)
-                    .addCriteria(new AnnotatedPropertyCriteria(StereotypeProperty.class))
-                    .getResultList();
-                Property groupProperty = null;
-                Property memberProperty = null;
-
-                for (Property<Object> property : relationshipStereotypeProperties) {
-                    StereotypeProperty attributeProperty = property.getAnnotatedElement().getAnnotation(StereotypeProperty.class);
-                    StereotypeProperty.Property stereotypeProperty = attributeProperty.value();
-
-                    if (StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_GROUP.equals(stereotypeProperty)) {
-                        groupProperty = property;
-                    } else if (StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_MEMBER.equals(stereotypeProperty)) {
-                        memberProperty = property;
-                    }
-                }
+        // now we check the relationship between the authenticated account and the identity types considering the relationship types supported by the configuration.
+        for (IdentityType identityType : identityTypes) {
+            for (Class<? extends Relationship> relationshipType : relationshipTypes) {
+                Property<Object> identityTypeRelationshipProperty = stereotypeRegistry.getProperty(relationshipType, identityTypeProperty);
+                Property<Object> accountRelationshipProperty = stereotypeRegistry.getProperty(relationshipType, accountProperty);
 
-                if (groupProperty != null && memberProperty != null) {
+                if (identityTypeRelationshipProperty != null && accountRelationshipProperty != null) {
                     List<? extends Relationship> result = relationshipManager
                         .createRelationshipQuery(relationshipType)
-                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(groupProperty.getName()), group)
-                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(memberProperty.getName()), identity
+                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(identityTypeRelationshipProperty.getName()), identityType)
+                        .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(accountRelationshipProperty.getName()), identity
                             .getAccount())
                         .getResultList();
 
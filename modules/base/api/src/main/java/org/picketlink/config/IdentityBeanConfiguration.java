@@ -32,8 +32,12 @@ import java.lang.annotation.Annotation;
 public class IdentityBeanConfiguration {
 
     private final Class<? extends Annotation> scope;
+    private final boolean authorizationSnapshot;
+    private final long authorizationSnapshotMaxStaleness;
+    private final int authorizationSnapshotPermissionCacheSize;
 
-    IdentityBeanConfiguration(Class<? extends Annotation> scope) {
+    IdentityBeanConfiguration(Class<? extends Annotation> scope, boolean authorizationSnapshot,
+                              long authorizationSnapshotMaxStaleness, int authorizationSnapshotPermissionCacheSize) {
         if (scope == null) {
             throw new IllegalArgumentException("You must provide the Identity bean scope.");
         }
@@ -43,9 +47,40 @@ public class IdentityBeanConfiguration {
         }
 
         this.scope = scope;
+        this.authorizationSnapshot = authorizationSnapshot;
+        this.authorizationSnapshotMaxStaleness = authorizationSnapshotMaxStaleness;
+        this.authorizationSnapshotPermissionCacheSize = authorizationSnapshotPermissionCacheSize;
     }
 
     public Class<? extends Annotation> getScope() {
         return this.scope;
     }
+
+    /**
+     * <p>Indicates if role, group and permission checks are answered from an
+     * {@link org.picketlink.authorization.AuthorizationSnapshot} kept by the {@link org.picketlink.Identity} bean.</p>
+     *
+     * @return
+     */
+    public boolean isAuthorizationSnapshot() {
+        return this.authorizationSnapshot;
+    }
+
+    /**
+     * <p>The maximum time, in milliseconds, an authorization snapshot is used before it is built again.</p>
+     *
+     * @return
+     */
+    public long getAuthorizationSnapshotMaxStaleness() {
+        return this.authorizationSnapshotMaxStaleness;
+    }
+
+    /**
+     * <p>The maximum number of permission decisions cached by an authorization snapshot.</p>
+     *
+     * @return
+     */
+    public int getAuthorizationSnapshotPermissionCacheSize() {
+        return this.authorizationSnapshotPermissionCacheSize;
+    }
 }
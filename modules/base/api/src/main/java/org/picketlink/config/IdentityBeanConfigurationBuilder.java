@@ -35,7 +35,13 @@ import java.lang.annotation.Annotation;
  */
 public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurationBuilder<IdentityBeanConfiguration> {
 
+    public static final long DEFAULT_AUTHORIZATION_SNAPSHOT_MAX_STALENESS = 60000;
+    public static final int DEFAULT_AUTHORIZATION_SNAPSHOT_PERMISSION_CACHE_SIZE = 256;
+
     private Class<? extends Annotation> scope = SessionScoped.class;
+    private boolean authorizationSnapshot;
+    private long authorizationSnapshotMaxStaleness = DEFAULT_AUTHORIZATION_SNAPSHOT_MAX_STALENESS;
+    private int authorizationSnapshotPermissionCacheSize = DEFAULT_AUTHORIZATION_SNAPSHOT_PERMISSION_CACHE_SIZE;
 
     public IdentityBeanConfigurationBuilder(SecurityConfigurationBuilder builder) {
         super(builder);
@@ -65,13 +71,67 @@ public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurat
         return this;
     }
 
+    /**
+     * <p>Enables the authorization snapshot of the {@link org.picketlink.Identity} bean. In this case, the roles and
+     * groups of the authenticated account are loaded once and role, group and permission checks are answered from
+     * memory until the snapshot is refreshed.</p>
+     *
+     * <p>A snapshot is refreshed whenever relationships, identity types, partitions or permissions are changed through
+     * the partition manager, or when it is older than the maximum staleness.</p>
+     *
+     * <p>Default is false.</p>
+     *
+     * @return
+     */
+    public IdentityBeanConfigurationBuilder authorizationSnapshot() {
+        this.authorizationSnapshot = true;
+        return this;
+    }
+
+    /**
+     * <p>Specifies the maximum time, in milliseconds, an authorization snapshot is used before it is built again. This
+     * bounds how long changes not notified by the partition manager, such as changes made directly to the stores, take
+     * to be visible.</p>
+     *
+     * <p>Default is {@link #DEFAULT_AUTHORIZATION_SNAPSHOT_MAX_STALENESS}.</p>
+     *
+     * @param maxStaleness The maximum staleness, in milliseconds. It must be greater than zero.
+     * @return
+     */
+    public IdentityBeanConfigurationBuilder authorizationSnapshotMaxStaleness(long maxStaleness) {
+        this.authorizationSnapshotMaxStaleness = maxStaleness;
+        return this;
+    }
+
+    /**
+     * <p>Specifies the maximum number of permission decisions cached by an authorization snapshot. If zero, permission
+     * decisions are not cached.</p>
+     *
+     * <p>Default is {@link #DEFAULT_AUTHORIZATION_SNAPSHOT_PERMISSION_CACHE_SIZE}.</p>
+     *
+     * @param cacheSize The maximum number of permission decisions.
+     * @return
+     */
+    public IdentityBeanConfigurationBuilder authorizationSnapshotPermissionCacheSize(int cacheSize) {
+        this.authorizationSnapshotPermissionCacheSize = cacheSize;
+        return this;
+    }
+
     @Override
     protected IdentityBeanConfiguration create() throws SecurityConfigurationException {
-        return new IdentityBeanConfiguration(this.scope);
+        return new IdentityBeanConfiguration(this.scope, this.authorizationSnapshot, this.authorizationSnapshotMaxStaleness,
+            this.authorizationSnapshotPermissionCacheSize);
     }
 
     @Override
     protected void validate() throws SecurityConfigurationException {
+        if (this.authorizationSnapshotMaxStaleness <= 0) {
+            throw new SecurityConfigurationException("The authorization snapshot maximum staleness must be greater than zero.");
+        }
+
+        if (this.authorizationSnapshotPermissionCacheSize < 0) {
+            throw new SecurityConfigurationException("The authorization snapshot permission cache size can not be negative.");
+        }
     }
 
     @Override
@@ -80,6 +140,13 @@ public class IdentityBeanConfigurationBuilder extends AbstractSecurityConfigurat
             this.stateless();
         }
 
+        if (fromConfiguration.isAuthorizationSnapshot()) {
+            this.authorizationSnapshot();
+        }
+
+        this.authorizationSnapshotMaxStaleness(fromConfiguration.getAuthorizationSnapshotMaxStaleness());
+        this.authorizationSnapshotPermissionCacheSize(fromConfiguration.getAuthorizationSnapshotPermissionCacheSize());
+
         return this;
     }
 }
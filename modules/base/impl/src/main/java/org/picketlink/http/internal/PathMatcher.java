@@ -27,23 +27,44 @@ import org.picketlink.http.HttpMethod;
 import org.picketlink.internal.el.ELProcessor;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
+ * <p>Matches requests against the configured paths.</p>
+ *
+ * <p>Paths are compiled when the matcher is created. Exact paths are kept in a map, while wildcard and
+ * pattern paths are kept in a prefix tree and suffix paths (eg.: <code>/*.jsf</code>) in a tree of reversed suffixes.
+ * Matching a request only walks the characters of the requested URI once for each tree, regardless of the number of
+ * configured paths. When more than one path matches, the one configured last wins, and <code>/*</code> is only
+ * selected when no other path matches.</p>
+ *
+ * <p>The methods and headers of each {@link PathConfiguration} are also resolved in advance, so they are not computed
+ * again for each request.</p>
+ *
  * @author Pedro Igor
  */
 public class PathMatcher {
 
     private static final String ANY_RESOURCE_PATTERN = "/*";
-    private final Map<String, List<PathConfiguration>> uriConfiguration;
+    private final List<CompiledPath> paths = new ArrayList<CompiledPath>();
+    private final Map<String, Integer> exactPaths = new HashMap<String, Integer>();
+    private final PathTree prefixPaths = new PathTree(false);
+    private final PathTree suffixPaths = new PathTree(true);
     private final ELProcessor elProcessor;
+    private int anyResourcePath = -1;
 
     public PathMatcher(Map<String, List<PathConfiguration>> uriConfiguration, ELProcessor elProcessor) {
-        this.uriConfiguration = uriConfiguration;
+        for (Map.Entry<String, List<PathConfiguration>> entry : uriConfiguration.entrySet()) {
+            compile(entry.getKey(), entry.getValue());
+        }
+
         this.elProcessor = elProcessor;
     }
 
@@ -55,114 +76,132 @@ public class PathMatcher {
             requestedUri = requestedUri.substring(contextPathIndex + request.getContextPath().length());
         }
 
-        List<PathConfiguration> configurations = null;
-        String actualConfig = null;
+        Integer exactPath = this.exactPaths.get(requestedUri);
+        int selectedPath = exactPath != null ? exactPath : -1;
 
-        for (Map.Entry<String, List<PathConfiguration>> entry : this.uriConfiguration.entrySet()) {
-            String protectedUri = entry.getKey();
-            String selectedUri = null;
+        selectedPath = Math.max(selectedPath, this.prefixPaths.match(requestedUri));
+        selectedPath = Math.max(selectedPath, this.suffixPaths.match(requestedUri));
 
-            if (protectedUri.equals(ANY_RESOURCE_PATTERN) && actualConfig == null) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
-            }
+        if (selectedPath == -1) {
+            selectedPath = this.anyResourcePath;
+        }
 
-            int suffixIndex = protectedUri.indexOf(ANY_RESOURCE_PATTERN + ".");
+        if (selectedPath == -1) {
+            return null;
+        }
 
-            if (suffixIndex != -1) {
-                String protectedSuffix = protectedUri.substring(suffixIndex + ANY_RESOURCE_PATTERN.length());
+        return this.paths.get(selectedPath).select(request);
+    }
 
-                if (requestedUri.endsWith(protectedSuffix)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
-            }
+    private void compile(String protectedUri, List<PathConfiguration> configurations) {
+        int index = this.paths.size();
 
-            if (protectedUri.equals(requestedUri)) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
-            }
+        this.paths.add(new CompiledPath(configurations));
+
+        if (protectedUri.equals(ANY_RESOURCE_PATTERN)) {
+            this.anyResourcePath = index;
+        }
 
-            if (protectedUri.endsWith(ANY_RESOURCE_PATTERN)) {
-                String formattedPattern = removeWildCardsFromUri(protectedUri);
+        addExactPath(protectedUri, index);
 
-                if (!formattedPattern.equals("/") && requestedUri.startsWith(formattedPattern)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
+        int suffixIndex = protectedUri.indexOf(ANY_RESOURCE_PATTERN + ".");
 
-                if (!formattedPattern.equals("/") && formattedPattern.endsWith("/") && formattedPattern.substring(0, formattedPattern.length() - 1).equals(requestedUri)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
-                }
-            }
+        if (suffixIndex != -1) {
+            this.suffixPaths.add(protectedUri.substring(suffixIndex + ANY_RESOURCE_PATTERN.length()), index);
+        }
 
-            int startRegex = protectedUri.indexOf('{');
+        if (protectedUri.endsWith(ANY_RESOURCE_PATTERN)) {
+            String formattedPattern = removeWildCardsFromUri(protectedUri);
 
-            if (startRegex != -1) {
-                String prefix = protectedUri.substring(0, startRegex);
+            if (!formattedPattern.equals("/")) {
+                this.prefixPaths.add(formattedPattern, index);
 
-                if (requestedUri.startsWith(prefix)) {
-                    configurations = this.uriConfiguration.get(entry.getKey());
-                    selectedUri = protectedUri;
+                if (formattedPattern.endsWith("/")) {
+                    addExactPath(formattedPattern.substring(0, formattedPattern.length() - 1), index);
                 }
             }
+        }
 
-            if (selectedUri != null) {
-                configurations = this.uriConfiguration.get(entry.getKey());
-                selectedUri = protectedUri;
-            }
+        int startRegex = protectedUri.indexOf('{');
 
-            if (selectedUri != null) {
-                if (actualConfig == null) {
-                    actualConfig = entry.getKey();
-                } else {
-                    if (actualConfig.equals(ANY_RESOURCE_PATTERN)) {
-                        actualConfig = entry.getKey();
-                    }
+        if (startRegex != -1) {
+            this.prefixPaths.add(protectedUri.substring(0, startRegex), index);
+        }
+    }
+
+    private void addExactPath(String uri, int index) {
+        Integer currentIndex = this.exactPaths.get(uri);
+
+        if (currentIndex == null || currentIndex < index) {
+            this.exactPaths.put(uri, index);
+        }
+    }
+
+    private String removeWildCardsFromUri(String protectedUri) {
+        return protectedUri.replaceAll("/[*]", "/");
+    }
+
+    /**
+     * <p>The configurations for a single path, with their methods and headers resolved.</p>
+     */
+    private static class CompiledPath {
+
+        private final List<PathConfiguration> configurations;
+        private final List<Set<HttpMethod>> methods = new ArrayList<Set<HttpMethod>>();
+        private final List<Map<String, List<String>>> headers = new ArrayList<Map<String, List<String>>>();
 
-                    if (protectedUri.startsWith(removeWildCardsFromUri(actualConfig))) {
-                        actualConfig = entry.getKey();
+        CompiledPath(List<PathConfiguration> configurations) {
+            this.configurations = configurations;
+
+            for (PathConfiguration pathConfiguration : configurations) {
+                InboundHeaderConfiguration headerConfiguration = pathConfiguration.getInboundHeaderConfiguration();
+                Map<String, List<String>> inboundHeaders = null;
+
+                if (headerConfiguration != null) {
+                    inboundHeaders = new LinkedHashMap<String, List<String>>();
+
+                    for (Map.Entry<String, String[]> header : headerConfiguration.getHeaders().entrySet()) {
+                        inboundHeaders.put(header.getKey(), Arrays.asList(header.getValue()));
                     }
                 }
+
+                this.methods.add(pathConfiguration.getMethods());
+                this.headers.add(inboundHeaders);
             }
         }
 
-        if (configurations != null) {
-            if (configurations.size() == 1) {
-                return configurations.get(0);
+        PathConfiguration select(HttpServletRequest request) {
+            if (this.configurations.size() == 1) {
+                return this.configurations.get(0);
             }
 
+            HttpMethod method = HttpMethod.valueOf(request.getMethod().toUpperCase());
             int configIndex = -1;
             int lastMatchCount = 0;
 
-            for (int i = 0; i < configurations.size(); i++) {
-                PathConfiguration pathConfiguration = configurations.get(i);
-                InboundHeaderConfiguration headerConfiguration = pathConfiguration.getInboundHeaderConfiguration();
-                Set<HttpMethod> methods = pathConfiguration.getMethods();
+            for (int i = 0; i < this.configurations.size(); i++) {
+                Map<String, List<String>> inboundHeaders = this.headers.get(i);
 
-                if (!methods.contains(HttpMethod.valueOf(request.getMethod().toUpperCase()))) {
+                if (!this.methods.get(i).contains(method)) {
                     continue;
                 }
 
-                if (headerConfiguration == null) {
+                if (inboundHeaders == null) {
                     if (configIndex == -1) {
                         configIndex = i;
                     }
                 } else {
-                    Map<String, String[]> inboundHeaders = headerConfiguration.getHeaders();
-
                     if (inboundHeaders.isEmpty()) {
                         configIndex = i;
                     } else {
-                        for (String inboundHeaderName : inboundHeaders.keySet()) {
-                            Enumeration<String> requestHeaderValues = request.getHeaders(inboundHeaderName);
+                        for (Map.Entry<String, List<String>> inboundHeader : inboundHeaders.entrySet()) {
+                            Enumeration<String> requestHeaderValues = request.getHeaders(inboundHeader.getKey());
 
                             if (requestHeaderValues == null) {
                                 break;
                             }
 
-                            List<String> inboundHeaderValues = Arrays.asList(inboundHeaders.get(inboundHeaderName));
+                            List<String> inboundHeaderValues = inboundHeader.getValue();
                             int matchCount = 0;
 
                             while (requestHeaderValues.hasMoreElements()) {
@@ -183,14 +222,71 @@ public class PathMatcher {
             }
 
             if (configIndex >= 0) {
-                return configurations.get(configIndex);
+                return this.configurations.get(configIndex);
             }
-        }
 
-        return null;
+            return null;
+        }
     }
 
-    private String removeWildCardsFromUri(String protectedUri) {
-        return protectedUri.replaceAll("/[*]", "/");
+    /**
+     * <p>A character tree holding prefixes or, if <code>reversed</code>, suffixes. Each node keeps the highest index
+     * of the paths ending at it.</p>
+     */
+    private static class PathTree {
+
+        private final Node root = new Node();
+        private final boolean reversed;
+
+        PathTree(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        void add(String value, int index) {
+            Node node = this.root;
+            int length = value.length();
+
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(this.reversed ? length - 1 - i : i);
+                Node child = node.children.get(c);
+
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+
+                node = child;
+            }
+
+            node.index = Math.max(node.index, index);
+        }
+
+        /**
+         * <p>Returns the highest index of the paths that are a prefix (or suffix) of the given value, or -1 if there is
+         * none.</p>
+         */
+        int match(String value) {
+            Node node = this.root;
+            int index = node.index;
+            int length = value.length();
+
+            for (int i = 0; i < length && !node.children.isEmpty(); i++) {
+                node = node.children.get(value.charAt(this.reversed ? length - 1 - i : i));
+
+                if (node == null) {
+                    break;
+                }
+
+                index = Math.max(index, node.index);
+            }
+
+            return index;
+        }
+
+        private static class Node {
+
+            private final Map<Character, Node> children = new HashMap<Character, Node>();
+            private int index = -1;
+        }
     }
 }
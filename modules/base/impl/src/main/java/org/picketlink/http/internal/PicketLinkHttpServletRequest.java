@@ -148,7 +148,7 @@ public class PicketLinkHttpServletRequest extends HttpServletRequestWrapper {
                     template.append(charAt);
 
                     if (charAt == '}') {
-                        Object eval = this.elProcessor.eval("#" + template.toString());
+                        Object eval = this.elProcessor.eval("#" + template.toString(), request);
 
                         if (eval == null) {
                             break;
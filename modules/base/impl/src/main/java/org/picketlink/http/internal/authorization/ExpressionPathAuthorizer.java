@@ -56,7 +56,7 @@ public class ExpressionPathAuthorizer extends AbstractPathAuthorizer {
             if (expressions != null) {
                 for (String expression : expressions) {
                     try {
-                        Object eval = this.elProcessor.eval(expression);
+                        Object eval = this.elProcessor.eval(expression, request);
 
                         if (eval == null || !Boolean.class.isInstance(eval)) {
                             throw new RuntimeException("Authorization expressions [" + expression + "] must evaluate to a boolean.");
@@ -77,7 +77,7 @@ public class ExpressionPathAuthorizer extends AbstractPathAuthorizer {
             if (expressions != null) {
                 for (String expression : expressions) {
                     try {
-                        Object eval = this.elProcessor.eval(expression);
+                        Object eval = this.elProcessor.eval(expression, request);
 
                         if (eval == null) {
                             throw new RuntimeException("Authorization expressions [" + expression + "] must evaluate to a not null value.");
@@ -40,6 +40,8 @@ import org.picketlink.authentication.internal.IdmAuthenticator;
 import org.picketlink.authentication.levels.DifferentUserLoggedInExcpetion;
 import org.picketlink.authentication.levels.Level;
 import org.picketlink.authentication.levels.SecurityLevelManager;
+import org.picketlink.authorization.AuthorizationSnapshot;
+import org.picketlink.authorization.AuthorizationSnapshotProvider;
 import org.picketlink.common.properties.Property;
 import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
 import org.picketlink.common.properties.query.PropertyQueries;
@@ -63,7 +65,7 @@ import static org.picketlink.log.BaseLog.AUTHENTICATION_LOGGER;
  * @author Shane Bryzak
  * @author Pedro Igor
  */
-public abstract class AbstractIdentity implements Identity {
+public abstract class AbstractIdentity implements Identity, AuthorizationSnapshotProvider {
 
     private static final long serialVersionUID = 8655816330461907668L;
 
@@ -86,6 +88,9 @@ public abstract class AbstractIdentity implements Identity {
     @Inject
     private transient SecurityLevelManager securityLevelManager;
 
+    @Inject
+    private transient AuthorizationSnapshotManager authorizationSnapshotManager;
+
     /**
      * Flag indicating whether we are currently authenticating
      */
@@ -95,6 +100,8 @@ public abstract class AbstractIdentity implements Identity {
 
     private Level securityLevel;
 
+    private AuthorizationSnapshot authorizationSnapshot;
+
     public boolean isLoggedIn() {
         // If there is an account set, then the account is logged in.
         return this.account != null;
@@ -177,6 +184,7 @@ public abstract class AbstractIdentity implements Identity {
     protected void handleSuccessfulLoginAttempt(Account validatedAccount) {
         AUTHENTICATION_LOGGER.debugf("Authentication was successful for credentials [%s]. User id is [%s].", this.loginCredential.getCredential(), this.loginCredential.getUserId());
         this.account = validatedAccount;
+        this.authorizationSnapshot = null;
         securityLevel = securityLevelManager.resolveSecurityLevel();
         eventBridge.fireEvent(new LoggedInEvent());
     }
@@ -281,6 +289,7 @@ public abstract class AbstractIdentity implements Identity {
      */
     private void unAuthenticate(boolean invalidateLoginCredential) {
         this.account = null;
+        this.authorizationSnapshot = null;
 
         this.securityLevel = securityLevelManager.resolveSecurityLevel();
 
@@ -290,11 +299,69 @@ public abstract class AbstractIdentity implements Identity {
     }
 
     public boolean hasPermission(Object resource, String operation) {
-        return isLoggedIn() && permissionResolver.resolvePermission(this.account, resource, operation);
+        if (!isLoggedIn()) {
+            return false;
+        }
+
+        AuthorizationSnapshot snapshot = getAuthorizationSnapshot();
+
+        if (snapshot == null) {
+            return permissionResolver.resolvePermission(this.account, resource, operation);
+        }
+
+        Boolean granted = snapshot.getPermissionDecision(resource, null, null, operation);
+
+        if (granted == null) {
+            granted = permissionResolver.resolvePermission(this.account, resource, operation);
+            snapshot.putPermissionDecision(resource, null, null, operation, granted);
+        }
+
+        return granted;
     }
 
     public boolean hasPermission(Class<?> resourceClass, Serializable identifier, String operation) {
-        return isLoggedIn() && permissionResolver.resolvePermission(this.account, resourceClass, identifier, operation);
+        if (!isLoggedIn()) {
+            return false;
+        }
+
+        AuthorizationSnapshot snapshot = getAuthorizationSnapshot();
+
+        if (snapshot == null) {
+            return permissionResolver.resolvePermission(this.account, resourceClass, identifier, operation);
+        }
+
+        Boolean granted = snapshot.getPermissionDecision(null, resourceClass, identifier, operation);
+
+        if (granted == null) {
+            granted = permissionResolver.resolvePermission(this.account, resourceClass, identifier, operation);
+            snapshot.putPermissionDecision(null, resourceClass, identifier, operation, granted);
+        }
+
+        return granted;
+    }
+
+    /**
+     * <p>Returns the snapshot of the authenticated account, building it on the first check after a login or whenever
+     * the current one is out of date.</p>
+     *
+     * @return The snapshot, or null if there is no authenticated account or snapshots are disabled.
+     */
+    @Override
+    public AuthorizationSnapshot getAuthorizationSnapshot() {
+        Account account = this.account;
+
+        if (account == null || this.authorizationSnapshotManager == null) {
+            return null;
+        }
+
+        AuthorizationSnapshot current = this.authorizationSnapshot;
+        AuthorizationSnapshot snapshot = this.authorizationSnapshotManager.getSnapshot(account, current);
+
+        if (snapshot != current) {
+            this.authorizationSnapshot = snapshot;
+        }
+
+        return snapshot;
     }
 
     protected Property getDefaultLoginNameProperty(Class<? extends Account> accountType) {
@@ -0,0 +1,389 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.internal;
+
+import org.picketlink.authorization.AuthorizationSnapshot;
+import org.picketlink.authorization.util.AuthorizationUtil;
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.properties.query.TypedPropertyCriteria;
+import org.picketlink.config.IdentityBeanConfiguration;
+import org.picketlink.config.SecurityConfiguration;
+import org.picketlink.extension.PicketLinkExtension;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.config.StereotypeRegistry;
+import org.picketlink.idm.event.IdentityTypeDeletedEvent;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.event.PartitionDeletedEvent;
+import org.picketlink.idm.event.PartitionUpdatedEvent;
+import org.picketlink.idm.event.PermissionGrantedEvent;
+import org.picketlink.idm.event.PermissionRevokedEvent;
+import org.picketlink.idm.event.RelationshipCreatedEvent;
+import org.picketlink.idm.event.RelationshipDeletedEvent;
+import org.picketlink.idm.event.RelationshipUpdatedEvent;
+import org.picketlink.idm.model.Account;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+import org.picketlink.idm.model.annotation.InheritsPrivileges;
+import org.picketlink.idm.model.annotation.StereotypeProperty;
+import org.picketlink.idm.model.basic.Group;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.GROUP;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.ROLE;
+import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereotype.GRANT;
+import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereotype.GROUP_MEMBERSHIP;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_GROUP_NAME;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_ROLE_NAME;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GRANT_ASSIGNEE;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GRANT_ROLE;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_GROUP;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GROUP_MEMBERSHIP_MEMBER;
+
+/**
+ * <p>Builds the {@link AuthorizationSnapshot} kept by the {@link org.picketlink.Identity} bean and decides when it must be
+ * built again.</p>
+ *
+ * <p>Snapshots record the version of the identity data from which they were loaded. The version is incremented whenever
+ * the partition manager raises an event for a change that may affect an authorization check, and the version of the
+ * change is recorded for each identity involved: the identity updated or deleted, the identities inheriting privileges
+ * through a relationship or the assignee of a permission. A snapshot is loaded again on its next use only if the account, one
+ * of its roles or groups or an ancestor group changed after it was loaded, or if a partition changed.</p>
+ *
+ * <p>Permission decisions may depend on identities not tracked by the snapshot, such as a role granted to a group. They
+ * are discarded after any change, without loading the snapshot again.</p>
+ *
+ * <p>Changes that are not notified, such as changes made directly to the stores or by a partition manager not bridged
+ * to CDI, are visible once a snapshot reaches the configured maximum staleness.</p>
+ *
+ * @author Pedro Igor
+ */
+@ApplicationScoped
+public class AuthorizationSnapshotManager {
+
+    @Inject
+    private PicketLinkExtension picketLinkExtension;
+
+    @Inject
+    private Instance<PartitionManager> partitionManagerInstance;
+
+    /**
+     * The number of identity changes recorded before the ones that can no longer affect a snapshot are discarded.
+     */
+    private static final int IDENTITY_CHANGES_PURGE_THRESHOLD = 10000;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * The version of the last change to any partition.
+     */
+    private final AtomicLong partitionsVersion = new AtomicLong();
+
+    /**
+     * The version of the last change of each identity, keyed by the identifier of the identity.
+     */
+    private final ConcurrentMap<String, IdentityChange> identityChanges = new ConcurrentHashMap<String, IdentityChange>();
+
+    /**
+     * <p>Returns an up to date snapshot for the given <code>account</code>.</p>
+     *
+     * @param account The authenticated account.
+     * @param current The snapshot currently held for the account, if any.
+     *
+     * @return The given snapshot if it is still up to date, a new snapshot if not, or null if snapshots are disabled.
+     */
+    public AuthorizationSnapshot getSnapshot(Account account, AuthorizationSnapshot current) {
+        IdentityBeanConfiguration configuration = getConfiguration();
+
+        if (configuration == null || !configuration.isAuthorizationSnapshot()) {
+            return null;
+        }
+
+        long currentVersion = this.version.get();
+
+        if (current == null
+            || current.getAccountId() == null || !current.getAccountId().equals(account.getId())
+            || System.currentTimeMillis() - current.getCreatedAt() > configuration.getAuthorizationSnapshotMaxStaleness()
+            || isChanged(current)) {
+            return createSnapshot(account, currentVersion, configuration.getAuthorizationSnapshotPermissionCacheSize());
+        }
+
+        if (current.getPermissionVersion() != currentVersion) {
+            return current.withPermissionVersion(currentVersion);
+        }
+
+        return current;
+    }
+
+    void onRelationshipCreated(@Observes RelationshipCreatedEvent event) {
+        relationshipChanged(event.getRelationship());
+    }
+
+    void onRelationshipUpdated(@Observes RelationshipUpdatedEvent event) {
+        relationshipChanged(event.getRelationship());
+    }
+
+    void onRelationshipDeleted(@Observes RelationshipDeletedEvent event) {
+        relationshipChanged(event.getRelationship());
+    }
+
+    void onIdentityTypeUpdated(@Observes IdentityTypeUpdatedEvent event) {
+        identityChanged(event.getIdentityType());
+    }
+
+    void onIdentityTypeDeleted(@Observes IdentityTypeDeletedEvent event) {
+        identityChanged(event.getIdentityType());
+    }
+
+    void onPartitionUpdated(@Observes PartitionUpdatedEvent event) {
+        advance(this.partitionsVersion, this.version.incrementAndGet());
+    }
+
+    void onPartitionDeleted(@Observes PartitionDeletedEvent event) {
+        advance(this.partitionsVersion, this.version.incrementAndGet());
+    }
+
+    void onPermissionGranted(@Observes PermissionGrantedEvent event) {
+        identityChanged(event.getAssignee());
+    }
+
+    void onPermissionRevoked(@Observes PermissionRevokedEvent event) {
+        identityChanged(event.getAssignee());
+    }
+
+    private boolean isChanged(AuthorizationSnapshot snapshot) {
+        if (this.partitionsVersion.get() > snapshot.getVersion()) {
+            return true;
+        }
+
+        for (String identityId : snapshot.getIdentityIds()) {
+            IdentityChange change = this.identityChanges.get(identityId);
+
+            if (change != null && change.version > snapshot.getVersion()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void relationshipChanged(Relationship relationship) {
+        // only the identities inheriting privileges through the relationship are affected, if the relationship tells them
+        List<Property<IdentityType>> properties = PropertyQueries.<IdentityType>createQuery(relationship.getClass())
+            .addCriteria(new AnnotatedPropertyCriteria(InheritsPrivileges.class))
+            .getResultList();
+
+        if (properties.isEmpty()) {
+            properties = PropertyQueries.<IdentityType>createQuery(relationship.getClass())
+                .addCriteria(new TypedPropertyCriteria(IdentityType.class, TypedPropertyCriteria.MatchOption.ALL))
+                .getResultList();
+        }
+
+        long changeVersion = this.version.incrementAndGet();
+        boolean participants = false;
+
+        for (Property<IdentityType> property : properties) {
+            IdentityType participant = property.getValue(relationship);
+
+            if (participant != null && participant.getId() != null) {
+                recordChange(participant.getId(), changeVersion);
+                participants = true;
+            }
+        }
+
+        if (!participants) {
+            // we can not tell which snapshots depend on the relationship
+            advance(this.partitionsVersion, changeVersion);
+        }
+    }
+
+    private void identityChanged(IdentityType identityType) {
+        long changeVersion = this.version.incrementAndGet();
+
+        if (identityType != null && identityType.getId() != null) {
+            recordChange(identityType.getId(), changeVersion);
+        } else {
+            advance(this.partitionsVersion, changeVersion);
+        }
+    }
+
+    private void recordChange(String identityId, long changeVersion) {
+        IdentityChange change = new IdentityChange(changeVersion);
+
+        while (true) {
+            IdentityChange previous = this.identityChanges.putIfAbsent(identityId, change);
+
+            if (previous == null || previous.version >= changeVersion
+                || this.identityChanges.replace(identityId, previous, change)) {
+                break;
+            }
+        }
+
+        if (this.identityChanges.size() > IDENTITY_CHANGES_PURGE_THRESHOLD) {
+            purgeIdentityChanges();
+        }
+    }
+
+    /**
+     * <p>Discards the changes older than the maximum staleness, snapshots loaded before them are loaded again anyway.</p>
+     */
+    private void purgeIdentityChanges() {
+        IdentityBeanConfiguration configuration = getConfiguration();
+
+        if (configuration == null) {
+            return;
+        }
+
+        long oldest = System.currentTimeMillis() - configuration.getAuthorizationSnapshotMaxStaleness();
+
+        for (Iterator<IdentityChange> iterator = this.identityChanges.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().changedAt < oldest) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void advance(AtomicLong version, long changeVersion) {
+        long current;
+
+        while ((current = version.get()) < changeVersion && !version.compareAndSet(current, changeVersion)) {
+            // retries until the version is at least the given one
+        }
+    }
+
+    private AuthorizationSnapshot createSnapshot(Account account, long currentVersion, int permissionCacheSize) {
+        PartitionManager partitionManager = this.partitionManagerInstance.get();
+        StereotypeRegistry stereotypeRegistry = AuthorizationUtil.getStereotypeRegistry(partitionManager);
+        RelationshipManager relationshipManager = partitionManager.createRelationshipManager();
+        Set<String> roles = new HashSet<String>();
+        Set<String> groups = new HashSet<String>();
+        Set<String> ancestorGroups = new HashSet<String>();
+        Set<String> identityIds = new HashSet<String>();
+
+        identityIds.add(account.getId());
+
+        for (Class<? extends Relationship> relationshipType : stereotypeRegistry.getRelationshipTypes(GRANT)) {
+            for (IdentityType role : getRelated(relationshipManager, stereotypeRegistry, relationshipType, account,
+                RELATIONSHIP_GRANT_ASSIGNEE, RELATIONSHIP_GRANT_ROLE)) {
+                addName(stereotypeRegistry, role, ROLE, IDENTITY_ROLE_NAME, roles);
+                identityIds.add(role.getId());
+            }
+        }
+
+        for (Class<? extends Relationship> relationshipType : stereotypeRegistry.getRelationshipTypes(GROUP_MEMBERSHIP)) {
+            for (IdentityType group : getRelated(relationshipManager, stereotypeRegistry, relationshipType, account,
+                RELATIONSHIP_GROUP_MEMBERSHIP_MEMBER, RELATIONSHIP_GROUP_MEMBERSHIP_GROUP)) {
+                addName(stereotypeRegistry, group, GROUP, IDENTITY_GROUP_NAME, groups);
+                identityIds.add(group.getId());
+
+                if (Group.class.isInstance(group)) {
+                    Group parentGroup = ((Group) group).getParentGroup();
+
+                    while (parentGroup != null) {
+                        ancestorGroups.add(parentGroup.getName());
+                        identityIds.add(parentGroup.getId());
+                        parentGroup = parentGroup.getParentGroup();
+                    }
+                }
+            }
+        }
+
+        return new AuthorizationSnapshot(account.getId(), roles, groups, ancestorGroups, identityIds, currentVersion,
+            permissionCacheSize);
+    }
+
+    private Set<IdentityType> getRelated(RelationshipManager relationshipManager, StereotypeRegistry stereotypeRegistry,
+                                         Class<? extends Relationship> relationshipType, Account account,
+                                         StereotypeProperty.Property accountProperty,
+                                         StereotypeProperty.Property relatedProperty) {
+        Set<IdentityType> related = new HashSet<IdentityType>();
+        Property<Object> accountRelationshipProperty = stereotypeRegistry.getProperty(relationshipType, accountProperty);
+        Property<Object> relatedRelationshipProperty = stereotypeRegistry.getProperty(relationshipType, relatedProperty);
+
+        if (accountRelationshipProperty != null && relatedRelationshipProperty != null) {
+            for (Relationship relationship : relationshipManager
+                .createRelationshipQuery(relationshipType)
+                .setParameter(Relationship.RELATIONSHIP_QUERY_ATTRIBUTE.byName(accountRelationshipProperty.getName()), account)
+                .getResultList()) {
+                Object value = relatedRelationshipProperty.getValue(relationship);
+
+                if (IdentityType.class.isInstance(value)) {
+                    related.add((IdentityType) value);
+                }
+            }
+        }
+
+        return related;
+    }
+
+    private void addName(StereotypeRegistry stereotypeRegistry, IdentityType identityType,
+                         IdentityStereotype.Stereotype stereotype, StereotypeProperty.Property nameProperty,
+                         Set<String> names) {
+        for (Class<? extends IdentityType> type : stereotypeRegistry.getIdentityTypes(stereotype)) {
+            if (type.isInstance(identityType)) {
+                Property<Object> property = stereotypeRegistry.getProperty(type, nameProperty);
+
+                if (property != null) {
+                    Object name = property.getValue(identityType);
+
+                    if (name != null) {
+                        names.add(name.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    private IdentityBeanConfiguration getConfiguration() {
+        SecurityConfiguration securityConfiguration = this.picketLinkExtension.getSecurityConfiguration();
+
+        if (securityConfiguration == null) {
+            return null;
+        }
+
+        return securityConfiguration.getIdentityBeanConfiguration();
+    }
+
+    private static class IdentityChange {
+
+        private final long version;
+        private final long changedAt = System.currentTimeMillis();
+
+        IdentityChange(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -22,6 +22,7 @@
 package org.picketlink.internal;
 
 import org.picketlink.Identity;
+import org.picketlink.authorization.AuthorizationSnapshotProvider;
 import org.picketlink.config.SecurityConfiguration;
 
 import javax.enterprise.context.SessionScoped;
@@ -72,6 +73,7 @@ public class IdentityBeanDefinition implements Bean<DefaultIdentity>, Serializab
         Set<Type> types = new HashSet<Type>();
 
         types.add(Identity.class);
+        types.add(AuthorizationSnapshotProvider.class);
         types.add(Object.class);
 
         return types;
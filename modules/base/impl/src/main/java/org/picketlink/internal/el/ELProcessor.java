@@ -25,6 +25,7 @@ import org.picketlink.Identity;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.Account;
 import org.picketlink.producer.LevelFactoryResolver;
 
 import javax.el.ArrayELResolver;
@@ -43,15 +44,30 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
+import javax.servlet.ServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>Provides EL processing.</p>
  *
+ * <p>Expressions are compiled once and cached by their string representation, so evaluating the same expression again
+ * only resolves its values. The number of cached expressions is bounded, given that some expressions are built from
+ * request data.</p>
+ *
  * @author Pedro Igor
  */
 @ApplicationScoped
 public class ELProcessor {
 
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+    private static final String EVALUATION_RESULTS_ATTRIBUTE = ELProcessor.class.getName() + ".EVALUATION_RESULTS";
+
+    private final ConcurrentMap<String, ValueExpression> compiledExpressions = new ConcurrentHashMap<String, ValueExpression>();
+    private final PicketLinkFunctionMapper functionMapper = new PicketLinkFunctionMapper();
+
     private ExpressionFactory expressionFactory;
     private CompositeELResolver elResolver;
 
@@ -74,19 +90,69 @@ public class ELProcessor {
     private Instance<LevelFactoryResolver> levelFactoryResolverInstance;
 
     public <R> R eval(String expression) {
-        PicketLinkELContext context = new PicketLinkELContext(this.elResolver);
-        ValueExpression valueExpression = this.expressionFactory.createValueExpression(context, expression, Object.class);
+        return (R) evaluate(expression, new PicketLinkELContext(this.elResolver, this.functionMapper));
+    }
+
+    /**
+     * <p>Evaluates the given <code>expression</code> and memoises its result in the given <code>request</code>.
+     * Subsequent evaluations of the same expression during the request return the memoised result, as long as the
+     * account associated with the current {@link Identity} does not change.</p>
+     *
+     * <p>Only pure expressions are memoised. An expression is considered pure if it only resolves the {@link Identity}
+     * bean, accesses properties and calls built-in functions. Expressions resolving any other bean or invoking methods
+     * are always evaluated.</p>
+     *
+     * @param expression The expression to evaluate.
+     * @param request The request in which results are memoised.
+     * @param <R>
+     * @return
+     */
+    public <R> R eval(String expression, ServletRequest request) {
+        Account account = this.identityInstance.get().getAccount();
+        EvaluationResults results = (EvaluationResults) request.getAttribute(EVALUATION_RESULTS_ATTRIBUTE);
+
+        if (results == null || results.account != account) {
+            results = new EvaluationResults(account);
+            request.setAttribute(EVALUATION_RESULTS_ATTRIBUTE, results);
+        }
+
+        if (results.values.containsKey(expression)) {
+            return (R) results.values.get(expression);
+        }
+
+        PicketLinkELContext context = new PicketLinkELContext(this.elResolver, this.functionMapper);
+        Object value = evaluate(expression, context);
 
-        R value;
+        if (context.isPure()) {
+            results.values.put(expression, value);
+        }
+
+        return (R) value;
+    }
+
+    private Object evaluate(String expression, PicketLinkELContext context) {
+        ValueExpression valueExpression = compile(expression, context);
 
         try {
             createEvaluationContext();
-            value = (R) valueExpression.getValue(context);
+            return valueExpression.getValue(context);
         } finally {
             releaseEvaluationContext();
         }
+    }
 
-        return value;
+    private ValueExpression compile(String expression, ELContext context) {
+        ValueExpression valueExpression = this.compiledExpressions.get(expression);
+
+        if (valueExpression == null) {
+            valueExpression = this.expressionFactory.createValueExpression(context, expression, Object.class);
+
+            if (this.compiledExpressions.size() < MAX_CACHED_EXPRESSIONS) {
+                this.compiledExpressions.putIfAbsent(expression, valueExpression);
+            }
+        }
+
+        return valueExpression;
     }
 
     @Inject
@@ -114,12 +180,19 @@ public class ELProcessor {
         ELEvaluationContext.release();
     }
 
-    private class PicketLinkELContext extends ELContext {
+    /**
+     * <p>{@link ELContext} for a single evaluation. Contexts keep state during an evaluation and are not shared, but
+     * they share the resolvers and the function mapper, which are stateless.</p>
+     */
+    static class PicketLinkELContext extends ELContext {
 
         private final ELResolver elResolver;
+        private final FunctionMapper functionMapper;
+        private boolean pure = true;
 
-        public PicketLinkELContext(ELResolver elResolver) {
+        PicketLinkELContext(ELResolver elResolver, FunctionMapper functionMapper) {
             this.elResolver = elResolver;
+            this.functionMapper = functionMapper;
         }
 
         @Override
@@ -129,12 +202,30 @@ public class ELProcessor {
 
         @Override
         public FunctionMapper getFunctionMapper() {
-            return new PicketLinkFunctionMapper();
+            return this.functionMapper;
         }
 
         @Override
         public VariableMapper getVariableMapper() {
             return null;
         }
+
+        void markImpure() {
+            this.pure = false;
+        }
+
+        boolean isPure() {
+            return this.pure;
+        }
+    }
+
+    private static class EvaluationResults {
+
+        private final Account account;
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        EvaluationResults(Account account) {
+            this.account = account;
+        }
     }
 }
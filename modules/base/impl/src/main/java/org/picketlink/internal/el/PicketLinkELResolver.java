@@ -52,6 +52,10 @@ class PicketLinkELResolver extends ELResolver {
     public Object getValue(ELContext context, Object base, Object property) {
         Object value = target.getValue(context, base, property);
 
+        if (base == null && value != null && !Identity.class.isInstance(value)) {
+            markImpure(context);
+        }
+
         if (value == null) {
             if (base != null) {
                 if (Identity.class.isInstance(base)) {
@@ -67,6 +71,12 @@ class PicketLinkELResolver extends ELResolver {
         return value;
     }
 
+    @Override
+    public Object invoke(ELContext context, Object base, Object method, Class<?>[] paramTypes, Object[] params) {
+        markImpure(context);
+        return target.invoke(context, base, method, paramTypes, params);
+    }
+
     @Override
     public Class<?> getType(ELContext context, Object base, Object property) {
         return target.getType(context, base, property);
@@ -92,6 +102,12 @@ class PicketLinkELResolver extends ELResolver {
         return target.getCommonPropertyType(context, base);
     }
 
+    private void markImpure(ELContext context) {
+        if (ELProcessor.PicketLinkELContext.class.isInstance(context)) {
+            ((ELProcessor.PicketLinkELContext) context).markImpure();
+        }
+    }
+
     private Object resolveInIdentity(ELContext context, Identity identity, String property) {
         Object value = null;
 
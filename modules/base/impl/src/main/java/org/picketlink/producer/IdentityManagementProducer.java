@@ -33,6 +33,7 @@ import org.picketlink.idm.permission.acl.spi.PermissionHandler;
 import org.picketlink.internal.CDIEventBridge;
 import org.picketlink.internal.SecuredIdentityManager;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.inject.Instance;
@@ -80,6 +81,8 @@ public class IdentityManagementProducer {
 
     private PartitionManager partitionManager;
 
+    private boolean embeddedPartitionManager;
+
     @Inject
     public void init() {
         if (this.partitionManager != null) {
@@ -97,6 +100,18 @@ public class IdentityManagementProducer {
             }
         } else {
             this.partitionManager = createEmbeddedPartitionManager();
+            this.embeddedPartitionManager = true;
+        }
+    }
+
+    /**
+     * <p>Closes the embedded {@link PartitionManager}, releasing the resources held by its identity stores. Partition
+     * managers provided by the application are left for the application to close.</p>
+     */
+    @PreDestroy
+    public void destroy() {
+        if (this.embeddedPartitionManager && DefaultPartitionManager.class.isInstance(this.partitionManager)) {
+            ((DefaultPartitionManager) this.partitionManager).close();
         }
     }
 
@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.test.authorization;
+
+import org.junit.Test;
+import org.picketlink.authorization.AuthorizationSnapshot;
+import org.picketlink.authorization.AuthorizationSnapshotProvider;
+import org.picketlink.config.SecurityConfigurationBuilder;
+import org.picketlink.config.http.FormAuthenticationConfiguration;
+import org.picketlink.event.SecurityConfigurationEvent;
+import org.picketlink.http.internal.authentication.schemes.FormAuthenticationScheme;
+import org.picketlink.http.test.AbstractSecurityFilterTestCase;
+import org.picketlink.http.test.SecurityInitializer;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.test.weld.Deployment;
+
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Pedro Igor
+ */
+@Deployment(
+    beans = {
+        AuthorizationSnapshotTestCase.SecurityConfiguration.class, SecurityInitializer.class
+    },
+    excludeBeansFromPackage = "org.picketlink.http.test"
+)
+public class AuthorizationSnapshotTestCase extends AbstractSecurityFilterTestCase {
+
+    @Inject
+    private PartitionManager partitionManager;
+
+    @Test
+    public void testSnapshotRefreshedAfterRoleRevoked() throws Exception {
+        when(this.request.getServletPath()).thenReturn("/formProtectedUri/" + FormAuthenticationConfiguration.DEFAULT_AUTHENTICATION_URI);
+        when(this.request.getParameter(FormAuthenticationScheme.J_USERNAME)).thenReturn("picketlink");
+        when(this.request.getParameter(FormAuthenticationScheme.J_PASSWORD)).thenReturn("picketlink");
+
+        this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+        verify(this.response).sendRedirect(CONTEXT_PATH);
+
+        AuthorizationSnapshot snapshot = ((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot();
+
+        assertNotNull(snapshot);
+        assertTrue(snapshot.hasRole("Manager"));
+        assertTrue(snapshot.isMember("Administrators"));
+        assertFalse(snapshot.hasRole("Customer"));
+        assertSame(snapshot, ((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot());
+
+        when(this.request.getServletPath()).thenReturn("/onlyManagerRole");
+        reset(this.response);
+
+        this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+        verify(this.filterChain, times(1)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class));
+
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = this.partitionManager.createRelationshipManager();
+        User user = BasicModel.getUser(identityManager, "picketlink");
+        Role role = BasicModel.getRole(identityManager, "Manager");
+
+        BasicModel.revokeRole(relationshipManager, user, role);
+
+        try {
+            AuthorizationSnapshot refreshedSnapshot = ((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot();
+
+            assertNotSame(snapshot, refreshedSnapshot);
+            assertFalse(refreshedSnapshot.hasRole("Manager"));
+
+            reset(this.response);
+
+            this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+
+            verify(this.response, times(1)).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
+        } finally {
+            BasicModel.grantRole(relationshipManager, user, role);
+        }
+    }
+
+    @Test
+    public void testSnapshotKeptAfterUnrelatedChange() throws Exception {
+        when(this.request.getServletPath()).thenReturn("/formProtectedUri/" + FormAuthenticationConfiguration.DEFAULT_AUTHENTICATION_URI);
+        when(this.request.getParameter(FormAuthenticationScheme.J_USERNAME)).thenReturn("picketlink");
+        when(this.request.getParameter(FormAuthenticationScheme.J_PASSWORD)).thenReturn("picketlink");
+
+        this.securityFilter.doFilter(this.request, this.response, this.filterChain);
+        verify(this.response).sendRedirect(CONTEXT_PATH);
+
+        AuthorizationSnapshot snapshot = ((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot();
+
+        assertNotNull(snapshot);
+
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = this.partitionManager.createRelationshipManager();
+        User otherUser = new User("other");
+
+        identityManager.add(otherUser);
+
+        try {
+            BasicModel.grantRole(relationshipManager, otherUser, BasicModel.getRole(identityManager, "Manager"));
+
+            AuthorizationSnapshot currentSnapshot = ((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot();
+
+            // not loaded again, only the permission decisions are discarded
+            assertEquals(snapshot.getVersion(), currentSnapshot.getVersion());
+            assertEquals(snapshot.getCreatedAt(), currentSnapshot.getCreatedAt());
+            assertTrue(currentSnapshot.getPermissionVersion() > snapshot.getPermissionVersion());
+            assertTrue(currentSnapshot.hasRole("Manager"));
+        } finally {
+            identityManager.remove(otherUser);
+        }
+    }
+
+    @Test
+    public void testNoSnapshotWhenNotLoggedIn() throws Exception {
+        assertFalse(this.identity.isLoggedIn());
+        assertNull(((AuthorizationSnapshotProvider) this.identity).getAuthorizationSnapshot());
+    }
+
+    public static class SecurityConfiguration {
+        public void configureHttpSecurity(@Observes SecurityConfigurationEvent event) {
+            SecurityConfigurationBuilder builder = event.getBuilder();
+
+            builder
+                .identity()
+                    .authorizationSnapshot()
+                .http()
+                .allPaths()
+                .authenticateWith()
+                .form()
+                .forPath("/onlyManagerRole")
+                .authorizeWith()
+                .role("Manager");
+        }
+    }
+}
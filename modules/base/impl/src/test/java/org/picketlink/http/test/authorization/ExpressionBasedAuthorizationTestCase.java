@@ -22,12 +22,15 @@
 package org.picketlink.http.test.authorization;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.picketlink.annotations.PicketLink;
 import org.picketlink.config.SecurityConfigurationBuilder;
 import org.picketlink.event.SecurityConfigurationEvent;
 import org.picketlink.http.test.AbstractSecurityFilterTestCase;
 import org.picketlink.http.test.SecurityInitializer;
 import org.picketlink.idm.PartitionManager;
+import org.picketlink.internal.el.ELProcessor;
 import org.picketlink.test.weld.Deployment;
 
 import javax.enterprise.event.Observes;
@@ -35,11 +38,16 @@ import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -62,6 +70,9 @@ public class ExpressionBasedAuthorizationTestCase extends AbstractSecurityFilter
     @Inject
     private PartitionManager partitionManager;
 
+    @Inject
+    private ELProcessor elProcessor;
+
     @Override
     public void onBefore() throws Exception {
         super.onBefore();
@@ -135,6 +146,42 @@ public class ExpressionBasedAuthorizationTestCase extends AbstractSecurityFilter
         verify(this.response, times(1)).sendError(eq(HttpServletResponse.SC_FORBIDDEN), anyString());
     }
 
+    @Test
+    public void testMemoisedResultsFollowIdentityChanges() throws Exception {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Object[] arguments = invocation.getArguments();
+                attributes.put((String) arguments[0], arguments[1]);
+                return null;
+            }
+        }).when(this.request).setAttribute(anyString(), any());
+
+        when(this.request.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+
+        Boolean loggedIn = this.elProcessor.eval("#{identity.loggedIn}", this.request);
+
+        assertTrue(loggedIn);
+        assertFalse(attributes.isEmpty());
+
+        loggedIn = this.elProcessor.eval("#{identity.loggedIn}", this.request);
+
+        assertTrue(loggedIn);
+
+        this.identity.logout();
+
+        loggedIn = this.elProcessor.eval("#{identity.loggedIn}", this.request);
+
+        assertFalse(loggedIn);
+    }
+
     public static class SecurityConfiguration {
         public void configureHttpSecurity(@Observes SecurityConfigurationEvent event) {
             SecurityConfigurationBuilder builder = event.getBuilder();
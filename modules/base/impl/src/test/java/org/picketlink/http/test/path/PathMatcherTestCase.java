@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.http.test.path;
+
+import org.junit.Test;
+import org.picketlink.config.HttpSecurityBuilder;
+import org.picketlink.config.SecurityConfigurationBuilder;
+import org.picketlink.config.http.PathConfiguration;
+import org.picketlink.http.HttpMethod;
+import org.picketlink.http.internal.PathMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Pedro Igor
+ */
+public class PathMatcherTestCase {
+
+    @Test
+    public void testAnyResourceIsOnlySelectedWhenNothingElseMatches() {
+        HttpSecurityBuilder builder = new SecurityConfigurationBuilder().http();
+
+        builder
+            .forPath("/*")
+            .forPath("/admin/*")
+            .forPath("/public");
+
+        PathMatcher matcher = createMatcher(builder);
+
+        assertEquals("/admin/*", matcher.matches(createRequest("/admin/users", "GET")).getUri());
+        assertEquals("/admin/*", matcher.matches(createRequest("/admin", "GET")).getUri());
+        assertEquals("/public", matcher.matches(createRequest("/public", "GET")).getUri());
+        assertEquals("/*", matcher.matches(createRequest("/other", "GET")).getUri());
+    }
+
+    @Test
+    public void testLastConfiguredPathWins() {
+        HttpSecurityBuilder builder = new SecurityConfigurationBuilder().http();
+
+        builder
+            .forPath("/rest/*")
+            .forPath("/*.jsf")
+            .forPath("/user/profile/{identity.account.id}")
+            .forPath("/rest/b/*");
+
+        PathMatcher matcher = createMatcher(builder);
+
+        assertEquals("/rest/b/*", matcher.matches(createRequest("/rest/b/resource", "GET")).getUri());
+        assertEquals("/*.jsf", matcher.matches(createRequest("/rest/a/index.jsf", "GET")).getUri());
+        assertEquals("/rest/*", matcher.matches(createRequest("/rest/a/resource", "GET")).getUri());
+        assertEquals("/user/profile/{identity.account.id}", matcher.matches(createRequest("/user/profile/john", "GET")).getUri());
+        assertNull(matcher.matches(createRequest("/user/profile", "GET")));
+    }
+
+    @Test
+    public void testSelectByMethod() {
+        HttpSecurityBuilder builder = new SecurityConfigurationBuilder().http();
+
+        builder
+            .forPath("/resource").withMethod(HttpMethod.GET)
+            .forPath("/resource").withMethod(HttpMethod.POST);
+
+        PathMatcher matcher = createMatcher(builder);
+
+        assertTrue(matcher.matches(createRequest("/resource", "get")).getMethods().contains(HttpMethod.GET));
+        assertTrue(matcher.matches(createRequest("/resource", "POST")).getMethods().contains(HttpMethod.POST));
+        assertNull(matcher.matches(createRequest("/resource", "PUT")));
+    }
+
+    private PathMatcher createMatcher(HttpSecurityBuilder builder) {
+        return new PathMatcher(builder.build().getHttpSecurityConfiguration().getPaths(), null);
+    }
+
+    private HttpServletRequest createRequest(String path, String method) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        when(request.getContextPath()).thenReturn("/context");
+        when(request.getRequestURI()).thenReturn("/context" + path);
+        when(request.getMethod()).thenReturn(method);
+
+        return request;
+    }
+}
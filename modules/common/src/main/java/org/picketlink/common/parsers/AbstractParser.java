@@ -19,10 +19,9 @@ package org.picketlink.common.parsers;
 
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
-import org.picketlink.common.constants.GeneralConstants;
 import org.picketlink.common.exceptions.ParsingException;
+import org.picketlink.common.util.DOMEventReader;
 import org.picketlink.common.util.StaxParserUtil;
-import org.picketlink.common.util.SystemPropertiesUtil;
 
 import javax.xml.stream.EventFilter;
 import javax.xml.stream.XMLEventReader;
@@ -30,9 +29,9 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
+import org.w3c.dom.Node;
+
 import java.io.InputStream;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 
 /**
  * Base class for parsers
@@ -45,24 +44,21 @@ public abstract class AbstractParser implements ParserNamespaceSupport {
     protected static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
     /**
-     * Get the JAXP {@link XMLInputFactory}
+     * <p>
+     * Get the JAXP {@link XMLInputFactory}. When {@link org.picketlink.common.constants.GeneralConstants#TCCL_JAXP} is
+     * enabled, the factory is looked up using the class loader of the parser class, as it has always been.
+     * </p>
+     *
+     * <p>
+     * Unlike previous versions, the returned factory is not a new instance: it is cached and shared by all parsers and
+     * threads, and configured as described by {@link StaxParserUtil#getXMLInputFactory()}. Subclasses must not modify
+     * it. Subclasses that need a factory of their own should override this method.
+     * </p>
      *
      * @return
      */
     protected XMLInputFactory getXMLInputFactory() {
-        boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
-                .equalsIgnoreCase("true");
-        ClassLoader prevTCCL = getTCCL();
-        try {
-            if (tccl_jaxp) {
-                setTCCL(getClass().getClassLoader());
-            }
-            return XMLInputFactory.newInstance();
-        } finally {
-            if (tccl_jaxp) {
-                setTCCL(prevTCCL);
-            }
-        }
+        return StaxParserUtil.getXMLInputFactory(getClass());
     }
 
     /**
@@ -108,29 +104,21 @@ public abstract class AbstractParser implements ParserNamespaceSupport {
         return parse(xmlEventReader);
     }
 
-    private ClassLoader getTCCL() {
-        if (System.getSecurityManager() != null) {
-            return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
-                public ClassLoader run() {
-                    return Thread.currentThread().getContextClassLoader();
-                }
-            });
-        } else {
-            return Thread.currentThread().getContextClassLoader();
-        }
-    }
+    /**
+     * Parse a DOM {@link Node} for payload. The events are read directly from the DOM tree, discarding whitespace as done
+     * by {@link #parse(InputStream)}.
+     *
+     * @param node a {@link org.w3c.dom.Document}, {@link org.w3c.dom.DocumentFragment} or {@link org.w3c.dom.Element}
+     *
+     * @return
+     *
+     * @throws {@link IllegalArgumentException} when the node is null
+     */
+    public Object parse(Node node) throws ParsingException {
+        if (node == null)
+            throw logger.nullArgumentError("Node");
 
-    private void setTCCL(final ClassLoader paramCl) {
-        if (System.getSecurityManager() != null) {
-            AccessController.doPrivileged(new PrivilegedAction<Void>() {
-                public Void run() {
-                    Thread.currentThread().setContextClassLoader(paramCl);
-                    return null;
-                }
-            });
-        } else {
-            Thread.currentThread().setContextClassLoader(paramCl);
-        }
+        return parse(new DOMEventReader(node, true));
     }
 
 }
\ No newline at end of file
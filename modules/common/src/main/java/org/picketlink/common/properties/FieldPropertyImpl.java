@@ -35,6 +35,9 @@ class FieldPropertyImpl<V> implements FieldProperty<V> {
 
     private final Field field;
 
+    // properties are cached and shared, the field is made accessible only once instead of on every access
+    private volatile boolean accessible;
+
     FieldPropertyImpl(Field field) {
         this.field = field;
     }
@@ -67,14 +70,14 @@ class FieldPropertyImpl<V> implements FieldProperty<V> {
 
     @Override
     public V getValue(Object instance) {
-        setAccessible();
+        ensureAccessible();
         return getFieldValue(field, instance, getJavaClass());
     }
 
     @Override
     public void setValue(Object instance, V value) {
-        setAccessible();
-        setFieldValue(true, field, instance, value);
+        ensureAccessible();
+        setFieldValue(false, field, instance, value);
     }
 
     @Override
@@ -90,6 +93,13 @@ class FieldPropertyImpl<V> implements FieldProperty<V> {
     @Override
     public void setAccessible() {
         Reflections.setAccessible(field);
+        this.accessible = true;
+    }
+
+    private void ensureAccessible() {
+        if (!this.accessible) {
+            setAccessible();
+        }
     }
 
     @Override
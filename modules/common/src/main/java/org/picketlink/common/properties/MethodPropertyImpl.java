@@ -25,6 +25,8 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.picketlink.common.reflection.Reflections.invokeMethod;
 
@@ -44,6 +46,9 @@ class MethodPropertyImpl<V> implements MethodProperty<V> {
     private final String propertyName;
     private final Method setterMethod;
 
+    // setters overridden by the types of the instances, when the declaring type does not define a setter
+    private final Map<Class<?>, Method> instanceSetterMethods = new ConcurrentHashMap<Class<?>, Method>();
+
     public MethodPropertyImpl(Method method) {
         final String accessorMethodPrefix;
         final String propertyNameInAccessorMethod;
@@ -135,7 +140,15 @@ class MethodPropertyImpl<V> implements MethodProperty<V> {
             // a setter method. We just check if the instance is assignable from the property declaring class and
             // try to find a overridden method.
             if (getDeclaringClass().isAssignableFrom(instance.getClass())) {
-                Method instanceSetterMethod = getSetterMethod(instance.getClass(), getName());
+                Method instanceSetterMethod = this.instanceSetterMethods.get(instance.getClass());
+
+                if (instanceSetterMethod == null) {
+                    instanceSetterMethod = getSetterMethod(instance.getClass(), getName());
+
+                    if (instanceSetterMethod != null) {
+                        this.instanceSetterMethods.put(instance.getClass(), instanceSetterMethod);
+                    }
+                }
 
                 if (instanceSetterMethod != null) {
                     invokeMethod(instanceSetterMethod, instance, value);
@@ -40,4 +40,17 @@ public class PropertyQueries {
         return new PropertyQuery<V>(targetClass);
     }
 
+    /**
+     * <p>Removes the cached query results of the classes loaded by the given class loader.</p>
+     *
+     * <p>Cached results reference the fields and methods of their classes, keeping the class loader from being collected
+     * until memory runs low. Applications loading their types from a class loader that is discarded, such as a
+     * redeployed application, may call this method when it is discarded.</p>
+     *
+     * @param classLoader
+     */
+    public static void clearCache(ClassLoader classLoader) {
+        PropertyQueryCache.clear(classLoader);
+    }
+
 }
@@ -37,7 +37,7 @@ import java.util.Map;
  * or inherited from any of its superclasses. For properties that are exposed via a method, the property must be a
  * JavaBean style property, i.e. it must provide both an accessor and mutator method according to the JavaBean
  * specification. </p> <p/> <p> This class is not thread-safe, however the result returned by the getResultList() method
- * is. </p>
+ * is. Results are cached by target class and criteria, see {@link PropertyQueryCache}. </p>
  *
  * @see PropertyQueries
  * @see PropertyCriteria
@@ -155,6 +155,23 @@ public class PropertyQuery<V> {
      * @return the results, or an empty list if there are no results
      */
     private List<Property<V>> getResultList(boolean writable) {
+        PropertyQueryCache.Key key = PropertyQueryCache.createKey(this.criteria, writable);
+
+        if (key != null) {
+            List<Property<V>> result = PropertyQueryCache.get(this.targetClass, key);
+
+            if (result == null) {
+                result = createResultList(writable);
+                PropertyQueryCache.put(this.targetClass, key, result);
+            }
+
+            return result;
+        }
+
+        return createResultList(writable);
+    }
+
+    private List<Property<V>> createResultList(boolean writable) {
         Map<String, PropertyAdapter<V>> adapters = new HashMap<String, PropertyAdapter<V>>();
 
         // First check public accessor methods (we ignore private methods)
@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.properties.query;
+
+import org.picketlink.common.properties.Property;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Caches the results of {@link PropertyQuery} instances by target class and criteria, so the class hierarchy is
+ * scanned only once for each distinct query.
+ * </p>
+ *
+ * <p>
+ * Only queries using the built-in criteria are cached, given that they are compared by value. Lookups do not lock.
+ * </p>
+ *
+ * <p>
+ * Classes are weakly referenced and results softly referenced. However, the cached properties reference the fields and
+ * methods of the class, so a class whose results are cached, and its class loader, can not be unloaded until the
+ * results are cleared by the garbage collector when memory runs low, or by {@link #clear(ClassLoader)}.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+final class PropertyQueryCache {
+
+    private static final ConcurrentMap<ClassKey, SoftReference<ConcurrentMap<Key, List<?>>>> RESULTS =
+        new ConcurrentHashMap<ClassKey, SoftReference<ConcurrentMap<Key, List<?>>>>();
+
+    private static final ReferenceQueue<Class<?>> COLLECTED_CLASSES = new ReferenceQueue<Class<?>>();
+
+    private PropertyQueryCache() {
+    }
+
+    /**
+     * Creates the key for a query with the given criteria.
+     *
+     * @param criteria
+     * @param writable
+     *
+     * @return the key, or null if the query can not be cached.
+     */
+    static Key createKey(List<PropertyCriteria> criteria, boolean writable) {
+        for (PropertyCriteria criterion : criteria) {
+            if (!isCacheable(criterion)) {
+                return null;
+            }
+        }
+
+        return new Key(new ArrayList<PropertyCriteria>(criteria), writable);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> List<Property<V>> get(Class<?> targetClass, Key key) {
+        SoftReference<ConcurrentMap<Key, List<?>>> reference = RESULTS.get(new ClassKey(targetClass, null));
+        ConcurrentMap<Key, List<?>> results = reference != null ? reference.get() : null;
+
+        if (results == null) {
+            return null;
+        }
+
+        return (List<Property<V>>) results.get(key);
+    }
+
+    static <V> void put(Class<?> targetClass, Key key, List<Property<V>> result) {
+        expungeCollectedClasses();
+
+        ClassKey classKey = new ClassKey(targetClass, COLLECTED_CLASSES);
+
+        while (true) {
+            SoftReference<ConcurrentMap<Key, List<?>>> reference = RESULTS.get(classKey);
+            ConcurrentMap<Key, List<?>> results = reference != null ? reference.get() : null;
+
+            if (results != null) {
+                results.put(key, result);
+                return;
+            }
+
+            results = new ConcurrentHashMap<Key, List<?>>();
+            results.put(key, result);
+
+            SoftReference<ConcurrentMap<Key, List<?>>> newReference = new SoftReference<ConcurrentMap<Key, List<?>>>(results);
+
+            if (reference == null ? RESULTS.putIfAbsent(classKey, newReference) == null
+                : RESULTS.replace(classKey, reference, newReference)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the results of all classes loaded by the given class loader.
+     *
+     * @param classLoader
+     */
+    static void clear(ClassLoader classLoader) {
+        Iterator<ClassKey> iterator = RESULTS.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            Class<?> type = iterator.next().get();
+
+            if (type == null || type.getClassLoader() == classLoader) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void expungeCollectedClasses() {
+        Reference<? extends Class<?>> collected;
+
+        while ((collected = COLLECTED_CLASSES.poll()) != null) {
+            RESULTS.remove(collected);
+        }
+    }
+
+    private static boolean isCacheable(PropertyCriteria criterion) {
+        Class<?> type = criterion.getClass();
+
+        return type.equals(NamedPropertyCriteria.class) || type.equals(TypedPropertyCriteria.class)
+            || type.equals(AnnotatedPropertyCriteria.class);
+    }
+
+    /**
+     * A weak reference to a class, compared by the identity of the class. Keys of collected classes are only equal to
+     * themselves, so they can still be removed from the map.
+     */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+
+        private final int hashCode;
+
+        ClassKey(Class<?> type, ReferenceQueue<Class<?>> queue) {
+            super(type, queue);
+            this.hashCode = System.identityHashCode(type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof ClassKey)) {
+                return false;
+            }
+
+            Class<?> type = get();
+
+            return type != null && type == ((ClassKey) obj).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    static final class Key {
+
+        private final List<PropertyCriteria> criteria;
+        private final boolean writable;
+        private final int hashCode;
+
+        Key(List<PropertyCriteria> criteria, boolean writable) {
+            this.criteria = criteria;
+            this.writable = writable;
+            this.hashCode = 31 * criteria.hashCode() + (writable ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            return this.writable == other.writable && this.criteria.equals(other.criteria);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
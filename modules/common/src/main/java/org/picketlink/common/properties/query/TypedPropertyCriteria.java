@@ -85,4 +85,20 @@ public class TypedPropertyCriteria implements PropertyCriteria {
 
         return false;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TypedPropertyCriteria)) {
+            return false;
+        }
+
+        TypedPropertyCriteria other = (TypedPropertyCriteria) obj;
+
+        return this.propertyClass.equals(other.propertyClass) && this.matchOption == other.matchOption;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.propertyClass.hashCode() + (this.matchOption == null ? 0 : this.matchOption.hashCode());
+    }
 }
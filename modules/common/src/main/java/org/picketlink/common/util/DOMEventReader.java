@@ -0,0 +1,438 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.common.util;
+
+import org.picketlink.common.exceptions.ConfigurationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * An {@link XMLEventReader} that reads the events from a DOM tree, instead of parsing them from a stream.
+ * </p>
+ *
+ * <p>
+ * Messages that must be kept as DOM (eg.: for signature validation) can be parsed into the object model without
+ * serializing the DOM back to bytes and parsing it again. When an element must be consumed as DOM by the parsers (see
+ * {@link StaxParserUtil#getDOMElement(XMLEventReader)}), the element is copied from the tree instead of being rebuilt from
+ * the events.
+ * </p>
+ *
+ * <p>
+ * A {@link Document}, a {@link DocumentFragment} or an {@link Element} can be read. The children of a document or of a
+ * fragment are reported between the document events, so a fragment with more than one element is read as a sequence of
+ * sibling elements. Any other kind of node is rejected.
+ * </p>
+ *
+ * <p>
+ * Comments, processing instructions and document types are never reported. Entity reference nodes are skipped together
+ * with their content, so the tree must be built with entity references expanded, as done by {@link DocumentUtil}. If
+ * <code>ignoreWhitespace</code> is enabled, whitespace only text and the document events are not reported either, the
+ * same events discarded by {@link org.picketlink.common.parsers.AbstractParser#parse(java.io.InputStream)}.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+public class DOMEventReader implements XMLEventReader {
+
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    private final Node root;
+    private final boolean ignoreWhitespace;
+
+    private boolean started;
+    private boolean ended;
+    private Node current;
+    private boolean leaving;
+
+    private XMLEvent peekedEvent;
+    private Node peekedNode;
+    private Node eventNode;
+
+    /**
+     * Creates a reader for the given {@link Document}, {@link DocumentFragment} or {@link Element}.
+     *
+     * @param node
+     * @param ignoreWhitespace
+     *
+     * @throws IllegalArgumentException if the node is of any other type.
+     */
+    public DOMEventReader(Node node, boolean ignoreWhitespace) {
+        if (!(node instanceof Document || node instanceof DocumentFragment || node instanceof Element)) {
+            throw new IllegalArgumentException("Node must be a Document, a DocumentFragment or an Element: " + node);
+        }
+
+        this.root = node;
+
+        this.ignoreWhitespace = ignoreWhitespace;
+    }
+
+    public XMLEvent nextEvent() throws XMLStreamException {
+        if (this.peekedEvent != null) {
+            XMLEvent event = this.peekedEvent;
+
+            this.peekedEvent = null;
+            this.peekedNode = null;
+
+            return event;
+        }
+
+        XMLEvent event = advance();
+
+        if (event == null) {
+            throw new NoSuchElementException();
+        }
+
+        return event;
+    }
+
+    public boolean hasNext() {
+        return peekOrNull() != null;
+    }
+
+    public XMLEvent peek() throws XMLStreamException {
+        return peekOrNull();
+    }
+
+    public Object next() {
+        try {
+            return nextEvent();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String getElementText() throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+
+        while (true) {
+            XMLEvent event = nextEvent();
+
+            if (event.isCharacters()) {
+                text.append(event.asCharacters().getData());
+            } else if (event.isEndElement()) {
+                return text.toString();
+            } else if (event.isStartElement()) {
+                throw new XMLStreamException("Element text expected, found START_ELEMENT: " + event);
+            }
+        }
+    }
+
+    public XMLEvent nextTag() throws XMLStreamException {
+        while (true) {
+            XMLEvent event = nextEvent();
+
+            if (event.isStartElement() || event.isEndElement()) {
+                return event;
+            }
+
+            if (event.isCharacters() && !event.asCharacters().isWhiteSpace()) {
+                throw new XMLStreamException("START_ELEMENT or END_ELEMENT expected, found text: " + event);
+            }
+        }
+    }
+
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+
+    public void close() throws XMLStreamException {
+        this.current = null;
+        this.ended = true;
+        this.peekedEvent = null;
+        this.peekedNode = null;
+    }
+
+    /**
+     * <p>
+     * Consumes the next element, and all its children, returning a copy of it as the document element of a new
+     * {@link Document}. Namespaces declared by the ancestors of the element are declared on the copy.
+     * </p>
+     *
+     * @return
+     *
+     * @throws XMLStreamException if the next event, ignoring text, is not the start of an element.
+     */
+    public Element nextElementAsDOM() throws XMLStreamException {
+        XMLEvent event = peek();
+
+        while (event != null && event.isCharacters()) {
+            nextEvent();
+            event = peek();
+        }
+
+        if (event == null || !event.isStartElement()) {
+            throw new XMLStreamException("START_ELEMENT expected, found: " + event);
+        }
+
+        Element element = (Element) this.peekedNode;
+
+        this.peekedEvent = null;
+        this.peekedNode = null;
+
+        // skip the children of the element
+        moveNext(element);
+
+        Document document;
+
+        try {
+            document = DocumentUtil.createDocument();
+        } catch (ConfigurationException e) {
+            throw new XMLStreamException(e);
+        }
+
+        Element copy = (Element) document.importNode(element, true);
+
+        document.appendChild(copy);
+
+        Node ancestor = element.getParentNode();
+
+        while (ancestor instanceof Element) {
+            NamedNodeMap attributes = ancestor.getAttributes();
+
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attribute = (Attr) attributes.item(i);
+
+                if (isNamespaceDeclaration(attribute)
+                        && !copy.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, getLocalName(attribute))) {
+                    copy.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attribute.getName(), attribute.getValue());
+                }
+            }
+
+            ancestor = ancestor.getParentNode();
+        }
+
+        return copy;
+    }
+
+    private XMLEvent peekOrNull() {
+        if (this.peekedEvent == null) {
+            this.peekedEvent = advance();
+            this.peekedNode = this.eventNode;
+        }
+
+        return this.peekedEvent;
+    }
+
+    private XMLEvent advance() {
+        while (true) {
+            this.eventNode = null;
+
+            if (!this.started) {
+                this.started = true;
+                this.current = isContainer(this.root) ? this.root.getFirstChild() : this.root;
+                this.leaving = false;
+
+                if (!this.ignoreWhitespace) {
+                    return EVENT_FACTORY.createStartDocument();
+                }
+
+                continue;
+            }
+
+            if (this.current == null) {
+                if (this.ended) {
+                    return null;
+                }
+
+                this.ended = true;
+
+                if (!this.ignoreWhitespace) {
+                    return EVENT_FACTORY.createEndDocument();
+                }
+
+                return null;
+            }
+
+            Node node = this.current;
+
+            if (this.leaving) {
+                Element element = (Element) node;
+
+                moveNext(element);
+
+                return EVENT_FACTORY.createEndElement(getPrefix(element), getNamespaceURI(element), getLocalName(element));
+            }
+
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    Element element = (Element) node;
+
+                    this.eventNode = element;
+
+                    if (element.getFirstChild() != null) {
+                        this.current = element.getFirstChild();
+                    } else {
+                        this.leaving = true;
+                    }
+
+                    return createStartElement(element);
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    StringBuilder text = new StringBuilder(node.getNodeValue());
+                    Node last = node;
+
+                    // adjacent text nodes are reported as a single event, as a coalescing parser does
+                    while (isText(last.getNextSibling())) {
+                        last = last.getNextSibling();
+                        text.append(last.getNodeValue());
+                    }
+
+                    moveNext(last);
+
+                    String data = text.toString();
+
+                    if (this.ignoreWhitespace && data.trim().length() == 0) {
+                        continue;
+                    }
+
+                    return EVENT_FACTORY.createCharacters(data);
+                default:
+                    moveNext(node);
+            }
+        }
+    }
+
+    private void moveNext(Node node) {
+        if (node == this.root) {
+            this.current = null;
+        } else if (node.getNextSibling() != null) {
+            this.current = node.getNextSibling();
+            this.leaving = false;
+        } else if (node.getParentNode() == this.root && isContainer(this.root)) {
+            this.current = null;
+        } else {
+            this.current = node.getParentNode();
+            this.leaving = true;
+        }
+    }
+
+    private XMLEvent createStartElement(final Element element) {
+        NamedNodeMap domAttributes = element.getAttributes();
+        List<Attribute> attributes = new ArrayList<Attribute>(domAttributes.getLength());
+        List<Namespace> namespaces = new ArrayList<Namespace>();
+
+        for (int i = 0; i < domAttributes.getLength(); i++) {
+            Attr attribute = (Attr) domAttributes.item(i);
+
+            if (isNamespaceDeclaration(attribute)) {
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getName())) {
+                    namespaces.add(EVENT_FACTORY.createNamespace(attribute.getValue()));
+                } else {
+                    namespaces.add(EVENT_FACTORY.createNamespace(getLocalName(attribute), attribute.getValue()));
+                }
+            } else {
+                attributes.add(EVENT_FACTORY.createAttribute(getPrefix(attribute), getNamespaceURI(attribute),
+                        getLocalName(attribute), attribute.getValue()));
+            }
+        }
+
+        return EVENT_FACTORY.createStartElement(getPrefix(element), getNamespaceURI(element), getLocalName(element),
+                attributes.iterator(), namespaces.iterator(), new NamespaceContext() {
+                    public String getNamespaceURI(String prefix) {
+                        String namespaceURI = element.lookupNamespaceURI(prefix.length() == 0 ? null : prefix);
+
+                        return namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI;
+                    }
+
+                    public String getPrefix(String namespaceURI) {
+                        return element.lookupPrefix(namespaceURI);
+                    }
+
+                    public Iterator getPrefixes(String namespaceURI) {
+                        String prefix = getPrefix(namespaceURI);
+
+                        if (prefix == null) {
+                            return Collections.emptyList().iterator();
+                        }
+
+                        return Collections.singletonList(prefix).iterator();
+                    }
+                });
+    }
+
+    private static boolean isContainer(Node node) {
+        return node.getNodeType() == Node.DOCUMENT_NODE || node.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE;
+    }
+
+    private static boolean isText(Node node) {
+        return node != null
+                && (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE);
+    }
+
+    private static boolean isNamespaceDeclaration(Attr attribute) {
+        return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())
+                || XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getName())
+                || attribute.getName().startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+    }
+
+    private static String getPrefix(Node node) {
+        String prefix = node.getPrefix();
+
+        return prefix != null ? prefix : XMLConstants.DEFAULT_NS_PREFIX;
+    }
+
+    private static String getNamespaceURI(Node node) {
+        String namespaceURI = node.getNamespaceURI();
+
+        return namespaceURI != null ? namespaceURI : XMLConstants.NULL_NS_URI;
+    }
+
+    private static String getLocalName(Node node) {
+        String localName = node.getLocalName();
+
+        if (localName == null) {
+            // nodes created by non namespace aware DOM methods
+            localName = node.getNodeName();
+
+            int index = localName.indexOf(':');
+
+            if (index != -1) {
+                localName = localName.substring(index + 1);
+            }
+        }
+
+        return localName;
+    }
+}
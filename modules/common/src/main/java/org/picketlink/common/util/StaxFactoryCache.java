@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.common.util;
+
+import org.picketlink.common.constants.GeneralConstants;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Caches StAX factories per {@link ClassLoader}, so the factory lookup performed by the <code>newInstance</code> methods
+ * happens only once for each class loader.
+ * </p>
+ *
+ * <p>
+ * The factory is looked up using the {@link ClassLoader} of the owner class when {@link GeneralConstants#TCCL_JAXP} is
+ * enabled, otherwise using the thread context class loader. Factories are configured once, when created, and must not be
+ * modified after being returned by {@link #get()}, given that they are shared by all threads. Lookups do not lock, so two
+ * threads may both create the factory for a class loader the first time it is used, in which case only one of them is
+ * kept. Class loaders are weakly referenced and factories softly referenced, so the cache does not prevent class loaders
+ * from being collected.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+abstract class StaxFactoryCache<T> {
+
+    private final Class<?> owner;
+    private final ConcurrentMap<LoaderKey, SoftReference<T>> factories = new ConcurrentHashMap<LoaderKey, SoftReference<T>>();
+    private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<ClassLoader>();
+
+    // the bootstrap class loader is represented by null, and can not be weakly referenced
+    private volatile SoftReference<T> bootstrapFactory;
+
+    StaxFactoryCache(Class<?> owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the factory for the current class loader, creating it if necessary.
+     *
+     * @return
+     */
+    T get() {
+        return get(this.owner);
+    }
+
+    /**
+     * Returns the factory for the current class loader, creating it if necessary. If {@link GeneralConstants#TCCL_JAXP}
+     * is enabled, the class loader of the given <code>owner</code> is used instead of the class loader of this cache's
+     * owner.
+     *
+     * @param owner
+     *
+     * @return
+     */
+    T get(Class<?> owner) {
+        boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
+                .equalsIgnoreCase("true");
+        ClassLoader classLoader = tccl_jaxp ? owner.getClassLoader() : SecurityActions.getTCCL();
+
+        if (classLoader == null) {
+            T factory = this.bootstrapFactory != null ? this.bootstrapFactory.get() : null;
+
+            if (factory == null) {
+                factory = create(tccl_jaxp, null);
+                this.bootstrapFactory = new SoftReference<T>(factory);
+            }
+
+            return factory;
+        }
+
+        SoftReference<T> reference = this.factories.get(new LoaderKey(classLoader, null));
+        T factory = reference != null ? reference.get() : null;
+
+        if (factory == null) {
+            expungeCollectedLoaders();
+
+            factory = create(tccl_jaxp, classLoader);
+
+            LoaderKey key = new LoaderKey(classLoader, this.collectedLoaders);
+            SoftReference<T> newReference = new SoftReference<T>(factory);
+
+            reference = this.factories.putIfAbsent(key, newReference);
+
+            if (reference != null) {
+                T existing = reference.get();
+
+                if (existing != null) {
+                    return existing;
+                }
+
+                this.factories.put(key, newReference);
+            }
+        }
+
+        return factory;
+    }
+
+    /**
+     * Creates and configures a new factory.
+     *
+     * @return
+     */
+    protected abstract T newInstance();
+
+    private T create(boolean tccl_jaxp, ClassLoader classLoader) {
+        ClassLoader prevTCCL = SecurityActions.getTCCL();
+        try {
+            if (tccl_jaxp) {
+                SecurityActions.setTCCL(classLoader);
+            }
+            return newInstance();
+        } finally {
+            if (tccl_jaxp) {
+                SecurityActions.setTCCL(prevTCCL);
+            }
+        }
+    }
+
+    private void expungeCollectedLoaders() {
+        Reference<? extends ClassLoader> collected;
+
+        while ((collected = this.collectedLoaders.poll()) != null) {
+            this.factories.remove(collected);
+        }
+    }
+
+    /**
+     * A weak reference to a class loader, compared by the identity of the class loader. Keys of collected class loaders
+     * are only equal to themselves, so they can still be removed from the map.
+     */
+    private static class LoaderKey extends WeakReference<ClassLoader> {
+
+        private final int hashCode;
+
+        LoaderKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.hashCode = System.identityHashCode(classLoader);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof LoaderKey)) {
+                return false;
+            }
+
+            ClassLoader classLoader = get();
+
+            return classLoader != null && classLoader == ((LoaderKey) obj).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
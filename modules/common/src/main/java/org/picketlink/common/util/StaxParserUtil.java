@@ -19,13 +19,13 @@ package org.picketlink.common.util;
 
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
-import org.picketlink.common.constants.GeneralConstants;
 import org.picketlink.common.constants.JBossSAMLConstants;
 import org.picketlink.common.constants.JBossSAMLURIConstants;
 import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ParsingException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.Location;
@@ -55,6 +55,21 @@ public class StaxParserUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    private static final StaxFactoryCache<XMLInputFactory> XML_INPUT_FACTORY = new StaxFactoryCache<XMLInputFactory>(
+            StaxParserUtil.class) {
+        @Override
+        protected XMLInputFactory newInstance() {
+            XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+            return xmlInputFactory;
+        }
+    };
+
     protected static Validator validator = null;
 
     /**
@@ -116,6 +131,15 @@ public class StaxParserUtil {
      * @throws ParsingException
      */
     public static Element getDOMElement(XMLEventReader xmlEventReader) throws ParsingException {
+        if (xmlEventReader instanceof DOMEventReader) {
+            // the element is already available as DOM
+            try {
+                return ((DOMEventReader) xmlEventReader).nextElementAsDOM();
+            } catch (XMLStreamException e) {
+                throw logger.parserException(e);
+            }
+        }
+
         Transformer transformer = null;
 
         final String JDK_TRANSFORMER_PROPERTY = "picketlink.jdk.transformer";
@@ -173,22 +197,26 @@ public class StaxParserUtil {
      * @return
      */
     public static XMLEventReader getXMLEventReader(InputStream is) {
-        XMLInputFactory xmlInputFactory = null;
         XMLEventReader xmlEventReader = null;
         try {
-            xmlInputFactory = getXMLInputFactory();
-            xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
-            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
-
-            xmlEventReader = xmlInputFactory.createXMLEventReader(is);
+            xmlEventReader = getXMLInputFactory().createXMLEventReader(is);
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
         return xmlEventReader;
     }
 
+    /**
+     * Get a XML event reader for the given DOM {@link Node}, without serializing it to a stream.
+     *
+     * @param node a {@link org.w3c.dom.Document}, {@link org.w3c.dom.DocumentFragment} or {@link Element}
+     *
+     * @return
+     */
+    public static XMLEventReader getXMLEventReader(Node node) {
+        return new DOMEventReader(node, false);
+    }
+
     /**
      * Given a {@code Location}, return a formatted string [lineNum,colNum]
      *
@@ -452,19 +480,38 @@ public class StaxParserUtil {
             throw new RuntimeException(logger.parserExpectedEndTag("</" + tag + ">.  Found </" + elementTag + ">"));
     }
 
-    private static XMLInputFactory getXMLInputFactory() {
-        boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
-                .equalsIgnoreCase("true");
-        ClassLoader prevTCCL = SecurityActions.getTCCL();
-        try {
-            if (tccl_jaxp) {
-                SecurityActions.setTCCL(StaxParserUtil.class.getClassLoader());
-            }
-            return XMLInputFactory.newInstance();
-        } finally {
-            if (tccl_jaxp) {
-                SecurityActions.setTCCL(prevTCCL);
-            }
-        }
+    /**
+     * <p>
+     * Get the {@code XMLInputFactory} for the current class loader, configured to replace entity references, to not
+     * support external entities and to be namespace aware and coalescing.
+     * </p>
+     *
+     * <p>
+     * The factory is cached and shared by all threads, so it must not be modified.
+     * </p>
+     *
+     * @return
+     */
+    public static XMLInputFactory getXMLInputFactory() {
+        return XML_INPUT_FACTORY.get();
+    }
+
+    /**
+     * <p>
+     * Get the {@code XMLInputFactory} configured as the one returned by {@link #getXMLInputFactory()}. When
+     * {@link org.picketlink.common.constants.GeneralConstants#TCCL_JAXP} is enabled, the factory is looked up using the
+     * class loader of the given <code>owner</code>, instead of the class loader of this class.
+     * </p>
+     *
+     * <p>
+     * The factory is cached and shared by all threads, so it must not be modified.
+     * </p>
+     *
+     * @param owner
+     *
+     * @return
+     */
+    public static XMLInputFactory getXMLInputFactory(Class<?> owner) {
+        return XML_INPUT_FACTORY.get(owner);
     }
 }
\ No newline at end of file
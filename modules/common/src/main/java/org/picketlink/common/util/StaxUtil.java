@@ -19,7 +19,6 @@ package org.picketlink.common.util;
 
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
-import org.picketlink.common.constants.GeneralConstants;
 import org.picketlink.common.exceptions.ProcessingException;
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -47,6 +46,14 @@ public class StaxUtil {
 
     private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
 
+    private static final StaxFactoryCache<XMLOutputFactory> XML_OUTPUT_FACTORY = new StaxFactoryCache<XMLOutputFactory>(
+            StaxUtil.class) {
+        @Override
+        protected XMLOutputFactory newInstance() {
+            return XMLOutputFactory.newInstance();
+        }
+    };
+
     private static ThreadLocal<Stack<String>> registeredNSStack = new ThreadLocal<Stack<String>>();
 
     /**
@@ -430,18 +437,6 @@ public class StaxUtil {
     }
 
     private static XMLOutputFactory getXMLOutputFactory() {
-        boolean tccl_jaxp = SystemPropertiesUtil.getSystemProperty(GeneralConstants.TCCL_JAXP, "false")
-                .equalsIgnoreCase("true");
-        ClassLoader prevTCCL = SecurityActions.getTCCL();
-        try {
-            if (tccl_jaxp) {
-                SecurityActions.setTCCL(StaxUtil.class.getClassLoader());
-            }
-            return XMLOutputFactory.newInstance();
-        } finally {
-            if (tccl_jaxp) {
-                SecurityActions.setTCCL(prevTCCL);
-            }
-        }
+        return XML_OUTPUT_FACTORY.get();
     }
 }
\ No newline at end of file
@@ -137,7 +137,7 @@ public class SOAPSAMLXACML {
             if (node == null)
                 throw logger.nullValueError("Did not find Response node");
 
-            XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(DocumentUtil.getNodeAsStream(node));
+            XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(node);
             SAMLResponseParser samlResponseParser = new SAMLResponseParser();
             ResponseType responseType = (ResponseType) samlResponseParser.parse(xmlEventReader);
 
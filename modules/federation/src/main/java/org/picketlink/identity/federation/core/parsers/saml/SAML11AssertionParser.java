@@ -25,7 +25,6 @@ import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ParsingException;
 import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.parsers.ParserNamespaceSupport;
-import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.common.util.StaxParserUtil;
 import org.picketlink.common.util.StringUtil;
 import org.picketlink.identity.federation.core.parsers.util.SAML11ParserUtil;
@@ -62,7 +61,7 @@ public class SAML11AssertionParser implements ParserNamespaceSupport {
 
     public SAML11AssertionType fromElement(Element element) throws ConfigurationException, ProcessingException,
             ParsingException {
-        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(DocumentUtil.getNodeAsStream(element));
+        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(element);
         return (SAML11AssertionType) parse(xmlEventReader);
     }
 
@@ -26,7 +26,6 @@ import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ParsingException;
 import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.parsers.ParserNamespaceSupport;
-import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.common.util.StaxParserUtil;
 import org.picketlink.common.util.StringUtil;
 import org.picketlink.identity.federation.core.parsers.util.SAMLParserUtil;
@@ -63,7 +62,7 @@ public class SAMLAssertionParser implements ParserNamespaceSupport {
     private final String ASSERTION = JBossSAMLConstants.ASSERTION.get();
 
     public AssertionType fromElement(Element element) throws ConfigurationException, ProcessingException, ParsingException {
-        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(DocumentUtil.getNodeAsStream(element));
+        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(element);
         return (AssertionType) parse(xmlEventReader);
     }
 
@@ -206,8 +205,7 @@ public class SAMLAssertionParser implements ParserNamespaceSupport {
             JAXBContext jaxb = JAXBContext.newInstance(xacmlPath);
             Unmarshaller un = jaxb.createUnmarshaller();
             un.setEventHandler(new javax.xml.bind.helpers.DefaultValidationEventHandler());
-            JAXBElement<ResponseType> jaxbResponseType = (JAXBElement<ResponseType>) un.unmarshal(DocumentUtil
-                    .getNodeAsStream(xacmlResponse));
+            JAXBElement<ResponseType> jaxbResponseType = (JAXBElement<ResponseType>) un.unmarshal(xacmlResponse);
             return jaxbResponseType.getValue();
         } catch (Exception e) {
             throw new ParsingException(e);
@@ -223,8 +221,7 @@ public class SAMLAssertionParser implements ParserNamespaceSupport {
             JAXBContext jaxb = JAXBContext.newInstance(xacmlPath);
             Unmarshaller un = jaxb.createUnmarshaller();
             un.setEventHandler(new javax.xml.bind.helpers.DefaultValidationEventHandler());
-            JAXBElement<RequestType> jaxbRequestType = (JAXBElement<RequestType>) un.unmarshal(DocumentUtil
-                    .getNodeAsStream(xacmlRequest));
+            JAXBElement<RequestType> jaxbRequestType = (JAXBElement<RequestType>) un.unmarshal(xacmlRequest);
             return jaxbRequestType.getValue();
         } catch (Exception e) {
             throw new ParsingException(e);
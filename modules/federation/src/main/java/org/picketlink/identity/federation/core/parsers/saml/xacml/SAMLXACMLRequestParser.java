@@ -21,7 +21,6 @@ import org.jboss.security.xacml.core.model.context.RequestType;
 import org.picketlink.common.constants.JBossSAMLConstants;
 import org.picketlink.common.exceptions.ParsingException;
 import org.picketlink.common.parsers.ParserNamespaceSupport;
-import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.common.util.StaxParserUtil;
 import org.picketlink.identity.federation.core.parsers.saml.SAMLRequestAbstractParser;
 import org.picketlink.identity.federation.saml.v2.protocol.XACMLAuthzDecisionQueryType;
@@ -109,8 +108,7 @@ public class SAMLXACMLRequestParser extends SAMLRequestAbstractParser implements
                     JAXBContext jaxb = JAXBContext.newInstance(xacmlPath);
                     Unmarshaller un = jaxb.createUnmarshaller();
                     un.setEventHandler(new javax.xml.bind.helpers.DefaultValidationEventHandler());
-                    JAXBElement<RequestType> jaxbRequestType = (JAXBElement<RequestType>) un.unmarshal(DocumentUtil
-                            .getNodeAsStream(xacmlRequest));
+                    JAXBElement<RequestType> jaxbRequestType = (JAXBElement<RequestType>) un.unmarshal(xacmlRequest);
                     RequestType req = jaxbRequestType.getValue();
                     xacmlQuery.setRequest(req);
                 } catch (Exception e) {
@@ -27,6 +27,10 @@ import org.picketlink.common.exceptions.ProcessingException;
 /**
  * Handle SAML2 Request types and status response types
  *
+ * <p>The same handler instance processes all requests. Handlers should keep any state related to a request in the
+ * {@link SAML2HandlerRequest} options and be marked with {@link StatelessHandler}, so that the chain can be processed
+ * concurrently. The execution of chains with handlers that are not marked is serialized when locking is enabled.</p>
+ *
  * @author Anil.Saldhana@redhat.com
  * @since Sep 17, 2009
  */
@@ -108,7 +112,7 @@ public interface SAML2Handler {
     void handleStatusResponseType(SAML2HandlerRequest request, SAML2HandlerResponse response) throws ProcessingException;
 
     /**
-     * Shed all state
+     * Shed all state. Not called for handlers marked with {@link StatelessHandler}.
      *
      * @throws ProcessingException
      */
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.identity.federation.core.saml.v2.interfaces;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * <p>Marks a {@link SAML2Handler} that does not keep per-request state in its fields. Its fields are only set when
+ * the handler is initialized and any state related to a request is kept in the {@link SAML2HandlerRequest} options
+ * or in the {@link SAML2HandlerResponse}.</p>
+ *
+ * <p>Chains made only of stateless handlers are processed concurrently, without locking and without calling
+ * {@link SAML2Handler#reset()}. The annotation is not inherited, subclasses must be marked on their own.</p>
+ *
+ * @author Pedro Igor
+ */
+@Target(TYPE)
+@Documented
+@Retention(RUNTIME)
+public @interface StatelessHandler {
+
+}
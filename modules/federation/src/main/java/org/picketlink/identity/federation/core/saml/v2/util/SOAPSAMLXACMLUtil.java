@@ -74,14 +74,14 @@ public class SOAPSAMLXACMLUtil {
         // We reparse it because the document may have issues with namespaces
         // String elementString = DocumentUtil.getDOMElementAsString(samlRequest);
 
-        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(DocumentUtil.getNodeAsStream(samlRequest));
+        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(samlRequest);
         SAMLXACMLRequestParser samlXACMLRequestParser = new SAMLXACMLRequestParser();
         return (XACMLAuthzDecisionQueryType) samlXACMLRequestParser.parse(xmlEventReader);
     }
 
     public static XACMLAuthzDecisionStatementType getDecisionStatement(Node samlResponse) throws ConfigurationException,
             ProcessingException, ParsingException {
-        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(DocumentUtil.getNodeAsStream(samlResponse));
+        XMLEventReader xmlEventReader = StaxParserUtil.getXMLEventReader(samlResponse);
         SAMLParser samlParser = new SAMLParser();
 
         JAXPValidationUtil.checkSchemaValidation(samlResponse);
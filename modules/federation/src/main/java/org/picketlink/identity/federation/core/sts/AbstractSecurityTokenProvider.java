@@ -23,8 +23,8 @@ import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.identity.federation.core.interfaces.SecurityTokenProvider;
 import org.picketlink.identity.federation.core.saml.v2.util.XMLTimeUtil;
+import org.picketlink.identity.federation.core.sts.registry.ConcurrentTokenRegistry;
 import org.picketlink.identity.federation.core.sts.registry.DefaultRevocationRegistry;
-import org.picketlink.identity.federation.core.sts.registry.DefaultTokenRegistry;
 import org.picketlink.identity.federation.core.sts.registry.FileBasedRevocationRegistry;
 import org.picketlink.identity.federation.core.sts.registry.FileBasedTokenRegistry;
 import org.picketlink.identity.federation.core.sts.registry.JDBCRevocationRegistry;
@@ -62,6 +62,8 @@ public abstract class AbstractSecurityTokenProvider implements SecurityTokenProv
 
     protected static final String TOKEN_REGISTRY_JDBC_DATASOURCE = "TokenRegistryJDBCDataSource";
 
+    protected static final String TOKEN_REGISTRY_ASYNC = "TokenRegistryAsync";
+
     protected static final String REVOCATION_REGISTRY = "RevocationRegistry";
 
     protected static final String REVOCATION_REGISTRY_FILE = "RevocationRegistryFile";
@@ -78,7 +80,7 @@ public abstract class AbstractSecurityTokenProvider implements SecurityTokenProv
 
     protected static final String USE_ABSOLUTE_KEYIDENTIFIER = "USE_ABSOLUTE_KEYIDENTIFIER";
 
-    protected SecurityTokenRegistry tokenRegistry = new DefaultTokenRegistry();
+    protected SecurityTokenRegistry tokenRegistry = new ConcurrentTokenRegistry();
 
     protected RevocationRegistry revocationRegistry = new DefaultRevocationRegistry();
 
@@ -148,7 +150,11 @@ public abstract class AbstractSecurityTokenProvider implements SecurityTokenProv
         if (this.tokenRegistry == null) {
             tokenRegistry = new
 
-                DefaultTokenRegistry();
+                ConcurrentTokenRegistry();
+        } else if ("true".equalsIgnoreCase(this.properties.get(TOKEN_REGISTRY_ASYNC))
+            && !(this.tokenRegistry instanceof ConcurrentTokenRegistry)) {
+            // tokens are kept in memory and written to the configured registry later, in batches
+            this.tokenRegistry = new ConcurrentTokenRegistry(this.tokenRegistry);
         }
 
         // check if a revocation registry option has been set.
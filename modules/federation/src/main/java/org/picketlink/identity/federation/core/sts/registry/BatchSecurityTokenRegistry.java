@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.sts.registry;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link SecurityTokenRegistry} that is able to add and remove multiple tokens at once, usually with a single round
+ * trip to the underlying storage.
+ *
+ * @author Pedro Igor
+ */
+public interface BatchSecurityTokenRegistry extends SecurityTokenRegistry {
+
+    /**
+     * Add all the given tokens to the registry
+     *
+     * @param tokens a map of tokens, keyed by their ID
+     *
+     * @throws {@code IOException}
+     */
+    void addTokens(Map<String, Object> tokens) throws IOException;
+
+    /**
+     * Remove all the tokens with the given IDs
+     *
+     * @param tokenIDs
+     *
+     * @throws {@code IOException}
+     */
+    void removeTokens(Collection<String> tokenIDs) throws IOException;
+}
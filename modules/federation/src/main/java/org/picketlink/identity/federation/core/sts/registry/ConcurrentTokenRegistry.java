@@ -0,0 +1,512 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.identity.federation.core.sts.registry;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+import org.picketlink.identity.federation.core.sts.PicketLinkCoreSTS;
+import org.picketlink.identity.federation.saml.common.CommonConditionsType;
+import org.picketlink.identity.federation.saml.v1.assertion.SAML11AssertionType;
+import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A concurrent and expiry-aware {@link SecurityTokenRegistry}.
+ * </p>
+ *
+ * <p>
+ * Tokens are spread across a number of shards, each one with its own map and expiration queue, so writers only contend
+ * when storing tokens in the same shard. Tokens are evicted once their <code>NotOnOrAfter</code> condition is reached,
+ * given that an expired assertion is rejected during validation anyway. Tokens without such condition are kept until
+ * removed, unless a default time to live is provided. Expired tokens are purged by writers, without any background
+ * thread.
+ * </p>
+ *
+ * <p>
+ * Optionally, a persistent {@link SecurityTokenRegistry} can be provided. Changes are applied to memory immediately and
+ * written to the persistent registry later, in batches, when it is a {@link BatchSecurityTokenRegistry}. Pending changes
+ * are written by the first thread using the registry once the flush interval has elapsed, again without any background
+ * thread, and by {@link #close()}. Changes that can not be written after {@link #MAX_WRITE_ATTEMPTS} attempts are
+ * discarded. Tokens not found in memory are looked up from the persistent registry.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+public class ConcurrentTokenRegistry implements SecurityTokenRegistry {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    public static final int DEFAULT_SHARDS = 16;
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    public static final int MAX_WRITE_ATTEMPTS = 10;
+
+    private final Shard[] shards;
+    private final long defaultTimeToLive;
+    private final SecurityTokenRegistry store;
+    private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+    private final ConcurrentMap<String, PendingWrite> pendingRemovals = new ConcurrentHashMap<String, PendingWrite>();
+    // writes that could not be written by the last flush, guarded by flushLock
+    private final List<PendingWrite> failedWrites = new ArrayList<PendingWrite>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final long flushInterval;
+    private volatile long flushedAt = System.currentTimeMillis();
+
+    public ConcurrentTokenRegistry() {
+        this(null);
+    }
+
+    /**
+     * Creates a registry backed by the given persistent registry.
+     *
+     * @param store the persistent registry, or null if tokens should be kept only in memory
+     */
+    public ConcurrentTokenRegistry(SecurityTokenRegistry store) {
+        this(store, DEFAULT_SHARDS, 0, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param store the persistent registry, or null if tokens should be kept only in memory
+     * @param shards the number of shards
+     * @param defaultTimeToLive the time to live, in milliseconds, of tokens without a <code>NotOnOrAfter</code>
+     * condition. If zero, these tokens never expire.
+     * @param flushInterval the interval, in milliseconds, between writes to the persistent registry
+     */
+    public ConcurrentTokenRegistry(SecurityTokenRegistry store, int shards, long defaultTimeToLive, long flushInterval) {
+        if (shards <= 0) {
+            throw logger.invalidArgumentError("shards");
+        }
+
+        this.shards = new Shard[shards];
+
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.store = store;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#addToken(java.lang.String,
+     *      java.lang.Object)
+     */
+    public void addToken(String tokenID, Object token) throws IOException {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(PicketLinkCoreSTS.rte);
+
+        long expiration = getExpiration(token);
+
+        if (expiration == 0 && this.defaultTimeToLive > 0) {
+            expiration = System.currentTimeMillis() + this.defaultTimeToLive;
+        }
+
+        getShard(tokenID).put(new TokenEntry(tokenID, token, expiration));
+
+        if (this.store != null) {
+            PendingWrite write = new PendingWrite(tokenID, token);
+
+            this.pendingRemovals.remove(tokenID);
+            this.pendingWrites.add(write);
+
+            flushIfDue();
+        }
+    }
+
+    /**
+     * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#removeToken(java.lang.String)
+     */
+    public void removeToken(String tokenID) throws IOException {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(PicketLinkCoreSTS.rte);
+
+        Shard shard = getShard(tokenID);
+
+        if (this.store != null) {
+            PendingWrite write = new PendingWrite(tokenID, null);
+
+            // hides the token from the persistent registry until the removal is written
+            this.pendingRemovals.put(tokenID, write);
+            shard.remove(tokenID);
+            this.pendingWrites.add(write);
+
+            flushIfDue();
+        } else {
+            shard.remove(tokenID);
+        }
+    }
+
+    /**
+     * @see org.picketlink.identity.federation.core.sts.registry.SecurityTokenRegistry#getToken(java.lang.String)
+     */
+    public Object getToken(String tokenID) {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(PicketLinkCoreSTS.rte);
+
+        Shard shard = getShard(tokenID);
+        TokenEntry entry = shard.get(tokenID);
+
+        if (entry != null) {
+            return entry.token;
+        }
+
+        if (this.store == null) {
+            return null;
+        }
+
+        flushIfDue();
+
+        // read before the lookup, so a removal happening while the token is read from the store is detected
+        long removals = shard.getRemovals();
+
+        if (this.pendingRemovals.containsKey(tokenID)) {
+            return null;
+        }
+
+        Object token = this.store.getToken(tokenID);
+
+        if (token != null) {
+            long expiration = getExpiration(token);
+
+            if (expiration != 0 && expiration <= System.currentTimeMillis()) {
+                return null;
+            }
+
+            TokenEntry stored = new TokenEntry(tokenID, token, expiration);
+            TokenEntry current = shard.putIfAbsent(stored);
+
+            if (current != null) {
+                return current.token;
+            }
+
+            if (shard.getRemovals() != removals) {
+                // a token may have been removed after being read from the store, it must not be cached again
+                shard.remove(tokenID, stored);
+                return null;
+            }
+        }
+
+        return token;
+    }
+
+    /**
+     * Writes all pending changes to the persistent registry, if any. If the persistent registry fails, the changes are
+     * kept and written again, before any newer change, by the next flush, unless they already failed
+     * {@link #MAX_WRITE_ATTEMPTS} times. Removed tokens remain hidden from the persistent registry even if their
+     * removal is discarded.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (this.store == null) {
+            return;
+        }
+
+        this.flushLock.lock();
+
+        try {
+            flushPendingWrites();
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    private void flushIfDue() {
+        if (System.currentTimeMillis() - this.flushedAt < this.flushInterval || !this.flushLock.tryLock()) {
+            return;
+        }
+
+        try {
+            flushPendingWrites();
+        } catch (Exception e) {
+            logger.error(e);
+        } finally {
+            this.flushLock.unlock();
+        }
+    }
+
+    private void flushPendingWrites() throws IOException {
+        this.flushedAt = System.currentTimeMillis();
+
+        List<PendingWrite> writes = new ArrayList<PendingWrite>(this.failedWrites);
+        PendingWrite write;
+
+        this.failedWrites.clear();
+
+        while ((write = this.pendingWrites.poll()) != null) {
+            writes.add(write);
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> additions = new LinkedHashMap<String, Object>();
+        Set<String> removals = new LinkedHashSet<String>();
+
+        for (PendingWrite pendingWrite : writes) {
+            if (pendingWrite.token != null) {
+                additions.put(pendingWrite.tokenID, pendingWrite.token);
+            } else {
+                // removals are written first, so a token removed and added again ends up stored
+                additions.remove(pendingWrite.tokenID);
+                removals.add(pendingWrite.tokenID);
+            }
+        }
+
+        try {
+            write(removals, additions);
+        } catch (IOException ioe) {
+            retry(writes);
+            throw ioe;
+        } catch (RuntimeException re) {
+            retry(writes);
+            throw re;
+        }
+
+        for (PendingWrite pendingWrite : writes) {
+            if (pendingWrite.token == null) {
+                this.pendingRemovals.remove(pendingWrite.tokenID, pendingWrite);
+            }
+        }
+    }
+
+    private void retry(List<PendingWrite> writes) {
+        int discarded = 0;
+
+        for (PendingWrite write : writes) {
+            if (++write.attempts < MAX_WRITE_ATTEMPTS) {
+                this.failedWrites.add(write);
+            } else {
+                discarded++;
+            }
+        }
+
+        if (discarded > 0) {
+            logger.warn("Discarded " + discarded + " changes not written to the persistent token registry after "
+                + MAX_WRITE_ATTEMPTS + " attempts.");
+        }
+    }
+
+    private void write(Set<String> removals, Map<String, Object> additions) throws IOException {
+        if (this.store instanceof BatchSecurityTokenRegistry) {
+            BatchSecurityTokenRegistry batchStore = (BatchSecurityTokenRegistry) this.store;
+
+            if (!removals.isEmpty()) {
+                batchStore.removeTokens(removals);
+            }
+
+            if (!additions.isEmpty()) {
+                batchStore.addTokens(additions);
+            }
+        } else {
+            for (String tokenID : removals) {
+                this.store.removeToken(tokenID);
+            }
+
+            for (Map.Entry<String, Object> entry : additions.entrySet()) {
+                this.store.addToken(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes all pending changes to the persistent registry.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Returns the number of tokens held in memory, including expired tokens not yet purged.
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+
+        for (Shard shard : this.shards) {
+            size = size + shard.tokens.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the time, in milliseconds, defined by the <code>NotOnOrAfter</code> condition of the given token, or zero if
+     * the token is not an assertion or does not have such condition.
+     *
+     * @param token
+     *
+     * @return
+     */
+    static long getExpiration(Object token) {
+        CommonConditionsType conditions = null;
+
+        if (token instanceof AssertionType) {
+            conditions = ((AssertionType) token).getConditions();
+        } else if (token instanceof SAML11AssertionType) {
+            conditions = ((SAML11AssertionType) token).getConditions();
+        }
+
+        if (conditions != null && conditions.getNotOnOrAfter() != null) {
+            return conditions.getNotOnOrAfter().toGregorianCalendar().getTimeInMillis();
+        }
+
+        return 0;
+    }
+
+    private Shard getShard(String tokenID) {
+        return this.shards[(tokenID.hashCode() & Integer.MAX_VALUE) % this.shards.length];
+    }
+
+    private static class Shard {
+
+        private final ConcurrentMap<String, TokenEntry> tokens = new ConcurrentHashMap<String, TokenEntry>();
+        private final DelayQueue<TokenEntry> expirations = new DelayQueue<TokenEntry>();
+        private final AtomicLong removals = new AtomicLong();
+
+        void put(TokenEntry entry) {
+            purgeExpired();
+
+            unschedule(this.tokens.put(entry.tokenID, entry));
+
+            if (entry.expiration != 0) {
+                this.expirations.add(entry);
+            }
+        }
+
+        TokenEntry putIfAbsent(TokenEntry entry) {
+            purgeExpired();
+
+            TokenEntry current = this.tokens.putIfAbsent(entry.tokenID, entry);
+
+            if (current == null && entry.expiration != 0) {
+                this.expirations.add(entry);
+            }
+
+            return current;
+        }
+
+        TokenEntry get(String tokenID) {
+            TokenEntry entry = this.tokens.get(tokenID);
+
+            if (entry != null && entry.isExpired()) {
+                this.tokens.remove(tokenID, entry);
+                return null;
+            }
+
+            return entry;
+        }
+
+        void remove(String tokenID) {
+            // counted before removing, so a token cached concurrently is either removed here or detected by the reader
+            this.removals.incrementAndGet();
+            unschedule(this.tokens.remove(tokenID));
+        }
+
+        void remove(String tokenID, TokenEntry entry) {
+            if (this.tokens.remove(tokenID, entry)) {
+                unschedule(entry);
+            }
+        }
+
+        long getRemovals() {
+            return this.removals.get();
+        }
+
+        private void unschedule(TokenEntry entry) {
+            // entries are only equal to themselves, so a newer entry for the same token is kept scheduled
+            if (entry != null && entry.expiration != 0) {
+                this.expirations.remove(entry);
+            }
+        }
+
+        private void purgeExpired() {
+            TokenEntry expired;
+
+            while ((expired = this.expirations.poll()) != null) {
+                // only removes the entry if it was not replaced by a newer one
+                this.tokens.remove(expired.tokenID, expired);
+            }
+        }
+    }
+
+    private static class TokenEntry implements Delayed {
+
+        private final String tokenID;
+        private final Object token;
+        private final long expiration;
+
+        TokenEntry(String tokenID, Object token, long expiration) {
+            this.tokenID = tokenID;
+            this.token = token;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return this.expiration != 0 && this.expiration <= System.currentTimeMillis();
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.expiration - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            long otherExpiration = ((TokenEntry) other).expiration;
+
+            return this.expiration < otherExpiration ? -1 : (this.expiration == otherExpiration ? 0 : 1);
+        }
+    }
+
+    private static class PendingWrite {
+
+        private final String tokenID;
+        private final Object token;
+        // guarded by flushLock
+        private int attempts;
+
+        PendingWrite(String tokenID, Object token) {
+            this.tokenID = tokenID;
+            this.token = token;
+        }
+    }
+}
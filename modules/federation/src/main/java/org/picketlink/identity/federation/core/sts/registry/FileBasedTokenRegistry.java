@@ -19,18 +19,37 @@ package org.picketlink.identity.federation.core.sts.registry;
 
 import org.picketlink.identity.federation.core.sts.PicketLinkCoreSTS;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 /**
+ * <p>
  * A File based implementation of the {@code SecurityTokenRegistry}
+ * </p>
+ *
+ * <p>
+ * The registry file is an append-only log. Adding or removing a token appends a single record to the file, instead of
+ * writing all tokens. The log is compacted, keeping only the tokens that are still valid, when it holds more records than
+ * twice the number of tokens. Registry files written by previous versions, holding a serialized map of tokens, are
+ * converted to the log format when read.
+ * </p>
  *
  * @author Anil.Saldhana@redhat.com
  * @since Jan 4, 2011
@@ -39,10 +58,22 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
 
     protected static final String FILE_NAME = "token.registry";
 
+    private static final int LOG_MAGIC = 0x504C5452;
+
+    private static final byte ADD_RECORD = 1;
+
+    private static final byte REMOVE_RECORD = 2;
+
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
     // the file that stores the tokens.
     protected File registryFile;
 
-    protected Map<String, TokenHolder> holders = new HashMap<String, TokenHolder>();
+    protected Map<String, TokenHolder> holders = new ConcurrentHashMap<String, TokenHolder>();
+
+    private DataOutputStream log;
+
+    private int logRecords;
 
     public FileBasedTokenRegistry() {
         this(FILE_NAME);
@@ -75,8 +106,7 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (!(token instanceof Serializable))
             throw logger.notSerializableError("Token");
 
-        holders.put(tokenID, new TokenHolder(tokenID, token));
-        flush();
+        append(tokenID, new TokenHolder(tokenID, token));
     }
 
     /**
@@ -87,8 +117,7 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (sm != null)
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
-        holders.remove(tokenID);
-        flush();
+        append(tokenID, null);
     }
 
     /**
@@ -100,17 +129,51 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
         TokenHolder holder = holders.get(tokenID);
-        if (holder != null)
+        if (holder != null && !isExpired(holder))
             return holder.token;
 
         return null;
     }
 
+    /**
+     * Rewrites the registry file with the tokens that are still valid, discarding all other records from the log.
+     *
+     * @throws IOException
+     */
     protected synchronized void flush() throws IOException {
-        FileOutputStream fos = new FileOutputStream(registryFile);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(holders);
-        oos.close();
+        closeLog();
+
+        File tempFile = new File(registryFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        int records = 0;
+
+        try {
+            output.writeInt(LOG_MAGIC);
+
+            Iterator<TokenHolder> iterator = holders.values().iterator();
+
+            while (iterator.hasNext()) {
+                TokenHolder holder = iterator.next();
+
+                if (isExpired(holder)) {
+                    iterator.remove();
+                } else {
+                    writeRecord(output, ADD_RECORD, holder);
+                    records++;
+                }
+            }
+        } finally {
+            output.close();
+        }
+
+        if (!tempFile.renameTo(registryFile)) {
+            // some platforms can not rename over an existing file
+            if (!registryFile.delete() || !tempFile.renameTo(registryFile)) {
+                throw new IOException("Could not replace registry file [" + registryFile.getPath() + "].");
+            }
+        }
+
+        logRecords = records;
     }
 
     @SuppressWarnings("unchecked")
@@ -119,17 +182,173 @@ public class FileBasedTokenRegistry extends FileBasedSTSOperations implements Se
         if (sm != null)
             sm.checkPermission(PicketLinkCoreSTS.rte);
 
-        FileInputStream fis = new FileInputStream(registryFile);
-        ObjectInputStream ois = new ObjectInputStream(fis);
+        closeLog();
+
+        holders = new ConcurrentHashMap<String, TokenHolder>();
+        logRecords = 0;
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(registryFile)));
+        boolean compact = false;
+
         try {
-            holders = (Map<String, TokenHolder>) ois.readObject();
+            input.mark(4);
+
+            int magic = readMagic(input);
+
+            if (magic == LOG_MAGIC) {
+                compact = replay(input);
+            } else if (magic == -1) {
+                // empty file, the header is written
+                compact = true;
+            } else {
+                input.reset();
+
+                if (input.readShort() != ObjectStreamConstants.STREAM_MAGIC) {
+                    throw new IOException("Invalid registry file [" + registryFile.getPath() + "].");
+                }
+
+                input.reset();
+
+                // registry file written by a previous version, converted to the log format
+                ObjectInputStream ois = new ObjectInputStream(input);
+
+                holders.putAll((Map<String, TokenHolder>) ois.readObject());
+                compact = true;
+            }
         } catch (ClassNotFoundException e) {
             throw new IOException(e);
         } finally {
-            ois.close();
+            input.close();
+        }
+
+        if (compact) {
+            flush();
+        }
+    }
+
+    private boolean replay(DataInputStream input) throws IOException, ClassNotFoundException {
+        while (true) {
+            int type = input.read();
+
+            if (type == -1) {
+                return false;
+            }
+
+            byte[] record;
+
+            try {
+                int length = input.readInt();
+                long checksum = input.readLong();
+
+                if (length < 0) {
+                    return true;
+                }
+
+                record = new byte[length];
+
+                input.readFully(record);
+
+                if (checksum(record) != checksum) {
+                    // the record was not completely written, discards it and all following records
+                    return true;
+                }
+            } catch (EOFException eof) {
+                // the record was not completely written, discards it
+                return true;
+            }
+
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record));
+
+            try {
+                Object value = ois.readObject();
+
+                if (type == ADD_RECORD) {
+                    TokenHolder holder = (TokenHolder) value;
+                    holders.put(holder.getId(), holder);
+                } else {
+                    holders.remove((String) value);
+                }
+            } finally {
+                ois.close();
+            }
+
+            logRecords++;
+        }
+    }
+
+    /**
+     * Applies the change to the tokens held in memory and appends it to the log. Both happen while holding the lock, so
+     * concurrent changes to the same token are logged in the same order they are applied.
+     *
+     * @param tokenID
+     * @param holder the token being added, or null if the token is being removed
+     *
+     * @throws IOException
+     */
+    private synchronized void append(String tokenID, TokenHolder holder) throws IOException {
+        if (log == null) {
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(registryFile, true)));
+        }
+
+        if (holder != null) {
+            holders.put(tokenID, holder);
+            writeRecord(log, ADD_RECORD, holder);
+        } else {
+            holders.remove(tokenID);
+            writeRecord(log, REMOVE_RECORD, tokenID);
+        }
+
+        log.flush();
+
+        if (++logRecords > Math.max(MIN_COMPACTION_RECORDS, holders.size() * 2)) {
+            flush();
+        }
+    }
+
+    private void writeRecord(DataOutputStream output, byte type, Object value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+
+        oos.writeObject(value);
+        oos.close();
+
+        byte[] record = bos.toByteArray();
+
+        output.writeByte(type);
+        output.writeInt(record.length);
+        output.writeLong(checksum(record));
+        output.write(record);
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
         }
     }
 
+    private int readMagic(DataInputStream input) throws IOException {
+        try {
+            return input.readInt();
+        } catch (EOFException eof) {
+            return -1;
+        }
+    }
+
+    private boolean isExpired(TokenHolder holder) {
+        long expiration = ConcurrentTokenRegistry.getExpiration(holder.token);
+
+        return expiration != 0 && expiration <= System.currentTimeMillis();
+    }
+
+    private long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+
+        crc.update(record, 0, record.length);
+
+        return crc.getValue();
+    }
+
     protected static class TokenHolder implements Serializable {
 
         private static final long serialVersionUID = 1L;
@@ -32,15 +32,18 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 /**
- * Implementation of {@link SecurityTokenRegistry} using JDBC
+ * Implementation of {@link SecurityTokenRegistry} using JDBC. Batches of tokens are written using JDBC batch updates.
  *
  * @author Anil Saldhana
  * @since August 06, 2013
  */
-public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityTokenRegistry {
+public class JDBCTokenRegistry extends AbstractJDBCRegistry implements BatchSecurityTokenRegistry {
 
     public JDBCTokenRegistry() {
         super("jdbc/picketlink-sts");
@@ -54,6 +57,20 @@ public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityT
      * @see SecurityTokenRegistry#addToken(String, Object)
      */
     public void addToken(String tokenID, Object token) throws IOException {
+        addTokens(Collections.singletonMap(tokenID, token));
+    }
+
+    /**
+     * @see SecurityTokenRegistry#removeToken(String)
+     */
+    public void removeToken(String tokenID) throws IOException {
+        removeTokens(Collections.singleton(tokenID));
+    }
+
+    /**
+     * @see BatchSecurityTokenRegistry#addTokens(java.util.Map)
+     */
+    public void addTokens(Map<String, Object> tokens) throws IOException {
         if (dataSource == null) {
             throw logger.datasourceIsNull();
         }
@@ -63,15 +80,21 @@ public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityT
         try {
             conn = dataSource.getConnection();
             Date tokenCreationDate = Calendar.getInstance().getTime();
-            byte[] marshalledToken = marshallToken(token);
-
-            String theToken = new String(marshalledToken, "UTF-8");
 
             preparedStatement = conn.prepareStatement(insertTableSQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.setString(2, theToken);
-            preparedStatement.setTimestamp(3, new Timestamp(tokenCreationDate.getTime()));
-            preparedStatement.executeUpdate();
+
+            for (Map.Entry<String, Object> entry : tokens.entrySet()) {
+                byte[] marshalledToken = marshallToken(entry.getValue());
+
+                String theToken = new String(marshalledToken, "UTF-8");
+
+                preparedStatement.setString(1, entry.getKey());
+                preparedStatement.setString(2, theToken);
+                preparedStatement.setTimestamp(3, new Timestamp(tokenCreationDate.getTime()));
+                preparedStatement.addBatch();
+            }
+
+            preparedStatement.executeBatch();
         } catch (SQLException e) {
             throw new IOException(e);
         } finally {
@@ -81,9 +104,9 @@ public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityT
     }
 
     /**
-     * @see SecurityTokenRegistry#removeToken(String)
+     * @see BatchSecurityTokenRegistry#removeTokens(java.util.Collection)
      */
-    public void removeToken(String tokenID) throws IOException {
+    public void removeTokens(Collection<String> tokenIDs) throws IOException {
         if (dataSource == null) {
             throw logger.datasourceIsNull();
         }
@@ -94,8 +117,13 @@ public class JDBCTokenRegistry extends AbstractJDBCRegistry implements SecurityT
             conn = dataSource.getConnection();
 
             preparedStatement = conn.prepareStatement(deleteSQL);
-            preparedStatement.setString(1, tokenID);
-            preparedStatement.executeUpdate();
+
+            for (String tokenID : tokenIDs) {
+                preparedStatement.setString(1, tokenID);
+                preparedStatement.addBatch();
+            }
+
+            preparedStatement.executeBatch();
         } catch (SQLException e) {
             throw new IOException(e);
         } finally {
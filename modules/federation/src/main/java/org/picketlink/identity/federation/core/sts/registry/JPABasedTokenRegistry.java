@@ -21,6 +21,8 @@ package org.picketlink.identity.federation.core.sts.registry;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * <p>
@@ -31,10 +33,14 @@ import java.io.IOException;
  * {@code String} as a parameter.
  * </p>
  *
+ * <p>
+ * Batches of tokens are written in a single transaction.
+ * </p>
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  * @see {@link SecurityToken}
  */
-public class JPABasedTokenRegistry extends AbstractJPARegistry implements SecurityTokenRegistry {
+public class JPABasedTokenRegistry extends AbstractJPARegistry implements BatchSecurityTokenRegistry {
 
     public JPABasedTokenRegistry() {
         super();
@@ -87,6 +93,55 @@ public class JPABasedTokenRegistry extends AbstractJPARegistry implements Securi
         });
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.picketlink.identity.federation.core.sts.registry.BatchSecurityTokenRegistry#addTokens(java.util.Map)
+     */
+    public void addTokens(final Map<String, Object> tokens) throws IOException {
+        executeInTransaction(new TransactionCallback() {
+
+            @Override
+            public void executeInTransaction(EntityManager entityManager) {
+                for (Map.Entry<String, Object> entry : tokens.entrySet()) {
+                    String id = entry.getKey();
+
+                    if (entityManager.find(SecurityToken.class, id) != null) {
+                        logger.samlSecurityTokenAlreadyPersisted(id);
+                    } else {
+                        entityManager.persist(new SecurityToken(id, entry.getValue()));
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.picketlink.identity.federation.core.sts.registry.BatchSecurityTokenRegistry#removeTokens(java.util.Collection)
+     */
+    public void removeTokens(final Collection<String> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        executeInTransaction(new TransactionCallback() {
+
+            @Override
+            public void executeInTransaction(EntityManager entityManager) {
+                int removed = entityManager
+                    .createQuery("DELETE FROM " + SecurityToken.class.getSimpleName() + " t WHERE t.tokenId IN :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+
+                if (removed < ids.size()) {
+                    logger.debug("Removed " + removed + " of " + ids.size() + " tokens from registry.");
+                }
+            }
+        });
+    }
+
     /*
      * (non-Javadoc)
      *
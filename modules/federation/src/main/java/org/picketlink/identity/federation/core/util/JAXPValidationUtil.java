@@ -21,7 +21,6 @@ import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
 import org.picketlink.common.constants.GeneralConstants;
 import org.picketlink.common.exceptions.ProcessingException;
-import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.common.util.SystemPropertiesUtil;
 import org.w3c.dom.Node;
 import org.xml.sax.ErrorHandler;
@@ -29,6 +28,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
@@ -70,7 +70,7 @@ public class JAXPValidationUtil {
     public static void checkSchemaValidation(Node samlDocument) throws ProcessingException {
         if (SecurityActions.getSystemProperty("picketlink.schema.validate", "false").equalsIgnoreCase("true")) {
             try {
-                JAXPValidationUtil.validate(DocumentUtil.getNodeAsStream(samlDocument));
+                validator().validate(new DOMSource(samlDocument));
             } catch (Exception e) {
                 throw logger.processingError(e);
             }
@@ -50,7 +50,6 @@ import javax.xml.ws.Service;
 import javax.xml.ws.Service.Mode;
 import javax.xml.ws.soap.SOAPBinding;
 
-import java.io.InputStream;
 import java.net.URI;
 import java.security.Principal;
 import java.util.Map;
@@ -412,9 +411,9 @@ public class STSClient implements STSClientConfigKeyProvider {
         Source response = dispatchLocal.get().invoke(requestSource);
 
         try {
-            InputStream stream = DocumentUtil.getNodeAsStream(DocumentUtil.getNodeFromSource(response));
+            Node responseNode = DocumentUtil.getNodeFromSource(response);
             RequestSecurityTokenResponseCollection responseCollection = (RequestSecurityTokenResponseCollection) new WSTrustParser()
-                    .parse(stream);
+                    .parse(responseNode);
             RequestSecurityTokenResponse tokenResponse = responseCollection.getRequestSecurityTokenResponses().get(0);
 
             StatusType status = tokenResponse.getStatus();
@@ -453,9 +452,9 @@ public class STSClient implements STSClientConfigKeyProvider {
         Source response = dispatchLocal.get().invoke(requestSource);
         // get the WS-Trust response and check for presence of the RequestTokenCanceled element.
         try {
-            InputStream stream = DocumentUtil.getNodeAsStream(DocumentUtil.getNodeFromSource(response));
+            Node responseNode = DocumentUtil.getNodeFromSource(response);
             RequestSecurityTokenResponseCollection responseCollection = (RequestSecurityTokenResponseCollection) new WSTrustParser()
-                    .parse(stream);
+                    .parse(responseNode);
             RequestSecurityTokenResponse tokenResponse = responseCollection.getRequestSecurityTokenResponses().get(0);
             if (tokenResponse.getRequestedTokenCancelled() != null)
                 return true;
@@ -86,6 +86,7 @@ import org.picketlink.identity.federation.web.config.AbstractSAMLConfigurationPr
 import org.picketlink.identity.federation.web.core.HTTPContext;
 import org.picketlink.identity.federation.web.core.IdentityParticipantStack;
 import org.picketlink.identity.federation.web.core.IdentityServer;
+import org.picketlink.identity.federation.web.process.SAMLHandlerChainProcessor;
 import org.picketlink.identity.federation.web.util.ConfigurationUtil;
 import org.picketlink.identity.federation.web.util.IDPWebRequestUtil;
 import org.picketlink.identity.federation.web.util.RedirectBindingUtil;
@@ -176,7 +177,7 @@ public class IDPFilter implements Filter {
     private String configFile;
 
     /**
-     * A Lock for Handler operations in the chain
+     * A Lock for Handler operations in the chain, only used when the chain has handlers with per-request state
      */
     private final Lock chainLock = new ReentrantLock();
 
@@ -501,8 +502,10 @@ public class IDPFilter implements Filter {
             logger.trace("Handlers are=" + handlers);
 
             if (handlers != null) {
+                boolean locking = SAMLHandlerChainProcessor.requiresLocking(getConfiguration(), handlers);
+
                 try {
-                    if (getConfiguration().getHandlers().isLocking()) {
+                    if (locking) {
                         chainLock.lock();
                     }
                     for (SAML2Handler handler : handlers) {
@@ -510,7 +513,7 @@ public class IDPFilter implements Filter {
                         willSendRequest = saml2HandlerResponse.getSendRequest();
                     }
                 } finally {
-                    if (getConfiguration().getHandlers().isLocking()) {
+                    if (locking) {
                         chainLock.unlock();
                     }
                 }
@@ -712,15 +715,22 @@ public class IDPFilter implements Filter {
             // webRequestUtil.isTrusted(issuer);
 
             if (handlers != null) {
+                // status responses are always processed under the lock, unless every handler is stateless
+                boolean locking = !SAMLHandlerChainProcessor.isStateless(handlers);
+
                 try {
-                    chainLock.lock();
+                    if (locking) {
+                        chainLock.lock();
+                    }
                     for (SAML2Handler handler : handlers) {
-                        handler.reset();
+                        SAMLHandlerChainProcessor.reset(handler);
                         handler.handleStatusResponseType(saml2HandlerRequest, saml2HandlerResponse);
                         willSendRequest = saml2HandlerResponse.getSendRequest();
                     }
                 } finally {
-                    chainLock.unlock();
+                    if (locking) {
+                        chainLock.unlock();
+                    }
                 }
             }
 
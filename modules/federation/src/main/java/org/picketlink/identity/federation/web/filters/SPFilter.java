@@ -43,7 +43,6 @@ import org.picketlink.identity.federation.core.interfaces.TrustKeyManager;
 import org.picketlink.identity.federation.core.parsers.saml.SAMLParser;
 import org.picketlink.identity.federation.core.saml.v2.common.IDGenerator;
 import org.picketlink.identity.federation.core.saml.v2.factories.SAML2HandlerChainFactory;
-import org.picketlink.identity.federation.core.saml.v2.holders.DestinationInfoHolder;
 import org.picketlink.identity.federation.core.saml.v2.impl.DefaultSAML2HandlerChainConfig;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2Handler;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerChain;
@@ -311,8 +310,7 @@ public class SPFilter implements Filter {
             KeyPair keypair = keyManager.getSigningKeyPair();
             samlSignature.signSAMLDocument(samlDocument, keypair);
         }
-        String samlMessage = PostBindingUtil.base64Encode(DocumentUtil.getDocumentAsString(samlDocument));
-        PostBindingUtil.sendPost(new DestinationInfoHolder(destination, samlMessage, relayState), response, request);
+        PostBindingUtil.sendPost(samlDocument, destination, relayState, response, request);
     }
 
     private boolean handleSAMLResponse(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -469,11 +467,7 @@ public class SPFilter implements Filter {
     protected void sendHttpPostBindingRequest(String destination, Document samlDocument, String relayState, HttpServletResponse response,
         boolean willSendRequest) throws ProcessingException, IOException,
         ConfigurationException {
-        String samlMessage = PostBindingUtil.base64Encode(DocumentUtil.getDocumentAsString(samlDocument));
-
-        DestinationInfoHolder destinationHolder = new DestinationInfoHolder(destination, samlMessage, relayState);
-
-        PostBindingUtil.sendPost(destinationHolder, response, willSendRequest);
+        PostBindingUtil.sendPost(samlDocument, destination, relayState, response, willSendRequest);
     }
 
     protected void sendHttpRedirectRequest(String destination, Document samlDocument, String relayState, HttpServletResponse response,
@@ -485,8 +479,7 @@ public class SPFilter implements Filter {
         if (destinationQueryStringWithSignature != null) {
             destinationQueryString = destinationQueryStringWithSignature;
         } else {
-            String samlMessage = DocumentUtil.getDocumentAsString(samlDocument);
-            String base64Request = RedirectBindingUtil.deflateBase64URLEncode(samlMessage.getBytes("UTF-8"));
+            String base64Request = RedirectBindingUtil.deflateBase64URLEncode(samlDocument);
             destinationQueryString = RedirectBindingUtil.getDestinationQueryString(base64Request, relayState, willSendRequest);
         }
 
@@ -793,7 +786,7 @@ public class SPFilter implements Filter {
         try {
             Document samlDocument = DocumentUtil.getDocument(is);
             SAMLParser parser = new SAMLParser();
-            metadata = parser.parse(DocumentUtil.getNodeAsStream(samlDocument));
+            metadata = parser.parse(samlDocument);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -30,6 +30,7 @@ import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerCh
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerConfig;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.core.saml.v2.util.StatementUtil;
 import org.picketlink.identity.federation.saml.v2.SAML2Object;
 import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
@@ -72,6 +73,7 @@ import static org.picketlink.common.constants.GeneralConstants.SESSION_ATTRIBUTE
  * @author Anil.Saldhana@redhat.com
  * @since Oct 12, 2009
  */
+@StatelessHandler
 public class SAML2AttributeHandler extends BaseSAML2Handler {
 
     protected SAML2AttributeManager attribManager = new DelegatedAttributeManager(new EmptyAttributeManager(), null);
@@ -30,7 +30,6 @@ import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.exceptions.fed.AssertionExpiredException;
 import org.picketlink.common.util.DocumentUtil;
-import org.picketlink.common.util.StaxParserUtil;
 import org.picketlink.common.util.StringUtil;
 import org.picketlink.config.federation.SPType;
 import org.picketlink.identity.federation.api.saml.v2.request.SAML2Request;
@@ -48,6 +47,7 @@ import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2Handler;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest.GENERATE_REQUEST_TYPE;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.core.saml.v2.util.AssertionUtil;
 import org.picketlink.identity.federation.core.saml.v2.util.StatementUtil;
 import org.picketlink.identity.federation.core.saml.v2.util.XMLTimeUtil;
@@ -113,6 +113,7 @@ import static org.picketlink.common.util.StringUtil.isNotNull;
  * @see SAML2Handler#ASSERTION_CONSUMER_URL: the url to be used for assertionConsumerURL (SP Setting) </p>
  * @since Oct 8, 2009
  */
+@StatelessHandler
 public class SAML2AuthenticationHandler extends BaseSAML2Handler {
 
     public static final String SINGLE_ATTRIBUTE_STATEMENT = "SINGLE_ATTRIBUTE_STATEMENT";
@@ -564,8 +565,7 @@ public class SAML2AuthenticationHandler extends BaseSAML2Handler {
                 SAMLParser parser = new SAMLParser();
 
                 JAXPValidationUtil.checkSchemaValidation(decryptedDocumentElement);
-                AssertionType assertion = (AssertionType) parser.parse(StaxParserUtil.getXMLEventReader(DocumentUtil
-                        .getNodeAsStream(decryptedDocumentElement)));
+                AssertionType assertion = (AssertionType) parser.parse(decryptedDocumentElement);
 
                 responseType.replaceAssertion(oldID, new RTChoiceType(assertion));
                 return responseType;
@@ -25,6 +25,7 @@ import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.config.federation.IDPType;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.core.saml.v2.util.SAMLMetadataUtil;
 import org.picketlink.identity.federation.core.util.XMLEncryptionUtil;
 import org.picketlink.identity.federation.core.wstrust.WSTrustUtil;
@@ -49,6 +50,7 @@ import java.security.cert.X509Certificate;
  *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  */
+@StatelessHandler
 public class SAML2EncryptionHandler extends SAML2SignatureGenerationHandler {
 
     /*
@@ -28,6 +28,7 @@ import org.picketlink.identity.federation.core.audit.PicketLinkAuditEventType;
 import org.picketlink.identity.federation.core.audit.PicketLinkAuditHelper;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.saml.v2.protocol.RequestAbstractType;
 import org.picketlink.identity.federation.saml.v2.protocol.StatusResponseType;
 
@@ -46,6 +47,7 @@ import java.util.StringTokenizer;
  * @author Anil.Saldhana@redhat.com
  * @since Oct 8, 2009
  */
+@StatelessHandler
 public class SAML2IssuerTrustHandler extends BaseSAML2Handler {
 
     private final IDPTrustHandler idp = new IDPTrustHandler();
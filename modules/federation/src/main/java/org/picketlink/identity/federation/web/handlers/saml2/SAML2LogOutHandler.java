@@ -39,6 +39,7 @@ import org.picketlink.identity.federation.core.saml.v2.common.SAMLProtocolContex
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest.GENERATE_REQUEST_TYPE;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.core.saml.v2.util.DocumentUtil;
 import org.picketlink.identity.federation.core.saml.v2.util.XMLTimeUtil;
 import org.picketlink.identity.federation.core.sts.PicketLinkCoreSTS;
@@ -82,6 +83,7 @@ import java.util.Set;
  * @author Anil.Saldhana@redhat.com
  * @since Sep 17, 2009
  */
+@StatelessHandler
 public class SAML2LogOutHandler extends BaseSAML2Handler {
 
     public static final String BACK_CHANNEL_LOGOUT = "BACK_CHANNEL_LOGOUT";
@@ -26,6 +26,7 @@ import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.identity.federation.api.saml.v2.sig.SAML2Signature;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.web.util.RedirectBindingSignatureUtil;
 import org.picketlink.identity.federation.web.util.RedirectBindingUtil;
 import org.w3c.dom.Document;
@@ -48,6 +49,7 @@ import static org.picketlink.common.util.StringUtil.isNullOrEmpty;
  * @author Anil.Saldhana@redhat.com
  * @since Oct 12, 2009
  */
+@StatelessHandler
 public class SAML2SignatureGenerationHandler extends AbstractSignatureHandler {
 
     public static final String SIGN_DIGEST = "SIGN_DIGEST";
@@ -28,6 +28,7 @@ import org.picketlink.identity.federation.core.audit.PicketLinkAuditHelper;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerErrorCodes;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.core.saml.v2.util.SAMLMetadataUtil;
 import org.picketlink.identity.federation.saml.v2.metadata.KeyTypes;
 import org.picketlink.identity.federation.saml.v2.metadata.SSODescriptorType;
@@ -46,6 +47,7 @@ import java.util.Map;
  * @author Anil.Saldhana@redhat.com
  * @since Nov 13, 2009
  */
+@StatelessHandler
 public class SAML2SignatureValidationHandler extends AbstractSignatureHandler {
 
     private SAML2Signature saml2Signature = new SAML2Signature();
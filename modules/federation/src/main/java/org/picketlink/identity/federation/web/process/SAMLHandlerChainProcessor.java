@@ -22,11 +22,13 @@ import org.picketlink.config.federation.PicketLinkType;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2Handler;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerResponse;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.StatelessHandler;
 import org.picketlink.identity.federation.saml.v2.SAML2Object;
 import org.picketlink.identity.federation.saml.v2.protocol.RequestAbstractType;
 import org.picketlink.identity.federation.web.core.HTTPContext;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -34,6 +36,9 @@ import java.util.concurrent.locks.Lock;
 /**
  * Processor for the SAML2 Handler Chain
  *
+ * <p>Handlers are always called in order for a request, but different requests are processed concurrently unless
+ * the chain has handlers that are not marked with {@link StatelessHandler} and locking is enabled.</p>
+ *
  * @author Anil.Saldhana@redhat.com
  * @since Oct 27, 2009
  */
@@ -41,17 +46,19 @@ public class SAMLHandlerChainProcessor {
 
     private final Set<SAML2Handler> handlers = new LinkedHashSet<SAML2Handler>();
     private final PicketLinkType configuration;
+    private final boolean locking;
 
     public SAMLHandlerChainProcessor(Set<SAML2Handler> handlers, PicketLinkType configuration) {
         this.handlers.addAll(handlers);
         this.configuration = configuration;
+        this.locking = requiresLocking(this.configuration, this.handlers);
     }
 
     public void callHandlerChain(SAML2Object samlObject, SAML2HandlerRequest saml2HandlerRequest,
                                  SAML2HandlerResponse saml2HandlerResponse, HTTPContext httpContext, Lock chainLock) throws ProcessingException,
             IOException {
         try {
-            if (this.configuration.getHandlers().isLocking()) {
+            if (this.locking) {
                 chainLock.lock();
             }
 
@@ -68,9 +75,63 @@ public class SAMLHandlerChainProcessor {
                 }
             }
         } finally {
-            if (this.configuration.getHandlers().isLocking()) {
+            if (this.locking) {
                 chainLock.unlock();
             }
         }
     }
+
+    /**
+     * <p>Checks if all the given handlers are marked with {@link StatelessHandler}.</p>
+     *
+     * @param handlers
+     *
+     * @return
+     */
+    public static boolean isStateless(Collection<SAML2Handler> handlers) {
+        for (SAML2Handler handler : handlers) {
+            if (!isStateless(handler)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Checks if the given handler is marked with {@link StatelessHandler}.</p>
+     *
+     * @param handler
+     *
+     * @return
+     */
+    public static boolean isStateless(SAML2Handler handler) {
+        return handler.getClass().isAnnotationPresent(StatelessHandler.class);
+    }
+
+    /**
+     * <p>Checks if the execution of the given handlers must be serialized. This is only the case when locking is
+     * enabled and at least one of the handlers keeps per-request state.</p>
+     *
+     * @param configuration
+     * @param handlers
+     *
+     * @return
+     */
+    public static boolean requiresLocking(PicketLinkType configuration, Collection<SAML2Handler> handlers) {
+        return configuration.getHandlers().isLocking() && !isStateless(handlers);
+    }
+
+    /**
+     * <p>Sheds the state of the given handler, unless it is marked with {@link StatelessHandler}.</p>
+     *
+     * @param handler
+     *
+     * @throws ProcessingException
+     */
+    public static void reset(SAML2Handler handler) throws ProcessingException {
+        if (!isStateless(handler)) {
+            handler.reset();
+        }
+    }
 }
\ No newline at end of file
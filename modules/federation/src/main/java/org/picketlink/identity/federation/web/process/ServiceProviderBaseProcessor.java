@@ -165,14 +165,16 @@ public class ServiceProviderBaseProcessor {
             }
         }
 
+        boolean locking = SAMLHandlerChainProcessor.requiresLocking(this.configuration, handlers);
+
         // Reset the state
         try {
-            if (this.configuration.getHandlers().isLocking()) {
+            if (locking) {
                 chainLock.lock();
             }
 
             for (SAML2Handler handler : handlers) {
-                handler.reset();
+                SAMLHandlerChainProcessor.reset(handler);
 
                 if (saml2HandlerResponse.isInError()) {
                     httpContext.getResponse().sendError(saml2HandlerResponse.getErrorCode());
@@ -192,7 +194,7 @@ public class ServiceProviderBaseProcessor {
             logger.error(pe);
             throw logger.samlHandlerChainProcessingError(pe);
         } finally {
-            if (this.configuration.getHandlers().isLocking()) {
+            if (locking) {
                 chainLock.unlock();
             }
         }
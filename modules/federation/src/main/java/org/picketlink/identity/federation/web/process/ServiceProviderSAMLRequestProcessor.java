@@ -20,11 +20,9 @@ package org.picketlink.identity.federation.web.process;
 import org.picketlink.common.exceptions.ConfigurationException;
 import org.picketlink.common.exceptions.ParsingException;
 import org.picketlink.common.exceptions.ProcessingException;
-import org.picketlink.common.util.DocumentUtil;
 import org.picketlink.config.federation.PicketLinkType;
 import org.picketlink.identity.federation.api.saml.v2.request.SAML2Request;
 import org.picketlink.identity.federation.core.saml.v2.common.SAMLDocumentHolder;
-import org.picketlink.identity.federation.core.saml.v2.holders.DestinationInfoHolder;
 import org.picketlink.identity.federation.core.saml.v2.impl.DefaultSAML2HandlerResponse;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2Handler;
 import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2HandlerRequest;
@@ -127,9 +125,7 @@ public class ServiceProviderSAMLRequestProcessor extends ServiceProviderBaseProc
                 // This is the case with signatures disabled
                 if (destinationQuery == null) {
                     boolean areWeSendingRequest = saml2HandlerResponse.getSendRequest();
-                    String samlMsg = DocumentUtil.getDocumentAsString(samlResponseDocument);
-
-                    String base64Request = RedirectBindingUtil.deflateBase64URLEncode(samlMsg.getBytes("UTF-8"));
+                    String base64Request = RedirectBindingUtil.deflateBase64URLEncode(samlResponseDocument);
                     destinationQuery = RedirectBindingUtil.getDestinationQueryString(base64Request, relayState,
                             areWeSendingRequest);
                 }
@@ -162,8 +158,6 @@ public class ServiceProviderSAMLRequestProcessor extends ServiceProviderBaseProc
      */
     protected void sendRequestToIDP(String destination, Document samlDocument, String relayState, HttpServletResponse response,
                                     boolean willSendRequest) throws ProcessingException, ConfigurationException, IOException {
-        String samlMessage = DocumentUtil.getDocumentAsString(samlDocument);
-        samlMessage = PostBindingUtil.base64Encode(samlMessage);
-        PostBindingUtil.sendPost(new DestinationInfoHolder(destination, samlMessage, relayState), response, willSendRequest);
+        PostBindingUtil.sendPost(samlDocument, destination, relayState, response, willSendRequest);
     }
 }
\ No newline at end of file
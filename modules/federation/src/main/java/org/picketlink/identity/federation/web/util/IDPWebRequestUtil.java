@@ -37,7 +37,6 @@ import org.picketlink.identity.federation.core.interfaces.TrustKeyManager;
 import org.picketlink.identity.federation.core.saml.v2.common.IDGenerator;
 import org.picketlink.identity.federation.core.saml.v2.common.SAMLDocumentHolder;
 import org.picketlink.identity.federation.core.saml.v2.factories.JBossSAMLAuthnResponseFactory;
-import org.picketlink.identity.federation.core.saml.v2.holders.DestinationInfoHolder;
 import org.picketlink.identity.federation.core.saml.v2.holders.IDPInfoHolder;
 import org.picketlink.identity.federation.core.saml.v2.holders.IssuerInfoHolder;
 import org.picketlink.identity.federation.core.saml.v2.holders.SPInfoHolder;
@@ -211,9 +210,7 @@ public class IDPWebRequestUtil {
             }
             // This is the case without signature
             else {
-                byte[] responseBytes = DocumentUtil.getDocumentAsString(responseDoc).getBytes("UTF-8");
-
-                String urlEncodedResponse = RedirectBindingUtil.deflateBase64URLEncode(responseBytes);
+                String urlEncodedResponse = RedirectBindingUtil.deflateBase64URLEncode(responseDoc);
 
                 if (isNotNull(relayState))
                     relayState = RedirectBindingUtil.urlEncode(relayState);
@@ -229,11 +226,7 @@ public class IDPWebRequestUtil {
                 logger.trace("SAML Response Document: " + DocumentUtil.asString(responseDoc));
             }
 
-            byte[] responseBytes = DocumentUtil.getDocumentAsString(responseDoc).getBytes("UTF-8");
-
-            String samlResponse = PostBindingUtil.base64Encode(new String(responseBytes));
-
-            PostBindingUtil.sendPost(new DestinationInfoHolder(destination, samlResponse, relayState), response, sendRequest);
+            PostBindingUtil.sendPost(responseDoc, destination, relayState, response, sendRequest);
         }
     }
 
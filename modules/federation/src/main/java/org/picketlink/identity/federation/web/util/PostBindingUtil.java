@@ -24,8 +24,11 @@ package org.picketlink.identity.federation.web.util;
 import org.picketlink.common.PicketLinkLogger;
 import org.picketlink.common.PicketLinkLoggerFactory;
 import org.picketlink.common.constants.GeneralConstants;
+import org.picketlink.common.exceptions.ConfigurationException;
+import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.util.Base64;
 import org.picketlink.identity.federation.core.saml.v2.holders.DestinationInfoHolder;
+import org.w3c.dom.Document;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -105,10 +108,70 @@ public class PostBindingUtil {
             throw logger.nullValueError("Destination is null");
         }
 
-        destination = escapeHTML(destination);
-
         response.setContentType("text/html");
         common(holder.getDestination(), response);
+
+        String str = getFormStart(destination, key, request) + samlMessage + getFormEnd(relayState);
+
+        logger.trace(str);
+
+        ServletOutputStream outputStream = response.getOutputStream();
+
+        // we need to re-configure the content length, because Tomcat may have written some content.
+        response.resetBuffer();
+
+        outputStream.print(str);
+
+        response.setContentLength(str.length());
+        outputStream.close();
+    }
+
+    /**
+     * <p>Send the given SAML message to the destination, as {@link #sendPost(DestinationInfoHolder, HttpServletResponse, boolean)}
+     * does. The message is serialized and Base64 encoded directly to the response, without building the encoded message
+     * or the HTML form in memory. In this case, the content length of the response is not set.</p>
+     *
+     * @param samlDocument The SAML message.
+     * @param destination Destination URI where the response needs to redirect
+     * @param relayState The relay state, if any.
+     * @param response HttpServletResponse
+     * @param request If the message is a SAML request or response.
+     *
+     * @throws IOException
+     * @throws ProcessingException
+     * @throws ConfigurationException
+     */
+    public static void sendPost(Document samlDocument, String destination, String relayState, HttpServletResponse response,
+                                boolean request) throws IOException, ProcessingException, ConfigurationException {
+        String key = request ? GeneralConstants.SAML_REQUEST_KEY : GeneralConstants.SAML_RESPONSE_KEY;
+
+        if (destination == null) {
+            throw logger.nullValueError("Destination is null");
+        }
+
+        response.setContentType("text/html");
+        common(destination, response);
+
+        String formStart = getFormStart(destination, key, request);
+        String formEnd = getFormEnd(relayState);
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("Sending HTTP POST binding form to [" + destination + "].");
+        }
+
+        ServletOutputStream outputStream = response.getOutputStream();
+
+        // Tomcat may have written some content.
+        response.resetBuffer();
+
+        outputStream.print(formStart);
+        SAMLBindingEncoder.encode(samlDocument, outputStream, false, false);
+        outputStream.print(formEnd);
+
+        outputStream.close();
+    }
+
+    private static String getFormStart(String destination, String key, boolean request) {
         StringBuilder builder = new StringBuilder();
 
         builder.append("<HTML>");
@@ -122,8 +185,16 @@ public class PostBindingUtil {
         builder.append("</HEAD>");
         builder.append("<BODY Onload=\"document.forms[0].submit()\">");
 
-        builder.append("<FORM METHOD=\"POST\" ACTION=\"" + destination + "\">");
-        builder.append("<INPUT TYPE=\"HIDDEN\" NAME=\"" + key + "\"" + " VALUE=\"" + samlMessage + "\"/>");
+        builder.append("<FORM METHOD=\"POST\" ACTION=\"" + escapeHTML(destination) + "\">");
+        builder.append("<INPUT TYPE=\"HIDDEN\" NAME=\"" + key + "\"" + " VALUE=\"");
+
+        return builder.toString();
+    }
+
+    private static String getFormEnd(String relayState) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("\"/>");
 
         if (isNotNull(relayState)) {
             relayState = escapeHTML(relayState);
@@ -137,19 +208,7 @@ public class PostBindingUtil {
 
         builder.append("</FORM></BODY></HTML>");
 
-        String str = builder.toString();
-
-        logger.trace(str);
-
-        ServletOutputStream outputStream = response.getOutputStream();
-
-        // we need to re-configure the content length, because Tomcat may have written some content.
-        response.resetBuffer();
-
-        outputStream.print(str);
-
-        response.setContentLength(str.length());
-        outputStream.close();
+        return builder.toString();
     }
 
     private static void common(String destination, HttpServletResponse response) {
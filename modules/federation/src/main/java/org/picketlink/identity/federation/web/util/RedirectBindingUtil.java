@@ -17,8 +17,11 @@
  */
 package org.picketlink.identity.federation.web.util;
 
+import org.picketlink.common.exceptions.ConfigurationException;
+import org.picketlink.common.exceptions.ProcessingException;
 import org.picketlink.common.util.Base64;
 import org.picketlink.identity.federation.api.util.DeflateUtil;
+import org.w3c.dom.Document;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -89,6 +92,23 @@ public class RedirectBindingUtil {
         return Base64.decode(decodedString);
     }
 
+    /**
+     * Serialize the SAML message and apply deflate compression followed by base64 encoding and URL encoding in a
+     * single pass, without creating intermediate copies of the message.
+     *
+     * @param samlDocument
+     *
+     * @return
+     *
+     * @throws IOException
+     * @throws ProcessingException
+     * @throws ConfigurationException
+     */
+    public static String deflateBase64URLEncode(Document samlDocument) throws IOException, ProcessingException,
+        ConfigurationException {
+        return SAMLBindingEncoder.encodeAsString(samlDocument, true, true);
+    }
+
     /**
      * Apply deflate compression followed by base64 encoding and URL encoding
      *
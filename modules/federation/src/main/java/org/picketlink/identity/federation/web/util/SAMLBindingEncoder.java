@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.identity.federation.web.util;
+
+import org.picketlink.common.PicketLinkLogger;
+import org.picketlink.common.PicketLinkLoggerFactory;
+import org.picketlink.common.exceptions.ConfigurationException;
+import org.picketlink.common.exceptions.ProcessingException;
+import org.picketlink.common.util.Base64;
+import org.picketlink.common.util.TransformerUtil;
+import org.w3c.dom.Node;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>Streaming encoder for the SAML messages sent using the HTTP POST and HTTP Redirect bindings.</p>
+ *
+ * <p>Messages are serialized, optionally compressed using DEFLATE, Base64 encoded and optionally URL encoded in a single
+ * pass, writing the encoded bytes directly to the target stream. No intermediate copy of the serialized, compressed or
+ * encoded message is created. The buffer in front of the target stream is reused by each thread.</p>
+ *
+ * @author Pedro Igor
+ */
+public class SAMLBindingEncoder {
+
+    private static final PicketLinkLogger logger = PicketLinkLoggerFactory.getLogger();
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The buffer available to the current thread, or null if it is in use.
+     */
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+    /**
+     * <p>Serializes and encodes the given node, writing the encoded message to the given stream. The stream is
+     * flushed, but not closed.</p>
+     *
+     * @param node The SAML message. Usually a {@link org.w3c.dom.Document}.
+     * @param out The stream to where the encoded message is written.
+     * @param deflate If the message should be compressed using DEFLATE before Base64 encoding, as required by the HTTP
+     * Redirect binding.
+     * @param urlEncode If the Base64 encoded message should be URL encoded.
+     *
+     * @throws ProcessingException If the message could not be serialized.
+     * @throws ConfigurationException If no transformer is available.
+     * @throws IOException If the encoded message could not be written.
+     */
+    public static void encode(Node node, OutputStream out, boolean deflate, boolean urlEncode) throws ProcessingException,
+        ConfigurationException, IOException {
+        if (node == null) {
+            throw logger.nullArgumentError("node");
+        }
+
+        Transformer transformer = TransformerUtil.getTransformer();
+        OutputStream encodingStream = createEncodingStream(out, deflate, urlEncode);
+
+        try {
+            transformer.transform(new DOMSource(node), new StreamResult(encodingStream));
+        } catch (TransformerException e) {
+            throw logger.processingError(e);
+        } finally {
+            encodingStream.close();
+        }
+    }
+
+    /**
+     * <p>Serializes and encodes the given node, returning the encoded message.</p>
+     *
+     * @param node The SAML message. Usually a {@link org.w3c.dom.Document}.
+     * @param deflate If the message should be compressed using DEFLATE before Base64 encoding.
+     * @param urlEncode If the Base64 encoded message should be URL encoded.
+     *
+     * @return The encoded message.
+     *
+     * @throws ProcessingException If the message could not be serialized.
+     * @throws ConfigurationException If no transformer is available.
+     * @throws IOException If the message could not be encoded.
+     */
+    public static String encodeAsString(Node node, boolean deflate, boolean urlEncode) throws ProcessingException,
+        ConfigurationException, IOException {
+        StringBuilder encoded = new StringBuilder();
+
+        encode(node, new AppendingOutputStream(encoded), deflate, urlEncode);
+
+        return encoded.toString();
+    }
+
+    /**
+     * <p>Creates a stream that encodes the bytes written to it, such as those written by a StAX writer, and writes the
+     * encoded bytes to the given stream.</p>
+     *
+     * <p>Closing the returned stream completes the encoding and flushes the given stream, without closing it.</p>
+     *
+     * @param out The stream to where the encoded message is written.
+     * @param deflate If the message should be compressed using DEFLATE before Base64 encoding.
+     * @param urlEncode If the Base64 encoded message should be URL encoded.
+     *
+     * @return
+     */
+    public static OutputStream createEncodingStream(OutputStream out, boolean deflate, boolean urlEncode) {
+        if (out == null) {
+            throw logger.nullArgumentError("out");
+        }
+
+        OutputStream encodingStream = new BufferedSink(out);
+
+        if (urlEncode) {
+            encodingStream = new URLEncodingOutputStream(encodingStream);
+        }
+
+        encodingStream = new Base64.OutputStream(encodingStream, Base64.ENCODE | Base64.DONT_BREAK_LINES);
+
+        if (deflate) {
+            // same settings used by DeflateUtil
+            final Deflater deflater = new Deflater(Deflater.DEFLATED, true);
+
+            encodingStream = new DeflaterOutputStream(encodingStream, deflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        }
+
+        return encodingStream;
+    }
+
+    private static byte[] acquireBuffer() {
+        byte[] buffer = buffers.get();
+
+        if (buffer == null) {
+            return new byte[BUFFER_SIZE];
+        }
+
+        buffers.set(null);
+
+        return buffer;
+    }
+
+    private static void releaseBuffer(byte[] buffer) {
+        buffers.set(buffer);
+    }
+
+    /**
+     * <p>Buffers the encoded bytes in front of the target stream, which is flushed but not closed when this stream is
+     * closed.</p>
+     */
+    private static class BufferedSink extends OutputStream {
+
+        private final OutputStream out;
+        private byte[] buffer;
+        private int count;
+
+        BufferedSink(OutputStream out) {
+            this.out = out;
+            this.buffer = acquireBuffer();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.count == this.buffer.length) {
+                flushBuffer();
+            }
+
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= this.buffer.length) {
+                flushBuffer();
+                this.out.write(b, off, len);
+                return;
+            }
+
+            if (len > this.buffer.length - this.count) {
+                flushBuffer();
+            }
+
+            System.arraycopy(b, off, this.buffer, this.count, len);
+            this.count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.buffer != null) {
+                try {
+                    flush();
+                } finally {
+                    releaseBuffer(this.buffer);
+                    this.buffer = null;
+                }
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (this.count > 0) {
+                this.out.write(this.buffer, 0, this.count);
+                this.count = 0;
+            }
+        }
+    }
+
+    /**
+     * <p>URL encodes the Base64 alphabet, producing the same output as {@link java.net.URLEncoder} using UTF-8.</p>
+     */
+    private static class URLEncodingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        URLEncodingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            switch (b) {
+                case '+':
+                    writeEscaped('2', 'B');
+                    break;
+                case '/':
+                    writeEscaped('2', 'F');
+                    break;
+                case '=':
+                    writeEscaped('3', 'D');
+                    break;
+                default:
+                    this.out.write(b);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+
+        private void writeEscaped(char first, char second) throws IOException {
+            this.out.write('%');
+            this.out.write(first);
+            this.out.write(second);
+        }
+    }
+
+    /**
+     * <p>Appends the encoded bytes, which are always ASCII, to a {@link StringBuilder}.</p>
+     */
+    private static class AppendingOutputStream extends OutputStream {
+
+        private final StringBuilder builder;
+
+        AppendingOutputStream(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void write(int b) {
+            this.builder.append((char) (b & 0xFF));
+        }
+    }
+}
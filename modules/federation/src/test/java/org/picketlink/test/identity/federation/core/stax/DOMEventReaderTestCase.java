@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.stax;
+
+import org.junit.Test;
+import org.picketlink.common.util.DOMEventReader;
+import org.picketlink.common.util.DocumentUtil;
+import org.picketlink.common.util.StaxParserUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Compares the events reported by {@link DOMEventReader} with the events reported by a StAX reader parsing the
+ * serialized document.</p>
+ *
+ * @author Pedro Igor
+ */
+public class DOMEventReaderTestCase {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<!-- leading comment -->"
+        + "<samlp:Response xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\" ID=\"id-1\" Version=\"2.0\">\n"
+        + "  <saml:Issuer xmlns:saml=\"urn:oasis:names:tc:SAML:2.0:assertion\">http://idp</saml:Issuer>\n"
+        + "  <Extensions xmlns=\"urn:picketlink:test\" xmlns:t=\"urn:picketlink:test:attr\" t:kind=\"a &amp; b\">\n"
+        + "    <Value>before<!-- inner comment -->after</Value>\n"
+        + "    <Value><![CDATA[<not> & parsed]]> and text</Value>\n"
+        + "    <Empty/>\n"
+        + "  </Extensions>\n"
+        + "</samlp:Response>"
+        + "<?trailing instruction?>";
+
+    @Test
+    public void testSameEventsAsStax() throws Exception {
+        Document document = DocumentUtil.getDocument(XML);
+
+        assertEquals(readStax(DocumentUtil.getDocumentAsString(document), false),
+            describe(new DOMEventReader(document, false)));
+    }
+
+    @Test
+    public void testSameEventsAsStaxIgnoringWhitespace() throws Exception {
+        Document document = DocumentUtil.getDocument(XML);
+        List<String> expected = readStax(DocumentUtil.getDocumentAsString(document), true);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, describe(new DOMEventReader(document, true)));
+    }
+
+    @Test
+    public void testElement() throws Exception {
+        Document document = DocumentUtil.getDocument(XML);
+        Element extensions = (Element) document.getElementsByTagNameNS("urn:picketlink:test", "Extensions").item(0);
+        List<String> expected = readStax(DocumentUtil.getDOMElementAsString(extensions), false);
+
+        assertEquals(expected, describe(new DOMEventReader(extensions, false)));
+    }
+
+    @Test
+    public void testDocumentFragment() throws Exception {
+        Document document = DocumentUtil.getDocument("<root xmlns=\"urn:picketlink:test\"><a id=\"1\"/>text<b>value</b></root>");
+        DocumentFragment fragment = document.createDocumentFragment();
+
+        while (document.getDocumentElement().getFirstChild() != null) {
+            fragment.appendChild(document.getDocumentElement().getFirstChild());
+        }
+
+        List<String> expected = readStax("<root xmlns=\"urn:picketlink:test\"><a id=\"1\"/>text<b>value</b></root>", false);
+
+        // the same events, without the wrapping element
+        expected.remove(1);
+        expected.remove(expected.size() - 2);
+
+        assertEquals(expected, describe(new DOMEventReader(fragment, false)));
+    }
+
+    @Test
+    public void testOtherNodesAreRejected() throws Exception {
+        Document document = DocumentUtil.getDocument(XML);
+
+        try {
+            new DOMEventReader(document.getDocumentElement().getAttributeNode("ID"), false);
+            fail("Attributes can not be read.");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new DOMEventReader(document.createTextNode("text"), false);
+            fail("Text can not be read.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private List<String> readStax(String xml, boolean ignoreWhitespace) throws Exception {
+        XMLEventReader reader = StaxParserUtil.getXMLEventReader(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        List<String> events = describe(reader);
+
+        if (ignoreWhitespace) {
+            Iterator<String> iterator = events.iterator();
+
+            while (iterator.hasNext()) {
+                String event = iterator.next();
+
+                if (event.startsWith("START_DOCUMENT") || event.startsWith("END_DOCUMENT")
+                    || (event.startsWith("CHARACTERS ") && event.substring("CHARACTERS ".length()).trim().length() == 0)) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * <p>Describes the events, ignoring comments, processing instructions and whitespace outside of the elements. Adjacent
+     * text is merged, as text separated by a comment may be reported as one or two events.</p>
+     */
+    private List<String> describe(XMLEventReader reader) throws Exception {
+        List<String> events = new ArrayList<String>();
+        StringBuilder text = null;
+        int depth = 0;
+
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+
+            if (event.isCharacters()) {
+                if (text == null) {
+                    text = new StringBuilder();
+                }
+
+                text.append(event.asCharacters().getData());
+
+                continue;
+            }
+
+            if (event.getEventType() == XMLEvent.COMMENT || event.isProcessingInstruction()
+                || event.getEventType() == XMLEvent.DTD) {
+                continue;
+            }
+
+            addText(events, text, depth);
+            text = null;
+
+            if (event.isStartElement()) {
+                events.add(describe(event.asStartElement()));
+                depth++;
+            } else if (event.isEndElement()) {
+                events.add("END_ELEMENT " + event.asEndElement().getName());
+                depth--;
+            } else if (event.isStartDocument()) {
+                events.add("START_DOCUMENT");
+            } else if (event.isEndDocument()) {
+                events.add("END_DOCUMENT");
+            } else {
+                fail("Unexpected event: " + event);
+            }
+        }
+
+        addText(events, text, depth);
+
+        return events;
+    }
+
+    private void addText(List<String> events, StringBuilder text, int depth) {
+        if (text != null && (depth > 0 || text.toString().trim().length() > 0)) {
+            events.add("CHARACTERS " + text);
+        }
+    }
+
+    private String describe(StartElement element) {
+        List<String> attributes = new ArrayList<String>();
+
+        for (Iterator<?> iterator = element.getAttributes(); iterator.hasNext(); ) {
+            Attribute attribute = (Attribute) iterator.next();
+
+            attributes.add(attribute.getName() + "=" + attribute.getValue());
+        }
+
+        List<String> namespaces = new ArrayList<String>();
+
+        for (Iterator<?> iterator = element.getNamespaces(); iterator.hasNext(); ) {
+            Namespace namespace = (Namespace) iterator.next();
+
+            namespaces.add(namespace.getPrefix() + "=" + namespace.getNamespaceURI());
+        }
+
+        // the order of the attributes is not significant
+        Collections.sort(attributes);
+        Collections.sort(namespaces);
+
+        return "START_ELEMENT " + element.getName() + " prefix=" + element.getName().getPrefix() + " attributes="
+            + attributes + " namespaces=" + namespaces;
+    }
+}
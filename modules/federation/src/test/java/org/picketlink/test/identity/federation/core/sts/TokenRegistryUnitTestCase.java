@@ -0,0 +1,286 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.core.sts;
+
+import org.junit.Test;
+import org.picketlink.identity.federation.core.saml.v2.util.XMLTimeUtil;
+import org.picketlink.identity.federation.core.sts.registry.BatchSecurityTokenRegistry;
+import org.picketlink.identity.federation.core.sts.registry.ConcurrentTokenRegistry;
+import org.picketlink.identity.federation.core.sts.registry.DefaultTokenRegistry;
+import org.picketlink.identity.federation.core.sts.registry.FileBasedTokenRegistry;
+import org.picketlink.identity.federation.saml.v2.assertion.AssertionType;
+import org.picketlink.identity.federation.saml.v2.assertion.ConditionsType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>
+ * Tests the {@link ConcurrentTokenRegistry} and the {@link FileBasedTokenRegistry}.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+public class TokenRegistryUnitTestCase {
+
+    @Test
+    public void testExpiredTokensAreEvicted() throws Exception {
+        ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry();
+
+        registry.addToken("valid", createAssertion("valid", 60000));
+        registry.addToken("expired", createAssertion("expired", -1000));
+        registry.addToken("everlasting", "token");
+
+        assertNotNull(registry.getToken("valid"));
+        assertNull(registry.getToken("expired"));
+        assertNotNull(registry.getToken("everlasting"));
+
+        registry.removeToken("valid");
+
+        assertNull(registry.getToken("valid"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testAsynchronousBatchedWrites() throws Exception {
+        RecordingTokenRegistry store = new RecordingTokenRegistry();
+        ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry(store, 4, 0, 60000);
+
+        for (int i = 0; i < 10; i++) {
+            registry.addToken("token" + i, "value" + i);
+        }
+
+        registry.removeToken("token0");
+        registry.removeToken("stored");
+
+        // the removal is not written yet, but the token must not be read from the store
+        assertNull(registry.getToken("stored"));
+        assertEquals(0, store.batches);
+
+        registry.close();
+
+        assertEquals(2, store.batches);
+        assertEquals(9, store.size());
+        assertNull(store.getToken("token0"));
+        assertEquals("value9", store.getToken("token9"));
+    }
+
+    @Test
+    public void testFailedWritesAreRetriedInOrder() throws Exception {
+        RecordingTokenRegistry store = new RecordingTokenRegistry();
+        ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry(store, 4, 0, 60000);
+
+        registry.addToken("token0", "value0");
+        registry.addToken("token1", "value1");
+        registry.removeToken("stored");
+
+        store.failing = true;
+
+        try {
+            registry.flush();
+            fail("The store should have failed.");
+        } catch (IOException expected) {
+        }
+
+        // the removal was not written, so the token must still be hidden
+        assertNull(registry.getToken("stored"));
+
+        registry.removeToken("token1");
+        registry.addToken("token2", "value2");
+
+        store.failing = false;
+
+        registry.close();
+
+        assertEquals(2, store.size());
+        assertEquals("value0", store.getToken("token0"));
+        assertNull(store.getToken("token1"));
+        assertEquals("value2", store.getToken("token2"));
+        assertNull(store.getToken("stored"));
+    }
+
+    @Test
+    public void testWritesAreDiscardedAfterMaxAttempts() throws Exception {
+        RecordingTokenRegistry store = new RecordingTokenRegistry();
+        ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry(store, 4, 0, 60000);
+
+        registry.addToken("token0", "value0");
+
+        store.failing = true;
+
+        for (int i = 0; i < ConcurrentTokenRegistry.MAX_WRITE_ATTEMPTS; i++) {
+            try {
+                registry.flush();
+                fail("The store should have failed.");
+            } catch (IOException expected) {
+            }
+        }
+
+        store.failing = false;
+
+        registry.addToken("token1", "value1");
+        registry.close();
+
+        assertNull(store.getToken("token0"));
+        assertEquals("value1", store.getToken("token1"));
+        assertEquals("value0", registry.getToken("token0"));
+    }
+
+    @Test
+    public void testChangesAreWrittenByCallersOnceDue() throws Exception {
+        RecordingTokenRegistry store = new RecordingTokenRegistry();
+        ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry(store, 4, 0, 0);
+
+        registry.addToken("token0", "value0");
+
+        assertEquals(1, store.batches);
+        assertEquals("value0", store.getToken("token0"));
+    }
+
+    @Test
+    public void testTokenRemovedWhileReadFromStoreIsNotCached() throws Exception {
+        final RecordingTokenRegistry store = new RecordingTokenRegistry();
+        final ConcurrentTokenRegistry registry = new ConcurrentTokenRegistry(store, 4, 0, 60000);
+
+        store.onGet = new Runnable() {
+            public void run() {
+                try {
+                    store.onGet = null;
+                    registry.removeToken("stored");
+                } catch (IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }
+        };
+
+        assertNull(registry.getToken("stored"));
+        assertNull(registry.getToken("stored"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testFileRegistryRestoresFromLog() throws Exception {
+        File file = File.createTempFile("token", ".registry");
+
+        file.delete();
+
+        FileBasedTokenRegistry registry = new FileBasedTokenRegistry(file.getPath());
+
+        for (int i = 0; i < 5; i++) {
+            registry.addToken("token" + i, "value" + i);
+        }
+
+        registry.removeToken("token1");
+
+        registry = new FileBasedTokenRegistry(file.getPath());
+
+        assertEquals("value0", registry.getToken("token0"));
+        assertNull(registry.getToken("token1"));
+        assertEquals("value4", registry.getToken("token4"));
+
+        file.delete();
+    }
+
+    @Test
+    public void testFileRegistryReadsPreviousFormat() throws Exception {
+        File file = File.createTempFile("token", ".registry");
+        Map<String, Object> holders = new HashMap<String, Object>();
+        ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file));
+
+        oos.writeObject(holders);
+        oos.close();
+
+        FileBasedTokenRegistry registry = new FileBasedTokenRegistry(file.getPath());
+
+        registry.addToken("token", "value");
+
+        registry = new FileBasedTokenRegistry(file.getPath());
+
+        assertEquals("value", registry.getToken("token"));
+
+        file.delete();
+    }
+
+    private AssertionType createAssertion(String id, long validity) throws Exception {
+        AssertionType assertion = new AssertionType(id, XMLTimeUtil.getIssueInstant());
+        ConditionsType conditions = new ConditionsType();
+
+        conditions.setNotBefore(XMLTimeUtil.subtract(XMLTimeUtil.getIssueInstant(), 60000));
+        conditions.setNotOnOrAfter(XMLTimeUtil.add(XMLTimeUtil.getIssueInstant(), validity));
+        assertion.setConditions(conditions);
+
+        return assertion;
+    }
+
+    private static class RecordingTokenRegistry extends DefaultTokenRegistry implements BatchSecurityTokenRegistry {
+
+        private int batches;
+        private boolean failing;
+        private Runnable onGet;
+
+        RecordingTokenRegistry() {
+            this.tokens.put("stored", "value");
+        }
+
+        @Override
+        public Object getToken(String tokenID) {
+            Object token = super.getToken(tokenID);
+
+            if (this.onGet != null) {
+                this.onGet.run();
+            }
+
+            return token;
+        }
+
+        public void addTokens(Map<String, Object> tokens) throws IOException {
+            if (this.failing) {
+                throw new IOException("Store not available.");
+            }
+
+            this.batches++;
+            this.tokens.putAll(tokens);
+        }
+
+        int size() {
+            return this.tokens.size();
+        }
+
+        public void removeTokens(Collection<String> tokenIDs) throws IOException {
+            this.batches++;
+
+            List<String> ids = new ArrayList<String>(tokenIDs);
+
+            for (String id : ids) {
+                this.tokens.remove(id);
+            }
+        }
+    }
+}
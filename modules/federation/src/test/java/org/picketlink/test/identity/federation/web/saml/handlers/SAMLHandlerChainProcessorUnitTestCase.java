@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.test.identity.federation.web.saml.handlers;
+
+import junit.framework.TestCase;
+import org.picketlink.config.federation.PicketLinkType;
+import org.picketlink.config.federation.handler.Handlers;
+import org.picketlink.identity.federation.core.saml.v2.interfaces.SAML2Handler;
+import org.picketlink.identity.federation.web.handlers.saml2.BaseSAML2Handler;
+import org.picketlink.identity.federation.web.handlers.saml2.SAML2AuthenticationHandler;
+import org.picketlink.identity.federation.web.handlers.saml2.SAML2SignatureGenerationHandler;
+import org.picketlink.identity.federation.web.process.SAMLHandlerChainProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test the locking decision of the {@link SAMLHandlerChainProcessor}.
+ *
+ * @author Pedro Igor
+ */
+public class SAMLHandlerChainProcessorUnitTestCase extends TestCase {
+
+    public void testStatelessChainDoesNotRequireLocking() throws Exception {
+        List<SAML2Handler> handlers = new ArrayList<SAML2Handler>();
+
+        handlers.add(new SAML2AuthenticationHandler());
+        handlers.add(new SAML2SignatureGenerationHandler());
+
+        assertTrue(SAMLHandlerChainProcessor.isStateless(handlers));
+        assertFalse(SAMLHandlerChainProcessor.requiresLocking(createConfiguration(true), handlers));
+    }
+
+    public void testStatefulHandlerRequiresLocking() throws Exception {
+        List<SAML2Handler> handlers = new ArrayList<SAML2Handler>();
+
+        handlers.add(new SAML2AuthenticationHandler());
+        handlers.add(new StatefulHandler());
+
+        assertFalse(SAMLHandlerChainProcessor.isStateless(handlers));
+        assertTrue(SAMLHandlerChainProcessor.requiresLocking(createConfiguration(true), handlers));
+        assertFalse(SAMLHandlerChainProcessor.requiresLocking(createConfiguration(false), handlers));
+    }
+
+    private PicketLinkType createConfiguration(boolean locking) {
+        PicketLinkType configuration = new PicketLinkType();
+        Handlers handlers = new Handlers();
+
+        handlers.setLocking(locking);
+        configuration.setHandlers(handlers);
+
+        return configuration;
+    }
+
+    private static class StatefulHandler extends BaseSAML2Handler {
+    }
+}
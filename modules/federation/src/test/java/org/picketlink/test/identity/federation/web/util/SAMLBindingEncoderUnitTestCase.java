@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.identity.federation.web.util;
+
+import junit.framework.TestCase;
+import org.picketlink.common.util.DocumentUtil;
+import org.picketlink.identity.federation.api.saml.v2.request.SAML2Request;
+import org.picketlink.identity.federation.core.saml.v2.common.IDGenerator;
+import org.picketlink.identity.federation.saml.v2.protocol.AuthnRequestType;
+import org.picketlink.identity.federation.web.util.PostBindingUtil;
+import org.picketlink.identity.federation.web.util.RedirectBindingUtil;
+import org.picketlink.identity.federation.web.util.SAMLBindingEncoder;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Unit test the streaming encoding of SAML messages for the HTTP POST and Redirect bindings.
+ *
+ * @author Pedro Igor
+ */
+public class SAMLBindingEncoderUnitTestCase extends TestCase {
+
+    public void testPostBindingEncoding() throws Exception {
+        Document samlDocument = createAuthnRequest();
+        String expected = PostBindingUtil.base64Encode(DocumentUtil.getDocumentAsString(samlDocument));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        SAMLBindingEncoder.encode(samlDocument, out, false, false);
+
+        assertEquals(expected, out.toString("US-ASCII"));
+        assertEquals(expected, SAMLBindingEncoder.encodeAsString(samlDocument, false, false));
+    }
+
+    public void testRedirectBindingEncoding() throws Exception {
+        Document samlDocument = createAuthnRequest();
+        String expected = RedirectBindingUtil.deflateBase64URLEncode(DocumentUtil.getDocumentAsString(samlDocument));
+        String encoded = RedirectBindingUtil.deflateBase64URLEncode(samlDocument);
+
+        assertEquals(expected, encoded);
+
+        AuthnRequestType decodedRequest = new SAML2Request().getAuthnRequestType(
+            RedirectBindingUtil.urlBase64DeflateDecode(encoded));
+
+        assertNotNull(decodedRequest);
+        assertEquals("http://sp", decodedRequest.getIssuer().getValue());
+    }
+
+    private Document createAuthnRequest() throws Exception {
+        SAML2Request request = new SAML2Request();
+        AuthnRequestType authnRequest = request.createAuthnRequestType(IDGenerator.create("ID_"), "http://sp",
+            "http://localhost:8080/idp", "http://sp");
+
+        return request.convert(authnRequest);
+    }
+}
@@ -122,6 +122,9 @@ public interface IDMMessages {
     @Message(id = 208, value = "Account type [%s] does not provide a property annotated with @StereotypeProperty(IDENTITY_USER_NAME). Without this the account can not be retrieved from the store based on the user name.")
     IdentityManagementException credentialUnknownUserNameProperty(Class<? extends Account> accountType);
 
+    @Message(id = 209, value = "Credential validation rejected for [%s]. The credential validation executor is saturated.")
+    IdentityManagementException credentialValidationRejected(Credentials credentials);
+
     @Message(value = "Invalid Realm or it was not provided.")
     IdentityManagementException credentialDigestInvalidRealm();
 
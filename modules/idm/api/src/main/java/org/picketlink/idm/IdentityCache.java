@@ -35,6 +35,13 @@ import org.picketlink.idm.model.basic.User;
  * @author Shane Bryzak
  */
 public interface IdentityCache {
+
+    /**
+     * <p>Name of the context parameter that provides a reference to the {@link IdentityCache} that should be used when
+     * resolving identity types during a specific operation.</p>
+     */
+    String IDENTITY_CACHE_CTX_PARAMETER = "IDENTITY_CACHE_CTX_PARAMETER";
+
     /**
      * Returns the cached User object for the specified id, in the specified Realm.  If the User has
      * not previously been cached, returns null.
@@ -108,7 +115,9 @@ public interface IdentityCache {
     void putAgent(Realm realm, Agent agent);
 
     /**
+     * Removes the specified {@link IdentityType} from the cache, within the specified Partition.
      *
+     * @param partition
      * @param identity
      */
     void invalidate(Partition partition, IdentityType identity);
@@ -26,6 +26,7 @@ import org.picketlink.idm.query.IdentityQueryBuilder;
 
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * <p>Manages all Identity Management related operations.</p>
@@ -129,6 +130,25 @@ public interface IdentityManager {
      */
     void validateCredentials(Credentials credentials);
 
+    /**
+     * <p>
+     * Validates the given {@link Credentials} without blocking the calling thread, if an executor is configured for
+     * credential validation. Otherwise, credentials are validated by the calling thread and the returned {@link Future}
+     * is already done.
+     * </p>
+     * <p>
+     * The returned {@link Future} provides the given <code>credentials</code> once validated. To check the validation
+     * status you should use the <code>Credentials.getStatus</code> method.
+     * </p>
+     *
+     * @param credentials
+     *
+     * @return
+     *
+     * @throws IdentityManagementException If the validation can not be accepted because the executor is saturated.
+     */
+    Future<Credentials> validateCredentialsAsync(Credentials credentials) throws IdentityManagementException;
+
     /**
      * <p>
      * Updates a credential for the given {@link Account}.
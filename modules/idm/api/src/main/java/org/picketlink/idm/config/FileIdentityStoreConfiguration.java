@@ -38,12 +38,18 @@ public class FileIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
     private final boolean asyncWrite;
     private final boolean alwaysCreateFiles;
     private final String workingDir;
+    private final boolean journal;
+    private final int journalCompactionThreshold;
+    private final long journalCompactionInterval;
 
     FileIdentityStoreConfiguration(
             String workingDir,
             boolean preserveState,
             boolean asyncWrite,
             int asyncWriteThreadPool,
+            boolean journal,
+            int journalCompactionThreshold,
+            long journalCompactionInterval,
             Map<Class<? extends AttributedType>, Set<IdentityOperation>> supportedTypes,
             Map<Class<? extends AttributedType>, Set<IdentityOperation>> unsupportedTypes,
             List<ContextInitializer> contextInitializers,
@@ -58,6 +64,9 @@ public class FileIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
         this.alwaysCreateFiles = !preserveState;
         this.asyncWrite = asyncWrite;
         this.asyncThreadPool = asyncWriteThreadPool;
+        this.journal = journal;
+        this.journalCompactionThreshold = journalCompactionThreshold;
+        this.journalCompactionInterval = journalCompactionInterval;
     }
 
     public String getWorkingDir() {
@@ -75,4 +84,16 @@ public class FileIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
     public int getAsyncThreadPool() {
         return this.asyncThreadPool;
     }
-}
\ No newline at end of file
+
+    public boolean isJournal() {
+        return this.journal;
+    }
+
+    public int getJournalCompactionThreshold() {
+        return this.journalCompactionThreshold;
+    }
+
+    public long getJournalCompactionInterval() {
+        return this.journalCompactionInterval;
+    }
+}
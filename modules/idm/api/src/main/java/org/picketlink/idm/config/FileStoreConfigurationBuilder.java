@@ -37,6 +37,9 @@ public class FileStoreConfigurationBuilder extends
     private boolean preserveState = false;
     private boolean asyncWrite = false;
     private int asyncWriteThreadPool = 5;
+    private boolean journal = false;
+    private int journalCompactionThreshold = 1000;
+    private long journalCompactionInterval = 60000;
 
     public FileStoreConfigurationBuilder(IdentityStoresConfigurationBuilder builder) {
         super(builder);
@@ -90,6 +93,48 @@ public class FileStoreConfigurationBuilder extends
         return this;
     }
 
+    /**
+     * <p>Indicates that changes should be appended to a journal instead of rewriting the whole data file on every
+     * write operation. Journals are replayed when the store is initialized and periodically compacted into the data
+     * files.</p>
+     *
+     * <p>Defaults to false.</p>
+     *
+     * @param journal
+     * @return
+     */
+    public FileStoreConfigurationBuilder journal(boolean journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * <p>If journal is enabled, defines the number of records a journal must have before being compacted.</p>
+     *
+     * <p>Defaults to 1000.</p>
+     *
+     * @param records
+     * @return
+     */
+    public FileStoreConfigurationBuilder journalCompactionThreshold(int records) {
+        this.journalCompactionThreshold = records;
+        return this;
+    }
+
+    /**
+     * <p>If journal is enabled, defines the interval, in milliseconds, between checks for journals that must be
+     * compacted.</p>
+     *
+     * <p>Defaults to 60000.</p>
+     *
+     * @param interval
+     * @return
+     */
+    public FileStoreConfigurationBuilder journalCompactionInterval(long interval) {
+        this.journalCompactionInterval = interval;
+        return this;
+    }
+
     @Override
     protected FileIdentityStoreConfiguration create() {
         return new FileIdentityStoreConfiguration(
@@ -97,6 +142,9 @@ public class FileStoreConfigurationBuilder extends
                 this.preserveState,
                 this.asyncWrite,
                 this.asyncWriteThreadPool,
+                this.journal,
+                this.journalCompactionThreshold,
+                this.journalCompactionInterval,
                 getSupportedTypes(),
                 getUnsupportedTypes(),
                 getContextInitializers(),
@@ -114,6 +162,14 @@ public class FileStoreConfigurationBuilder extends
         if (this.asyncWriteThreadPool <= 0) {
             throw new SecurityConfigurationException("The thread pool size must be greater than zero.");
         }
+
+        if (this.journalCompactionThreshold <= 0) {
+            throw new SecurityConfigurationException("The journal compaction threshold must be greater than zero.");
+        }
+
+        if (this.journalCompactionInterval <= 0) {
+            throw new SecurityConfigurationException("The journal compaction interval must be greater than zero.");
+        }
     }
 
     @Override
@@ -123,6 +179,9 @@ public class FileStoreConfigurationBuilder extends
         this.preserveState = !configuration.isAlwaysCreateFiles();
         this.asyncWrite = configuration.isAsyncWrite();
         this.asyncWriteThreadPool = configuration.getAsyncThreadPool();
+        this.journal = configuration.isJournal();
+        this.journalCompactionThreshold = configuration.getJournalCompactionThreshold();
+        this.journalCompactionInterval = configuration.getJournalCompactionInterval();
 
         return this;
     }
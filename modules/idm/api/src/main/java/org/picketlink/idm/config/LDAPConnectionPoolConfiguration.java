@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.config;
+
+/**
+ * <p>Configuration for the pools of connections maintained by the LDAP store.</p>
+ *
+ * <p>The LDAP store keeps two separate pools: one for the connections bound using the configured bind DN, used to
+ * search and manage entries, and another one for the connections used to authenticate users with their own
+ * credentials.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPConnectionPoolConfiguration {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final long validationInterval;
+
+    LDAPConnectionPoolConfiguration(int minSize, int maxSize, long idleTimeout, long borrowTimeout, long validationInterval) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * <p>The number of idle connections that are never evicted from the pool.</p>
+     *
+     * @return
+     */
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    /**
+     * <p>The maximum number of connections that can be opened at the same time.</p>
+     *
+     * @return
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * <p>The time in milliseconds a connection may remain idle before being closed.</p>
+     *
+     * @return
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * <p>The time in milliseconds to wait for a connection when all of them are in use.</p>
+     *
+     * @return
+     */
+    public long getBorrowTimeout() {
+        return this.borrowTimeout;
+    }
+
+    /**
+     * <p>The time in milliseconds a connection may remain idle before being checked when borrowed. A value of zero
+     * means connections are always checked.</p>
+     *
+     * @return
+     */
+    public long getValidationInterval() {
+        return this.validationInterval;
+    }
+}
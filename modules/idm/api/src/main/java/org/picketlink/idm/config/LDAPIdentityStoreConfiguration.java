@@ -51,6 +51,9 @@ public class LDAPIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
     private final Properties connectionProperties;
     private final boolean pagination;
     private final String uniqueIdentifierAttributeName;
+    private final LDAPConnectionPoolConfiguration connectionPoolConfig;
+    private final LDAPConnectionPoolConfiguration authenticationPoolConfig;
+    private final LDAPReplicationConfiguration replicationConfig;
 
     private String baseDN;
     private final Map<Class<? extends AttributedType>, LDAPMappingConfiguration> mappingConfig;
@@ -63,6 +66,9 @@ public class LDAPIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
             final boolean activeDirectory,
             boolean pagination,
             String uniqueIdentifierAttributeName,
+            LDAPConnectionPoolConfiguration connectionPoolConfig,
+            LDAPConnectionPoolConfiguration authenticationPoolConfig,
+            LDAPReplicationConfiguration replicationConfig,
             Map<Class<? extends AttributedType>, LDAPMappingConfiguration> mappingConfig, Map<Class<? extends AttributedType>, Set<IdentityOperation>> supportedTypes,
             Map<Class<? extends AttributedType>, Set<IdentityOperation>> unsupportedTypes,
             List<ContextInitializer> contextInitializers,
@@ -79,6 +85,9 @@ public class LDAPIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
         this.baseDN = baseDN;
         this.mappingConfig = mappingConfig;
         this.pagination = pagination;
+        this.connectionPoolConfig = connectionPoolConfig;
+        this.authenticationPoolConfig = authenticationPoolConfig;
+        this.replicationConfig = replicationConfig;
         if (uniqueIdentifierAttributeName != null) {
             this.uniqueIdentifierAttributeName = uniqueIdentifierAttributeName;
         } else {
@@ -190,4 +199,33 @@ public class LDAPIdentityStoreConfiguration extends AbstractIdentityStoreConfigu
     public boolean isPagination() {
         return pagination;
     }
-}
\ No newline at end of file
+
+    /**
+     * <p>Returns the configuration for the pool of connections bound with the bind DN, or null if connection pooling
+     * is disabled.</p>
+     *
+     * @return
+     */
+    public LDAPConnectionPoolConfiguration getConnectionPoolConfig() {
+        return this.connectionPoolConfig;
+    }
+
+    /**
+     * <p>Returns the configuration for the pool of connections used to authenticate users, or null if connection
+     * pooling is disabled.</p>
+     *
+     * @return
+     */
+    public LDAPConnectionPoolConfiguration getAuthenticationPoolConfig() {
+        return this.authenticationPoolConfig;
+    }
+
+    /**
+     * <p>Returns the configuration for the local replica of the LDAP entries, or null if replication is disabled.</p>
+     *
+     * @return
+     */
+    public LDAPReplicationConfiguration getReplicationConfig() {
+        return this.replicationConfig;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.config;
+
+/**
+ * <p>Configuration for the local replica of the LDAP entries kept by the LDAP store.</p>
+ *
+ * <p>When replication is enabled, the entries under the base DNs of all mappings are loaded into memory when the
+ * store is initialized and searches are served from the replica. Changes made through the store are written to the
+ * LDAP server and then applied to the replica. Changes made by other clients are received using a persistent search,
+ * if supported by the server, or by polling for modified entries.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPReplicationConfiguration {
+
+    private final long pollInterval;
+    private final long reconcileInterval;
+    private final int pageSize;
+
+    LDAPReplicationConfiguration(long pollInterval, long reconcileInterval, int pageSize) {
+        this.pollInterval = pollInterval;
+        this.reconcileInterval = reconcileInterval;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * <p>The time in milliseconds between two checks for modified entries, when the server does not support
+     * persistent searches. This is also the time to wait before reconnecting after a persistent search fails.</p>
+     *
+     * @return
+     */
+    public long getPollInterval() {
+        return this.pollInterval;
+    }
+
+    /**
+     * <p>The time in milliseconds between two checks for entries removed from the server, when the server does not
+     * support persistent searches. Each check lists all the replicated DNs, so this interval is usually much longer
+     * than the poll interval.</p>
+     *
+     * @return
+     */
+    public long getReconcileInterval() {
+        return this.reconcileInterval;
+    }
+
+    /**
+     * <p>The number of entries retrieved by each page when loading the replica.</p>
+     *
+     * @return
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+}
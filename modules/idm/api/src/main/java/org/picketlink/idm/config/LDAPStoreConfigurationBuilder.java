@@ -53,6 +53,18 @@ public class LDAPStoreConfigurationBuilder extends
     private Set<LDAPMappingConfigurationBuilder> mappingBuilders = new HashSet<LDAPMappingConfigurationBuilder>();
     private boolean pagination;
     private String uniqueIdentifierAttributeName;
+    private boolean connectionPooling;
+    private int connectionPoolMinSize = 0;
+    private int connectionPoolMaxSize = 10;
+    private int authenticationPoolMinSize = 0;
+    private int authenticationPoolMaxSize = 10;
+    private long connectionPoolIdleTimeout = 300000;
+    private long connectionPoolBorrowTimeout = 30000;
+    private long connectionPoolValidationInterval = 30000;
+    private boolean replication;
+    private long replicationPollInterval = 30000;
+    private long replicationReconcileInterval = 3600000;
+    private int replicationPageSize = 500;
 
     public LDAPStoreConfigurationBuilder(IdentityStoresConfigurationBuilder builder) {
         super(builder);
@@ -138,6 +150,126 @@ public class LDAPStoreConfigurationBuilder extends
     }
 
 
+    /**
+     * <p>Indicates if connections to the LDAP server should be pooled and reused between operations. When enabled,
+     * connections bound with the <code>bindDN</code> and connections used to authenticate users are kept in
+     * separate pools.</p>
+     *
+     * @param connectionPooling
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder connectionPooling(boolean connectionPooling) {
+        this.connectionPooling = connectionPooling;
+        return this;
+    }
+
+    /**
+     * <p>Sets the minimum and maximum number of connections bound with the <code>bindDN</code>.</p>
+     *
+     * @param minSize
+     * @param maxSize
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder connectionPoolSize(int minSize, int maxSize) {
+        this.connectionPoolMinSize = minSize;
+        this.connectionPoolMaxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * <p>Sets the minimum and maximum number of connections used to authenticate users.</p>
+     *
+     * @param minSize
+     * @param maxSize
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder authenticationPoolSize(int minSize, int maxSize) {
+        this.authenticationPoolMinSize = minSize;
+        this.authenticationPoolMaxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds a pooled connection may remain idle before being closed.</p>
+     *
+     * @param idleTimeout
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder connectionPoolIdleTimeout(long idleTimeout) {
+        this.connectionPoolIdleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds to wait for a pooled connection when all of them are in use.</p>
+     *
+     * @param borrowTimeout
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder connectionPoolBorrowTimeout(long borrowTimeout) {
+        this.connectionPoolBorrowTimeout = borrowTimeout;
+        return this;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds a pooled connection may remain idle before being checked when borrowed. Use
+     * zero to always check connections.</p>
+     *
+     * @param validationInterval
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder connectionPoolValidationInterval(long validationInterval) {
+        this.connectionPoolValidationInterval = validationInterval;
+        return this;
+    }
+
+    /**
+     * <p>Indicates if the entries under the mapped base DNs should be replicated in memory. When enabled, searches are
+     * served from the replica, which is kept up to date with the changes made to the LDAP server.</p>
+     *
+     * @param replication
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder replication(boolean replication) {
+        this.replication = replication;
+        return this;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds between two checks for modified entries, when the server does not support
+     * persistent searches.</p>
+     *
+     * @param pollInterval
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder replicationPollInterval(long pollInterval) {
+        this.replicationPollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * <p>Sets the time in milliseconds between two checks for entries removed from the server, when the server does
+     * not support persistent searches. Defaults to one hour.</p>
+     *
+     * @param reconcileInterval
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder replicationReconcileInterval(long reconcileInterval) {
+        this.replicationReconcileInterval = reconcileInterval;
+        return this;
+    }
+
+    /**
+     * <p>Sets the number of entries retrieved by each page when loading the replica.</p>
+     *
+     * @param pageSize
+     * @return
+     */
+    public LDAPStoreConfigurationBuilder replicationPageSize(int pageSize) {
+        this.replicationPageSize = pageSize;
+        return this;
+    }
+
     /**
      * <p>Maps a specific {@link AttributedType}.</p>
      *
@@ -178,6 +310,25 @@ public class LDAPStoreConfigurationBuilder extends
             mappingConfig.put(ldapMappingConfiguration.getMappedClass(), ldapMappingConfiguration);
         }
 
+        LDAPConnectionPoolConfiguration connectionPoolConfig = null;
+        LDAPConnectionPoolConfiguration authenticationPoolConfig = null;
+
+        if (this.connectionPooling) {
+            connectionPoolConfig = new LDAPConnectionPoolConfiguration(this.connectionPoolMinSize,
+                    this.connectionPoolMaxSize, this.connectionPoolIdleTimeout, this.connectionPoolBorrowTimeout,
+                    this.connectionPoolValidationInterval);
+            authenticationPoolConfig = new LDAPConnectionPoolConfiguration(this.authenticationPoolMinSize,
+                    this.authenticationPoolMaxSize, this.connectionPoolIdleTimeout, this.connectionPoolBorrowTimeout,
+                    this.connectionPoolValidationInterval);
+        }
+
+        LDAPReplicationConfiguration replicationConfig = null;
+
+        if (this.replication) {
+            replicationConfig = new LDAPReplicationConfiguration(this.replicationPollInterval,
+                this.replicationReconcileInterval, this.replicationPageSize);
+        }
+
         return new LDAPIdentityStoreConfiguration(
                 this.url,
                 this.connectionProperties,
@@ -187,6 +338,9 @@ public class LDAPStoreConfigurationBuilder extends
                 this.activeDirectory,
                 this.pagination,
                 this.uniqueIdentifierAttributeName,
+                connectionPoolConfig,
+                authenticationPoolConfig,
+                replicationConfig,
                 mappingConfig,
                 getSupportedTypes(),
                 getUnsupportedTypes(),
@@ -220,6 +374,25 @@ public class LDAPStoreConfigurationBuilder extends
             builder.validate();
         }
 
+        if (this.connectionPooling) {
+            validatePoolSize(this.connectionPoolMinSize, this.connectionPoolMaxSize);
+            validatePoolSize(this.authenticationPoolMinSize, this.authenticationPoolMaxSize);
+        }
+
+        if (this.replication) {
+            if (this.replicationPollInterval <= 0) {
+                throw new SecurityConfigurationException("Invalid replication poll interval [" + this.replicationPollInterval + "].");
+            }
+
+            if (this.replicationReconcileInterval <= 0) {
+                throw new SecurityConfigurationException("Invalid replication reconcile interval [" + this.replicationReconcileInterval + "].");
+            }
+
+            if (this.replicationPageSize <= 0) {
+                throw new SecurityConfigurationException("Invalid replication page size [" + this.replicationPageSize + "].");
+            }
+        }
+
         unsupportType(Partition.class);
     }
 
@@ -236,6 +409,34 @@ public class LDAPStoreConfigurationBuilder extends
         this.pagination = configuration.isPagination();
         this.uniqueIdentifierAttributeName = configuration.getUniqueIdentifierAttributeName();
 
+        LDAPConnectionPoolConfiguration connectionPoolConfig = configuration.getConnectionPoolConfig();
+        LDAPConnectionPoolConfiguration authenticationPoolConfig = configuration.getAuthenticationPoolConfig();
+
+        this.connectionPooling = connectionPoolConfig != null;
+
+        if (connectionPoolConfig != null) {
+            this.connectionPoolMinSize = connectionPoolConfig.getMinSize();
+            this.connectionPoolMaxSize = connectionPoolConfig.getMaxSize();
+            this.connectionPoolIdleTimeout = connectionPoolConfig.getIdleTimeout();
+            this.connectionPoolBorrowTimeout = connectionPoolConfig.getBorrowTimeout();
+            this.connectionPoolValidationInterval = connectionPoolConfig.getValidationInterval();
+        }
+
+        if (authenticationPoolConfig != null) {
+            this.authenticationPoolMinSize = authenticationPoolConfig.getMinSize();
+            this.authenticationPoolMaxSize = authenticationPoolConfig.getMaxSize();
+        }
+
+        LDAPReplicationConfiguration replicationConfig = configuration.getReplicationConfig();
+
+        this.replication = replicationConfig != null;
+
+        if (replicationConfig != null) {
+            this.replicationPollInterval = replicationConfig.getPollInterval();
+            this.replicationReconcileInterval = replicationConfig.getReconcileInterval();
+            this.replicationPageSize = replicationConfig.getPageSize();
+        }
+
         for (Class<? extends AttributedType> attributedType: configuration.getMappingConfig().keySet()) {
             LDAPMappingConfiguration mappingConfiguration = configuration.getMappingConfig().get(attributedType);
 
@@ -244,4 +445,11 @@ public class LDAPStoreConfigurationBuilder extends
 
         return this;
     }
-}
\ No newline at end of file
+
+    private void validatePoolSize(int minSize, int maxSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new SecurityConfigurationException("Invalid connection pool size. Min [" + minSize + "] and max ["
+                + maxSize + "].");
+        }
+    }
+}
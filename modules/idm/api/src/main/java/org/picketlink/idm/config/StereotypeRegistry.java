@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.config;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+import org.picketlink.idm.model.annotation.RelationshipStereotype;
+import org.picketlink.idm.model.annotation.StereotypeProperty;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>The identity and relationship types supported by a set of {@link IdentityConfiguration}, grouped by their
+ * {@link IdentityStereotype} and {@link RelationshipStereotype}, and their properties annotated with
+ * {@link StereotypeProperty}.</p>
+ *
+ * <p>Instances are immutable and are usually obtained from {@link org.picketlink.idm.spi.StereotypeLookup#getStereotypeRegistry()},
+ * which computes them once when it is initialized.</p>
+ *
+ * @author Pedro Igor
+ */
+public final class StereotypeRegistry {
+
+    private final Map<IdentityStereotype.Stereotype, Set<Class<? extends IdentityType>>> identityTypes;
+    private final Map<RelationshipStereotype.Stereotype, Set<Class<? extends Relationship>>> relationshipTypes;
+    private final Map<Class<?>, Map<StereotypeProperty.Property, Property<Object>>> properties;
+
+    public StereotypeRegistry(Collection<IdentityConfiguration> configurations) {
+        Map<IdentityStereotype.Stereotype, Set<Class<? extends IdentityType>>> identityTypes =
+            new EnumMap<IdentityStereotype.Stereotype, Set<Class<? extends IdentityType>>>(IdentityStereotype.Stereotype.class);
+        Map<RelationshipStereotype.Stereotype, Set<Class<? extends Relationship>>> relationshipTypes =
+            new EnumMap<RelationshipStereotype.Stereotype, Set<Class<? extends Relationship>>>(RelationshipStereotype.Stereotype.class);
+        Map<Class<?>, Map<StereotypeProperty.Property, Property<Object>>> properties =
+            new HashMap<Class<?>, Map<StereotypeProperty.Property, Property<Object>>>();
+
+        for (IdentityConfiguration configuration : configurations) {
+            for (IdentityStoreConfiguration storeConfiguration : configuration.getStoreConfiguration()) {
+                for (Class<? extends AttributedType> attributedType : storeConfiguration.getSupportedTypes().keySet()) {
+                    if (IdentityType.class.isAssignableFrom(attributedType)) {
+                        IdentityStereotype identityStereotype = attributedType.getAnnotation(IdentityStereotype.class);
+
+                        if (identityStereotype != null) {
+                            Set<Class<? extends IdentityType>> types = identityTypes.get(identityStereotype.value());
+
+                            if (types == null) {
+                                types = new LinkedHashSet<Class<? extends IdentityType>>();
+                                identityTypes.put(identityStereotype.value(), types);
+                            }
+
+                            types.add((Class<? extends IdentityType>) attributedType);
+                            addProperties(properties, attributedType);
+                        }
+                    }
+
+                    if (Relationship.class.isAssignableFrom(attributedType)) {
+                        RelationshipStereotype relationshipStereotype = attributedType.getAnnotation(RelationshipStereotype.class);
+
+                        if (relationshipStereotype != null) {
+                            Set<Class<? extends Relationship>> types = relationshipTypes.get(relationshipStereotype.value());
+
+                            if (types == null) {
+                                types = new LinkedHashSet<Class<? extends Relationship>>();
+                                relationshipTypes.put(relationshipStereotype.value(), types);
+                            }
+
+                            types.add((Class<? extends Relationship>) attributedType);
+                            addProperties(properties, attributedType);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<IdentityStereotype.Stereotype, Set<Class<? extends IdentityType>>> entry : identityTypes.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+
+        for (Map.Entry<RelationshipStereotype.Stereotype, Set<Class<? extends Relationship>>> entry : relationshipTypes.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+
+        this.identityTypes = Collections.unmodifiableMap(identityTypes);
+        this.relationshipTypes = Collections.unmodifiableMap(relationshipTypes);
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    private static void addProperties(Map<Class<?>, Map<StereotypeProperty.Property, Property<Object>>> properties,
+                                      Class<?> type) {
+        if (properties.containsKey(type)) {
+            return;
+        }
+
+        Map<StereotypeProperty.Property, Property<Object>> typeProperties =
+            new EnumMap<StereotypeProperty.Property, Property<Object>>(StereotypeProperty.Property.class);
+
+        for (Property<Object> property : PropertyQueries.createQuery(type)
+            .addCriteria(new AnnotatedPropertyCriteria(StereotypeProperty.class))
+            .getResultList()) {
+            StereotypeProperty stereotypeProperty = property.getAnnotatedElement().getAnnotation(StereotypeProperty.class);
+
+            if (!typeProperties.containsKey(stereotypeProperty.value())) {
+                typeProperties.put(stereotypeProperty.value(), property);
+            }
+        }
+
+        properties.put(type, Collections.unmodifiableMap(typeProperties));
+    }
+
+    /**
+     * <p>Returns the supported identity types with the given stereotype.</p>
+     *
+     * @param stereotype
+     * @return
+     */
+    public Set<Class<? extends IdentityType>> getIdentityTypes(IdentityStereotype.Stereotype stereotype) {
+        Set<Class<? extends IdentityType>> types = this.identityTypes.get(stereotype);
+
+        if (types == null) {
+            return Collections.emptySet();
+        }
+
+        return types;
+    }
+
+    /**
+     * <p>Returns the supported relationship types with the given stereotype.</p>
+     *
+     * @param stereotype
+     * @return
+     */
+    public Set<Class<? extends Relationship>> getRelationshipTypes(RelationshipStereotype.Stereotype stereotype) {
+        Set<Class<? extends Relationship>> types = this.relationshipTypes.get(stereotype);
+
+        if (types == null) {
+            return Collections.emptySet();
+        }
+
+        return types;
+    }
+
+    /**
+     * <p>Returns the property of the given type annotated with the given {@link StereotypeProperty}, or null if the
+     * type is not registered or does not have such property.</p>
+     *
+     * @param type
+     * @param stereotypeProperty
+     * @return
+     */
+    public Property<Object> getProperty(Class<? extends AttributedType> type, StereotypeProperty.Property stereotypeProperty) {
+        Map<StereotypeProperty.Property, Property<Object>> typeProperties = this.properties.get(type);
+
+        if (typeProperties == null) {
+            return null;
+        }
+
+        return typeProperties.get(stereotypeProperty);
+    }
+
+    /**
+     * <p>Checks if the given identity type has the given stereotype and is supported by the configuration.</p>
+     *
+     * @param type
+     * @param stereotype
+     * @return
+     */
+    public boolean isIdentityType(Class<?> type, IdentityStereotype.Stereotype stereotype) {
+        return getIdentityTypes(stereotype).contains(type);
+    }
+}
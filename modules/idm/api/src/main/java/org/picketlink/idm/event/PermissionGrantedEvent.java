@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.event;
+
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.model.IdentityType;
+
+/**
+ * <p>This event is raised whenever a permission is granted to an identity type.</p>
+ *
+ * @author Pedro Igor
+ */
+public class PermissionGrantedEvent extends AbstractBaseEvent {
+
+    private final IdentityType assignee;
+    private final Object resource;
+    private final String operation;
+
+    public PermissionGrantedEvent(IdentityType assignee, Object resource, String operation, PartitionManager partitionManager) {
+        super(partitionManager);
+        this.assignee = assignee;
+        this.resource = resource;
+        this.operation = operation;
+    }
+
+    public IdentityType getAssignee() {
+        return this.assignee;
+    }
+
+    public Object getResource() {
+        return this.resource;
+    }
+
+    public String getOperation() {
+        return this.operation;
+    }
+}
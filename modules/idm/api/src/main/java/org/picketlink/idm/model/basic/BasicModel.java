@@ -25,6 +25,7 @@ import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
 import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.idm.spi.PrivilegeIndexSupport;
 
 import java.util.List;
 
@@ -450,6 +451,14 @@ public class BasicModel {
             throw MESSAGES.nullArgument("Role");
         }
 
+        boolean privilegeIndexEnabled = PrivilegeIndexSupport.class.isInstance(relationshipManager)
+            && ((PrivilegeIndexSupport) relationshipManager).isPrivilegeIndexEnabled();
+
+        // privileges inherited from a direct grant, a group or a parent group are usually resolved without querying the stores
+        if (privilegeIndexEnabled && relationshipManager.inheritsPrivileges(assignee, role)) {
+            return true;
+        }
+
         RelationshipQuery<Grant> query = relationshipManager.createRelationshipQuery(Grant.class);
 
         query.setParameter(Grant.ASSIGNEE, assignee);
@@ -457,7 +466,7 @@ public class BasicModel {
 
         boolean hasRole = !query.getResultList().isEmpty();
 
-        if (!hasRole) {
+        if (!hasRole && !privilegeIndexEnabled) {
             return relationshipManager.inheritsPrivileges(assignee, role);
         }
 
@@ -0,0 +1,34 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.spi;
+
+/**
+ * <p>Optionally implemented by a {@link org.picketlink.idm.RelationshipManager} that may answer
+ * {@link org.picketlink.idm.RelationshipManager#inheritsPrivileges(org.picketlink.idm.model.IdentityType, org.picketlink.idm.model.IdentityType)}
+ * from an index, without querying the stores. Callers must assume there is no index when the relationship manager does
+ * not implement this interface.</p>
+ *
+ * @author Pedro Igor
+ */
+public interface PrivilegeIndexSupport {
+
+    /**
+     * @return True if inherited privileges are resolved from an index. Otherwise, each check queries the stores.
+     */
+    boolean isPrivilegeIndexEnabled();
+}
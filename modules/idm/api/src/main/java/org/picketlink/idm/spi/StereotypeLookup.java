@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.spi;
+
+import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.config.StereotypeRegistry;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+
+import java.util.List;
+
+/**
+ * <p>Optionally implemented by a {@link org.picketlink.idm.PartitionManager} to resolve identity types by stereotype
+ * without scanning its configuration on every call. Callers must fall back to the configuration when the partition
+ * manager does not implement this interface.</p>
+ *
+ * @author Pedro Igor
+ */
+public interface StereotypeLookup {
+
+    /**
+     * <p>Returns the {@link StereotypeRegistry} computed from the configuration when the partition manager was
+     * built.</p>
+     *
+     * @return
+     */
+    StereotypeRegistry getStereotypeRegistry();
+
+    /**
+     * <p>Looks up, from all partitions, the identity types with the given stereotype and name. At most one identity type
+     * of each supported type is returned for each partition.</p>
+     *
+     * @param stereotype The stereotype of the identity types. Only {@link IdentityStereotype.Stereotype#ROLE} and
+     * {@link IdentityStereotype.Stereotype#GROUP} are supported.
+     * @param name The name of the identity types, as defined by the corresponding {@link org.picketlink.idm.model.annotation.StereotypeProperty}.
+     *
+     * @return A list with the identity types found, or an empty list. The identity types are not shared with other
+     * callers.
+     *
+     * @throws IdentityManagementException If any error occurs during the lookup.
+     */
+    List<IdentityType> lookupIdentityTypesByName(IdentityStereotype.Stereotype stereotype, String name) throws IdentityManagementException;
+}
@@ -35,6 +35,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static org.picketlink.common.util.StringUtil.isNullOrEmpty;
 import static org.picketlink.idm.IDMInternalLog.FILE_STORE_LOGGER;
@@ -55,6 +58,8 @@ public class FileDataSource {
      */
     private static final int FLUSH_BYTE_BUFFER = 1024;
 
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
     private static final String DEFAULT_WORKING_DIR = System.getProperty("java.io.tmpdir", File.separator + "tmp")
             + File.separator + "pl-idm";
 
@@ -106,6 +111,16 @@ public class FileDataSource {
 
     private ExecutorService executorService;
 
+    /**
+     * <p>
+     * Holds the {@link FileJournal} for each data file, if journaling is enabled. Journals are mapped by the name of their
+     * data files.
+     * </p>
+     */
+    private final Map<String, FileJournal> journals = new ConcurrentHashMap<String, FileJournal>();
+
+    private ScheduledExecutorService compactionService;
+
     FileDataSource(FileIdentityStoreConfiguration configuration) {
         this.configuration = configuration;
         init();
@@ -133,35 +148,61 @@ public class FileDataSource {
 
     void flushPartitions(FilePartition partition) {
         initPartition(partition.getId());
-        flush(PARTITIONS_FILE_NAME, getPartitions());
+        flush(PARTITIONS_FILE_NAME, getPartitions(), partition.getId());
     }
 
     void flushAttributedTypes(FilePartition partition) {
         flush(partition, IDENTITY_TYPES__FILE_NAME, partition.getIdentityTypes());
     }
 
+    void flushAttributedTypes(FilePartition partition, String type, String identifier) {
+        flush(partition, IDENTITY_TYPES__FILE_NAME, partition.getIdentityTypes(), type, identifier);
+    }
+
     void flushRelationships() {
         flush(RELATIONSHIPS_FILE_NAME, getRelationships());
     }
 
+    void flushRelationships(String type, String identifier) {
+        flush(RELATIONSHIPS_FILE_NAME, getRelationships(), type, identifier);
+    }
+
     void flushAttributes() {
         flush(ATTRIBUTES_FILE_NAME, getAttributes());
     }
 
+    void flushAttributes(String identifier) {
+        flush(ATTRIBUTES_FILE_NAME, getAttributes(), identifier);
+    }
+
     void flushAttributedTypes() {
         flush(ATTRIBUTED_TYPES__FILE_NAME, getAttributedTypes());
     }
 
+    void flushAttributedTypes(String identifier) {
+        flush(ATTRIBUTED_TYPES__FILE_NAME, getAttributedTypes(), identifier);
+    }
+
     void flushCredentials(FilePartition partition) {
         FilePartition filePartition = getPartitions().get(partition.getId());
         flush(filePartition, CREDENTIALS_FILE_NAME, filePartition.getCredentials());
     }
 
+    void flushCredentials(FilePartition partition, String accountId) {
+        FilePartition filePartition = getPartitions().get(partition.getId());
+        flush(filePartition, CREDENTIALS_FILE_NAME, filePartition.getCredentials(), accountId);
+    }
+
     void flushPermissions(FilePartition partition) {
         FilePartition filePartition = getPartitions().get(partition.getId());
         flush(filePartition, PERMISSIONS_FILE_NAME, filePartition.getPermissions());
     }
 
+    void flushPermissions(FilePartition partition, String identityTypeId) {
+        FilePartition filePartition = getPartitions().get(partition.getId());
+        flush(filePartition, PERMISSIONS_FILE_NAME, filePartition.getPermissions(), identityTypeId);
+    }
+
     /**
      * <p>
      * Initializes the working directory.
@@ -194,47 +235,123 @@ public class FileDataSource {
 
         loadPartitions(partitionsFile);
 
-        Map<String, Map<String, FileRelationship>> relationships =
-                readObject(createFileIfNotExists(getWorkingDirFile(RELATIONSHIPS_FILE_NAME)));
+        this.relationships = load(RELATIONSHIPS_FILE_NAME);
+        this.attributes = load(ATTRIBUTES_FILE_NAME);
+        this.attributedTypes = load(ATTRIBUTED_TYPES__FILE_NAME);
 
-        if (relationships == null) {
-            relationships = new ConcurrentHashMap<String, Map<String, FileRelationship>>();
+        if (this.configuration.isAsyncWrite()) {
+            FILE_STORE_LOGGER.fileAsyncWriteEnabled(this.configuration.getAsyncThreadPool());
+            this.executorService = Executors.newFixedThreadPool(this.configuration.getAsyncThreadPool());
         }
 
-        this.relationships = relationships;
+        if (this.configuration.isJournal()) {
+            this.compactionService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "picketlink-file-store-compaction");
 
-        Map<String, FileAttribute> attributes =
-                readObject(createFileIfNotExists(getWorkingDirFile(ATTRIBUTES_FILE_NAME)));
+                    thread.setDaemon(true);
 
-        if (attributes == null) {
-            attributes = new ConcurrentHashMap<String, FileAttribute>();
+                    return thread;
+                }
+            });
+
+            long interval = this.configuration.getJournalCompactionInterval();
+
+            this.compactionService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    compactJournals();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * <p>
+     * Loads the {@link Map} stored in the given data file. If journaling is enabled, the journal of the data file is
+     * replayed on top of the loaded data.
+     * </p>
+     *
+     * @param fileName
+     * @return
+     */
+    private <T extends Map> T load(String fileName) {
+        File file = createFileIfNotExists(getWorkingDirFile(fileName));
+        Map data = readObject(file);
+
+        if (data == null) {
+            data = new ConcurrentHashMap();
         }
 
-        this.attributes = attributes;
+        if (this.configuration.isJournal()) {
+            FileJournal journal = new FileJournal(file);
+
+            journal.replay(data);
 
-        Map<String, FileAttributedType> attrubtedTypes =
-                readObject(createFileIfNotExists(getWorkingDirFile(ATTRIBUTED_TYPES__FILE_NAME)));
+            FileJournal previous = this.journals.put(fileName, journal);
 
-        if (attrubtedTypes == null) {
-            attrubtedTypes = new ConcurrentHashMap<String, FileAttributedType>();
+            if (previous != null) {
+                previous.close();
+            }
         }
 
-        this.attributedTypes = attrubtedTypes;
+        return (T) data;
+    }
 
-        if (this.configuration.isAsyncWrite()) {
-            FILE_STORE_LOGGER.fileAsyncWriteEnabled(this.configuration.getAsyncThreadPool());
-            this.executorService = Executors.newFixedThreadPool(this.configuration.getAsyncThreadPool());
+    private void compactJournals() {
+        for (FileJournal journal : this.journals.values()) {
+            try {
+                if (journal.getRecordCount() >= this.configuration.getJournalCompactionThreshold()) {
+                    journal.compact();
+                }
+            } catch (Exception e) {
+                FILE_STORE_LOGGER.errorf(e, "Error compacting journal.");
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Stops compacting journals, waits for pending asynchronous writes and closes the journals. This data source can
+     * not be used after it is closed.
+     * </p>
+     */
+    void close() {
+        if (this.compactionService != null) {
+            this.compactionService.shutdown();
+            awaitTermination(this.compactionService);
+        }
+
+        if (this.executorService != null) {
+            this.executorService.shutdown();
+            awaitTermination(this.executorService);
+        }
+
+        for (FileJournal journal : this.journals.values()) {
+            journal.close();
+        }
+
+        this.journals.clear();
+    }
+
+    private void awaitTermination(ExecutorService executorService) {
+        try {
+            if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                FILE_STORE_LOGGER.warnf("File store tasks not completed after %s ms, closing anyway.", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
         }
     }
 
     private void loadPartitions(File partitionsFile) {
-        this.partitions = readObject(partitionsFile);
+        this.partitions = load(PARTITIONS_FILE_NAME);
 
-        if (this.partitions == null) {
+        if (this.partitions.isEmpty()) {
             if (isDebugEnabled()) {
                 FILE_STORE_LOGGER.debugf("No partitions to load from %s", partitionsFile.getPath());
             }
-            this.partitions = new ConcurrentHashMap<String, FilePartition>();
         } else {
             if (isDebugEnabled()) {
                 FILE_STORE_LOGGER.debugf("Loading [%s] Partition(s) from %s", this.partitions.size(), partitionsFile.getPath());
@@ -255,13 +372,7 @@ public class FileDataSource {
             FILE_STORE_LOGGER.debugf("Initializing Partition [%s] with id [%s].", filePartition.getEntry().getName(), partitionId);
         }
 
-        File agentsFile = createFileIfNotExists(getWorkingDirFile(partitionId + File.separator + IDENTITY_TYPES__FILE_NAME));
-
-        Map<String, Map<String, FileIdentityType>> identityTypes = readObject(agentsFile);
-
-        if (identityTypes == null) {
-            identityTypes = new ConcurrentHashMap<String, Map<String, FileIdentityType>>();
-        }
+        Map<String, Map<String, FileIdentityType>> identityTypes = load(partitionId + File.separator + IDENTITY_TYPES__FILE_NAME);
 
         filePartition.setIdentityTypes(identityTypes);
 
@@ -269,13 +380,7 @@ public class FileDataSource {
             FILE_STORE_LOGGER.debugf("Loaded Identity Types [%s] for Partition [%s].", filePartition.getIdentityTypes().size(), filePartition.getId());
         }
 
-        File credentialsFile = createFileIfNotExists(getWorkingDirFile(partitionId + File.separator + CREDENTIALS_FILE_NAME));
-
-        Map<String, Map<String, List<FileCredentialStorage>>> credentials = readObject(credentialsFile);
-
-        if (credentials == null) {
-            credentials = new ConcurrentHashMap<String, Map<String, List<FileCredentialStorage>>>();
-        }
+        Map<String, Map<String, List<FileCredentialStorage>>> credentials = load(partitionId + File.separator + CREDENTIALS_FILE_NAME);
 
         filePartition.setCredentials(credentials);
 
@@ -283,13 +388,7 @@ public class FileDataSource {
             FILE_STORE_LOGGER.debugf("Loaded Credentials [%s] for Partition [%s].", filePartition.getCredentials().size(), filePartition.getId());
         }
 
-        File permissionsFile = createFileIfNotExists(getWorkingDirFile(partitionId + File.separator + PERMISSIONS_FILE_NAME));
-
-        Map<String, List<FilePermission>> permissions = readObject(permissionsFile);
-
-        if (permissions == null) {
-            permissions = new ConcurrentHashMap<String, List<FilePermission>>();
-        }
+        Map<String, List<FilePermission>> permissions = load(partitionId + File.separator + PERMISSIONS_FILE_NAME);
 
         filePartition.setPermissions(permissions);
 
@@ -312,6 +411,10 @@ public class FileDataSource {
         flush(partition.getId() + File.separator + fileName, object);
     }
 
+    private void flush(final FilePartition partition, final String fileName, final Map object, final String... path) {
+        flush(partition.getId() + File.separator + fileName, object, path);
+    }
+
     private void flush(final String fileName, final Object object) {
         if (this.configuration.isAsyncWrite()) {
             this.executorService.execute(new Runnable() {
@@ -326,7 +429,49 @@ public class FileDataSource {
         }
     }
 
-    private synchronized void performFlush(final String fileName, final Object object) {
+    /**
+     * <p>
+     * Flushes the entry identified by the given path, the keys of the nested maps holding the entry. If journaling is
+     * enabled, only the entry is appended to the journal. Otherwise, the whole data file is rewritten.
+     * </p>
+     *
+     * @param fileName
+     * @param object
+     * @param path
+     */
+    private void flush(final String fileName, final Map object, final String... path) {
+        final FileJournal journal = this.journals.get(fileName);
+
+        if (journal == null) {
+            flush(fileName, object);
+            return;
+        }
+
+        if (this.configuration.isAsyncWrite()) {
+            this.executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    journal.sync(journal.append(object, path));
+                }
+            });
+        } else {
+            journal.sync(journal.append(object, path));
+        }
+    }
+
+    private void performFlush(final String fileName, final Object object) {
+        FileJournal journal = this.journals.get(fileName);
+
+        if (journal != null) {
+            // the whole file is being written, the journal can be discarded
+            journal.compact((Map) object);
+        } else {
+            writeObject(fileName, object);
+        }
+    }
+
+    private synchronized void writeObject(final String fileName, final Object object) {
         ObjectOutputStream oos = null;
         ByteArrayOutputStream bos = null;
         RandomAccessFile randomAccessFile = null;
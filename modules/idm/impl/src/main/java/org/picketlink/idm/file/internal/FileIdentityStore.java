@@ -63,6 +63,7 @@ import org.picketlink.idm.spi.CredentialStore;
 import org.picketlink.idm.spi.IdentityContext;
 import org.picketlink.idm.spi.PartitionStore;
 
+import java.io.Closeable;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -73,6 +74,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
 import static java.util.Map.Entry;
 import static org.picketlink.common.properties.query.TypedPropertyCriteria.MatchOption;
@@ -97,10 +100,19 @@ import static org.picketlink.idm.internal.util.PermissionUtil.hasAttributes;
 public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreConfiguration>
     implements PartitionStore<FileIdentityStoreConfiguration>,
     CredentialStore<FileIdentityStoreConfiguration>,
-    AttributeStore<FileIdentityStoreConfiguration>, PermissionStore {
+    AttributeStore<FileIdentityStoreConfiguration>, PermissionStore, Closeable {
 
     private FileDataSource fileDataSource;
 
+    private final ConcurrentMap<String, FileIndex> identityTypeIndexes = new ConcurrentHashMap<String, FileIndex>();
+    private final FileIndex attributeIndex = new FileIndex();
+
+    /**
+     * Held while changing the stored identity types or attributes together with their indexes, and while taking the
+     * values from which an index is built, so that an index never misses a concurrent write.
+     */
+    private final Object indexLock = new Object();
+
     @Override
     public void setup(FileIdentityStoreConfiguration configuration) {
         super.setup(configuration);
@@ -108,6 +120,17 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
         this.fileDataSource = new FileDataSource(configuration);
     }
 
+    /**
+     * <p>Waits for pending asynchronous writes and releases the threads and files used by the store. The store can not
+     * be used after it is closed.</p>
+     */
+    @Override
+    public void close() {
+        if (this.fileDataSource != null) {
+            this.fileDataSource.close();
+        }
+    }
+
     @Override
     protected void removeFromRelationships(IdentityContext context, IdentityType identityType) {
         Map<String, Map<String, FileRelationship>> relationships = this.fileDataSource.getRelationships();
@@ -131,7 +154,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
 
         credentials.remove(account.getId());
 
-        this.fileDataSource.flushCredentials(filePartition);
+        this.fileDataSource.flushCredentials(filePartition, account.getId());
     }
 
     @Override
@@ -168,11 +191,21 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
 
             Map<String, FileIdentityType> identityTypes = filePartition.getIdentityTypes().get(attributedType.getClass().getName());
 
-            if (identityTypes != null) {
-                identityTypes.remove(identityType.getId());
+            synchronized (this.indexLock) {
+                if (identityTypes != null) {
+                    identityTypes.remove(identityType.getId());
+                }
+
+                FileIndex index = this.identityTypeIndexes.get(filePartition.getId());
+
+                if (index != null) {
+                    index.remove(identityType.getId());
+                }
+
+                this.attributeIndex.remove(identityType.getId());
             }
 
-            this.fileDataSource.flushAttributedTypes(filePartition);
+            this.fileDataSource.flushAttributedTypes(filePartition, attributedType.getClass().getName(), identityType.getId());
         } else if (Relationship.class.isInstance(attributedType)) {
             Map<String, FileRelationship> fileRelationships = this.fileDataSource.getRelationships()
                 .get(attributedType.getClass().getName());
@@ -183,10 +216,10 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
                 }
             }
 
-            this.fileDataSource.flushRelationships();
+            this.fileDataSource.flushRelationships(attributedType.getClass().getName(), attributedType.getId());
         } else {
             this.fileDataSource.getAttributedTypes().remove(attributedType.getId());
-            this.fileDataSource.flushAttributedTypes();
+            this.fileDataSource.flushAttributedTypes(attributedType.getId());
         }
     }
 
@@ -264,6 +297,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
         FilePartition filePartition = resolve(partition.getClass(), partition.getName());
 
         this.fileDataSource.getPartitions().remove(filePartition.getId());
+        this.identityTypeIndexes.remove(filePartition.getId());
         this.fileDataSource.flushPartitions();
     }
 
@@ -273,7 +307,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
 
         credentials.add(new FileCredentialStorage(storage));
 
-        flushCredentials(context.getPartition());
+        flushCredentials(context.getPartition(), account);
     }
 
     @Override
@@ -309,7 +343,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
             credentials.clear();
         }
 
-        flushCredentials(context.getPartition());
+        flushCredentials(context.getPartition(), account);
     }
 
     @Override
@@ -351,50 +385,62 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
             return result;
         }
 
-        for (FileIdentityType storedIdentityType : typedIdentityTypes.values()) {
-            IdentityType storedEntry = storedIdentityType.getEntry();
+        for (Condition condition : identityQuery.getConditions()) {
+            if (IdentityType.ID.equals(condition.getParameter())) {
+                if (!EqualCondition.class.isInstance(condition)) {
+                    throw new IdentityManagementException("Only equality conditions are allowed when queryng based on the identifier.");
+                }
 
-            boolean match = identityQuery.getConditions().isEmpty();
+                EqualCondition equalCondition = (EqualCondition) condition;
+                Object value = equalCondition.getValue();
 
-            for (Condition condition : identityQuery.getConditions()) {
-                QueryParameter queryParameter = condition.getParameter();
+                if (value != null) {
+                    FileIdentityType fileAttributedType = typedIdentityTypes.get(value);
 
-                if (IdentityType.ID.equals(queryParameter)) {
-                    if (!EqualCondition.class.isInstance(condition)) {
-                        throw new IdentityManagementException("Only equality conditions are allowed when queryng based on the identifier.");
+                    if (fileAttributedType != null) {
+                        result.add(cloneAttributedType(context, (V) fileAttributedType.getEntry()));
                     }
+                }
 
-                    EqualCondition equalCondition = (EqualCondition) condition;
-                    Object value = equalCondition.getValue();
+                return result;
+            }
+        }
 
-                    if (value != null) {
-                        FileIdentityType fileAttributedType = typedIdentityTypes.get(value);
+        // properties and patterns are resolved only once per query, instead of for each stored entry
+        Map<Condition, Property<Serializable>> properties = new HashMap<Condition, Property<Serializable>>();
+        Map<Condition, Pattern> patterns = new HashMap<Condition, Pattern>();
 
-                        if (fileAttributedType != null) {
-                            result.add(cloneAttributedType(context, (V) fileAttributedType.getEntry()));
-                        }
-                    }
+        for (Condition condition : identityQuery.getConditions()) {
+            QueryParameter queryParameter = condition.getParameter();
 
-                    return result;
-                }
+            if (AttributeParameter.class.isInstance(queryParameter)) {
+                String attributeParameterName = ((AttributeParameter) queryParameter).getName();
+
+                properties.put(condition, getNamedProperty(identityQuery.getIdentityType(), attributeParameterName));
+            }
+        }
+
+        for (FileIdentityType storedIdentityType : getCandidates(filePartition, typedIdentityTypes, identityQuery, properties)) {
+            IdentityType storedEntry = storedIdentityType.getEntry();
+
+            boolean match = identityQuery.getConditions().isEmpty();
+
+            for (Condition condition : identityQuery.getConditions()) {
+                QueryParameter queryParameter = condition.getParameter();
 
                 if (AttributeParameter.class.isInstance(queryParameter)) {
                     AttributeParameter attributeParameter = (AttributeParameter) queryParameter;
-                    String attributeParameterName = attributeParameter.getName();
-
-                    Property<Serializable> property = PropertyQueries.<Serializable>createQuery(identityQuery.getIdentityType())
-                        .addCriteria(new NamedPropertyCriteria(attributeParameterName))
-                        .getFirstResult();
+                    Property<Serializable> property = properties.get(condition);
 
-                    if (property != null && property.getName().equals(attributeParameterName)) {
+                    if (property != null) {
                         Serializable storedValue = property.getValue(storedEntry);
 
-                        match = matches(condition, storedValue);
+                        match = matches(condition, storedValue, patterns);
                     } else {
                         loadAttributes(context, storedEntry);
-                        Attribute<Serializable> attribute = storedEntry.getAttribute(attributeParameterName);
+                        Attribute<Serializable> attribute = storedEntry.getAttribute(attributeParameter.getName());
 
-                        match = attribute != null ? matches(condition, attribute.getValue()) : false;
+                        match = attribute != null ? matches(condition, attribute.getValue(), patterns) : false;
                     }
 
                     if (!match) {
@@ -413,14 +459,164 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
 
         // Apply pagination
         if (identityQuery.getLimit() > 0) {
-            int numberOfItems = Math.min(identityQuery.getLimit(), result.size() - identityQuery.getOffset());
-            result = result.subList(identityQuery.getOffset(), identityQuery.getOffset() + numberOfItems);
+            int fromIndex = Math.min(identityQuery.getOffset(), result.size());
+            int numberOfItems = Math.min(identityQuery.getLimit(), result.size() - fromIndex);
+            result = result.subList(fromIndex, fromIndex + numberOfItems);
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Returns the stored identity types that may satisfy the conditions of the given query. The indexes of the
+     * partition and attributes are used to narrow the candidates, when possible. Otherwise, all stored identity types
+     * are returned.</p>
+     */
+    private Collection<FileIdentityType> getCandidates(FilePartition filePartition,
+                                                      Map<String, FileIdentityType> typedIdentityTypes,
+                                                      IdentityQuery<?> identityQuery,
+                                                      Map<Condition, Property<Serializable>> properties) {
+        Set<String> candidates = null;
+
+        for (Condition condition : identityQuery.getConditions()) {
+            QueryParameter queryParameter = condition.getParameter();
+
+            if (IdentityType.PARTITION.equals(queryParameter) || !AttributeParameter.class.isInstance(queryParameter)
+                || !isIndexable(condition)) {
+                continue;
+            }
+
+            String name = ((AttributeParameter) queryParameter).getName();
+            Set<String> identifiers;
+
+            if (properties.get(condition) != null) {
+                identifiers = getIdentityTypeIndex(filePartition, name).find(name, condition);
+            } else {
+                identifiers = getAttributeIndex(name).find(name, condition);
+            }
+
+            if (identifiers != null) {
+                if (candidates == null) {
+                    candidates = identifiers;
+                } else {
+                    candidates.retainAll(identifiers);
+                }
+            }
+        }
+
+        if (candidates == null) {
+            return typedIdentityTypes.values();
+        }
+
+        List<FileIdentityType> result = new ArrayList<FileIdentityType>();
+
+        for (String identifier : candidates) {
+            FileIdentityType fileIdentityType = typedIdentityTypes.get(identifier);
+
+            if (fileIdentityType != null) {
+                result.add(fileIdentityType);
+            }
         }
 
         return result;
     }
 
-    private <V extends IdentityType> boolean matches(Condition condition, Serializable storedValue) {
+    private boolean isIndexable(Condition condition) {
+        return EqualCondition.class.isInstance(condition)
+            || GreaterThanCondition.class.isInstance(condition)
+            || LessThanCondition.class.isInstance(condition)
+            || BetweenCondition.class.isInstance(condition);
+    }
+
+    private FileIndex getIdentityTypeIndex(FilePartition filePartition, String propertyName) {
+        FileIndex index = this.identityTypeIndexes.get(filePartition.getId());
+
+        if (index == null) {
+            FileIndex newIndex = new FileIndex();
+
+            index = this.identityTypeIndexes.putIfAbsent(filePartition.getId(), newIndex);
+
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+
+        if (!index.isBuilt(propertyName)) {
+            synchronized (this.indexLock) {
+                if (!index.isBuilt(propertyName)) {
+                    Map<String, Serializable> values = new HashMap<String, Serializable>();
+
+                    for (Map<String, FileIdentityType> identityTypes : filePartition.getIdentityTypes().values()) {
+                        for (FileIdentityType fileIdentityType : identityTypes.values()) {
+                            IdentityType identityType = fileIdentityType.getEntry();
+                            Property<Serializable> property = getNamedProperty(identityType.getClass(), propertyName);
+
+                            if (property != null) {
+                                values.put(identityType.getId(), property.getValue(identityType));
+                            }
+                        }
+                    }
+
+                    index.build(propertyName, values);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    private FileIndex getAttributeIndex(String attributeName) {
+        if (!this.attributeIndex.isBuilt(attributeName)) {
+            synchronized (this.indexLock) {
+                if (!this.attributeIndex.isBuilt(attributeName)) {
+                    Map<String, Serializable> values = new HashMap<String, Serializable>();
+
+                    for (Entry<String, FileAttribute> entry : this.fileDataSource.getAttributes().entrySet()) {
+                        for (Attribute<? extends Serializable> attribute : entry.getValue().getEntry()) {
+                            if (attribute.getName().equals(attributeName)) {
+                                values.put(entry.getKey(), attribute.getValue());
+                            }
+                        }
+                    }
+
+                    this.attributeIndex.build(attributeName, values);
+                }
+            }
+        }
+
+        return this.attributeIndex;
+    }
+
+    private void updateIndexes(FilePartition filePartition, IdentityType identityType) {
+        FileIndex index = this.identityTypeIndexes.get(filePartition.getId());
+
+        if (index != null) {
+            for (String propertyName : index.getNames()) {
+                Property<Serializable> property = getNamedProperty(identityType.getClass(), propertyName);
+                Serializable value = null;
+
+                if (property != null) {
+                    value = property.getValue(identityType);
+                }
+
+                index.update(propertyName, identityType.getId(), value);
+            }
+        }
+    }
+
+    private Property<Serializable> getNamedProperty(Class<?> type, String propertyName) {
+        Property<Serializable> property = PropertyQueries.<Serializable>createQuery(type)
+            .addCriteria(new NamedPropertyCriteria(propertyName))
+            .getFirstResult();
+
+        if (property != null && property.getName().equals(propertyName)) {
+            return property;
+        }
+
+        return null;
+    }
+
+    private <V extends IdentityType> boolean matches(Condition condition, Serializable storedValue, Map<Condition, Pattern> patterns) {
         boolean match = false;
 
         if (storedValue != null) {
@@ -432,13 +628,20 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
                 String parameterValue = (String) likeCondition.getValue();
 
                 if (parameterValue.startsWith("%") && parameterValue.endsWith("%")) {
-                    String pattern = parameterValue.toLowerCase();
+                    Pattern pattern = patterns.get(condition);
 
-                    pattern = pattern.replace(".", "\\.");
-                    pattern = pattern.replace("%", ".*");
-                    pattern = pattern.replace("?", ".");
+                    if (pattern == null) {
+                        String regex = parameterValue.toLowerCase();
 
-                    match = storedValue.toString().toLowerCase().matches(pattern);
+                        regex = regex.replace(".", "\\.");
+                        regex = regex.replace("%", ".*");
+                        regex = regex.replace("?", ".");
+
+                        pattern = Pattern.compile(regex);
+                        patterns.put(condition, pattern);
+                    }
+
+                    match = pattern.matcher(storedValue.toString().toLowerCase()).matches();
                 }
 
             } else if (GreaterThanCondition.class.isInstance(condition)) {
@@ -614,11 +817,15 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
             fileAttribute = new FileAttribute(type);
         }
 
-        removeAttribute(context, type, attribute.getName());
-        fileAttribute.getEntry().add(attribute);
+        synchronized (this.indexLock) {
+            removeAttribute(context, type, attribute.getName());
+            fileAttribute.getEntry().add(attribute);
+
+            this.fileDataSource.getAttributes().put(type.getId(), fileAttribute);
+            this.attributeIndex.update(attribute.getName(), type.getId(), attribute.getValue());
+        }
 
-        this.fileDataSource.getAttributes().put(type.getId(), fileAttribute);
-        this.fileDataSource.flushAttributes();
+        this.fileDataSource.flushAttributes(type.getId());
     }
 
     @Override
@@ -640,16 +847,20 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
     public void removeAttribute(IdentityContext context, AttributedType type, String attributeName) {
         FileAttribute fileAttribute = getFileAttribute(type);
 
-        if (fileAttribute != null) {
-            for (Attribute<? extends Serializable> attribute : new ArrayList<Attribute<? extends Serializable>>
-                (fileAttribute.getEntry())) {
-                if (attribute.getName().equals(attributeName)) {
-                    fileAttribute.getEntry().remove(attribute);
+        synchronized (this.indexLock) {
+            if (fileAttribute != null) {
+                for (Attribute<? extends Serializable> attribute : new ArrayList<Attribute<? extends Serializable>>
+                    (fileAttribute.getEntry())) {
+                    if (attribute.getName().equals(attributeName)) {
+                        fileAttribute.getEntry().remove(attribute);
+                    }
                 }
             }
+
+            this.attributeIndex.update(attributeName, type.getId(), null);
         }
 
-        this.fileDataSource.flushAttributes();
+        this.fileDataSource.flushAttributes(type.getId());
     }
 
     @Override
@@ -663,6 +874,21 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
         }
     }
 
+    @Override
+    public void loadAttributes(IdentityContext context, Collection<? extends AttributedType> attributedTypes) {
+        Map<String, FileAttribute> attributes = this.fileDataSource.getAttributes();
+
+        for (AttributedType attributedType : attributedTypes) {
+            FileAttribute fileAttribute = attributes.get(attributedType.getId());
+
+            if (fileAttribute != null) {
+                for (Attribute<? extends Serializable> attribute : fileAttribute.getEntry()) {
+                    attributedType.setAttribute(attribute);
+                }
+            }
+        }
+    }
+
     private FileAttribute getFileAttribute(final AttributedType type) {
         return this.fileDataSource.getAttributes().get(type.getId());
     }
@@ -758,7 +984,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
 
         storedRelationships.put(relationship.getId(), new FileRelationship(relationship));
 
-        this.fileDataSource.flushRelationships();
+        this.fileDataSource.flushRelationships(type, relationship.getId());
     }
 
     private void storeIdentityType(IdentityContext context, IdentityType identityType) {
@@ -771,9 +997,13 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
             filePartition.getIdentityTypes().put(identityType.getClass().getName(), identityTypes);
         }
 
-        identityTypes.put(identityType.getId(), new FileIdentityType(identityType));
+        synchronized (this.indexLock) {
+            identityTypes.put(identityType.getId(), new FileIdentityType(identityType));
+
+            updateIndexes(filePartition, identityType);
+        }
 
-        this.fileDataSource.flushAttributedTypes(filePartition);
+        this.fileDataSource.flushAttributedTypes(filePartition, identityType.getClass().getName(), identityType.getId());
     }
 
     private boolean matchAttribute(AttributedType attributedType, String parameterName, Object[] valuesToCompare) {
@@ -809,8 +1039,8 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
         return false;
     }
 
-    private void flushCredentials(Partition partition) {
-        this.fileDataSource.flushCredentials(resolve(partition.getClass(), partition.getName()));
+    private void flushCredentials(Partition partition, Account account) {
+        this.fileDataSource.flushCredentials(resolve(partition.getClass(), partition.getName()), account.getId());
     }
 
     @Override
@@ -876,7 +1106,7 @@ public class FileIdentityStore extends AbstractIdentityStore<FileIdentityStoreCo
             grantPermission(context, assignee, resource, newOperations);
         }
 
-        this.fileDataSource.flushPermissions(filePartition);
+        this.fileDataSource.flushPermissions(filePartition, assignee.getId());
 
         return true;
     }
@@ -0,0 +1,301 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.file.internal;
+
+import org.picketlink.idm.query.Condition;
+import org.picketlink.idm.query.internal.BetweenCondition;
+import org.picketlink.idm.query.internal.EqualCondition;
+import org.picketlink.idm.query.internal.GreaterThanCondition;
+import org.picketlink.idm.query.internal.LessThanCondition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * <p>In-memory secondary index used by the {@link FileIdentityStore} to avoid scanning all stored entries when
+ * executing queries.</p>
+ *
+ * <p>For each indexed name (a property or attribute name), the identifiers of the stored entries are kept in a map
+ * sorted by value. The index supports equality and range lookups. Indexes are built on demand, the first time a
+ * query uses a name, and are kept up to date on every write after that.</p>
+ *
+ * <p>A name can only be indexed if all of its values are {@link Comparable} and of the same type. Array values (multi-valued
+ * attributes) are never indexed, since they can not be matched by equality or range conditions.</p>
+ *
+ * <p>Lookups only narrow the set of candidates. Callers are still responsible for evaluating the query conditions
+ * against each candidate.</p>
+ *
+ * @author Pedro Igor
+ */
+class FileIndex {
+
+    /**
+     * <p>Marks names whose values can not be indexed.</p>
+     */
+    private static final NavigableMap<Comparable, Set<String>> NOT_INDEXABLE = new ConcurrentSkipListMap<Comparable, Set<String>>();
+
+    private final ConcurrentMap<String, NavigableMap<Comparable, Set<String>>> indexes =
+        new ConcurrentHashMap<String, NavigableMap<Comparable, Set<String>>>();
+    private final ConcurrentMap<String, Map<String, Comparable>> indexedValues =
+        new ConcurrentHashMap<String, Map<String, Comparable>>();
+    private final ConcurrentMap<String, Class<?>> valueTypes = new ConcurrentHashMap<String, Class<?>>();
+
+    /**
+     * <p>Builds the index for the given name, if not built yet. The index is only visible to {@link #find(String, Condition)}
+     * once it holds all the given values.</p>
+     *
+     * @param name The property or attribute name.
+     * @param values The current values, mapped by the identifier of their entries.
+     */
+    synchronized void build(String name, Map<String, ?> values) {
+        if (this.indexes.containsKey(name)) {
+            return;
+        }
+
+        NavigableMap<Comparable, Set<String>> index = new ConcurrentSkipListMap<Comparable, Set<String>>();
+
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            if (!add(name, index, entry.getKey(), entry.getValue())) {
+                index = NOT_INDEXABLE;
+                this.valueTypes.remove(name);
+                break;
+            }
+        }
+
+        this.indexes.put(name, index);
+    }
+
+    /**
+     * <p>Indicates if the index for the given name was already built.</p>
+     *
+     * @param name
+     *
+     * @return
+     */
+    boolean isBuilt(String name) {
+        return this.indexes.containsKey(name);
+    }
+
+    /**
+     * <p>Returns the names for which an index was already built.</p>
+     *
+     * @return
+     */
+    Set<String> getNames() {
+        return this.indexes.keySet();
+    }
+
+    /**
+     * <p>Updates the value indexed for the given name and entry. A null value removes the entry from the index.</p>
+     *
+     * @param name
+     * @param id
+     * @param value
+     */
+    synchronized void update(String name, String id, Object value) {
+        if (!this.indexes.containsKey(name)) {
+            return;
+        }
+
+        removeValue(name, id);
+
+        if (!add(name, this.indexes.get(name), id, value)) {
+            this.indexes.put(name, NOT_INDEXABLE);
+            this.valueTypes.remove(name);
+        }
+    }
+
+    /**
+     * <p>Removes the given entry from all indexes.</p>
+     *
+     * @param id
+     */
+    synchronized void remove(String id) {
+        for (String name : this.indexes.keySet()) {
+            removeValue(name, id);
+        }
+    }
+
+    /**
+     * <p>Returns the identifiers of the entries that may satisfy the given condition, or null if the condition can
+     * not be resolved using the index.</p>
+     *
+     * @param name
+     * @param condition
+     *
+     * @return
+     */
+    Set<String> find(String name, Condition condition) {
+        NavigableMap<Comparable, Set<String>> index = this.indexes.get(name);
+
+        if (index == null || index == NOT_INDEXABLE) {
+            return null;
+        }
+
+        if (EqualCondition.class.isInstance(condition)) {
+            Object value = ((EqualCondition) condition).getValue();
+
+            if (!isSearchable(name, value)) {
+                return null;
+            }
+
+            Set<String> ids = index.get(value);
+
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+
+            return new HashSet<String>(ids);
+        } else if (GreaterThanCondition.class.isInstance(condition)) {
+            GreaterThanCondition greaterThanCondition = (GreaterThanCondition) condition;
+            Object value = greaterThanCondition.getValue();
+
+            if (!isSearchable(name, value)) {
+                return null;
+            }
+
+            return collect(index.tailMap((Comparable) value, greaterThanCondition.isOrEqual()).values());
+        } else if (LessThanCondition.class.isInstance(condition)) {
+            LessThanCondition lessThanCondition = (LessThanCondition) condition;
+            Object value = lessThanCondition.getValue();
+
+            if (!isSearchable(name, value)) {
+                return null;
+            }
+
+            return collect(index.headMap((Comparable) value, lessThanCondition.isOrEqual()).values());
+        } else if (BetweenCondition.class.isInstance(condition)) {
+            BetweenCondition betweenCondition = (BetweenCondition) condition;
+            Comparable x = betweenCondition.getX();
+            Comparable y = betweenCondition.getY();
+
+            if (!isSearchable(name, x) || !isSearchable(name, y)) {
+                return null;
+            }
+
+            if (x.compareTo(y) > 0) {
+                return Collections.emptySet();
+            }
+
+            return collect(index.subMap(x, true, y, true).values());
+        }
+
+        return null;
+    }
+
+    private boolean isSearchable(String name, Object value) {
+        if (value == null || !Comparable.class.isInstance(value)) {
+            return false;
+        }
+
+        Class<?> valueType = this.valueTypes.get(name);
+
+        // if nothing was indexed yet, there is nothing to match
+        return valueType == null || valueType.equals(value.getClass());
+    }
+
+    private Set<String> collect(Collection<Set<String>> values) {
+        Set<String> ids = new HashSet<String>();
+
+        for (Set<String> value : values) {
+            ids.addAll(value);
+        }
+
+        return ids;
+    }
+
+    /**
+     * <p>Adds the given value to the given index.</p>
+     *
+     * @return false if the value can not be indexed, in which case the name is no longer indexable.
+     */
+    private boolean add(String name, NavigableMap<Comparable, Set<String>> index, String id, Object value) {
+        if (index == NOT_INDEXABLE || value == null || value.getClass().isArray()) {
+            return true;
+        }
+
+        Class<?> valueType = this.valueTypes.get(name);
+
+        if (!Comparable.class.isInstance(value) || (valueType != null && !valueType.equals(value.getClass()))) {
+            return false;
+        }
+
+        if (valueType == null) {
+            this.valueTypes.put(name, value.getClass());
+        }
+
+        Set<String> ids = index.get(value);
+
+        if (ids == null) {
+            ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            index.put((Comparable) value, ids);
+        }
+
+        ids.add(id);
+        getIndexedValues(id).put(name, (Comparable) value);
+
+        return true;
+    }
+
+    private void removeValue(String name, String id) {
+        Map<String, Comparable> values = this.indexedValues.get(id);
+
+        if (values == null) {
+            return;
+        }
+
+        Comparable value = values.remove(name);
+
+        if (values.isEmpty()) {
+            this.indexedValues.remove(id);
+        }
+
+        NavigableMap<Comparable, Set<String>> index = this.indexes.get(name);
+
+        if (value != null && index != NOT_INDEXABLE) {
+            Set<String> ids = index.get(value);
+
+            if (ids != null) {
+                ids.remove(id);
+
+                if (ids.isEmpty()) {
+                    index.remove(value);
+                }
+            }
+        }
+    }
+
+    private Map<String, Comparable> getIndexedValues(String id) {
+        Map<String, Comparable> values = this.indexedValues.get(id);
+
+        if (values == null) {
+            values = new ConcurrentHashMap<String, Comparable>();
+            this.indexedValues.put(id, values);
+        }
+
+        return values;
+    }
+}
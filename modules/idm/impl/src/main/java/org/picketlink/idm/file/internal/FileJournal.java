@@ -0,0 +1,304 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.file.internal;
+
+import org.picketlink.idm.IdentityManagementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static org.picketlink.idm.IDMInternalLog.FILE_STORE_LOGGER;
+
+/**
+ * <p>Append-only journal for a single data file managed by the {@link FileDataSource}.</p>
+ *
+ * <p>Each record references an entry of the data file by its path (the keys of the nested maps holding the entry)
+ * and its current value. A record without a value indicates that the entry was removed. Records are written with
+ * their length and checksum, so a record partially written during a crash is detected and discarded when the journal
+ * is replayed.</p>
+ *
+ * <p>Writers calling {@link #sync(long)} concurrently are committed as a group, with a single call to
+ * {@link FileChannel#force(boolean)} covering all records appended so far.</p>
+ *
+ * @author Pedro Igor
+ */
+class FileJournal {
+
+    private static final int RECORD_HEADER_LENGTH = 4 + 8;
+
+    private final File dataFile;
+    private final File journalFile;
+    private final Object syncLock = new Object();
+
+    private RandomAccessFile journal;
+    private FileChannel channel;
+    private Map<String, Object> data;
+    private int recordCount;
+    private long appendedSequence;
+    private long syncedSequence;
+
+    FileJournal(File dataFile) {
+        this.dataFile = dataFile;
+        this.journalFile = new File(dataFile.getPath() + ".journal");
+    }
+
+    /**
+     * <p>Applies all records from the journal to the given data, which was loaded from the data file. Records after a
+     * corrupted or incomplete record are discarded and the journal is truncated.</p>
+     *
+     * @param data
+     */
+    synchronized void replay(Map<String, Object> data) {
+        this.data = data;
+
+        try {
+            this.journal = new RandomAccessFile(this.journalFile, "rw");
+            this.channel = this.journal.getChannel();
+
+            long position = 0;
+            long length = this.channel.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+
+            while (position + RECORD_HEADER_LENGTH <= length) {
+                header.clear();
+                this.channel.read(header, position);
+                header.flip();
+
+                int recordLength = header.getInt();
+                long checksum = header.getLong();
+
+                if (recordLength <= 0 || position + RECORD_HEADER_LENGTH + recordLength > length) {
+                    break;
+                }
+
+                ByteBuffer record = ByteBuffer.allocate(recordLength);
+
+                this.channel.read(record, position + RECORD_HEADER_LENGTH);
+
+                if (checksum(record.array()) != checksum) {
+                    break;
+                }
+
+                apply(record.array());
+
+                position = position + RECORD_HEADER_LENGTH + recordLength;
+                this.recordCount++;
+            }
+
+            if (position < length) {
+                FILE_STORE_LOGGER.debugf("Discarding incomplete records from journal [%s].", this.journalFile.getPath());
+                this.channel.truncate(position);
+            }
+
+            this.channel.position(position);
+        } catch (Exception e) {
+            throw new IdentityManagementException("Could not replay journal [" + this.journalFile.getPath() + "].", e);
+        }
+    }
+
+    /**
+     * <p>Appends a record with the current value of the entry identified by the given path.</p>
+     *
+     * @param data The data being journaled.
+     * @param path
+     *
+     * @return The sequence of the appended record, to be used when calling {@link #sync(long)}.
+     */
+    synchronized long append(Map<String, Object> data, String... path) {
+        this.data = data;
+
+        Object value = data;
+
+        // the value is read while holding the lock, so the last record for an entry always reflects its latest state
+        for (int i = 0; i < path.length && value != null; i++) {
+            value = ((Map) value).get(path[i]);
+        }
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+
+            oos.writeObject(path);
+            oos.writeObject(value);
+            oos.close();
+
+            byte[] record = bos.toByteArray();
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH + record.length);
+
+            buffer.putInt(record.length);
+            buffer.putLong(checksum(record));
+            buffer.put(record);
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+
+            this.recordCount++;
+
+            return ++this.appendedSequence;
+        } catch (IOException e) {
+            throw new IdentityManagementException("Error appending to journal [" + this.journalFile.getPath() + "].", e);
+        }
+    }
+
+    /**
+     * <p>Forces all records up to the given sequence to the storage device.</p>
+     *
+     * @param sequence
+     */
+    void sync(long sequence) {
+        synchronized (this.syncLock) {
+            if (this.syncedSequence >= sequence) {
+                // already committed by another writer
+                return;
+            }
+
+            long target;
+            FileChannel channel;
+
+            synchronized (this) {
+                target = this.appendedSequence;
+                channel = this.channel;
+            }
+
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new IdentityManagementException("Error syncing journal [" + this.journalFile.getPath() + "].", e);
+            }
+
+            this.syncedSequence = target;
+        }
+    }
+
+    /**
+     * <p>Writes the given data to the data file and truncates the journal.</p>
+     *
+     * @param data
+     */
+    synchronized void compact(Map<String, Object> data) {
+        this.data = data;
+        compact();
+    }
+
+    /**
+     * <p>Writes the data last referenced by this journal to the data file and truncates the journal.</p>
+     */
+    synchronized void compact() {
+        File tempFile = new File(this.dataFile.getPath() + ".tmp");
+        RandomAccessFile snapshot = null;
+
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+
+            oos.writeObject(this.data);
+            oos.close();
+
+            snapshot = new RandomAccessFile(tempFile, "rw");
+            snapshot.setLength(0);
+            snapshot.getChannel().write(ByteBuffer.wrap(bos.toByteArray()));
+            snapshot.getChannel().force(true);
+            snapshot.close();
+            snapshot = null;
+
+            if (!tempFile.renameTo(this.dataFile)) {
+                // some platforms can not rename over an existing file
+                if (!this.dataFile.delete() || !tempFile.renameTo(this.dataFile)) {
+                    throw new IOException("Could not replace data file [" + this.dataFile.getPath() + "].");
+                }
+            }
+
+            this.channel.truncate(0);
+            this.channel.position(0);
+            this.channel.force(false);
+            this.recordCount = 0;
+        } catch (IOException e) {
+            throw new IdentityManagementException("Error compacting journal [" + this.journalFile.getPath() + "].", e);
+        } finally {
+            if (snapshot != null) {
+                try {
+                    snapshot.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    synchronized int getRecordCount() {
+        return this.recordCount;
+    }
+
+    synchronized void close() {
+        try {
+            if (this.journal != null) {
+                this.journal.close();
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void apply(byte[] record) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record));
+
+        try {
+            String[] path = (String[]) ois.readObject();
+            Object value = ois.readObject();
+            Map<String, Object> current = this.data;
+
+            for (int i = 0; i < path.length - 1; i++) {
+                Map<String, Object> next = (Map<String, Object>) current.get(path[i]);
+
+                if (next == null) {
+                    next = new ConcurrentHashMap<String, Object>();
+                    current.put(path[i], next);
+                }
+
+                current = next;
+            }
+
+            if (value == null) {
+                current.remove(path[path.length - 1]);
+            } else {
+                current.put(path[path.length - 1], value);
+            }
+        } finally {
+            ois.close();
+        }
+    }
+
+    private long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+
+        crc.update(record, 0, record.length);
+
+        return crc.getValue();
+    }
+}
@@ -30,7 +30,9 @@ import org.picketlink.idm.query.Sort;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -42,6 +44,9 @@ public class FileSortingComparator<T extends IdentityType> implements Comparator
 
     private IdentityQuery<T> identityQuery;
 
+    // properties are resolved only once for each type and parameter, instead of on every comparison
+    private final Map<String, List<Property<Serializable>>> properties = new HashMap<String, List<Property<Serializable>>>();
+
     public FileSortingComparator(IdentityQuery<T> identityQuery) {
         this.identityQuery = identityQuery;
     }
@@ -74,9 +79,7 @@ public class FileSortingComparator<T extends IdentityType> implements Comparator
     protected int sortByQueryParameter(QueryParameter queryParameter, T o1, T o2) {
         if (AttributeParameter.class.isInstance(queryParameter)) {
             AttributeParameter attributeParameter = (AttributeParameter) queryParameter;
-            List<Property<Serializable>> attributeProperties = PropertyQueries
-                    .<Serializable>createQuery(o1.getClass())
-                    .addCriteria(new NamedPropertyCriteria(attributeParameter.getName())).getResultList();
+            List<Property<Serializable>> attributeProperties = getProperties(o1.getClass(), attributeParameter.getName());
 
             if (!attributeProperties.isEmpty()) {
                 Property<Serializable> property = attributeProperties.get(0);
@@ -106,4 +109,19 @@ public class FileSortingComparator<T extends IdentityType> implements Comparator
 
         return -1;
     }
+
+    private List<Property<Serializable>> getProperties(Class<?> type, String name) {
+        String key = type.getName() + "#" + name;
+        List<Property<Serializable>> attributeProperties = this.properties.get(key);
+
+        if (attributeProperties == null) {
+            attributeProperties = PropertyQueries
+                    .<Serializable>createQuery(type)
+                    .addCriteria(new NamedPropertyCriteria(name)).getResultList();
+
+            this.properties.put(key, attributeProperties);
+        }
+
+        return attributeProperties;
+    }
 }
\ No newline at end of file
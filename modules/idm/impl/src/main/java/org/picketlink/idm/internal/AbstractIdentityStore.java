@@ -153,7 +153,8 @@ public abstract class AbstractIdentityStore<C extends IdentityStoreConfiguration
         identityQuery.setLimit(0);
         identityQuery.setOffset(0);
 
-        int resultCount = identityQuery.getResultList().size();
+        // only the results from this store are counted, the query may be executed against other stores as well
+        int resultCount = fetchQueryResults(context, identityQuery).size();
 
         identityQuery.setLimit(limit);
         identityQuery.setOffset(offset);
@@ -22,6 +22,7 @@ import org.picketlink.common.properties.query.AnnotatedPropertyCriteria;
 import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.common.properties.query.PropertyQuery;
 import org.picketlink.idm.IdGenerator;
+import org.picketlink.idm.IdentityCache;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
@@ -57,6 +58,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
 import static org.picketlink.idm.util.IDMUtil.configureDefaultPartition;
@@ -211,6 +216,31 @@ public class ContextualIdentityManager extends AbstractIdentityContext implement
         }
     }
 
+    @Override
+    public Future<Credentials> validateCredentialsAsync(final Credentials credentials) throws IdentityManagementException {
+        if (credentials == null) {
+            throw MESSAGES.nullArgument("Credentials");
+        }
+
+        CredentialValidationExecutor executor = (CredentialValidationExecutor) getParameter(
+            CredentialValidationExecutor.CREDENTIAL_VALIDATION_EXECUTOR_CTX_PARAMETER);
+
+        if (executor == null) {
+            FutureTask<Credentials> validation = new FutureTask<Credentials>(createValidation(this, credentials));
+
+            validation.run();
+
+            return validation;
+        }
+
+        try {
+            // this class is not thread-safe, validations executed by another thread use their own context
+            return executor.submit(createValidation(createValidationContext(), credentials));
+        } catch (RejectedExecutionException e) {
+            throw MESSAGES.credentialValidationRejected(credentials);
+        }
+    }
+
     @Override
     public void updateCredential(Account account, Object credential) {
         updateCredential(account, credential, null, null);
@@ -299,6 +329,28 @@ public class ContextualIdentityManager extends AbstractIdentityContext implement
         return new DefaultQueryBuilder(this, this.storeSelector);
     }
 
+    private Callable<Credentials> createValidation(final IdentityManager identityManager, final Credentials credentials) {
+        return new Callable<Credentials>() {
+            @Override
+            public Credentials call() throws Exception {
+                identityManager.validateCredentials(credentials);
+                return credentials;
+            }
+        };
+    }
+
+    private ContextualIdentityManager createValidationContext() {
+        ContextualIdentityManager identityManager = new ContextualIdentityManager(getPartition(), getEventBridge(),
+            getIdGenerator(), this.storeSelector, this.relationshipManager, this.permissionManager);
+
+        if (isParameterSet(IdentityCache.IDENTITY_CACHE_CTX_PARAMETER)) {
+            identityManager.setParameter(IdentityCache.IDENTITY_CACHE_CTX_PARAMETER,
+                getParameter(IdentityCache.IDENTITY_CACHE_CTX_PARAMETER));
+        }
+
+        return identityManager;
+    }
+
     private void checkUniqueness(IdentityType identityType) {
         if (identityType == null) {
             throw MESSAGES.nullArgument("IdentityType");
@@ -1,8 +1,11 @@
 package org.picketlink.idm.internal;
 
 import org.picketlink.idm.IdGenerator;
+import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.PermissionManager;
 import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.event.PermissionGrantedEvent;
+import org.picketlink.idm.event.PermissionRevokedEvent;
 import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.permission.Permission;
@@ -63,6 +66,7 @@ public class ContextualPermissionManager extends AbstractIdentityContext impleme
     public void grantPermission(IdentityType assignee, Object resource, String operation) {
         try {
             storeSelector.getStoreForPermissionOperation(this).grantPermission(this, assignee, resource, operation);
+            getEventBridge().raiseEvent(new PermissionGrantedEvent(assignee, resource, operation, getPartitionManager()));
         } catch (Exception e) {
             throw MESSAGES.permissionGrantFailed(assignee, resource, operation, e);
         }
@@ -72,6 +76,7 @@ public class ContextualPermissionManager extends AbstractIdentityContext impleme
     public void revokePermission(IdentityType assignee, Object resource, String operation) {
         try {
             storeSelector.getStoreForPermissionOperation(this).revokePermission(this, assignee, resource, operation);
+            getEventBridge().raiseEvent(new PermissionRevokedEvent(assignee, resource, operation, getPartitionManager()));
         } catch (Exception ex) {
             throw MESSAGES.permissionRevokeFailed(assignee, resource, operation, ex);
         }
@@ -81,6 +86,7 @@ public class ContextualPermissionManager extends AbstractIdentityContext impleme
     public void revokePermission(IdentityType assignee, Class<?> resourceclass, String operation) {
         try {
             storeSelector.getStoreForPermissionOperation(this).revokePermission(this, assignee, resourceclass, operation);
+            getEventBridge().raiseEvent(new PermissionRevokedEvent(assignee, resourceclass, operation, getPartitionManager()));
         } catch (Exception ex) {
             throw MESSAGES.permissionRevokeFailed(assignee, resourceclass, operation, ex);
         }
@@ -90,8 +96,13 @@ public class ContextualPermissionManager extends AbstractIdentityContext impleme
     public void clearPermissions(Object resource) {
         try {
             storeSelector.getStoreForPermissionOperation(this).revokeAllPermissions(this, resource);
+            getEventBridge().raiseEvent(new PermissionRevokedEvent(null, resource, null, getPartitionManager()));
         } catch (Exception ex) {
             throw MESSAGES.permissionRevokeAllFailed(resource, ex);
         }
     }
+
+    private PartitionManager getPartitionManager() {
+        return (PartitionManager) this.storeSelector;
+    }
 }
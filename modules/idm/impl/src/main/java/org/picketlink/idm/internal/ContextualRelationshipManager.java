@@ -31,6 +31,7 @@ import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.query.RelationshipQuery;
 import org.picketlink.idm.query.internal.DefaultRelationshipQuery;
 import org.picketlink.idm.spi.AttributeStore;
+import org.picketlink.idm.spi.PrivilegeIndexSupport;
 import org.picketlink.idm.spi.StoreSelector;
 
 import java.io.Serializable;
@@ -45,10 +46,12 @@ import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
  *
  * @author Shane Bryzak
  */
-public class ContextualRelationshipManager extends AbstractIdentityContext implements RelationshipManager {
+public class ContextualRelationshipManager extends AbstractIdentityContext implements RelationshipManager,
+        PrivilegeIndexSupport {
 
     private StoreSelector storeSelector;
     private PrivilegeChainQuery privilegeChainQuery;
+    private PrivilegeIndex privilegeIndex;
 
     public ContextualRelationshipManager(EventBridge eventBridge, IdGenerator idGenerator, StoreSelector storeSelector,
             PrivilegeChainQuery privilegeChainQuery) {
@@ -57,6 +60,13 @@ public class ContextualRelationshipManager extends AbstractIdentityContext imple
         this.privilegeChainQuery = privilegeChainQuery;
     }
 
+    ContextualRelationshipManager(EventBridge eventBridge, IdGenerator idGenerator, StoreSelector storeSelector,
+            PrivilegeIndex privilegeIndex) {
+        super(null, eventBridge, idGenerator);
+        this.storeSelector = storeSelector;
+        this.privilegeIndex = privilegeIndex;
+    }
+
 
     @Override
     public void add(Relationship relationship) {
@@ -183,9 +193,18 @@ public class ContextualRelationshipManager extends AbstractIdentityContext imple
             return true;
         }
 
+        if (privilegeIndex != null) {
+            return privilegeIndex.inheritsPrivileges(this, identity, assignee);
+        }
+
         return privilegeChainQuery.inheritsPrivileges(this, identity, assignee);
     }
 
+    @Override
+    public boolean isPrivilegeIndexEnabled() {
+        return privilegeIndex != null;
+    }
+
     private PartitionManager getPartitionManager() {
         return (PartitionManager) this.storeSelector;
     }
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A bounded executor dedicated to credential validation, which may involve deliberately expensive password
+ * hashing.</p>
+ *
+ * <p>Validations are executed by a fixed number of threads and wait in a queue with a fixed capacity. When the queue
+ * is full, new validations are rejected instead of being queued or executed by the calling thread. This sheds load
+ * during bursts of authentication requests and keeps the calling threads responsive.</p>
+ *
+ * <p>The executor also reports the queue depth and the time spent validating credentials.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Pedro Igor
+ */
+public class CredentialValidationExecutor {
+
+    public static final String CREDENTIAL_VALIDATION_EXECUTOR_CTX_PARAMETER = "CREDENTIAL_VALIDATION_EXECUTOR_CTX_PARAMETER";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalValidationTime = new AtomicLong();
+    private final AtomicLong maxValidationTime = new AtomicLong();
+
+    /**
+     * <p>Creates an executor with as many threads as available processors.</p>
+     */
+    public CredentialValidationExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param threads The number of threads validating credentials.
+     * @param queueCapacity The maximum number of validations waiting for a thread.
+     */
+    public CredentialValidationExecutor(int threads, int queueCapacity) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be greater than zero.");
+        }
+
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than zero.");
+        }
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), new CredentialValidationThreadFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * <p>Submits the given validation.</p>
+     *
+     * @param validation
+     * @param <T>
+     * @return
+     * @throws RejectedExecutionException If the queue is full or the executor was shut down.
+     */
+    public <T> Future<T> submit(final Callable<T> validation) throws RejectedExecutionException {
+        try {
+            return this.executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    long start = System.nanoTime();
+
+                    try {
+                        return validation.call();
+                    } finally {
+                        recordValidationTime(System.nanoTime() - start);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Returns the number of validations waiting for a thread.</p>
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * <p>Returns the number of validations being executed.</p>
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * <p>Returns the average time in nanoseconds spent validating credentials, or zero if no validation completed.</p>
+     *
+     * @return
+     */
+    public long getAverageValidationTime() {
+        long completed = this.completedCount.get();
+
+        if (completed == 0) {
+            return 0;
+        }
+
+        return this.totalValidationTime.get() / completed;
+    }
+
+    /**
+     * <p>Returns the maximum time in nanoseconds spent validating credentials.</p>
+     *
+     * @return
+     */
+    public long getMaxValidationTime() {
+        return this.maxValidationTime.get();
+    }
+
+    /**
+     * <p>Stops accepting validations. Validations already submitted are still executed.</p>
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private void recordValidationTime(long validationTime) {
+        this.totalValidationTime.addAndGet(validationTime);
+        this.completedCount.incrementAndGet();
+
+        long currentMax = this.maxValidationTime.get();
+
+        while (validationTime > currentMax && !this.maxValidationTime.compareAndSet(currentMax, validationTime)) {
+            currentMax = this.maxValidationTime.get();
+        }
+    }
+
+    private static class CredentialValidationThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String namePrefix = "picketlink-credential-validation-" + poolNumber.incrementAndGet() + "-";
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, this.namePrefix + this.threadNumber.incrementAndGet());
+
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.picketlink.idm.internal;
 
 import org.picketlink.idm.IdentityCache;
+import org.picketlink.idm.internal.util.IdentityTypeCopier;
 import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.basic.Agent;
@@ -27,40 +28,87 @@ import org.picketlink.idm.model.basic.Realm;
 import org.picketlink.idm.model.basic.Role;
 import org.picketlink.idm.model.basic.User;
 
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>Default {@link IdentityCache} implementation.</p>
  *
+ * <p>Entries are kept in concurrent maps, one for each partition and identity type, so lookups never block. Each
+ * of these maps is bounded by <code>maxEntries</code>, and entries older than <code>timeToLive</code> milliseconds
+ * are discarded on lookup or when the map must make room for new entries.</p>
+ *
+ * <p>Identity types are copied when they are cached and when they are looked up, so changes made by a caller to an
+ * instance are never seen by other callers. Copies are made field by field using an {@link IdentityTypeCopier}.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Silva</a>
  *
  */
 public class DefaultIdentityCache implements IdentityCache {
 
-    private Map<Partition, Map<String, Agent>> agentsCache = new HashMap<Partition, Map<String, Agent>>();
-    private Map<Partition, Map<String, Role>> rolesCache = new HashMap<Partition, Map<String, Role>>();
-    private Map<Partition, Map<String, Group>> groupsCache = new HashMap<Partition, Map<String, Group>>();
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, CacheEntry<Agent>>> agentsCache =
+        new ConcurrentHashMap<String, ConcurrentMap<String, CacheEntry<Agent>>>();
+    private final ConcurrentMap<String, ConcurrentMap<String, CacheEntry<Role>>> rolesCache =
+        new ConcurrentHashMap<String, ConcurrentMap<String, CacheEntry<Role>>>();
+    private final ConcurrentMap<String, ConcurrentMap<String, CacheEntry<Group>>> groupsCache =
+        new ConcurrentHashMap<String, ConcurrentMap<String, CacheEntry<Group>>>();
+
+    private final int maxEntries;
+    private final long timeToLive;
+    private final IdentityTypeCopier copier = new IdentityTypeCopier();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public DefaultIdentityCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxEntries The maximum number of entries for each partition and identity type.
+     * @param timeToLive The time in milliseconds an entry is considered valid. Zero or less means entries never expire.
+     */
+    public DefaultIdentityCache(int maxEntries, long timeToLive) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be greater than zero.");
+        }
+
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
 
     @Override
     public User lookupUser(Realm realm, String loginName) {
-        Agent agent = lookupAgent(realm, loginName);
+        Agent agent = get(this.agentsCache, realm, loginName);
 
         if (User.class.isInstance(agent)) {
+            this.hitCount.incrementAndGet();
             return (User) agent;
         }
 
+        this.missCount.incrementAndGet();
+
         return null;
     }
 
     @Override
     public Group lookupGroup(Partition partition, String groupPath) {
-        return getGroups(partition).get(groupPath);
+        return recordLookup(get(this.groupsCache, partition, groupPath));
     }
 
     @Override
     public Role lookupRole(Partition partition, String name) {
-        return getRoles(partition).get(name);
+        return recordLookup(get(this.rolesCache, partition, name));
     }
 
     @Override
@@ -70,70 +118,275 @@ public class DefaultIdentityCache implements IdentityCache {
 
     @Override
     public void putGroup(Partition partition, Group group) {
-        getGroups(partition).get(group.getPath());
+        put(this.groupsCache, partition, group.getPath(), group);
     }
 
     @Override
     public void putRole(Partition partition, Role role) {
-        getRoles(partition).put(role.getName(), role);
+        put(this.rolesCache, partition, role.getName(), role);
     }
 
     @Override
     public Agent lookupAgent(Realm realm, String loginName) {
-        return getAgents(realm).get(loginName);
+        return recordLookup(get(this.agentsCache, realm, loginName));
     }
 
     @Override
     public void putAgent(Realm realm, Agent agent) {
-        getAgents(realm).get(agent.getLoginName());
+        put(this.agentsCache, realm, agent.getLoginName(), agent);
     }
 
     @Override
     public void invalidate(Partition partition, IdentityType identityType) {
         if (Agent.class.isInstance(identityType)) {
-            Agent agent = (Agent) identityType;
-            getAgents((Realm) partition).remove(agent.getLoginName());
+            remove(this.agentsCache, partition, ((Agent) identityType).getLoginName(), identityType);
         } else if (Role.class.isInstance(identityType)) {
-            Role role = (Role) identityType;
-            getRoles(partition).remove(role.getName());
+            remove(this.rolesCache, partition, ((Role) identityType).getName(), identityType);
         } else if (Group.class.isInstance(identityType)) {
-            Group group = (Group) identityType;
-            getGroups(partition).remove(group.getPath());
+            remove(this.groupsCache, partition, ((Group) identityType).getPath(), identityType);
+            removeDescendants(partition, (Group) identityType);
         }
     }
 
-    private Map<String, Agent> getAgents(Realm realm) {
-        Map<String, Agent> agents = this.agentsCache.get(realm);
+    /**
+     * <p>Removes all cached entries for the specified partition.</p>
+     *
+     * @param partition
+     */
+    public void invalidate(Partition partition) {
+        String partitionKey = getPartitionKey(partition);
 
-        if (agents == null) {
-            agents = new HashMap<String, Agent>();
-            this.agentsCache.put(realm, agents);
+        if (partitionKey != null) {
+            this.agentsCache.remove(partitionKey);
+            this.rolesCache.remove(partitionKey);
+            this.groupsCache.remove(partitionKey);
         }
+    }
+
+    /**
+     * <p>Removes all entries from this cache.</p>
+     */
+    public void clear() {
+        this.agentsCache.clear();
+        this.rolesCache.clear();
+        this.groupsCache.clear();
+    }
+
+    /**
+     * @return The number of lookups that returned a cached entry.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
 
-        return agents;
+    /**
+     * @return The number of lookups that did not find a valid cached entry.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
     }
 
-    private Map<String, Role> getRoles(Partition partition) {
-        Map<String, Role> roles = this.rolesCache.get(partition);
+    /**
+     * @return The number of entries discarded because they expired or to keep the cache within its bounds.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
 
-        if (roles == null) {
-            roles = new HashMap<String, Role>();
-            this.rolesCache.put(partition, roles);
+    private <T> T recordLookup(T value) {
+        if (value != null) {
+            this.hitCount.incrementAndGet();
+        } else {
+            this.missCount.incrementAndGet();
         }
 
-        return roles;
+        return value;
     }
 
-    private Map<String, Group> getGroups(Partition partition) {
-        Map<String, Group> groups = this.groupsCache.get(partition);
+    private <T extends IdentityType> T get(Map<String, ConcurrentMap<String, CacheEntry<T>>> cache, Partition partition, String key) {
+        String partitionKey = getPartitionKey(partition);
 
-        if (groups == null) {
-            groups = new HashMap<String, Group>();
-            this.groupsCache.put(partition, groups);
+        if (partitionKey == null || key == null) {
+            return null;
         }
 
-        return groups;
+        ConcurrentMap<String, CacheEntry<T>> entries = cache.get(partitionKey);
+
+        if (entries == null) {
+            return null;
+        }
+
+        CacheEntry<T> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            if (entries.remove(key, entry)) {
+                this.evictionCount.incrementAndGet();
+            }
+
+            return null;
+        }
+
+        return this.copier.copy(entry.getValue());
+    }
+
+    private <T extends IdentityType> void put(ConcurrentMap<String, ConcurrentMap<String, CacheEntry<T>>> cache, Partition partition, String key, T value) {
+        String partitionKey = getPartitionKey(partition);
+
+        if (partitionKey == null || key == null) {
+            return;
+        }
+
+        ConcurrentMap<String, CacheEntry<T>> entries = cache.get(partitionKey);
+
+        if (entries == null) {
+            ConcurrentMap<String, CacheEntry<T>> newEntries = new ConcurrentHashMap<String, CacheEntry<T>>();
+
+            entries = cache.putIfAbsent(partitionKey, newEntries);
+
+            if (entries == null) {
+                entries = newEntries;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+
+        entries.put(key, new CacheEntry<T>(this.copier.copy(value), this.timeToLive > 0 ? now + this.timeToLive : Long.MAX_VALUE));
+
+        if (entries.size() > this.maxEntries) {
+            evict(entries, now);
+        }
     }
 
+    private <T extends IdentityType> void remove(Map<String, ConcurrentMap<String, CacheEntry<T>>> cache, Partition partition, String key, IdentityType identityType) {
+        String partitionKey = getPartitionKey(partition);
 
-}
\ No newline at end of file
+        if (partitionKey == null) {
+            return;
+        }
+
+        ConcurrentMap<String, CacheEntry<T>> entries = cache.get(partitionKey);
+
+        if (entries == null) {
+            return;
+        }
+
+        if (key != null) {
+            entries.remove(key);
+        }
+
+        // the key may have changed during an update, so we also look for any entry referencing the same identifier
+        String id = identityType.getId();
+
+        if (id != null) {
+            for (Iterator<CacheEntry<T>> iterator = entries.values().iterator(); iterator.hasNext();) {
+                if (id.equals(iterator.next().getValue().getId())) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Removes the groups whose path depends on the given group. Their cached paths are no longer valid once the
+     * given group is renamed, moved or removed.</p>
+     */
+    private void removeDescendants(Partition partition, Group group) {
+        String partitionKey = getPartitionKey(partition);
+
+        if (partitionKey == null || group.getId() == null) {
+            return;
+        }
+
+        ConcurrentMap<String, CacheEntry<Group>> entries = this.groupsCache.get(partitionKey);
+
+        if (entries == null) {
+            return;
+        }
+
+        for (Iterator<CacheEntry<Group>> iterator = entries.values().iterator(); iterator.hasNext();) {
+            Group parentGroup = iterator.next().getValue().getParentGroup();
+
+            while (parentGroup != null) {
+                if (group.getId().equals(parentGroup.getId())) {
+                    iterator.remove();
+                    break;
+                }
+
+                parentGroup = parentGroup.getParentGroup();
+            }
+        }
+    }
+
+    /**
+     * <p>Discards all expired entries and, if the map is still above its bounds, the entries closest to expire.</p>
+     */
+    private <T extends IdentityType> void evict(ConcurrentMap<String, CacheEntry<T>> entries, long now) {
+        for (Iterator<CacheEntry<T>> iterator = entries.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                this.evictionCount.incrementAndGet();
+            }
+        }
+
+        while (entries.size() > this.maxEntries) {
+            Entry<String, CacheEntry<T>> oldest = null;
+
+            for (Entry<String, CacheEntry<T>> entry : entries.entrySet()) {
+                if (oldest == null || entry.getValue().getExpiration() < oldest.getValue().getExpiration()) {
+                    oldest = entry;
+                }
+            }
+
+            if (oldest == null) {
+                break;
+            }
+
+            if (entries.remove(oldest.getKey(), oldest.getValue())) {
+                this.evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    private String getPartitionKey(Partition partition) {
+        if (partition == null) {
+            return null;
+        }
+
+        return partition.getId();
+    }
+
+    private static class CacheEntry<T> {
+
+        private final T value;
+        private final long expiration;
+
+        CacheEntry(T value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+        T getValue() {
+            return this.value;
+        }
+
+        long getExpiration() {
+            return this.expiration;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiration;
+        }
+    }
+}
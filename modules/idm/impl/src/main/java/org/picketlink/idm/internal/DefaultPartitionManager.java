@@ -19,6 +19,7 @@ package org.picketlink.idm.internal;
 
 import org.picketlink.idm.DefaultIdGenerator;
 import org.picketlink.idm.IdGenerator;
+import org.picketlink.idm.IdentityCache;
 import org.picketlink.idm.IdentityManagementException;
 import org.picketlink.idm.IdentityManager;
 import org.picketlink.idm.PartitionManager;
@@ -33,6 +34,7 @@ import org.picketlink.idm.config.JDBCIdentityStoreConfiguration;
 import org.picketlink.idm.config.JPAIdentityStoreConfiguration;
 import org.picketlink.idm.config.LDAPIdentityStoreConfiguration;
 import org.picketlink.idm.config.OperationNotSupportedException;
+import org.picketlink.idm.config.StereotypeRegistry;
 import org.picketlink.idm.config.TokenStoreConfiguration;
 import org.picketlink.idm.credential.handler.CredentialHandler;
 import org.picketlink.idm.credential.handler.annotations.SupportsCredentials;
@@ -52,20 +54,25 @@ import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.Partition;
 import org.picketlink.idm.model.Relationship;
 import org.picketlink.idm.model.annotation.IdentityPartition;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
 import org.picketlink.idm.model.basic.Realm;
 import org.picketlink.idm.permission.acl.spi.PermissionHandler;
 import org.picketlink.idm.permission.acl.spi.PermissionHandlerPolicy;
 import org.picketlink.idm.permission.acl.spi.PermissionStore;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.query.internal.DefaultIdentityQuery;
 import org.picketlink.idm.spi.AttributeStore;
 import org.picketlink.idm.spi.CredentialStore;
 import org.picketlink.idm.spi.IdentityContext;
 import org.picketlink.idm.spi.IdentityStore;
 import org.picketlink.idm.spi.PartitionStore;
+import org.picketlink.idm.spi.StereotypeLookup;
 import org.picketlink.idm.spi.StoreSelector;
 import org.picketlink.idm.token.internal.TokenIdentityStore;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -77,6 +84,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import static org.picketlink.common.util.StringUtil.isNullOrEmpty;
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
@@ -94,7 +102,7 @@ import static org.picketlink.idm.util.IDMUtil.toSet;
  *
  * @author Shane Bryzak
  */
-public class DefaultPartitionManager implements PartitionManager, StoreSelector {
+public class DefaultPartitionManager implements PartitionManager, StoreSelector, StereotypeLookup {
 
     private static final long serialVersionUID = 1L;
 
@@ -144,11 +152,51 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
      */
     private PrivilegeChainQuery privilegeChainQuery = new PrivilegeChainQuery();
 
+    /**
+     * Transitive closure of the privilege chains, invalidated by the events raised by this partition manager. It is
+     * possible for this value to be null, in which case privilege chains are always queried from the stores.
+     */
+    private final PrivilegeIndex privilegeIndex;
+
+    /**
+     * The stereotypes of the types supported by the configuration, computed once when this partition manager is built
+     */
+    private final StereotypeRegistry stereotypeRegistry;
+
+    /**
+     * Used for querying roles and groups by name
+     */
+    private final StereotypeNameQuery stereotypeNameQuery;
+
+    /**
+     * Roles and groups by name, invalidated by the events raised by this partition manager. It is possible for this
+     * value to be null, in which case roles and groups are always queried from the stores.
+     */
+    private final StereotypeNameIndex stereotypeNameIndex;
+
     /**
      * Permission handler policy
      */
     private PermissionHandlerPolicy permissionHandlerPolicy;
 
+    /**
+     * The identity cache is used to resolve agents, roles and groups without querying the stores. It is possible for
+     * this value to be null, in which case caching is disabled.
+     */
+    private final IdentityCache identityCache;
+
+    /**
+     * The executor used to query multiple identity stores concurrently. It is possible for this value to be null, in
+     * which case stores are queried sequentially.
+     */
+    private final ExecutorService queryExecutor;
+
+    /**
+     * The executor used to validate credentials asynchronously. It is possible for this value to be null, in which case
+     * credentials are validated by the calling thread.
+     */
+    private final CredentialValidationExecutor credentialValidationExecutor;
+
     public DefaultPartitionManager(IdentityConfiguration configuration) {
         this(Arrays.asList(configuration));
     }
@@ -164,15 +212,35 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
 
     public DefaultPartitionManager(Collection<IdentityConfiguration> configurations, EventBridge eventBridge,
             Collection<PermissionHandler> permissionHandlers, IdGenerator idGenerator) {
+        this(configurations, new PartitionManagerOptions()
+            .eventBridge(eventBridge)
+            .permissionHandlers(permissionHandlers)
+            .idGenerator(idGenerator));
+    }
+
+    /**
+     * <p>Creates a partition manager with the given optional components and settings, such as caches, indexes and
+     * executors.</p>
+     *
+     * @param configurations
+     * @param options The options, or null to use the defaults.
+     */
+    public DefaultPartitionManager(Collection<IdentityConfiguration> configurations, PartitionManagerOptions options) {
         if (configurations == null || configurations.isEmpty()) {
             throw MESSAGES.configNoIdentityConfigurationProvided();
         }
 
+        if (options == null) {
+            options = new PartitionManagerOptions();
+        }
+
         ROOT_LOGGER.partitionManagerBootstrap();
 
         try {
             this.configurations = Collections.unmodifiableCollection(configurations);
 
+            EventBridge eventBridge = options.getEventBridge();
+
             if (eventBridge != null) {
                 this.eventBridge = eventBridge;
             } else {
@@ -181,6 +249,35 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
                 };
             }
 
+            this.identityCache = options.getIdentityCache();
+            this.queryExecutor = options.getQueryExecutor();
+            this.credentialValidationExecutor = options.getCredentialValidationExecutor();
+
+            if (this.identityCache != null) {
+                this.eventBridge = new IdentityCacheEventBridge(this.eventBridge, this.identityCache);
+            }
+
+            if (options.getPrivilegeIndexMaxStaleness() > 0) {
+                this.privilegeIndex = new PrivilegeIndex(this.privilegeChainQuery,
+                    options.getPrivilegeIndexMaxStaleness(), options.getPrivilegeIndexMaxEntries());
+                this.eventBridge = new PrivilegeIndexEventBridge(this.eventBridge, this.privilegeIndex);
+            } else {
+                this.privilegeIndex = null;
+            }
+
+            this.stereotypeRegistry = new StereotypeRegistry(this.configurations);
+            this.stereotypeNameQuery = new StereotypeNameQuery(this, this.stereotypeRegistry);
+
+            if (options.getStereotypeNameIndexMaxStaleness() > 0) {
+                this.stereotypeNameIndex = new StereotypeNameIndex(this.stereotypeNameQuery,
+                    options.getStereotypeNameIndexMaxStaleness());
+                this.eventBridge = new StereotypeNameIndexEventBridge(this.eventBridge, this.stereotypeNameIndex);
+            } else {
+                this.stereotypeNameIndex = null;
+            }
+
+            IdGenerator idGenerator = options.getIdGenerator();
+
             if (idGenerator != null) {
                 this.idGenerator = idGenerator;
             } else {
@@ -188,8 +285,8 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
             }
 
             permissionHandlerPolicy = new PermissionHandlerPolicy(null);
-            if (permissionHandlers != null) {
-                for (PermissionHandler handler : permissionHandlers) {
+            if (options.getPermissionHandlers() != null) {
+                for (PermissionHandler handler : options.getPermissionHandlers()) {
                     permissionHandlerPolicy.registerHandler(handler);
                 }
             }
@@ -266,7 +363,23 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
                 permissionManager = createPermissionManager(storedPartition);
             }
 
-            return new ContextualIdentityManager(storedPartition, eventBridge, idGenerator, this, createRelationshipManager(), permissionManager);
+            ContextualIdentityManager identityManager = new ContextualIdentityManager(storedPartition, eventBridge,
+                    idGenerator, this, createRelationshipManager(), permissionManager);
+
+            if (this.identityCache != null) {
+                identityManager.setParameter(IdentityCache.IDENTITY_CACHE_CTX_PARAMETER, this.identityCache);
+            }
+
+            if (this.queryExecutor != null) {
+                identityManager.setParameter(DefaultIdentityQuery.QUERY_EXECUTOR_CTX_PARAMETER, this.queryExecutor);
+            }
+
+            if (this.credentialValidationExecutor != null) {
+                identityManager.setParameter(CredentialValidationExecutor.CREDENTIAL_VALIDATION_EXECUTOR_CTX_PARAMETER,
+                    this.credentialValidationExecutor);
+            }
+
+            return identityManager;
         } catch (Exception e) {
             throw MESSAGES.partitionCouldNotCreateIdentityManager(storedPartition, e);
         }
@@ -299,6 +412,10 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
 
     @Override
     public RelationshipManager createRelationshipManager() {
+        if (privilegeIndex != null) {
+            return new ContextualRelationshipManager(eventBridge, idGenerator, this, privilegeIndex);
+        }
+
         return new ContextualRelationshipManager(eventBridge, idGenerator, this, privilegeChainQuery);
     }
 
@@ -346,8 +463,10 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
 
                 partitions.addAll(getStoreForPartitionOperation(context, partitionClass).<T>get(context, partitionClass));
 
-                for (T partition : partitions) {
-                    loadAttributes(context, partition);
+                AttributeStore<?> attributeStore = getStoreForAttributeOperation(context);
+
+                if (attributeStore != null && !partitions.isEmpty()) {
+                    attributeStore.loadAttributes(context, partitions);
                 }
             } catch (Exception e) {
                 throw MESSAGES.partitionGetFailed(partitionClass, "not specified", e);
@@ -496,6 +615,68 @@ public class DefaultPartitionManager implements PartitionManager, StoreSelector
         return this.configurations;
     }
 
+    @Override
+    public StereotypeRegistry getStereotypeRegistry() {
+        return this.stereotypeRegistry;
+    }
+
+    @Override
+    public List<IdentityType> lookupIdentityTypesByName(IdentityStereotype.Stereotype stereotype, String name)
+            throws IdentityManagementException {
+        if (this.stereotypeNameIndex != null) {
+            return this.stereotypeNameIndex.lookup(stereotype, name);
+        }
+
+        return this.stereotypeNameQuery.lookup(stereotype, name);
+    }
+
+    /**
+     * <p>Returns the {@link IdentityCache} used by this partition manager, or null if caching is disabled.</p>
+     *
+     * @return
+     */
+    public IdentityCache getIdentityCache() {
+        return this.identityCache;
+    }
+
+    /**
+     * <p>Returns the executor used to query multiple identity stores concurrently, or null if stores are queried
+     * sequentially.</p>
+     *
+     * @return
+     */
+    public ExecutorService getQueryExecutor() {
+        return this.queryExecutor;
+    }
+
+    /**
+     * <p>Returns the executor used to validate credentials asynchronously, or null if credentials are validated by the
+     * calling thread.</p>
+     *
+     * @return
+     */
+    public CredentialValidationExecutor getCredentialValidationExecutor() {
+        return this.credentialValidationExecutor;
+    }
+
+    /**
+     * <p>Releases the resources held by the identity stores, such as pooled connections. Stores that do not hold any
+     * resource are ignored. This partition manager can not be used after it is closed.</p>
+     */
+    public void close() {
+        for (Map<IdentityStoreConfiguration, IdentityStore<?>> configurationStores : this.stores.values()) {
+            for (IdentityStore<?> store : configurationStores.values()) {
+                if (Closeable.class.isInstance(store)) {
+                    try {
+                        ((Closeable) store).close();
+                    } catch (IOException ioe) {
+                        ROOT_LOGGER.warnf(ioe, "Could not close identity store [%s].", store);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public <T extends IdentityStore<?>> T getStoreForIdentityOperation(IdentityContext context, Class<T> storeType,
                                                                        Class<? extends AttributedType> type, IdentityOperation operation) {
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.IdentityCache;
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.event.IdentityTypeDeletedEvent;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.event.PartitionDeletedEvent;
+import org.picketlink.idm.event.PartitionUpdatedEvent;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Partition;
+
+/**
+ * <p>{@link EventBridge} that invalidates the entries of an {@link IdentityCache} whenever an identity type or
+ * partition is updated or removed, before delegating the event to the bridge configured by the application.</p>
+ *
+ * @author Pedro Igor
+ */
+class IdentityCacheEventBridge implements EventBridge {
+
+    private final EventBridge delegate;
+    private final IdentityCache identityCache;
+
+    IdentityCacheEventBridge(EventBridge delegate, IdentityCache identityCache) {
+        this.delegate = delegate;
+        this.identityCache = identityCache;
+    }
+
+    @Override
+    public void raiseEvent(Object event) {
+        if (IdentityTypeUpdatedEvent.class.isInstance(event)) {
+            invalidate(((IdentityTypeUpdatedEvent) event).getIdentityType());
+        } else if (IdentityTypeDeletedEvent.class.isInstance(event)) {
+            invalidate(((IdentityTypeDeletedEvent) event).getIdentityType());
+        } else if (PartitionUpdatedEvent.class.isInstance(event)) {
+            invalidate(((PartitionUpdatedEvent) event).getPartition());
+        } else if (PartitionDeletedEvent.class.isInstance(event)) {
+            invalidate(((PartitionDeletedEvent) event).getPartition());
+        }
+
+        this.delegate.raiseEvent(event);
+    }
+
+    private void invalidate(Partition partition) {
+        // other implementations only support invalidating individual entries, which expire on their own
+        if (DefaultIdentityCache.class.isInstance(this.identityCache)) {
+            ((DefaultIdentityCache) this.identityCache).invalidate(partition);
+        }
+    }
+
+    private void invalidate(IdentityType identityType) {
+        if (identityType != null) {
+            this.identityCache.invalidate(identityType.getPartition(), identityType);
+        }
+    }
+}
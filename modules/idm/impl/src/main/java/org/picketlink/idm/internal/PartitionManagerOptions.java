@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.IdGenerator;
+import org.picketlink.idm.IdentityCache;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+import org.picketlink.idm.permission.acl.spi.PermissionHandler;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>The optional components and settings of a {@link DefaultPartitionManager}. Any option not set keeps its default,
+ * which disables the corresponding feature.</p>
+ *
+ * <pre>
+ * new DefaultPartitionManager(configurations, new PartitionManagerOptions()
+ *     .identityCache(new DefaultIdentityCache())
+ *     .privilegeIndex(60000));
+ * </pre>
+ *
+ * <p>Executors are not managed by the partition manager, it is up to the caller to bound and shut them down.</p>
+ *
+ * @author Pedro Igor
+ */
+public class PartitionManagerOptions {
+
+    private EventBridge eventBridge;
+    private Collection<PermissionHandler> permissionHandlers;
+    private IdGenerator idGenerator;
+    private IdentityCache identityCache;
+    private ExecutorService queryExecutor;
+    private CredentialValidationExecutor credentialValidationExecutor;
+    private long privilegeIndexMaxStaleness;
+    private int privilegeIndexMaxEntries = PrivilegeIndex.DEFAULT_MAX_ENTRIES;
+    private long stereotypeNameIndexMaxStaleness;
+
+    /**
+     * <p>Bridges the events raised by the partition manager to an event bus, such as the CDI event bus.</p>
+     *
+     * @param eventBridge
+     *
+     * @return
+     */
+    public PartitionManagerOptions eventBridge(EventBridge eventBridge) {
+        this.eventBridge = eventBridge;
+        return this;
+    }
+
+    /**
+     * <p>Registers the permission handlers used to resolve the resources of permissions.</p>
+     *
+     * @param permissionHandlers
+     *
+     * @return
+     */
+    public PartitionManagerOptions permissionHandlers(Collection<PermissionHandler> permissionHandlers) {
+        this.permissionHandlers = permissionHandlers;
+        return this;
+    }
+
+    /**
+     * <p>Generates the identifiers of new types. If not set, a {@link org.picketlink.idm.DefaultIdGenerator} is
+     * used.</p>
+     *
+     * @param idGenerator
+     *
+     * @return
+     */
+    public PartitionManagerOptions idGenerator(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+        return this;
+    }
+
+    /**
+     * <p>Resolves agents, roles and groups without querying the stores.</p>
+     *
+     * @param identityCache
+     *
+     * @return
+     */
+    public PartitionManagerOptions identityCache(IdentityCache identityCache) {
+        this.identityCache = identityCache;
+        return this;
+    }
+
+    /**
+     * <p>Queries multiple identity stores concurrently. If not set, stores are queried sequentially.</p>
+     *
+     * @param queryExecutor
+     *
+     * @return
+     */
+    public PartitionManagerOptions queryExecutor(ExecutorService queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        return this;
+    }
+
+    /**
+     * <p>Validates credentials asynchronously. If not set, credentials are validated by the calling thread.</p>
+     *
+     * @param credentialValidationExecutor
+     *
+     * @return
+     */
+    public PartitionManagerOptions credentialValidationExecutor(CredentialValidationExecutor credentialValidationExecutor) {
+        this.credentialValidationExecutor = credentialValidationExecutor;
+        return this;
+    }
+
+    /**
+     * <p>Keeps an index of the privileges inherited by each identity, so that
+     * {@link RelationshipManager#inheritsPrivileges(IdentityType, IdentityType)} is usually answered without querying
+     * the stores. The index keeps the privileges of at most 10000 identities.</p>
+     *
+     * @param maxStaleness See {@link #privilegeIndex(long, int)}.
+     *
+     * @return
+     */
+    public PartitionManagerOptions privilegeIndex(long maxStaleness) {
+        return privilegeIndex(maxStaleness, PrivilegeIndex.DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * <p>Keeps an index of the privileges inherited by each identity, so that
+     * {@link RelationshipManager#inheritsPrivileges(IdentityType, IdentityType)} is usually answered without querying
+     * the stores.</p>
+     *
+     * <p>The index only sees the changes made through the partition manager. Changes made directly to the stores or
+     * by another node are visible once the cached privileges of an identity are older than the given maximum
+     * staleness.</p>
+     *
+     * @param maxStaleness The maximum staleness, in milliseconds, of the privileges cached for an identity. If zero,
+     * the index is disabled.
+     * @param maxEntries The maximum number of identities whose privileges are cached. The oldest are evicted first.
+     *
+     * @return
+     */
+    public PartitionManagerOptions privilegeIndex(long maxStaleness, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be greater than zero.");
+        }
+
+        this.privilegeIndexMaxStaleness = maxStaleness;
+        this.privilegeIndexMaxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * <p>Keeps an index of the roles and groups by name, so that
+     * {@link DefaultPartitionManager#lookupIdentityTypesByName(IdentityStereotype.Stereotype, String)} is usually
+     * answered without querying the stores.</p>
+     *
+     * <p>The index only sees the changes made through the partition manager. Changes made directly to the stores or
+     * by another node are visible once the names resolved for a partition are older than the given maximum
+     * staleness.</p>
+     *
+     * @param maxStaleness The maximum staleness, in milliseconds, of the names resolved for a partition. If zero, the
+     * index is disabled.
+     *
+     * @return
+     */
+    public PartitionManagerOptions stereotypeNameIndex(long maxStaleness) {
+        this.stereotypeNameIndexMaxStaleness = maxStaleness;
+        return this;
+    }
+
+    EventBridge getEventBridge() {
+        return this.eventBridge;
+    }
+
+    Collection<PermissionHandler> getPermissionHandlers() {
+        return this.permissionHandlers;
+    }
+
+    IdGenerator getIdGenerator() {
+        return this.idGenerator;
+    }
+
+    IdentityCache getIdentityCache() {
+        return this.identityCache;
+    }
+
+    ExecutorService getQueryExecutor() {
+        return this.queryExecutor;
+    }
+
+    CredentialValidationExecutor getCredentialValidationExecutor() {
+        return this.credentialValidationExecutor;
+    }
+
+    long getPrivilegeIndexMaxStaleness() {
+        return this.privilegeIndexMaxStaleness;
+    }
+
+    int getPrivilegeIndexMaxEntries() {
+        return this.privilegeIndexMaxEntries;
+    }
+
+    long getStereotypeNameIndexMaxStaleness() {
+        return this.stereotypeNameIndexMaxStaleness;
+    }
+}
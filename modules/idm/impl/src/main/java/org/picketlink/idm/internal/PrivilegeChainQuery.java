@@ -13,6 +13,7 @@ import org.picketlink.idm.model.annotation.InheritsPrivileges;
 import org.picketlink.idm.query.RelationshipQuery;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -83,42 +84,48 @@ public class PrivilegeChainQuery {
             throw MESSAGES.nullArgument("assignee");
         }
 
+        for (IdentityType inheritedIdentity : getInheritedIdentities(relationshipManager, identity)) {
+            // if the inherited identity is the same as the given target assignee, we have a match.
+            if (inheritedIdentity.equals(assignee)) {
+                return true;
+            }
+
+            // we continue the inheritance lookup if the identity is not the same as the inherited identity
+            if (!identity.equals(inheritedIdentity) && inheritsPrivileges(relationshipManager, inheritedIdentity, assignee)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>Returns the identities from which the given <code>identity</code> directly inherits privileges. They are the
+     * assignees of the relationships the identity participates in, followed by its parent identity, if any.</p>
+     *
+     * @param relationshipManager
+     * @param identity
+     *
+     * @return
+     */
+    public List<IdentityType> getInheritedIdentities(RelationshipManager relationshipManager, IdentityType identity) {
         // Find all of the relationships that the identity participates in, that have one or
         // more declared privilege assignments
         RelationshipQuery query = relationshipManager.createRelationshipQuery(Relationship.class);
 
         query.setParameter(Relationship.IDENTITY, identity);
 
-        boolean hasPrivileges = false;
+        List<IdentityType> inheritedIdentities = new ArrayList<IdentityType>();
 
         for (Relationship relationship : new ArrayList<Relationship>(query.getResultList())) {
-            Map<Property<IdentityType>, Property<IdentityType>> propertyPropertyMap = this.privilegeChains.get(relationship.getClass());
-
-            if (propertyPropertyMap != null) {
-                for (Property<IdentityType> identityProperty : propertyPropertyMap.keySet()) {
-                    Property<IdentityType> assigneeProperty = propertyPropertyMap.get(identityProperty);
-
-                    // only do the check if the relationship is the same type of the declaring class of the assignee property
-                    if (assigneeProperty.getDeclaringClass().equals(relationship.getClass())) {
-                        IdentityType relationshipAssignee = assigneeProperty.getValue(relationship);
-
-                        // if the relationship assignee is the same as the given target assignee, we have a match.
-                        if (relationshipAssignee.equals(assignee)) {
-                            hasPrivileges = true;
-                        } else if (!identity.equals(relationshipAssignee)) {
-                            // we continue the inheritance lookup if the identity is not the same as the relationship assignee
-                            hasPrivileges = inheritsPrivileges(relationshipManager, relationshipAssignee, assignee);
-                        }
-
-                        if (hasPrivileges) {
-                            return true;
-                        }
-                    }
+            for (IdentityType relationshipAssignee : getPrivilegeAssignees(relationship)) {
+                if (!identity.equals(relationshipAssignee)) {
+                    inheritedIdentities.add(relationshipAssignee);
                 }
             }
         }
 
-        // otherwise, let's check if there is a parent-child relationship for the identity, so we can check inheritance from parent
+        // let's check if there is a parent-child relationship for the identity, so we can check inheritance from parent
         Property<IdentityType> parentProperty = PropertyQueries
             .<IdentityType>createQuery(identity.getClass())
                 .addCriteria(new TypedPropertyCriteria(identity.getClass(), TypedPropertyCriteria.MatchOption.SUB_TYPE))
@@ -128,10 +135,41 @@ public class PrivilegeChainQuery {
             IdentityType parentIdentity = parentProperty.getValue(identity);
 
             if (parentIdentity != null) {
-                return inheritsPrivileges(relationshipManager, parentIdentity, assignee);
+                inheritedIdentities.add(parentIdentity);
             }
         }
 
-        return false;
+        return inheritedIdentities;
+    }
+
+    /**
+     * <p>Returns the identities whose privileges are inherited by the participants of the given
+     * <code>relationship</code>.</p>
+     *
+     * @param relationship
+     *
+     * @return
+     */
+    public List<IdentityType> getPrivilegeAssignees(Relationship relationship) {
+        Map<Property<IdentityType>, Property<IdentityType>> propertyPropertyMap = this.privilegeChains.get(relationship.getClass());
+
+        if (propertyPropertyMap == null) {
+            return Collections.emptyList();
+        }
+
+        List<IdentityType> assignees = new ArrayList<IdentityType>();
+
+        for (Property<IdentityType> assigneeProperty : propertyPropertyMap.values()) {
+            // only consider the assignee property if the relationship is the same type of its declaring class
+            if (assigneeProperty.getDeclaringClass().equals(relationship.getClass())) {
+                IdentityType relationshipAssignee = assigneeProperty.getValue(relationship);
+
+                if (relationshipAssignee != null) {
+                    assignees.add(relationshipAssignee);
+                }
+            }
+        }
+
+        return assignees;
     }
 }
@@ -0,0 +1,332 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.properties.query.TypedPropertyCriteria;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
+
+/**
+ * <p>Materialized transitive closure of the privilege chains resolved by {@link PrivilegeChainQuery}.</p>
+ *
+ * <p>For each identity that was checked, the index holds the identifiers of all identities from which it inherits
+ * privileges, so that subsequent checks are answered without querying the stores. The closure of an identity is
+ * computed on the first check and invalidated by the relationship and identity events raised by the
+ * {@link org.picketlink.idm.PartitionManager}: created, updated or removed relationships and identities invalidate the
+ * closures that depend on them.</p>
+ *
+ * <p>Changes that are not made through the partition manager holding this index, such as changes made directly to
+ * the underlying stores or by another node, are not visible to it. To bound how long such changes go unnoticed, a
+ * closure is computed again once it is older than the configured maximum staleness.</p>
+ *
+ * <p>The index holds at most the configured maximum number of closures. When it is full, the closure published first
+ * is discarded to make room for a new one.</p>
+ *
+ * @author Pedro Igor
+ */
+class PrivilegeIndex {
+
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final PrivilegeChainQuery privilegeChainQuery;
+
+    /**
+     * The maximum time, in milliseconds, a closure is used before it is computed again.
+     */
+    private final long maxStaleness;
+
+    /**
+     * The maximum number of closures held by the index.
+     */
+    private final int maxEntries;
+
+    /**
+     * The closures of the identities that were checked, keyed by the identifier of the inheriting identity. Values
+     * are never modified once published.
+     */
+    private final Map<String, Closure> closures = new ConcurrentHashMap<String, Closure>();
+
+    /**
+     * The identifiers of the identities whose closure contains a given identity, keyed by the identifier of the
+     * contained identity. Only accessed while holding the lock on this instance.
+     */
+    private final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+
+    /**
+     * The identifiers of the identities with a published closure, in the order they were published. Only accessed
+     * while holding the lock on this instance.
+     */
+    private final Set<String> publishOrder = new LinkedHashSet<String>();
+
+    /**
+     * Incremented on every change, closures computed concurrently with a change are not published.
+     */
+    private long version;
+
+    PrivilegeIndex(PrivilegeChainQuery privilegeChainQuery, long maxStaleness, int maxEntries) {
+        if (maxStaleness <= 0) {
+            throw new IllegalArgumentException("The maximum staleness must be greater than zero.");
+        }
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries must be greater than zero.");
+        }
+
+        this.privilegeChainQuery = privilegeChainQuery;
+        this.maxStaleness = maxStaleness;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * <p>Checks if the given <code>identity</code> inherits the privileges assigned to the given <code>assignee</code>.</p>
+     *
+     * @param relationshipManager
+     * @param identity
+     * @param assignee
+     *
+     * @return
+     */
+    boolean inheritsPrivileges(RelationshipManager relationshipManager, IdentityType identity, IdentityType assignee) {
+        if (identity == null) {
+            throw MESSAGES.nullArgument("identity");
+        }
+
+        if (assignee == null) {
+            throw MESSAGES.nullArgument("assignee");
+        }
+
+        if (identity.getId() == null || assignee.getId() == null) {
+            return this.privilegeChainQuery.inheritsPrivileges(relationshipManager, identity, assignee);
+        }
+
+        Closure closure = this.closures.get(identity.getId());
+
+        if (closure == null || closure.isStale()) {
+            closure = computeClosure(relationshipManager, identity);
+        }
+
+        return closure.identityIds.contains(assignee.getId());
+    }
+
+    /**
+     * <p>Invalidates the closures that may depend on the given <code>relationship</code>.</p>
+     *
+     * <p>The relationship is not merged into the existing closures: it may belong to a transaction that is not
+     * committed yet, in which case it must not be visible to the next checks if the transaction is rolled back.</p>
+     *
+     * @param relationship
+     */
+    synchronized void relationshipAdded(Relationship relationship) {
+        relationshipChanged(relationship);
+    }
+
+    /**
+     * <p>Invalidates the closures that may depend on the given <code>relationship</code>.</p>
+     *
+     * @param relationship
+     */
+    synchronized void relationshipRemoved(Relationship relationship) {
+        relationshipChanged(relationship);
+    }
+
+    private void relationshipChanged(Relationship relationship) {
+        this.version++;
+
+        List<IdentityType> participants = getParticipants(relationship);
+
+        if (participants.isEmpty()) {
+            // the relationship was not loaded, we can not tell which closures depend on it
+            clear();
+        }
+
+        for (IdentityType participant : participants) {
+            invalidate(participant.getId());
+        }
+    }
+
+    /**
+     * <p>Invalidates the closures that may depend on the given <code>identityType</code>.</p>
+     *
+     * @param identityType
+     */
+    synchronized void invalidate(IdentityType identityType) {
+        this.version++;
+
+        if (identityType != null) {
+            invalidate(identityType.getId());
+        }
+    }
+
+    /**
+     * <p>Invalidates all closures.</p>
+     */
+    synchronized void clear() {
+        this.version++;
+        this.closures.clear();
+        this.dependents.clear();
+        this.publishOrder.clear();
+    }
+
+    /**
+     * @return The number of closures held by the index.
+     */
+    int size() {
+        return this.closures.size();
+    }
+
+    private Closure computeClosure(RelationshipManager relationshipManager, IdentityType identity) {
+        long initialVersion;
+
+        synchronized (this) {
+            initialVersion = this.version;
+        }
+
+        Set<String> closure = new HashSet<String>();
+        LinkedList<IdentityType> pending = new LinkedList<IdentityType>();
+
+        pending.add(identity);
+
+        while (!pending.isEmpty()) {
+            for (IdentityType inheritedIdentity : this.privilegeChainQuery.getInheritedIdentities(relationshipManager, pending.removeFirst())) {
+                if (inheritedIdentity.getId() != null && closure.add(inheritedIdentity.getId())) {
+                    pending.add(inheritedIdentity);
+                }
+            }
+        }
+
+        Closure computed = new Closure(Collections.unmodifiableSet(closure));
+
+        synchronized (this) {
+            if (initialVersion == this.version) {
+                publish(identity.getId(), computed);
+            }
+        }
+
+        return computed;
+    }
+
+    private void invalidate(String identityId) {
+        Set<String> identityDependents = this.dependents.remove(identityId);
+
+        if (identityDependents != null) {
+            for (String dependentId : identityDependents) {
+                remove(dependentId);
+            }
+        }
+
+        remove(identityId);
+    }
+
+    private void publish(String identityId, Closure closure) {
+        remove(identityId);
+
+        for (String inheritedId : closure.identityIds) {
+            Set<String> inheritedDependents = this.dependents.get(inheritedId);
+
+            if (inheritedDependents == null) {
+                inheritedDependents = new HashSet<String>();
+                this.dependents.put(inheritedId, inheritedDependents);
+            }
+
+            inheritedDependents.add(identityId);
+        }
+
+        this.closures.put(identityId, closure);
+        this.publishOrder.add(identityId);
+
+        if (this.publishOrder.size() > this.maxEntries) {
+            Iterator<String> eldest = this.publishOrder.iterator();
+            String eldestId = eldest.next();
+
+            eldest.remove();
+            remove(eldestId);
+        }
+    }
+
+    private void remove(String identityId) {
+        Closure closure = this.closures.remove(identityId);
+
+        this.publishOrder.remove(identityId);
+
+        if (closure != null) {
+            for (String inheritedId : closure.identityIds) {
+                Set<String> inheritedDependents = this.dependents.get(inheritedId);
+
+                if (inheritedDependents != null) {
+                    inheritedDependents.remove(identityId);
+
+                    if (inheritedDependents.isEmpty()) {
+                        this.dependents.remove(inheritedId);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<IdentityType> getParticipants(Relationship relationship) {
+        List<Property<IdentityType>> properties = PropertyQueries.<IdentityType>createQuery(relationship.getClass())
+                .addCriteria(new TypedPropertyCriteria(IdentityType.class, TypedPropertyCriteria.MatchOption.ALL))
+                .getResultList();
+
+        List<IdentityType> participants = new ArrayList<IdentityType>();
+
+        for (Property<IdentityType> property : properties) {
+            IdentityType participant = property.getValue(relationship);
+
+            if (participant != null && participant.getId() != null) {
+                participants.add(participant);
+            }
+        }
+
+        return participants;
+    }
+
+    private class Closure {
+
+        /**
+         * The identifiers of the identities whose privileges are inherited.
+         */
+        private final Set<String> identityIds;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Closure(Set<String> identityIds) {
+            this.identityIds = identityIds;
+        }
+
+        private boolean isStale() {
+            return System.currentTimeMillis() - this.createdAt > maxStaleness;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.event.IdentityTypeDeletedEvent;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.event.PartitionDeletedEvent;
+import org.picketlink.idm.event.RelationshipCreatedEvent;
+import org.picketlink.idm.event.RelationshipDeletedEvent;
+import org.picketlink.idm.event.RelationshipUpdatedEvent;
+
+/**
+ * <p>{@link EventBridge} that keeps a {@link PrivilegeIndex} up to date whenever a relationship, identity type or
+ * partition changes, before delegating the event to the bridge configured by the application.</p>
+ *
+ * @author Pedro Igor
+ */
+class PrivilegeIndexEventBridge implements EventBridge {
+
+    private final EventBridge delegate;
+    private final PrivilegeIndex privilegeIndex;
+
+    PrivilegeIndexEventBridge(EventBridge delegate, PrivilegeIndex privilegeIndex) {
+        this.delegate = delegate;
+        this.privilegeIndex = privilegeIndex;
+    }
+
+    @Override
+    public void raiseEvent(Object event) {
+        if (RelationshipCreatedEvent.class.isInstance(event)) {
+            this.privilegeIndex.relationshipAdded(((RelationshipCreatedEvent) event).getRelationship());
+        } else if (RelationshipDeletedEvent.class.isInstance(event)) {
+            this.privilegeIndex.relationshipRemoved(((RelationshipDeletedEvent) event).getRelationship());
+        } else if (RelationshipUpdatedEvent.class.isInstance(event)) {
+            // the participants before the update are not known, so every closure is computed again
+            this.privilegeIndex.clear();
+        } else if (IdentityTypeUpdatedEvent.class.isInstance(event)) {
+            this.privilegeIndex.invalidate(((IdentityTypeUpdatedEvent) event).getIdentityType());
+        } else if (IdentityTypeDeletedEvent.class.isInstance(event)) {
+            this.privilegeIndex.invalidate(((IdentityTypeDeletedEvent) event).getIdentityType());
+        } else if (PartitionDeletedEvent.class.isInstance(event)) {
+            this.privilegeIndex.clear();
+        }
+
+        this.delegate.raiseEvent(event);
+    }
+}
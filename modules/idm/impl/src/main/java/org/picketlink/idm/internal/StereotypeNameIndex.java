@@ -0,0 +1,240 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.internal.util.IdentityTypeUtil;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Partition;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
+
+/**
+ * <p>Index of the roles and groups by name, resolved by a {@link StereotypeNameQuery} against all partitions managed
+ * by a {@link org.picketlink.idm.PartitionManager}.</p>
+ *
+ * <p>Names are resolved on the first lookup, including the names that do not match any identity type, and discarded
+ * by the identity type and partition events raised by the partition manager: a change to a role or group discards
+ * the names resolved for its partition, while a change to a partition discards all resolved names.</p>
+ *
+ * <p>Changes that are not made through the partition manager holding this index, such as changes made directly to
+ * the underlying stores or by another node, are not visible to it. To bound how long such changes go unnoticed, the
+ * names resolved for a partition, and the partitions themselves, are resolved again once they are older than the
+ * configured maximum staleness.</p>
+ *
+ * <p>Lookups return copies of the indexed identity types, so callers are free to change them.</p>
+ *
+ * @author Pedro Igor
+ */
+class StereotypeNameIndex {
+
+    private final StereotypeNameQuery stereotypeNameQuery;
+
+    /**
+     * The maximum time, in milliseconds, resolved names and partitions are used before they are resolved again.
+     */
+    private final long maxStaleness;
+
+    /**
+     * The names resolved for each partition, keyed by the identifier of the partition. Invalidating a partition
+     * replaces its entries, so that lookups running concurrently with a change only populate the discarded entries.
+     */
+    private final ConcurrentMap<String, PartitionEntries> entries = new ConcurrentHashMap<String, PartitionEntries>();
+
+    /**
+     * The partitions managed by the partition manager, or null if they must be loaded again.
+     */
+    private volatile LoadedPartitions partitions;
+
+    /**
+     * Incremented on every change to a partition, partitions loaded concurrently with a change are not published.
+     */
+    private long version;
+
+    StereotypeNameIndex(StereotypeNameQuery stereotypeNameQuery, long maxStaleness) {
+        if (maxStaleness <= 0) {
+            throw new IllegalArgumentException("The maximum staleness must be greater than zero.");
+        }
+
+        this.stereotypeNameQuery = stereotypeNameQuery;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * <p>Returns the identity types with the given stereotype and name from all partitions. For each partition, the
+     * first identity type of each supported type is returned.</p>
+     *
+     * @param stereotype
+     * @param name
+     *
+     * @return
+     */
+    List<IdentityType> lookup(IdentityStereotype.Stereotype stereotype, String name) {
+        if (stereotype == null) {
+            throw MESSAGES.nullArgument("stereotype");
+        }
+
+        if (name == null) {
+            throw MESSAGES.nullArgument("name");
+        }
+
+        List<IdentityType> result = new ArrayList<IdentityType>();
+
+        for (Partition partition : getPartitions()) {
+            PartitionEntries partitionEntries = getEntries(partition);
+            EntryKey key = new EntryKey(stereotype, name);
+            List<IdentityType> identityTypes = partitionEntries.names.get(key);
+
+            if (identityTypes == null) {
+                identityTypes = Collections.unmodifiableList(this.stereotypeNameQuery.lookup(partition, stereotype, name));
+                partitionEntries.names.put(key, identityTypes);
+            }
+
+            result.addAll(IdentityTypeUtil.copy(identityTypes));
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Discards the names resolved for the partition of the given <code>identityType</code>, if it is a role or a
+     * group.</p>
+     *
+     * @param identityType
+     */
+    void invalidate(IdentityType identityType) {
+        if (identityType == null || !this.stereotypeNameQuery.isResolvable(identityType.getClass())) {
+            return;
+        }
+
+        Partition partition = identityType.getPartition();
+
+        if (partition == null || partition.getId() == null) {
+            this.entries.clear();
+        } else {
+            this.entries.remove(partition.getId());
+        }
+    }
+
+    /**
+     * <p>Discards all resolved names and partitions.</p>
+     */
+    synchronized void clear() {
+        this.version++;
+        this.partitions = null;
+        this.entries.clear();
+    }
+
+    private List<Partition> getPartitions() {
+        LoadedPartitions partitions = this.partitions;
+
+        if (partitions == null || isStale(partitions.createdAt)) {
+            long loadedVersion;
+
+            synchronized (this) {
+                loadedVersion = this.version;
+            }
+
+            partitions = new LoadedPartitions(this.stereotypeNameQuery.getPartitions());
+
+            synchronized (this) {
+                if (loadedVersion == this.version) {
+                    this.partitions = partitions;
+                }
+            }
+        }
+
+        return partitions.partitions;
+    }
+
+    private PartitionEntries getEntries(Partition partition) {
+        PartitionEntries partitionEntries = this.entries.get(partition.getId());
+
+        if (partitionEntries != null && isStale(partitionEntries.createdAt)) {
+            this.entries.remove(partition.getId(), partitionEntries);
+            partitionEntries = null;
+        }
+
+        if (partitionEntries == null) {
+            // entries are published before the stores are queried, so a change raised after they are published
+            // always discards them
+            PartitionEntries created = new PartitionEntries();
+            PartitionEntries existing = this.entries.putIfAbsent(partition.getId(), created);
+
+            partitionEntries = existing != null ? existing : created;
+        }
+
+        return partitionEntries;
+    }
+
+    private boolean isStale(long createdAt) {
+        return System.currentTimeMillis() - createdAt > this.maxStaleness;
+    }
+
+    private static class LoadedPartitions {
+        final List<Partition> partitions;
+        final long createdAt = System.currentTimeMillis();
+
+        LoadedPartitions(List<Partition> partitions) {
+            this.partitions = partitions;
+        }
+    }
+
+    private static class PartitionEntries {
+        final Map<EntryKey, List<IdentityType>> names = new ConcurrentHashMap<EntryKey, List<IdentityType>>();
+        final long createdAt = System.currentTimeMillis();
+    }
+
+    private static class EntryKey {
+
+        private final IdentityStereotype.Stereotype stereotype;
+        private final String name;
+
+        EntryKey(IdentityStereotype.Stereotype stereotype, String name) {
+            this.stereotype = stereotype;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof EntryKey)) {
+                return false;
+            }
+
+            EntryKey other = (EntryKey) obj;
+
+            return this.stereotype.equals(other.stereotype) && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.stereotype.hashCode() + this.name.hashCode();
+        }
+    }
+}
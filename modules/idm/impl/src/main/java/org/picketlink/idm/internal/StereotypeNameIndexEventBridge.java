@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.idm.event.EventBridge;
+import org.picketlink.idm.event.IdentityTypeCreatedEvent;
+import org.picketlink.idm.event.IdentityTypeDeletedEvent;
+import org.picketlink.idm.event.IdentityTypeUpdatedEvent;
+import org.picketlink.idm.event.PartitionCreatedEvent;
+import org.picketlink.idm.event.PartitionDeletedEvent;
+import org.picketlink.idm.event.PartitionUpdatedEvent;
+
+/**
+ * <p>{@link EventBridge} that keeps a {@link StereotypeNameIndex} up to date whenever an identity type or partition
+ * changes, before delegating the event to the bridge configured by the application.</p>
+ *
+ * @author Pedro Igor
+ */
+class StereotypeNameIndexEventBridge implements EventBridge {
+
+    private final EventBridge delegate;
+    private final StereotypeNameIndex stereotypeNameIndex;
+
+    StereotypeNameIndexEventBridge(EventBridge delegate, StereotypeNameIndex stereotypeNameIndex) {
+        this.delegate = delegate;
+        this.stereotypeNameIndex = stereotypeNameIndex;
+    }
+
+    @Override
+    public void raiseEvent(Object event) {
+        if (IdentityTypeCreatedEvent.class.isInstance(event)) {
+            this.stereotypeNameIndex.invalidate(((IdentityTypeCreatedEvent) event).getIdentityType());
+        } else if (IdentityTypeUpdatedEvent.class.isInstance(event)) {
+            this.stereotypeNameIndex.invalidate(((IdentityTypeUpdatedEvent) event).getIdentityType());
+        } else if (IdentityTypeDeletedEvent.class.isInstance(event)) {
+            this.stereotypeNameIndex.invalidate(((IdentityTypeDeletedEvent) event).getIdentityType());
+        } else if (PartitionCreatedEvent.class.isInstance(event)
+            || PartitionUpdatedEvent.class.isInstance(event)
+            || PartitionDeletedEvent.class.isInstance(event)) {
+            this.stereotypeNameIndex.clear();
+        }
+
+        this.delegate.raiseEvent(event);
+    }
+}
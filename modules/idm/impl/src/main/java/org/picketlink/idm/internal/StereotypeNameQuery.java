@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.StereotypeRegistry;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Partition;
+import org.picketlink.idm.model.annotation.IdentityStereotype;
+import org.picketlink.idm.model.annotation.StereotypeProperty;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.GROUP;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.ROLE;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_GROUP_NAME;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_ROLE_NAME;
+
+/**
+ * <p>Resolves roles and groups by name against the partitions managed by a {@link PartitionManager}, querying the
+ * stores on every call.</p>
+ *
+ * @author Pedro Igor
+ */
+class StereotypeNameQuery {
+
+    private final PartitionManager partitionManager;
+    private final StereotypeRegistry stereotypeRegistry;
+
+    StereotypeNameQuery(PartitionManager partitionManager, StereotypeRegistry stereotypeRegistry) {
+        this.partitionManager = partitionManager;
+        this.stereotypeRegistry = stereotypeRegistry;
+    }
+
+    /**
+     * <p>Returns the identity types with the given stereotype and name from all partitions. For each partition, the
+     * first identity type of each supported type is returned.</p>
+     *
+     * @param stereotype
+     * @param name
+     *
+     * @return
+     */
+    List<IdentityType> lookup(IdentityStereotype.Stereotype stereotype, String name) {
+        List<IdentityType> result = new ArrayList<IdentityType>();
+
+        for (Partition partition : getPartitions()) {
+            result.addAll(lookup(partition, stereotype, name));
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Returns the identity types with the given stereotype and name from the given partition. The first identity
+     * type of each supported type is returned.</p>
+     *
+     * @param partition
+     * @param stereotype
+     * @param name
+     *
+     * @return
+     */
+    List<IdentityType> lookup(Partition partition, IdentityStereotype.Stereotype stereotype, String name) {
+        if (stereotype == null) {
+            throw MESSAGES.nullArgument("stereotype");
+        }
+
+        if (name == null) {
+            throw MESSAGES.nullArgument("name");
+        }
+
+        StereotypeProperty.Property nameProperty = getNameProperty(stereotype);
+        List<IdentityType> identityTypes = new ArrayList<IdentityType>();
+        IdentityManager identityManager = this.partitionManager.createIdentityManager(partition);
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        for (Class<? extends IdentityType> identityType : this.stereotypeRegistry.getIdentityTypes(stereotype)) {
+            Property<Object> property = this.stereotypeRegistry.getProperty(identityType, nameProperty);
+
+            if (property != null) {
+                List<? extends IdentityType> result = queryBuilder
+                    .createIdentityQuery(identityType)
+                    .where(queryBuilder.equal(AttributedType.QUERY_ATTRIBUTE.byName(property.getName()), name))
+                    .getResultList();
+
+                if (!result.isEmpty()) {
+                    identityTypes.add(result.get(0));
+                }
+            }
+        }
+
+        return identityTypes;
+    }
+
+    /**
+     * <p>Returns all partitions managed by the partition manager.</p>
+     *
+     * @return
+     */
+    List<Partition> getPartitions() {
+        return Collections.unmodifiableList(this.partitionManager.getPartitions(Partition.class));
+    }
+
+    /**
+     * <p>Checks if identity types of the given type can be looked up by name, that is, if they are roles or groups.</p>
+     *
+     * @param type
+     *
+     * @return
+     */
+    boolean isResolvable(Class<?> type) {
+        for (Class<? extends IdentityType> identityType : this.stereotypeRegistry.getIdentityTypes(ROLE)) {
+            if (identityType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+
+        for (Class<? extends IdentityType> identityType : this.stereotypeRegistry.getIdentityTypes(GROUP)) {
+            if (identityType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static StereotypeProperty.Property getNameProperty(IdentityStereotype.Stereotype stereotype) {
+        if (ROLE.equals(stereotype)) {
+            return IDENTITY_ROLE_NAME;
+        } else if (GROUP.equals(stereotype)) {
+            return IDENTITY_GROUP_NAME;
+        }
+
+        throw new IllegalArgumentException("Only roles and groups can be looked up by name. Stereotype: " + stereotype);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.internal.util;
+
+import org.picketlink.idm.model.IdentityType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.picketlink.idm.IDMMessages.MESSAGES;
+
+/**
+ * <p>Utility class for common identity type operations.</p>
+ *
+ * @author Pedro Igor
+ */
+public class IdentityTypeUtil {
+
+    /**
+     * <p>Returns a deep copy of the given <code>identityType</code>, including its partition, attributes and any
+     * referenced identity type, such as the parent of a group. Used by caches to hand out instances that callers are
+     * free to change.</p>
+     *
+     * @param identityType The identity type to copy. It may be null.
+     *
+     * @return The copy, or null if the given identity type is null.
+     */
+    public static <T extends IdentityType> T copy(T identityType) {
+        return copyObject(identityType);
+    }
+
+    /**
+     * <p>Returns a deep copy of each identity type in the given list.</p>
+     *
+     * @param identityTypes
+     *
+     * @return
+     */
+    public static <T extends IdentityType> List<T> copy(List<T> identityTypes) {
+        List<T> copies = new ArrayList<T>(identityTypes.size());
+
+        for (T identityType : identityTypes) {
+            copies.add(copy(identityType));
+        }
+
+        return copies;
+    }
+
+    /**
+     * <p>Returns a copy of the given serializable <code>object</code>, made by serializing and deserializing it.</p>
+     *
+     * @param object The object to copy. It may be null.
+     *
+     * @return The copy, or null if the given object is null.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T copyObject(T object) {
+        if (object == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+
+            output.writeObject(object);
+            output.close();
+        } catch (IOException e) {
+            throw MESSAGES.marshallingError(e);
+        }
+
+        try {
+            ObjectInputStream input = new TypeObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()),
+                object.getClass().getClassLoader());
+
+            return (T) input.readObject();
+        } catch (Exception e) {
+            throw MESSAGES.unmarshallingError(e);
+        }
+    }
+
+    /**
+     * <p>Resolves classes from the class loader of the copied type first, which may not be visible from this
+     * module.</p>
+     */
+    private static class TypeObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        TypeObjectInputStream(InputStream input, ClassLoader classLoader) throws IOException {
+            super(input);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            if (this.classLoader != null) {
+                try {
+                    return Class.forName(description.getName(), false, this.classLoader);
+                } catch (ClassNotFoundException ignore) {
+                    // fall back to the default resolution
+                }
+            }
+
+            return super.resolveClass(description);
+        }
+    }
+}
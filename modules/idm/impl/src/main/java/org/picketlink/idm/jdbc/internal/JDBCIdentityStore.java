@@ -24,6 +24,9 @@ import org.picketlink.idm.jdbc.internal.mappers.JdbcMapper;
 import org.picketlink.idm.jdbc.internal.model.AbstractJdbcType;
 import org.picketlink.idm.jdbc.internal.model.PartitionJdbcType;
 import org.picketlink.idm.jdbc.internal.model.RelationshipJdbcType;
+import org.picketlink.idm.jdbc.internal.model.db.AttributeStorageUtil;
+import org.picketlink.idm.jdbc.internal.model.db.IdentityQueryStorageUtil;
+import org.picketlink.idm.jdbc.internal.model.db.JdbcDialect;
 import org.picketlink.idm.model.Account;
 import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
@@ -62,6 +65,7 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     private DataSource dataSource = null;
     private JdbcMapper mapper = new JdbcMapper();
+    private volatile JdbcDialect dialect;
 
     @Override
     public void setup(JDBCIdentityStoreConfiguration config) {
@@ -132,6 +136,12 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public <V extends IdentityType> List<V> fetchQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
+        IdentityQueryStorageUtil identityQueryStorageUtil = new IdentityQueryStorageUtil(getDialect());
+
+        if (identityQueryStorageUtil.isSupported(identityQuery.getIdentityType())) {
+            return identityQueryStorageUtil.loadIdentityTypes(dataSource, identityQuery, context.getPartition());
+        }
+
         List<V> result = new ArrayList<V>();
         AttributedType attributedType = null;
 
@@ -163,7 +173,13 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public <V extends IdentityType> int countQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
-        throw MESSAGES.notImplemented();
+        IdentityQueryStorageUtil identityQueryStorageUtil = new IdentityQueryStorageUtil(getDialect());
+
+        if (identityQueryStorageUtil.isSupported(identityQuery.getIdentityType())) {
+            return identityQueryStorageUtil.countIdentityTypes(dataSource, identityQuery, context.getPartition());
+        }
+
+        return fetchQueryResults(context, identityQuery).size();
     }
 
     @Override
@@ -181,7 +197,7 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
 
     @Override
     public <V extends Relationship> int countQueryResults(IdentityContext context, RelationshipQuery<V> query) {
-        throw MESSAGES.notImplemented();
+        return fetchQueryResults(context, query).size();
     }
 
     @Override
@@ -229,6 +245,45 @@ public class JDBCIdentityStore extends AbstractIdentityStore<JDBCIdentityStoreCo
         }
     }
 
+    @Override
+    public void loadAttributes(IdentityContext context, Collection<? extends AttributedType> attributedTypes) {
+        List<AttributedType> storedInAttributesTable = new ArrayList<AttributedType>();
+        List<String> ownerIds = new ArrayList<String>();
+
+        for (AttributedType attributedType : attributedTypes) {
+            if (attributedType != null && attributedType.getId() != null) {
+                if (RelationshipJdbcType.class.isInstance(mapper.getInstance(attributedType.getClass()))) {
+                    storedInAttributesTable.add(attributedType);
+                    ownerIds.add(attributedType.getId());
+                } else {
+                    loadAttributes(context, attributedType);
+                }
+            }
+        }
+
+        if (!ownerIds.isEmpty()) {
+            // Load the attributes for all relationships with a single statement
+            Map<String, List<Attribute>> attributes = new AttributeStorageUtil().getAttributes(dataSource, ownerIds);
+
+            for (AttributedType attributedType : storedInAttributesTable) {
+                List<Attribute> attributeList = attributes.get(attributedType.getId());
+
+                if (attributeList != null) {
+                    for (Attribute attribute : attributeList) {
+                        attributedType.setAttribute(attribute);
+                    }
+                }
+            }
+        }
+    }
+
+    private JdbcDialect getDialect() {
+        if (this.dialect == null) {
+            this.dialect = JdbcDialect.forDataSource(this.dataSource);
+        }
+        return this.dialect;
+    }
+
     @Override
     public String getConfigurationName(IdentityContext identityContext, Partition partition) {
         // TODO: get the config name
@@ -34,9 +34,7 @@ import org.picketlink.idm.model.Attribute;
 import org.picketlink.idm.model.AttributedType;
 import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.model.basic.Agent;
-import org.picketlink.idm.model.basic.Grant;
 import org.picketlink.idm.model.basic.Group;
-import org.picketlink.idm.model.basic.GroupMembership;
 import org.picketlink.idm.model.basic.Role;
 import org.picketlink.idm.model.basic.User;
 import org.picketlink.idm.query.QueryParameter;
@@ -129,51 +127,12 @@ public class IdentityManagedJdbcType extends AbstractJdbcType {
 
     @Override
     public void deleteRelationships(AttributedType attributedType) {
-        RelationshipStorageUtil relationshipStorageUtil = new RelationshipStorageUtil();
-        if(attributedType instanceof User){
-            List<Grant> grants = relationshipStorageUtil.loadGrantsForUser(dataSource, (User) attributedType);
-            if(grants != null){
-                for(Grant grant: grants){
-                    relationshipStorageUtil.deleteGrant(dataSource,grant.getId());
-                }
-            }
-            List<GroupMembership> groupMemberships =
-                    relationshipStorageUtil.loadGroupMembershipsForUser(dataSource, (User) attributedType);
-            if(groupMemberships != null){
-                for(GroupMembership groupMembership: groupMemberships){
-                    relationshipStorageUtil.deleteGroupMembership(dataSource,groupMembership.getId());
-                }
-            }
-        } else if(attributedType instanceof Role){
-            List<Grant> grants = relationshipStorageUtil.loadGrantsForRole(dataSource, (Role) attributedType);
-            if(grants != null){
-                for(Grant grant: grants){
-                    relationshipStorageUtil.deleteGrant(dataSource,grant.getId());
-                }
-            }
-        } else if(attributedType instanceof Group){
-            List<GroupMembership> groupMemberships = relationshipStorageUtil.loadGroupMembershipForGroup(dataSource, (Group) attributedType);
-            if(groupMemberships != null){
-                for(GroupMembership groupMembership: groupMemberships){
-                    relationshipStorageUtil.deleteGroupMembership(dataSource,groupMembership.getId());
-                }
-            }
-        } else if(attributedType instanceof Agent){
-            List<Grant> grants = relationshipStorageUtil.loadGrantsForAgent(dataSource, (Agent) attributedType);
-            if(grants != null){
-                for(Grant grant: grants){
-                    relationshipStorageUtil.deleteGrant(dataSource,grant.getId());
-                }
-            }
-            List<GroupMembership> groupMemberships = relationshipStorageUtil.loadGroupMembershipsForAgent(dataSource, (Agent) attributedType);
-            if(groupMemberships != null){
-                for(GroupMembership groupMembership: groupMemberships){
-                    relationshipStorageUtil.deleteGroupMembership(dataSource,groupMembership.getId());
-                }
-            }
-        } else {
+        if (!(attributedType instanceof User || attributedType instanceof Role || attributedType instanceof Group
+                || attributedType instanceof Agent)) {
             throw IDMMessages.MESSAGES.unexpectedType(attributedType.getClass());
         }
+        RelationshipStorageUtil relationshipStorageUtil = new RelationshipStorageUtil();
+        relationshipStorageUtil.deleteRelationships(dataSource, attributedType.getId());
     }
 
     @Override
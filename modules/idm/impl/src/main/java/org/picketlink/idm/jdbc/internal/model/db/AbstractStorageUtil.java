@@ -57,20 +57,31 @@ public abstract class AbstractStorageUtil {
         if (dataSource == null) {
             throw new RuntimeException("Null datasource");
         }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            return loadPartition(connection, id);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    protected Partition loadPartition(Connection connection, String id) {
         if (id == null) {
             throw new RuntimeException("Null id");
         }
-        Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
             String sql = "select name from Partition where id =?";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, id);
             resultSet = preparedStatement.executeQuery();
             while (resultSet.next()) {
-                Partition partition = new PartitionJdbcType(resultSet.getString(1));
+                PartitionJdbcType partition = new PartitionJdbcType(resultSet.getString(1));
+                partition.setId(id);
                 return partition;
             }
         } catch (SQLException e) {
@@ -78,7 +89,6 @@ public abstract class AbstractStorageUtil {
         } finally {
             safeClose(resultSet);
             safeClose(preparedStatement);
-            safeClose(connection);
         }
         return null;
     }
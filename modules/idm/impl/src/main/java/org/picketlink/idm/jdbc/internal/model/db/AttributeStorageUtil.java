@@ -23,7 +23,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -38,6 +44,11 @@ import org.picketlink.idm.model.Attribute;
  * @since October 25, 2013
  */
 public class AttributeStorageUtil extends AbstractStorageUtil {
+    /**
+     * Maximum number of owners referenced by a single statement when loading attributes
+     */
+    public static final int BATCH_SIZE = 500;
+
     /**
      * Get the {@link Attribute} given its name and an id
      *
@@ -102,37 +113,107 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
      * @return
      */
     public List<Attribute> getAttributes(DataSource dataSource, String ownerId) {
+        List<Attribute> attributes = getAttributes(dataSource, Collections.singletonList(ownerId)).get(ownerId);
+
+        if (attributes == null) {
+            return new ArrayList<Attribute>();
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Get the {@link Attribute} list for each of the given owners. Attributes are loaded with a single statement for
+     * up to {@link #BATCH_SIZE} owners.
+     *
+     * @param dataSource
+     * @param ownerIds
+     * @return the attributes mapped by the id of their owner. Owners without attributes are not mapped.
+     */
+    public Map<String, List<Attribute>> getAttributes(DataSource dataSource, Collection<String> ownerIds) {
         if (dataSource == null) {
             throw IDMMessages.MESSAGES.nullArgument("datasource");
         }
-        List<Attribute> attributes = new ArrayList<Attribute>();
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            return getAttributes(connection, ownerIds);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(connection);
+        }
+    }
 
-        UserStorageUtil userStorageUtil = new UserStorageUtil();
-        RoleStorageUtil roleStorageUtil = new RoleStorageUtil();
-        GroupStorageUtil groupStorageUtil = new GroupStorageUtil();
+    /**
+     * Get the {@link Attribute} list for each of the given owners using an already opened {@link Connection}, which
+     * is not closed by this method.
+     *
+     * @param connection
+     * @param ownerIds
+     * @return the attributes mapped by the id of their owner. Owners without attributes are not mapped.
+     */
+    public Map<String, List<Attribute>> getAttributes(Connection connection, Collection<String> ownerIds) {
+        Map<String, List<Attribute>> attributes = new HashMap<String, List<Attribute>>();
+        List<String> owners = new ArrayList<String>(new LinkedHashSet<String>(ownerIds));
+
+        if (owners.isEmpty()) {
+            return attributes;
+        }
+
+        // owner -> attribute name -> rows holding the value and the type of the attribute
+        Map<String, Map<String, List<String[]>>> rows = new LinkedHashMap<String, Map<String, List<String[]>>>();
 
-        Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         try {
-            connection = dataSource.getConnection();
-            String sql = "select name,value from Attributes where owner =?";
-            preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, ownerId);
-            resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                String storedName = resultSet.getString(1);
-
-                Attribute attribute = getAttribute(dataSource, ownerId, storedName);
-                attributes.add(attribute);
+            for (int i = 0; i < owners.size(); i += BATCH_SIZE) {
+                List<String> batch = owners.subList(i, Math.min(i + BATCH_SIZE, owners.size()));
+                StringBuilder sql = new StringBuilder("select owner,name,value,attributeType from Attributes where owner in (");
+                for (int j = 0; j < batch.size(); j++) {
+                    sql.append(j == 0 ? "?" : ",?");
+                }
+                sql.append(")");
+                preparedStatement = connection.prepareStatement(sql.toString());
+                for (int j = 0; j < batch.size(); j++) {
+                    preparedStatement.setString(j + 1, batch.get(j));
+                }
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    String owner = resultSet.getString(1);
+                    String name = resultSet.getString(2);
+                    Map<String, List<String[]>> ownerRows = rows.get(owner);
+                    if (ownerRows == null) {
+                        ownerRows = new LinkedHashMap<String, List<String[]>>();
+                        rows.put(owner, ownerRows);
+                    }
+                    List<String[]> attributeRows = ownerRows.get(name);
+                    if (attributeRows == null) {
+                        attributeRows = new ArrayList<String[]>();
+                        ownerRows.put(name, attributeRows);
+                    }
+                    attributeRows.add(new String[] { resultSet.getString(3), resultSet.getString(4) });
+                }
+                safeClose(resultSet);
+                safeClose(preparedStatement);
+                resultSet = null;
+                preparedStatement = null;
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
             safeClose(resultSet);
             safeClose(preparedStatement);
-            safeClose(connection);
         }
+
+        for (Map.Entry<String, Map<String, List<String[]>>> ownerRows : rows.entrySet()) {
+            List<Attribute> ownerAttributes = new ArrayList<Attribute>();
+            for (Map.Entry<String, List<String[]>> attributeRows : ownerRows.getValue().entrySet()) {
+                ownerAttributes.add(createAttribute(attributeRows.getKey(), attributeRows.getValue()));
+            }
+            attributes.put(ownerRows.getKey(), ownerAttributes);
+        }
+
         return attributes;
     }
 
@@ -159,33 +240,31 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
             values = new Serializable[] { serializedValues };
         }
 
-        for (Serializable attributeValue : (Serializable[]) values) {
-            UserStorageUtil userStorageUtil = new UserStorageUtil();
-            RoleStorageUtil roleStorageUtil = new RoleStorageUtil();
-            GroupStorageUtil groupStorageUtil = new GroupStorageUtil();
-
-            Connection connection = null;
-            PreparedStatement preparedStatement = null;
-            ResultSet resultSet = null;
-            try {
-                connection = dataSource.getConnection();
-                String sql = "insert into Attributes set owner =?, name=?, value=?,attributeType=?";
-                preparedStatement = connection.prepareStatement(sql);
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = dataSource.getConnection();
+            String sql = "insert into Attributes (owner,name,value,attributeType) values (?,?,?,?)";
+            preparedStatement = connection.prepareStatement(sql);
+            // Multi valued attributes are stored with a single batch
+            for (Serializable attributeValue : (Serializable[]) values) {
                 preparedStatement.setString(1, ownerId);
                 preparedStatement.setString(2, attribute.getName());
                 preparedStatement.setString(3, Base64.encodeObject(attributeValue));
                 preparedStatement.setString(4, attributeValue.getClass().getName());
-                int result = preparedStatement.executeUpdate();
-                if (result == 0) {
+                preparedStatement.addBatch();
+            }
+            int[] result = preparedStatement.executeBatch();
+            for (int count : result) {
+                if (count == 0) {
                     throw new RuntimeException("Update failed");
                 }
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            } finally {
-                safeClose(resultSet);
-                safeClose(preparedStatement);
-                safeClose(connection);
             }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(connection);
         }
     }
 
@@ -256,6 +335,33 @@ public class AttributeStorageUtil extends AbstractStorageUtil {
         return list;
     }
 
+    private Attribute createAttribute(String attributeName, List<String[]> rows) {
+        List<Serializable> list = new ArrayList<Serializable>();
+        List<String> stringList = new ArrayList<String>();
+        for (String[] row : rows) {
+            if (String.class.getName().equals(row[1])) {
+                stringList.add((String) Base64.decodeToObject(row[0]));
+            } else {
+                list.add((Serializable) Base64.decodeToObject(row[0]));
+            }
+        }
+        List<? extends Serializable> valList = stringList.isEmpty() ? list : stringList;
+        String attributeType = rows.get(0)[1];
+        Attribute attribute;
+        if (valList.size() > 1) {
+            attribute = new Attribute(attributeName, "dummy");
+            if (isPrimitiveNativeType(attributeType)) {
+                handlePrimitiveAttributeType(attribute, attributeType, valList);
+            } else {
+                // Multi valued attribute
+                attribute.setValue(valList.toArray(new Serializable[valList.size()]));
+            }
+        } else {
+            attribute = new Attribute(attributeName, valList.get(0));
+        }
+        return attribute;
+    }
+
     private boolean isPrimitiveNativeType(String attributeType) {
         if (String.class.getName().equals(attributeType) || Integer.class.getName().equals(attributeType)) {
             return true;
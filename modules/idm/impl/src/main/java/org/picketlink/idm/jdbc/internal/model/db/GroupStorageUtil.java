@@ -288,8 +288,8 @@ public class GroupStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         try {
             connection = dataSource.getConnection();
-            String sql = "insert into Groups set name=?,id=?,"
-                    + "createdDate=?,expirationDate=?,partitionID=?,parentGroup=?,path=?,enabled=?";
+            String sql = "insert into Groups (name,id,createdDate,expirationDate,partitionID,parentGroup,path,enabled)"
+                    + " values (?,?,?,?,?,?,?,?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, group.getName());
             preparedStatement.setString(2, group.getId());
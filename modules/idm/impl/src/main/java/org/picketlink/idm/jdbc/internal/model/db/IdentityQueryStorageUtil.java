@@ -0,0 +1,549 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.jdbc.internal.model.db;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.picketlink.common.util.Base64;
+import org.picketlink.idm.IDMMessages;
+import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Partition;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.AttributeParameter;
+import org.picketlink.idm.query.Condition;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.QueryParameter;
+import org.picketlink.idm.query.Sort;
+import org.picketlink.idm.query.internal.BetweenCondition;
+import org.picketlink.idm.query.internal.EqualCondition;
+import org.picketlink.idm.query.internal.GreaterThanCondition;
+import org.picketlink.idm.query.internal.InCondition;
+import org.picketlink.idm.query.internal.LessThanCondition;
+import org.picketlink.idm.query.internal.LikeCondition;
+
+/**
+ * <p>Storage utility executing {@link IdentityQuery} instances for {@link User}, {@link Role} and {@link Group}
+ * types.</p>
+ *
+ * <p>Conditions, sorting and pagination are translated to a single SQL statement, so that only the requested page is
+ * read from the database and counts are computed by the database. Query parameters that are not mapped to a column
+ * are matched against the ad-hoc attributes stored in the <code>Attributes</code> table. Partitions, parent groups and
+ * attributes of the results are loaded using the same connection, with a single statement for all the attributes.</p>
+ *
+ * @author Pedro Igor
+ */
+public class IdentityQueryStorageUtil extends AbstractStorageUtil {
+
+    /**
+     * The tables storing identity types and the columns that can be referenced by queries.
+     */
+    private enum IdentityTable {
+        USER("User", "id", "firstName", "lastName", "email", "loginName", "enabled", "createdDate", "expirationDate",
+            "partitionID"),
+        ROLE("Role", "id", "name", "enabled", "createdDate", "expirationDate", "partitionID"),
+        GROUP("Groups", "id", "name", "enabled", "createdDate", "expirationDate", "partitionID", "parentGroup", "path");
+
+        private final String name;
+        private final List<String> columns;
+
+        private IdentityTable(String name, String... columns) {
+            this.name = name;
+            this.columns = Arrays.asList(columns);
+        }
+
+        private String getSelectClause() {
+            StringBuilder select = new StringBuilder("select ");
+
+            for (int i = 0; i < this.columns.size(); i++) {
+                if (i > 0) {
+                    select.append(",");
+                }
+
+                select.append(this.columns.get(i));
+            }
+
+            return select.append(" from ").append(this.name).toString();
+        }
+
+        private static IdentityTable forType(Class<?> identityType) {
+            if (User.class.equals(identityType)) {
+                return USER;
+            } else if (Role.class.equals(identityType)) {
+                return ROLE;
+            } else if (Group.class.equals(identityType)) {
+                return GROUP;
+            }
+
+            return null;
+        }
+    }
+
+    private static final String PARTITION_COLUMN = "partitionID";
+
+    private final JdbcDialect dialect;
+
+    public IdentityQueryStorageUtil(JdbcDialect dialect) {
+        if (dialect == null) {
+            throw IDMMessages.MESSAGES.nullArgument("dialect");
+        }
+        this.dialect = dialect;
+    }
+
+    /**
+     * Check if queries for the given identity type can be executed by this class
+     *
+     * @param identityType
+     * @return
+     */
+    public boolean isSupported(Class<? extends IdentityType> identityType) {
+        return IdentityTable.forType(identityType) != null;
+    }
+
+    /**
+     * Load the identity types matching the given query
+     *
+     * @param dataSource
+     * @param identityQuery
+     * @param partition the partition to query when the query has no {@link IdentityType#PARTITION} condition
+     * @return
+     */
+    public <T extends IdentityType> List<T> loadIdentityTypes(DataSource dataSource, IdentityQuery<T> identityQuery,
+                                                             Partition partition) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        IdentityTable table = getTable(identityQuery.getIdentityType());
+        List<Object> parameters = new ArrayList<Object>();
+        StringBuilder sql = new StringBuilder(table.getSelectClause());
+
+        appendWhereClause(sql, parameters, table, identityQuery, partition);
+        appendOrderByClause(sql, table, identityQuery);
+
+        if (identityQuery.getLimit() > 0) {
+            this.dialect.appendPagination(sql, parameters, Math.max(identityQuery.getOffset(), 0), identityQuery.getLimit());
+        }
+
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+
+            List<T> result = new ArrayList<T>();
+            Map<String, IdentityType> loadedTypes = new LinkedHashMap<String, IdentityType>();
+
+            for (IdentityType identityType : executeQuery(connection, table, sql.toString(), parameters, loadedTypes)) {
+                result.add((T) identityType);
+            }
+
+            // Get attributes also, including the ones of parent groups
+            Map<String, List<Attribute>> attributes = new AttributeStorageUtil().getAttributes(connection,
+                    loadedTypes.keySet());
+
+            for (IdentityType identityType : loadedTypes.values()) {
+                List<Attribute> attributeList = attributes.get(identityType.getId());
+                if (attributeList != null) {
+                    for (Attribute attribute : attributeList) {
+                        identityType.setAttribute(attribute);
+                    }
+                }
+            }
+
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(connection);
+        }
+    }
+
+    /**
+     * Count the identity types matching the given query, regardless of its offset and limit
+     *
+     * @param dataSource
+     * @param identityQuery
+     * @param partition the partition to query when the query has no {@link IdentityType#PARTITION} condition
+     * @return
+     */
+    public int countIdentityTypes(DataSource dataSource, IdentityQuery<?> identityQuery, Partition partition) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        IdentityTable table = getTable(identityQuery.getIdentityType());
+        List<Object> parameters = new ArrayList<Object>();
+        StringBuilder sql = new StringBuilder("select count(*) from ").append(table.name);
+
+        appendWhereClause(sql, parameters, table, identityQuery, partition);
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = dataSource.getConnection();
+            preparedStatement = prepareStatement(connection, sql.toString(), parameters);
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                return resultSet.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(resultSet);
+            safeClose(preparedStatement);
+            safeClose(connection);
+        }
+        return 0;
+    }
+
+    private IdentityTable getTable(Class<? extends IdentityType> identityType) {
+        IdentityTable table = IdentityTable.forType(identityType);
+
+        if (table == null) {
+            throw IDMMessages.MESSAGES.unexpectedType(identityType);
+        }
+
+        return table;
+    }
+
+    private void appendWhereClause(StringBuilder sql, List<Object> parameters, IdentityTable table,
+                                   IdentityQuery<?> identityQuery, Partition partition) {
+        List<String> predicates = new ArrayList<String>();
+
+        for (Condition condition : identityQuery.getConditions()) {
+            if (IdentityType.PARTITION.equals(condition.getParameter())) {
+                if (!EqualCondition.class.isInstance(condition)) {
+                    throw new IdentityManagementException("Only equality conditions are allowed when querying based on a partition.");
+                }
+
+                Object value = ((EqualCondition) condition).getValue();
+
+                if (value != null) {
+                    partition = (Partition) value;
+                }
+            }
+        }
+
+        if (partition != null && partition.getId() != null) {
+            predicates.add(PARTITION_COLUMN + " = ?");
+            parameters.add(partition.getId());
+        }
+
+        for (Condition condition : identityQuery.getConditions()) {
+            QueryParameter queryParameter = condition.getParameter();
+
+            if (IdentityType.PARTITION.equals(queryParameter)) {
+                continue;
+            }
+
+            if (!AttributeParameter.class.isInstance(queryParameter)) {
+                throw new IdentityManagementException("Unsupported query parameter [" + queryParameter + "].");
+            }
+
+            String name = ((AttributeParameter) queryParameter).getName();
+
+            if (table.columns.contains(name)) {
+                predicates.add(createColumnPredicate(name, condition, parameters));
+            } else if (IdentityType.MODIFIED_AFTER.equals(queryParameter)) {
+                // modification dates are not stored, the parameter must not be mistaken for an ad-hoc attribute
+                throw new IdentityManagementException("Query parameter [" + name + "] is not supported. Modification dates are not stored by the JDBC store.");
+            } else {
+                predicates.add(createAttributePredicate(name, condition, parameters));
+            }
+        }
+
+        for (int i = 0; i < predicates.size(); i++) {
+            sql.append(i == 0 ? " where " : " and ").append(predicates.get(i));
+        }
+    }
+
+    private String createColumnPredicate(String column, Condition condition, List<Object> parameters) {
+        if (EqualCondition.class.isInstance(condition)) {
+            Object value = ((EqualCondition) condition).getValue();
+
+            if (value == null) {
+                return column + " is null";
+            }
+
+            parameters.add(toColumnValue(value));
+
+            return column + " = ?";
+        } else if (LikeCondition.class.isInstance(condition)) {
+            parameters.add(((LikeCondition) condition).getValue());
+
+            return column + " like ?";
+        } else if (GreaterThanCondition.class.isInstance(condition)) {
+            GreaterThanCondition greaterThanCondition = (GreaterThanCondition) condition;
+
+            parameters.add(toColumnValue(greaterThanCondition.getValue()));
+
+            return column + (greaterThanCondition.isOrEqual() ? " >= ?" : " > ?");
+        } else if (LessThanCondition.class.isInstance(condition)) {
+            LessThanCondition lessThanCondition = (LessThanCondition) condition;
+
+            parameters.add(toColumnValue(lessThanCondition.getValue()));
+
+            return column + (lessThanCondition.isOrEqual() ? " <= ?" : " < ?");
+        } else if (BetweenCondition.class.isInstance(condition)) {
+            BetweenCondition betweenCondition = (BetweenCondition) condition;
+
+            parameters.add(toColumnValue(betweenCondition.getX()));
+            parameters.add(toColumnValue(betweenCondition.getY()));
+
+            return column + " between ? and ?";
+        } else if (InCondition.class.isInstance(condition)) {
+            Object[] values = ((InCondition) condition).getValue();
+
+            if (values == null || values.length == 0) {
+                return "1 = 0";
+            }
+
+            for (Object value : values) {
+                parameters.add(toColumnValue(value));
+            }
+
+            return column + " in (" + createPlaceholders(values.length) + ")";
+        }
+
+        throw new IdentityManagementException("Unsupported query condition [" + condition + "].");
+    }
+
+    private String createAttributePredicate(String attributeName, Condition condition, List<Object> parameters) {
+        Object[] values;
+
+        if (EqualCondition.class.isInstance(condition)) {
+            Object value = ((EqualCondition) condition).getValue();
+
+            if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+                // multi valued attributes must hold all the given values
+                StringBuilder predicate = new StringBuilder();
+                Object[] arrayValue = (Object[]) value;
+
+                for (int i = 0; i < arrayValue.length; i++) {
+                    if (i > 0) {
+                        predicate.append(" and ");
+                    }
+
+                    predicate.append(createAttributePredicate(attributeName, new Object[] {arrayValue[i]}, parameters));
+                }
+
+                return arrayValue.length == 0 ? "1 = 1" : predicate.toString();
+            }
+
+            values = new Object[] {value};
+        } else if (InCondition.class.isInstance(condition)) {
+            values = ((InCondition) condition).getValue();
+
+            if (values == null || values.length == 0) {
+                return "1 = 0";
+            }
+        } else {
+            throw new IdentityManagementException("Unsupported query condition [" + condition
+                    + "] for attribute [" + attributeName + "].");
+        }
+
+        return createAttributePredicate(attributeName, values, parameters);
+    }
+
+    private String createAttributePredicate(String attributeName, Object[] values, List<Object> parameters) {
+        parameters.add(attributeName);
+
+        for (Object value : values) {
+            parameters.add(Base64.encodeObject((Serializable) value));
+        }
+
+        return "id in (select owner from Attributes where name = ? and value in (" + createPlaceholders(values.length)
+                + "))";
+    }
+
+    private void appendOrderByClause(StringBuilder sql, IdentityTable table, IdentityQuery<?> identityQuery) {
+        List<String> orders = new ArrayList<String>();
+        boolean sortedById = false;
+
+        for (Sort sort : identityQuery.getSorting()) {
+            QueryParameter queryParameter = sort.getParameter();
+
+            if (!AttributeParameter.class.isInstance(queryParameter)) {
+                throw new IdentityManagementException("Sorting parameter is not a [" + AttributeParameter.class + "].");
+            }
+
+            String column = ((AttributeParameter) queryParameter).getName();
+
+            if (!table.columns.contains(column) || PARTITION_COLUMN.equals(column)) {
+                throw new IdentityManagementException("Sorting parameter [" + column + "] is not supported.");
+            }
+
+            sortedById = sortedById || "id".equals(column);
+            orders.add(column + (sort.isAscending() ? " asc" : " desc"));
+        }
+
+        if (identityQuery.getLimit() > 0 && !sortedById) {
+            // pages must be stable across statements
+            orders.add("id asc");
+        }
+
+        for (int i = 0; i < orders.size(); i++) {
+            sql.append(i == 0 ? " order by " : ",").append(orders.get(i));
+        }
+    }
+
+    private List<IdentityType> executeQuery(Connection connection, IdentityTable table, String sql, List<Object> parameters,
+                                            Map<String, IdentityType> loadedTypes) throws SQLException {
+        List<IdentityType> result = new ArrayList<IdentityType>();
+        Map<IdentityType, String> partitionIds = new HashMap<IdentityType, String>();
+        Map<Group, String> parentGroupIds = new HashMap<Group, String>();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            preparedStatement = prepareStatement(connection, sql, parameters);
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                IdentityType identityType = createIdentityType(table, resultSet);
+                partitionIds.put(identityType, resultSet.getString(PARTITION_COLUMN));
+                if (table == IdentityTable.GROUP) {
+                    parentGroupIds.put((Group) identityType, resultSet.getString("parentGroup"));
+                }
+                if (!loadedTypes.containsKey(identityType.getId())) {
+                    loadedTypes.put(identityType.getId(), identityType);
+                }
+                result.add(identityType);
+            }
+        } finally {
+            safeClose(resultSet);
+            safeClose(preparedStatement);
+        }
+
+        // The result set is fully read before issuing other statements on the same connection
+        Map<String, Partition> partitions = new HashMap<String, Partition>();
+
+        for (Map.Entry<IdentityType, String> entry : partitionIds.entrySet()) {
+            String partitionId = entry.getValue();
+            if (partitionId != null) {
+                if (!partitions.containsKey(partitionId)) {
+                    partitions.put(partitionId, loadPartition(connection, partitionId));
+                }
+                entry.getKey().setPartition(partitions.get(partitionId));
+            }
+        }
+
+        for (Map.Entry<Group, String> entry : parentGroupIds.entrySet()) {
+            String parentGroupId = entry.getValue();
+            if (parentGroupId != null) {
+                IdentityType parentGroup = loadedTypes.get(parentGroupId);
+                if (parentGroup == null) {
+                    List<IdentityType> parents = executeQuery(connection, IdentityTable.GROUP,
+                            IdentityTable.GROUP.getSelectClause() + " where id = ?",
+                            Arrays.<Object>asList(parentGroupId), loadedTypes);
+                    if (!parents.isEmpty()) {
+                        parentGroup = parents.get(0);
+                    }
+                }
+                entry.getKey().setParentGroup((Group) parentGroup);
+            }
+        }
+
+        return result;
+    }
+
+    private IdentityType createIdentityType(IdentityTable table, ResultSet resultSet) throws SQLException {
+        IdentityType identityType;
+
+        if (table == IdentityTable.USER) {
+            User user = new User();
+            user.setLoginName(resultSet.getString("loginName"));
+            user.setFirstName(resultSet.getString("firstName"));
+            user.setLastName(resultSet.getString("lastName"));
+            user.setEmail(resultSet.getString("email"));
+            identityType = user;
+        } else if (table == IdentityTable.ROLE) {
+            Role role = new Role();
+            role.setName(resultSet.getString("name"));
+            identityType = role;
+        } else {
+            Group group = new Group();
+            group.setName(resultSet.getString("name"));
+            group.setPath(resultSet.getString("path"));
+            identityType = group;
+        }
+
+        identityType.setId(resultSet.getString("id"));
+        identityType.setEnabled("y".equalsIgnoreCase(resultSet.getString("enabled")));
+        Timestamp creationDate = resultSet.getTimestamp("createdDate");
+        if (creationDate != null) {
+            identityType.setCreatedDate(new Date(creationDate.getTime()));
+        }
+        Timestamp expirationDate = resultSet.getTimestamp("expirationDate");
+        if (expirationDate != null) {
+            identityType.setExpirationDate(new Date(expirationDate.getTime()));
+        }
+
+        return identityType;
+    }
+
+    private PreparedStatement prepareStatement(Connection connection, String sql, List<Object> parameters)
+            throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                preparedStatement.setObject(i + 1, parameters.get(i));
+            }
+        } catch (SQLException e) {
+            safeClose(preparedStatement);
+            throw e;
+        }
+        return preparedStatement;
+    }
+
+    private Object toColumnValue(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "y" : "n";
+        } else if (value instanceof Date) {
+            return new Timestamp(((Date) value).getTime());
+        } else if (value instanceof AttributedType) {
+            return ((AttributedType) value).getId();
+        }
+
+        return value;
+    }
+
+    private String createPlaceholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+
+        return placeholders.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.jdbc.internal.model.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.picketlink.idm.IDMMessages;
+
+/**
+ * <p>The SQL constructs that differ between databases and are used when querying the JDBC store.</p>
+ *
+ * @author Pedro Igor
+ */
+public enum JdbcDialect {
+
+    /**
+     * Databases supporting the <code>limit ? offset ?</code> clause, such as H2, HSQLDB, MySQL and PostgreSQL.
+     */
+    LIMIT_OFFSET {
+        @Override
+        public void appendPagination(StringBuilder sql, List<Object> parameters, int offset, int limit) {
+            sql.append(" limit ? offset ?");
+            parameters.add(limit);
+            parameters.add(offset);
+        }
+    },
+
+    /**
+     * Databases supporting the SQL:2008 <code>offset ? rows fetch next ? rows only</code> clause, such as Oracle 12c,
+     * SQL Server 2012, DB2 and Derby.
+     */
+    ANSI {
+        @Override
+        public void appendPagination(StringBuilder sql, List<Object> parameters, int offset, int limit) {
+            sql.append(" offset ? rows fetch next ? rows only");
+            parameters.add(offset);
+            parameters.add(limit);
+        }
+    };
+
+    private static final String[] LIMIT_OFFSET_DATABASES = {"h2", "hsql", "mysql", "mariadb", "postgresql", "sqlite"};
+
+    /**
+     * <p>Appends the pagination clause to the given <code>sql</code>, which must already have an <code>order by</code>
+     * clause, and adds the values of its placeholders to <code>parameters</code>.</p>
+     *
+     * @param sql
+     * @param parameters
+     * @param offset
+     * @param limit
+     */
+    public abstract void appendPagination(StringBuilder sql, List<Object> parameters, int offset, int limit);
+
+    /**
+     * <p>Returns the dialect for the database with the given product name, as returned by
+     * {@link java.sql.DatabaseMetaData#getDatabaseProductName()}.</p>
+     *
+     * @param databaseProductName
+     * @return
+     */
+    public static JdbcDialect forDatabase(String databaseProductName) {
+        if (databaseProductName != null) {
+            String productName = databaseProductName.toLowerCase();
+
+            for (String database : LIMIT_OFFSET_DATABASES) {
+                if (productName.contains(database)) {
+                    return LIMIT_OFFSET;
+                }
+            }
+        }
+
+        return ANSI;
+    }
+
+    /**
+     * <p>Returns the dialect for the database behind the given {@link DataSource}.</p>
+     *
+     * @param dataSource
+     * @return
+     */
+    public static JdbcDialect forDataSource(DataSource dataSource) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            return forDatabase(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                }
+            }
+        }
+    }
+}
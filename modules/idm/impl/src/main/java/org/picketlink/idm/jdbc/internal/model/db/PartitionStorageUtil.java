@@ -123,7 +123,7 @@ public class PartitionStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         try {
             connection = dataSource.getConnection();
-            String sql = "insert into Partition set name=?,id=?,typeName=?,configurationName=?";
+            String sql = "insert into Partition (name,id,typeName,configurationName) values (?,?,?,?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, partition.getName());
             preparedStatement.setString(2, partition.getId());
@@ -108,6 +108,46 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         }
     }
 
+    /**
+     * Delete all the relationships, and their attributes, in which the identity type with the given id participates.
+     * Both deletions are performed with a single statement each, regardless of the number of relationships.
+     *
+     * @param dataSource
+     * @param identityTypeId
+     */
+    public void deleteRelationships(DataSource dataSource, String identityTypeId) {
+        if (dataSource == null) {
+            throw IDMMessages.MESSAGES.nullArgument("datasource");
+        }
+        if (identityTypeId == null) {
+            throw IDMMessages.MESSAGES.nullArgument("id");
+        }
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = dataSource.getConnection();
+            String sql = "delete from Attributes where owner in "
+                    + "(select id from Relationship where relBegin=? or relEnd=?)";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, identityTypeId);
+            preparedStatement.setString(2, identityTypeId);
+            preparedStatement.executeUpdate();
+            safeClose(preparedStatement);
+
+            sql = "delete from Relationship where relBegin=? or relEnd=?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, identityTypeId);
+            preparedStatement.setString(2, identityTypeId);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            safeClose(preparedStatement);
+            safeClose(connection);
+        }
+    }
+
     /**
      * Load {@link Grant} given its id
      *
@@ -482,7 +522,7 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         try {
             connection = dataSource.getConnection();
-            String sql = "insert into Relationship set id=?,relBegin=?,relEnd=?,type=?";
+            String sql = "insert into Relationship (id,relBegin,relEnd,type) values (?,?,?,?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, grant.getId());
             preparedStatement.setString(2, grant.getAssignee().getId());
@@ -514,7 +554,7 @@ public class RelationshipStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         try {
             connection = dataSource.getConnection();
-            String sql = "insert into Relationship set id=?,relBegin=?,relEnd=?,type=?";
+            String sql = "insert into Relationship (id,relBegin,relEnd,type) values (?,?,?,?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, groupMembership.getId());
             preparedStatement.setString(2, groupMembership.getMember().getId());
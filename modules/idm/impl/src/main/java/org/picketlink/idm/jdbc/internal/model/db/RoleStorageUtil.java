@@ -215,7 +215,7 @@ public class RoleStorageUtil extends AbstractStorageUtil {
         PreparedStatement preparedStatement = null;
         try {
             connection = dataSource.getConnection();
-            String sql = "insert into Role set name=?,id=?," + "createdDate=?,expirationDate=?,partitionID=?," + "enabled=?";
+            String sql = "insert into Role (name,id,createdDate,expirationDate,partitionID,enabled)" + " values (?,?,?,?,?,?)";
             preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, role.getName());
             preparedStatement.setString(2, role.getId());
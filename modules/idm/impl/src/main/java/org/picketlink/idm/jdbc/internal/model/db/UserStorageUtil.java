@@ -291,9 +291,10 @@ public class UserStorageUtil extends AbstractStorageUtil {
         if (dataSource == null) {
             throw IDMMessages.MESSAGES.nullArgument("datasource");
         }
-        String storeSql = "insert into user set loginName=?,id=?," + "createdDate=?,partitionID=?,enabled=?,expirationDate=?";
+        String storeSql = "insert into User (loginName,id,createdDate,partitionID,enabled,expirationDate)"
+                + " values (?,?,?,?,?,?)";
         if (agent.getExpirationDate() == null) {
-            storeSql = "insert into user set loginName=?,id=?," + "createdDate=?,partitionID=?,enabled=?";
+            storeSql = "insert into User (loginName,id,createdDate,partitionID,enabled)" + " values (?,?,?,?,?)";
         }
 
         Connection connection = null;
@@ -342,11 +343,11 @@ public class UserStorageUtil extends AbstractStorageUtil {
         if (dataSource == null) {
             throw IDMMessages.MESSAGES.nullArgument("datasource");
         }
-        String storeSql = "insert into user set firstName=?,lastName=?,email=?,loginName=?,id=?,"
-                + "createdDate=?,partitionID=?,enabled=?,expirationDate=?";
+        String storeSql = "insert into User (firstName,lastName,email,loginName,id,"
+                + "createdDate,partitionID,enabled,expirationDate) values (?,?,?,?,?,?,?,?,?)";
         if (user.getExpirationDate() == null) {
-            storeSql = "insert into user set firstName=?,lastName=?,email=?,loginName=?,id=?,"
-                    + "createdDate=?,partitionID=?,enabled=?";
+            storeSql = "insert into User (firstName,lastName,email,loginName,id,"
+                    + "createdDate,partitionID,enabled) values (?,?,?,?,?,?,?,?)";
         }
 
         Connection connection = null;
@@ -105,10 +105,12 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -141,6 +143,9 @@ public class JPAIdentityStore
     // Invocation context parameters
     public static final String INVOCATION_CTX_ENTITY_MANAGER = "CTX_ENTITY_MANAGER";
 
+    // The maximum number of owners referenced by the IN clause when loading attributes in bulk
+    private static final int ATTRIBUTE_BATCH_SIZE = 500;
+
     private final List<EntityMapper> entityMappers = new ArrayList<EntityMapper>();
 
     @Override
@@ -390,6 +395,66 @@ public class JPAIdentityStore
         }
     }
 
+    @Override
+    public void loadAttributes(IdentityContext context, Collection<? extends AttributedType> attributedTypes) {
+        EntityManager entityManager = getEntityManager(context);
+        Map<EntityMapper, Map<String, Map<String, List<AttributedType>>>> typesByMapper =
+            new LinkedHashMap<EntityMapper, Map<String, Map<String, List<AttributedType>>>>();
+
+        for (AttributedType attributedType : attributedTypes) {
+            if (attributedType == null || attributedType.getId() == null) {
+                continue;
+            }
+
+            EntityMapper attributeMapper = getAttributeMapper(attributedType.getClass());
+            String ownerPath = getAttributeOwnerPath(attributedType, attributeMapper);
+
+            if (ownerPath == null) {
+                // the owner can not be referenced by the identifier of the type, attributes are loaded for each type
+                loadAttributes(context, attributedType);
+                continue;
+            }
+
+            Map<String, Map<String, List<AttributedType>>> typesByPath = typesByMapper.get(attributeMapper);
+
+            if (typesByPath == null) {
+                typesByPath = new LinkedHashMap<String, Map<String, List<AttributedType>>>();
+                typesByMapper.put(attributeMapper, typesByPath);
+            }
+
+            Map<String, List<AttributedType>> typesById = typesByPath.get(ownerPath);
+
+            if (typesById == null) {
+                typesById = new LinkedHashMap<String, List<AttributedType>>();
+                typesByPath.put(ownerPath, typesById);
+            }
+
+            List<AttributedType> types = typesById.get(attributedType.getId());
+
+            if (types == null) {
+                types = new ArrayList<AttributedType>();
+                typesById.put(attributedType.getId(), types);
+            }
+
+            types.add(attributedType);
+        }
+
+        for (Entry<EntityMapper, Map<String, Map<String, List<AttributedType>>>> mapperEntry : typesByMapper.entrySet()) {
+            for (Entry<String, Map<String, List<AttributedType>>> pathEntry : mapperEntry.getValue().entrySet()) {
+                Map<String, Map<String, Attribute<Serializable>>> attributes = getAttributes(mapperEntry.getKey(),
+                    pathEntry.getKey(), new ArrayList<String>(pathEntry.getValue().keySet()), entityManager);
+
+                for (Entry<String, Map<String, Attribute<Serializable>>> ownerEntry : attributes.entrySet()) {
+                    for (AttributedType attributedType : pathEntry.getValue().get(ownerEntry.getKey())) {
+                        for (Attribute<Serializable> attribute : ownerEntry.getValue().values()) {
+                            attributedType.setAttribute(attribute);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void removeAttribute(IdentityContext context, AttributedType attributedType, String attributeName) {
         EntityMapper attributeMapper = getAttributeMapper(attributedType.getClass());
@@ -555,9 +620,7 @@ public class JPAIdentityStore
             }
         }
 
-        for (Object entity : query.getResultList()) {
-            result.add(rootMapper.<V>createType(entityManager.find(rootMapper.getEntityType(), entity), entityManager));
-        }
+        result.addAll(rootMapper.<V>createTypes(query.getResultList(), entityManager));
 
         return result;
     }
@@ -1295,40 +1358,121 @@ public class JPAIdentityStore
         Map<String, Attribute<Serializable>> attributes = new HashMap<String, Attribute<Serializable>>();
 
         for (Object attributeEntity : entityManager.createQuery(cq).getResultList()) {
-            String storedName = attributeNameProperty.getValue(attributeEntity).toString();
-            Serializable storedValue = (Serializable) Base64.decodeToObject(attributeValueProperty.getValue(attributeEntity).toString());
+            addAttributeValue(attributes, attributeNameProperty.getValue(attributeEntity).toString(),
+                attributeValueProperty.getValue(attributeEntity).toString());
+        }
 
-            Attribute<Serializable> attribute = attributes.get(storedName);
+        return attributes;
+    }
 
-            if (attribute == null) {
-                attribute = new Attribute<Serializable>(storedName, storedValue);
-            } else {
-                // if it is a multi-valued attribute
-                if (attribute != null) {
-                    Serializable[] values = null;
+    /**
+     * <p>Loads the attributes for all the given owners using IN clauses, instead of one query for each owner.</p>
+     *
+     * @param attributeMapper
+     * @param ownerPath The path, relative to the attribute entity, holding the identifier of the owner.
+     * @param ownerIds
+     * @param entityManager
+     *
+     * @return The attributes mapped by the identifier of their owner.
+     */
+    private Map<String, Map<String, Attribute<Serializable>>> getAttributes(final EntityMapper attributeMapper,
+                                                                            final String ownerPath,
+                                                                            final List<String> ownerIds,
+                                                                            final EntityManager entityManager) {
+        Property attributeNameProperty = attributeMapper.getProperty(Attribute.class, AttributeName.class).getValue();
+        Property attributeValueProperty = attributeMapper.getProperty(Attribute.class, AttributeValue.class).getValue();
+        Map<String, Map<String, Attribute<Serializable>>> attributes = new HashMap<String, Map<String, Attribute<Serializable>>>();
 
-                    if (attribute.getValue().getClass().isArray()) {
-                        values = (Serializable[]) attribute.getValue();
-                    } else {
-                        values = (Serializable[]) Array.newInstance(attribute.getValue().getClass(), 1);
-                        values[0] = attribute.getValue();
-                    }
+        for (int i = 0; i < ownerIds.size(); i += ATTRIBUTE_BATCH_SIZE) {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+            Root<?> root = cq.from(attributeMapper.getEntityType());
+            Path<?> ownerIdPath = root;
 
-                    Serializable[] newValues = Arrays.copyOf(values, values.length + 1);
+            for (String name : ownerPath.split("\\.")) {
+                ownerIdPath = ownerIdPath.get(name);
+            }
 
-                    newValues[newValues.length - 1] = storedValue;
+            cq.multiselect(ownerIdPath, root);
+            cq.where(ownerIdPath.in(ownerIds.subList(i, Math.min(i + ATTRIBUTE_BATCH_SIZE, ownerIds.size()))));
 
-                    attribute.setValue(newValues);
+            for (Object[] columns : entityManager.createQuery(cq).getResultList()) {
+                String ownerId = columns[0].toString();
+                Map<String, Attribute<Serializable>> ownerAttributes = attributes.get(ownerId);
 
+                if (ownerAttributes == null) {
+                    ownerAttributes = new HashMap<String, Attribute<Serializable>>();
+                    attributes.put(ownerId, ownerAttributes);
                 }
-            }
 
-            attributes.put(attribute.getName(), attribute);
+                addAttributeValue(ownerAttributes, attributeNameProperty.getValue(columns[1]).toString(),
+                    attributeValueProperty.getValue(columns[1]).toString());
+            }
         }
 
         return attributes;
     }
 
+    /**
+     * <p>Returns the path, relative to the attribute entity, holding the identifier of the given type. If the owner
+     * of the attributes can not be referenced by the identifier of the type, this method returns null.</p>
+     *
+     * @param attributedType
+     * @param attributeMapper
+     *
+     * @return
+     */
+    private String getAttributeOwnerPath(final AttributedType attributedType, final EntityMapper attributeMapper) {
+        Property ownerProperty = attributeMapper.getProperty(Attribute.class, OwnerReference.class).getValue();
+
+        if (!getConfig().supportsType(attributedType.getClass(), IdentityOperation.create)
+            || String.class.equals(ownerProperty.getJavaClass())) {
+            return ownerProperty.getName();
+        }
+
+        EntityMapper rootMapper = getRootMapper(attributedType.getClass());
+
+        if (!ownerProperty.getJavaClass().isAssignableFrom(rootMapper.getEntityType())) {
+            return null;
+        }
+
+        Property identifierProperty = rootMapper.getProperty(Identifier.class).getValue();
+
+        if (!String.class.equals(identifierProperty.getJavaClass())) {
+            return null;
+        }
+
+        return ownerProperty.getName() + "." + identifierProperty.getName();
+    }
+
+    private void addAttributeValue(final Map<String, Attribute<Serializable>> attributes, final String storedName,
+                                   final String encodedValue) {
+        Serializable storedValue = (Serializable) Base64.decodeToObject(encodedValue);
+        Attribute<Serializable> attribute = attributes.get(storedName);
+
+        if (attribute == null) {
+            attribute = new Attribute<Serializable>(storedName, storedValue);
+        } else {
+            // if it is a multi-valued attribute
+            Serializable[] values = null;
+
+            if (attribute.getValue().getClass().isArray()) {
+                values = (Serializable[]) attribute.getValue();
+            } else {
+                values = (Serializable[]) Array.newInstance(attribute.getValue().getClass(), 1);
+                values[0] = attribute.getValue();
+            }
+
+            Serializable[] newValues = Arrays.copyOf(values, values.length + 1);
+
+            newValues[newValues.length - 1] = storedValue;
+
+            attribute.setValue(newValues);
+        }
+
+        attributes.put(attribute.getName(), attribute);
+    }
+
     private void addAttributeQueryPredicates(Class<? extends AttributedType> attributedType,
         EntityManager entityManager,
         final CriteriaBuilder cb,
@@ -22,6 +22,7 @@ import org.picketlink.common.properties.query.NamedPropertyCriteria;
 import org.picketlink.common.properties.query.PropertyQueries;
 import org.picketlink.common.properties.query.TypedPropertyCriteria;
 import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.jpa.annotations.Identifier;
 import org.picketlink.idm.jpa.annotations.OwnerReference;
 import org.picketlink.idm.jpa.annotations.RelationshipMember;
 import org.picketlink.idm.jpa.annotations.entity.IdentityManaged;
@@ -34,11 +35,18 @@ import org.picketlink.idm.model.Relationship;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Map.Entry;
 import static org.picketlink.common.reflection.Reflections.newInstance;
@@ -53,6 +61,11 @@ import static org.picketlink.idm.IDMMessages.MESSAGES;
  */
 public class EntityMapper {
 
+    /**
+     * <p>The maximum number of values bound to a single IN clause when loading entities in batches.</p>
+     */
+    private static final int BATCH_SIZE = 500;
+
     private final List<EntityMapping> entityMappings;
     private final Class<?> entityType;
     private final JPAIdentityStore store;
@@ -151,6 +164,98 @@ public class EntityMapper {
     }
 
     public <P extends AttributedType> P createType(Object entityInstance, EntityManager entityManager) {
+        return createType(entityInstance, entityManager, true);
+    }
+
+    /**
+     * <p>Creates the {@link AttributedType} instances for the root entities with the given identifiers.</p>
+     *
+     * <p>Instead of loading each entity and its associated entities one at a time, the root entities and the
+     * entities associated with them are loaded in batches using IN clauses and the types are assembled in memory.
+     * The returned list keeps the order of the given identifiers.</p>
+     *
+     * @param identifiers The identifiers of the root entities.
+     * @param entityManager
+     *
+     * @return
+     */
+    public <P extends AttributedType> List<P> createTypes(List<?> identifiers, EntityManager entityManager) {
+        List<P> types = new ArrayList<P>();
+
+        if (identifiers.isEmpty()) {
+            return types;
+        }
+
+        Property identifierProperty = getProperty(Identifier.class).getValue();
+        Map<Object, Object> entities = new HashMap<Object, Object>();
+
+        for (List<?> batch : split(identifiers)) {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<?> cq = cb.createQuery(getEntityType());
+            Root<?> root = cq.from(getEntityType());
+
+            cq.where(root.get(identifierProperty.getName()).in(batch));
+
+            for (Object entity : entityManager.createQuery(cq).getResultList()) {
+                entities.put(identifierProperty.getValue(entity), entity);
+            }
+        }
+
+        Map<Class<? extends AttributedType>, List<P>> typesByClass = new LinkedHashMap<Class<? extends AttributedType>, List<P>>();
+        Map<Class<? extends AttributedType>, List<Object>> entitiesByClass = new HashMap<Class<? extends AttributedType>, List<Object>>();
+
+        for (Object identifier : identifiers) {
+            Object entity = entities.get(identifier);
+
+            if (entity != null) {
+                P attributedType = createType(entity, entityManager, false);
+                Class<? extends AttributedType> typeClass = attributedType.getClass();
+
+                if (!typesByClass.containsKey(typeClass)) {
+                    typesByClass.put(typeClass, new ArrayList<P>());
+                    entitiesByClass.put(typeClass, new ArrayList<Object>());
+                }
+
+                typesByClass.get(typeClass).add(attributedType);
+                entitiesByClass.get(typeClass).add(entity);
+                types.add(attributedType);
+            }
+        }
+
+        for (Entry<Class<? extends AttributedType>, List<P>> entry : typesByClass.entrySet()) {
+            List<P> typesForClass = entry.getValue();
+            List<Object> entitiesForClass = entitiesByClass.get(entry.getKey());
+
+            for (EntityMapper finalMapper : this.store.getMapperFor(entry.getKey())) {
+                if (!finalMapper.isRoot()) {
+                    Map<Object, List<Object>> associatedEntities = finalMapper
+                            .getAssociatedEntities(entry.getKey(), entitiesForClass, identifierProperty, entityManager);
+
+                    for (P attributedType : typesForClass) {
+                        List<?> children;
+
+                        if (associatedEntities != null) {
+                            children = associatedEntities.get(attributedType.getId());
+                        } else {
+                            // the owner is not the root entity, we fallback to load the associated entities for each type.
+                            children = getAssociatedEntities(attributedType, finalMapper, entityManager);
+                        }
+
+                        if (children != null) {
+                            for (Object child : children) {
+                                finalMapper.populate(attributedType, child, entityManager);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return types;
+    }
+
+    private <P extends AttributedType> P createType(Object entityInstance, EntityManager entityManager,
+                                                    boolean loadAssociatedEntities) {
         P attributedType = null;
 
         if (entityInstance != null) {
@@ -202,7 +307,7 @@ public class EntityMapper {
                     property.setValue(attributedType, propertyValue);
                 }
 
-                if (isRoot()) {
+                if (isRoot() && loadAssociatedEntities) {
                     for (EntityMapper finalMapper : this.store.getMapperFor(attributedType.getClass())) {
                         if (!finalMapper.isRoot()) {
                             for (Object child : getAssociatedEntities(attributedType, finalMapper, entityManager)) {
@@ -318,6 +423,67 @@ public class EntityMapper {
         return childQuery.getResultList();
     }
 
+    /**
+     * <p>Loads the entities of this mapper associated with the given owner entities using IN clauses, grouping them
+     * by the identifier of their owner. Returns null if the owners can not be referenced directly from the entities
+     * of this mapper.</p>
+     */
+    private Map<Object, List<Object>> getAssociatedEntities(Class<?> attributedType, List<Object> ownerEntities,
+                                                            Property ownerIdentifierProperty, EntityManager entityManager) {
+        Map<Object, List<Object>> associatedEntities = new HashMap<Object, List<Object>>();
+
+        if (!getEntityType().isAnnotationPresent(IdentityManaged.class)) {
+            return associatedEntities;
+        }
+
+        Entry<Property, Property> ownerProperty = getProperty(attributedType, OwnerReference.class);
+
+        if (ownerProperty == null) {
+            return associatedEntities;
+        }
+
+        for (Object ownerEntity : ownerEntities) {
+            if (!ownerProperty.getValue().getJavaClass().isAssignableFrom(ownerEntity.getClass())) {
+                return null;
+            }
+        }
+
+        String ownerPropertyName = ownerProperty.getValue().getName();
+
+        for (List<?> batch : split(ownerEntities)) {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+            Root<?> root = cq.from(getEntityType());
+            Path<?> ownerPath = root.get(ownerPropertyName);
+
+            cq.multiselect(ownerPath.get(ownerIdentifierProperty.getName()), root);
+            cq.where(ownerPath.in(batch));
+
+            for (Object[] columns : entityManager.createQuery(cq).getResultList()) {
+                List<Object> entities = associatedEntities.get(columns[0]);
+
+                if (entities == null) {
+                    entities = new ArrayList<Object>();
+                    associatedEntities.put(columns[0], entities);
+                }
+
+                entities.add(columns[1]);
+            }
+        }
+
+        return associatedEntities;
+    }
+
+    private static List<List<?>> split(List<?> values) {
+        List<List<?>> batches = new ArrayList<List<?>>();
+
+        for (int i = 0; i < values.size(); i += BATCH_SIZE) {
+            batches.add(values.subList(i, Math.min(i + BATCH_SIZE, values.size())));
+        }
+
+        return batches;
+    }
+
     public Object createEntity() {
         try {
             return newInstance(getEntityType(), getEntityType().getName());
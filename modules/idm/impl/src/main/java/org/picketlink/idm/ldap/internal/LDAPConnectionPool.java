@@ -0,0 +1,267 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.idm.ldap.internal;
+
+import org.picketlink.idm.config.LDAPConnectionPoolConfiguration;
+
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.picketlink.idm.IDMInternalLog.LDAP_STORE_LOGGER;
+
+/**
+ * <p>A pool of {@link LdapContext} instances created from the same environment.</p>
+ *
+ * <p>Contexts are handed out exclusively to a single thread until they are released or invalidated. Idle contexts
+ * are reused in LIFO order, so contexts that have been idle for longer than the configured idle timeout accumulate
+ * at the tail of the pool and are evicted, while keeping at least the configured minimum of idle contexts. Contexts
+ * that have been idle for longer than the validation interval are checked before being handed out.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPConnectionPool {
+
+    /**
+     * <p>The JNDI provider keeps its own pool of connections when this property is enabled. It must be disabled for
+     * contexts managed by this pool, otherwise contexts rebound with different credentials could be shared.</p>
+     */
+    private static final String JNDI_CONNECTION_POOL = "com.sun.jndi.ldap.connect.pool";
+
+    private static final String[] VALIDATION_ATTRIBUTES = new String[] {"objectClass"};
+
+    private final String name;
+    private final Hashtable<Object, Object> environment;
+    private final LDAPConnectionPoolConfiguration configuration;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleContext> idleContexts = new LinkedBlockingDeque<IdleContext>();
+    private volatile boolean closed;
+
+    public LDAPConnectionPool(String name, Map<String, Object> environment, LDAPConnectionPoolConfiguration configuration) {
+        this.name = name;
+        this.environment = new Hashtable<Object, Object>(environment);
+        this.environment.put(JNDI_CONNECTION_POOL, "false");
+        this.configuration = configuration;
+        this.permits = new Semaphore(configuration.getMaxSize(), true);
+    }
+
+    /**
+     * <p>Opens idle contexts until the pool holds the configured minimum, so that the first requests do not pay for
+     * opening connections. A failure is only logged, contexts are then opened on demand.</p>
+     */
+    public void prefill() {
+        int size = Math.min(this.configuration.getMinSize(), this.configuration.getMaxSize());
+        long now = System.currentTimeMillis();
+
+        while (!this.closed && this.idleContexts.size() < size) {
+            try {
+                this.idleContexts.offerLast(new IdleContext(createContext(), now));
+            } catch (NamingException ne) {
+                LDAP_STORE_LOGGER.warnf(ne, "Could not open the minimum number of connections for pool [%s].", this.name);
+                break;
+            }
+        }
+    }
+
+    /**
+     * <p>Returns a context from the pool, creating a new one if there is no idle context available. If the maximum
+     * number of contexts is in use, waits until one is released or the borrow timeout elapses.</p>
+     *
+     * @return
+     * @throws NamingException If no context could be obtained.
+     */
+    public LdapContext borrow() throws NamingException {
+        if (this.closed) {
+            throw new ServiceUnavailableException("Connection pool [" + this.name + "] is closed.");
+        }
+
+        try {
+            if (!this.permits.tryAcquire(this.configuration.getBorrowTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Timeout waiting for a connection from pool [" + this.name + "].");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for a connection from pool [" + this.name + "].");
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            IdleContext idleContext;
+
+            while ((idleContext = this.idleContexts.pollFirst()) != null) {
+                if (isExpired(idleContext, now) || !isValid(idleContext, now)) {
+                    closeContext(idleContext.getContext());
+                    continue;
+                }
+
+                return idleContext.getContext();
+            }
+
+            return createContext();
+        } catch (NamingException ne) {
+            this.permits.release();
+            throw ne;
+        } catch (RuntimeException re) {
+            this.permits.release();
+            throw re;
+        }
+    }
+
+    /**
+     * <p>Returns a context previously obtained from {@link #borrow()} to the pool.</p>
+     *
+     * @param context
+     */
+    public void release(LdapContext context) {
+        try {
+            context.setRequestControls(null);
+        } catch (NamingException ne) {
+            invalidate(context);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (this.closed) {
+            closeContext(context);
+        } else {
+            this.idleContexts.offerFirst(new IdleContext(context, now));
+        }
+
+        this.permits.release();
+
+        evictIdleContexts(now);
+    }
+
+    /**
+     * <p>Closes a context previously obtained from {@link #borrow()} that can not be reused, for instance because
+     * its connection was lost.</p>
+     *
+     * @param context
+     */
+    public void invalidate(LdapContext context) {
+        closeContext(context);
+        this.permits.release();
+    }
+
+    /**
+     * <p>Closes all idle contexts. Contexts currently in use are closed when released.</p>
+     */
+    public void close() {
+        this.closed = true;
+
+        IdleContext idleContext;
+
+        while ((idleContext = this.idleContexts.pollFirst()) != null) {
+            closeContext(idleContext.getContext());
+        }
+    }
+
+    /**
+     * @return The number of idle contexts in the pool.
+     */
+    public int getIdleCount() {
+        return this.idleContexts.size();
+    }
+
+    /**
+     * @return The number of contexts currently borrowed from the pool.
+     */
+    public int getActiveCount() {
+        return this.configuration.getMaxSize() - this.permits.availablePermits();
+    }
+
+    private LdapContext createContext() throws NamingException {
+        if (LDAP_STORE_LOGGER.isTraceEnabled()) {
+            LDAP_STORE_LOGGER.tracef("Creating new LdapContext for pool [%s].", this.name);
+        }
+
+        return new InitialLdapContext(new Hashtable<Object, Object>(this.environment), null);
+    }
+
+    private void evictIdleContexts(long now) {
+        while (this.idleContexts.size() > this.configuration.getMinSize()) {
+            IdleContext oldest = this.idleContexts.peekLast();
+
+            if (oldest == null || !isExpired(oldest, now)) {
+                break;
+            }
+
+            if (this.idleContexts.removeLastOccurrence(oldest)) {
+                closeContext(oldest.getContext());
+            }
+        }
+    }
+
+    private boolean isExpired(IdleContext idleContext, long now) {
+        return this.configuration.getIdleTimeout() > 0
+            && now - idleContext.getReleasedAt() > this.configuration.getIdleTimeout();
+    }
+
+    private boolean isValid(IdleContext idleContext, long now) {
+        if (now - idleContext.getReleasedAt() < this.configuration.getValidationInterval()) {
+            return true;
+        }
+
+        try {
+            idleContext.getContext().getAttributes("", VALIDATION_ATTRIBUTES);
+            return true;
+        } catch (NamingException ne) {
+            if (LDAP_STORE_LOGGER.isDebugEnabled()) {
+                LDAP_STORE_LOGGER.debugf(ne, "Discarding invalid LdapContext from pool [%s].", this.name);
+            }
+
+            return false;
+        }
+    }
+
+    private void closeContext(LdapContext context) {
+        try {
+            context.close();
+        } catch (NamingException ne) {
+            LDAP_STORE_LOGGER.debugf(ne, "Could not close LdapContext from pool [%s].", this.name);
+        }
+    }
+
+    private static class IdleContext {
+
+        private final LdapContext context;
+        private final long releasedAt;
+
+        IdleContext(LdapContext context, long releasedAt) {
+            this.context = context;
+            this.releasedAt = releasedAt;
+        }
+
+        LdapContext getContext() {
+            return this.context;
+        }
+
+        long getReleasedAt() {
+            return this.releasedAt;
+        }
+    }
+}
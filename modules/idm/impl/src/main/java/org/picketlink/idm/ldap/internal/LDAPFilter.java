@@ -0,0 +1,617 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.ldap.internal;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.InvalidSearchFilterException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p>A search filter, as defined by RFC 4515, that can be evaluated against the attributes of an entry without
+ * querying the LDAP server.</p>
+ *
+ * <p>Values are compared ignoring case. Values that are DNs are compared using their normalized form, and ordering
+ * comparisons of generalized time values are performed on the corresponding dates. Approximate matches are evaluated
+ * as equality matches. Extensible matches and attribute options are not supported.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPFilter {
+
+    private final Node root;
+
+    private LDAPFilter(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * <p>Parses the given filter.</p>
+     *
+     * @param filter
+     * @return
+     * @throws InvalidSearchFilterException If the filter is malformed or uses a construct that is not supported.
+     */
+    public static LDAPFilter parse(String filter) throws InvalidSearchFilterException {
+        Parser parser = new Parser(filter);
+        Node root = parser.parseFilter();
+
+        parser.skipSpaces();
+
+        if (!parser.isAtEnd()) {
+            throw parser.invalid("Unexpected characters after the end of the filter");
+        }
+
+        return new LDAPFilter(root);
+    }
+
+    /**
+     * <p>Checks if an entry with the given attributes matches this filter.</p>
+     *
+     * @param attributes
+     * @return
+     */
+    public boolean matches(Attributes attributes) {
+        return this.root.matches(attributes);
+    }
+
+    /**
+     * <p>Returns the equality assertions that must be satisfied by any entry matching this filter. They are the
+     * equality assertions of the filter, or of the filters directly nested in AND filters.</p>
+     *
+     * @return A list of pairs, each one with the attribute name and the normalized value.
+     */
+    public List<String[]> getRequiredEqualities() {
+        List<String[]> equalities = new ArrayList<String[]>();
+
+        this.root.collectRequiredEqualities(equalities);
+
+        return equalities;
+    }
+
+    /**
+     * <p>Returns the form of the given value used when comparing values: DNs are normalized and all values are
+     * converted to lower case.</p>
+     *
+     * @param value
+     * @return
+     */
+    public static String normalize(String value) {
+        if (value.indexOf('=') != -1) {
+            try {
+                return normalizeDN(new LdapName(value));
+            } catch (NamingException ignore) {
+                // not a DN
+            }
+        }
+
+        return value.trim().toLowerCase();
+    }
+
+    /**
+     * <p>Returns the normalized form of the given DN, with its RDNs in the reverse order, from the root to the
+     * entry. This way the DNs of all entries in a subtree start with the normalized DN of the subtree's root.</p>
+     *
+     * @param name
+     * @return
+     */
+    public static String normalizeDN(LdapName name) {
+        StringBuilder normalized = new StringBuilder();
+
+        for (Rdn rdn : name.getRdns()) {
+            if (normalized.length() > 0) {
+                normalized.append(',');
+            }
+
+            normalized.append(rdn.toString().toLowerCase());
+        }
+
+        return normalized.toString();
+    }
+
+    private static int compare(String value, String assertion) {
+        Date valueDate = parseGeneralizedTime(value);
+        Date assertionDate = parseGeneralizedTime(assertion);
+
+        if (valueDate != null && assertionDate != null) {
+            return valueDate.compareTo(assertionDate);
+        }
+
+        try {
+            return Long.valueOf(value.trim()).compareTo(Long.valueOf(assertion.trim()));
+        } catch (NumberFormatException ignore) {
+            // not integers
+        }
+
+        return value.compareToIgnoreCase(assertion);
+    }
+
+    private static Date parseGeneralizedTime(String value) {
+        if (value.length() < 14) {
+            return null;
+        }
+
+        for (int i = 0; i < 14; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return null;
+            }
+        }
+
+        try {
+            return LDAPUtil.parseDate(value);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String toString(Object value) {
+        if (byte[].class.isInstance(value)) {
+            try {
+                return new String((byte[]) value, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return value.toString();
+    }
+
+    private interface Node {
+        boolean matches(Attributes attributes);
+
+        void collectRequiredEqualities(List<String[]> equalities);
+    }
+
+    private static class AndNode implements Node {
+
+        private final List<Node> filters;
+
+        AndNode(List<Node> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            for (Node filter : this.filters) {
+                if (!filter.matches(attributes)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public void collectRequiredEqualities(List<String[]> equalities) {
+            for (Node filter : this.filters) {
+                filter.collectRequiredEqualities(equalities);
+            }
+        }
+    }
+
+    private static class OrNode implements Node {
+
+        private final List<Node> filters;
+
+        OrNode(List<Node> filters) {
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            for (Node filter : this.filters) {
+                if (filter.matches(attributes)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public void collectRequiredEqualities(List<String[]> equalities) {
+            if (this.filters.size() == 1) {
+                this.filters.get(0).collectRequiredEqualities(equalities);
+            }
+        }
+    }
+
+    private static class NotNode implements Node {
+
+        private final Node filter;
+
+        NotNode(Node filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            return !this.filter.matches(attributes);
+        }
+
+        @Override
+        public void collectRequiredEqualities(List<String[]> equalities) {
+        }
+    }
+
+    /**
+     * <p>A filter on the values of a single attribute.</p>
+     */
+    private abstract static class AttributeNode implements Node {
+
+        protected final String attributeName;
+
+        AttributeNode(String attributeName) {
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            Attribute attribute = attributes.get(this.attributeName);
+
+            if (attribute == null) {
+                return false;
+            }
+
+            try {
+                NamingEnumeration<?> values = attribute.getAll();
+
+                while (values.hasMore()) {
+                    Object value = values.next();
+
+                    if (value != null && matches(value)) {
+                        return true;
+                    }
+                }
+            } catch (NamingException ne) {
+                return false;
+            }
+
+            return false;
+        }
+
+        @Override
+        public void collectRequiredEqualities(List<String[]> equalities) {
+        }
+
+        protected abstract boolean matches(Object value);
+    }
+
+    private static class PresenceNode extends AttributeNode {
+
+        PresenceNode(String attributeName) {
+            super(attributeName);
+        }
+
+        @Override
+        protected boolean matches(Object value) {
+            return true;
+        }
+    }
+
+    private static class EqualityNode extends AttributeNode {
+
+        private final byte[] assertion;
+        private final String normalizedAssertion;
+
+        EqualityNode(String attributeName, byte[] assertion) {
+            super(attributeName);
+            this.assertion = assertion;
+            this.normalizedAssertion = normalize(LDAPFilter.toString(assertion));
+        }
+
+        @Override
+        protected boolean matches(Object value) {
+            if (byte[].class.isInstance(value)) {
+                return Arrays.equals(this.assertion, (byte[]) value);
+            }
+
+            return this.normalizedAssertion.equals(normalize(value.toString()));
+        }
+
+        @Override
+        public void collectRequiredEqualities(List<String[]> equalities) {
+            equalities.add(new String[] {this.attributeName, this.normalizedAssertion});
+        }
+    }
+
+    private static class OrderingNode extends AttributeNode {
+
+        private final String assertion;
+        private final boolean greaterOrEqual;
+
+        OrderingNode(String attributeName, String assertion, boolean greaterOrEqual) {
+            super(attributeName);
+            this.assertion = assertion;
+            this.greaterOrEqual = greaterOrEqual;
+        }
+
+        @Override
+        protected boolean matches(Object value) {
+            int result = compare(LDAPFilter.toString(value), this.assertion);
+
+            if (this.greaterOrEqual) {
+                return result >= 0;
+            }
+
+            return result <= 0;
+        }
+    }
+
+    private static class SubstringNode extends AttributeNode {
+
+        private final String initial;
+        private final List<String> any;
+        private final String last;
+
+        SubstringNode(String attributeName, String initial, List<String> any, String last) {
+            super(attributeName);
+            this.initial = initial;
+            this.any = any;
+            this.last = last;
+        }
+
+        @Override
+        protected boolean matches(Object value) {
+            String candidate = LDAPFilter.toString(value).toLowerCase();
+            int position = 0;
+
+            if (this.initial != null) {
+                if (!candidate.startsWith(this.initial)) {
+                    return false;
+                }
+
+                position = this.initial.length();
+            }
+
+            for (String substring : this.any) {
+                int index = candidate.indexOf(substring, position);
+
+                if (index == -1) {
+                    return false;
+                }
+
+                position = index + substring.length();
+            }
+
+            if (this.last != null) {
+                return candidate.length() - position >= this.last.length() && candidate.endsWith(this.last);
+            }
+
+            return true;
+        }
+    }
+
+    private static class Parser {
+
+        private final String filter;
+        private int position;
+
+        Parser(String filter) {
+            this.filter = filter;
+        }
+
+        Node parseFilter() throws InvalidSearchFilterException {
+            skipSpaces();
+            expect('(');
+            skipSpaces();
+
+            Node node;
+            char c = peek();
+
+            if (c == '&') {
+                this.position++;
+                node = new AndNode(parseFilterList());
+            } else if (c == '|') {
+                this.position++;
+                node = new OrNode(parseFilterList());
+            } else if (c == '!') {
+                this.position++;
+                node = new NotNode(parseFilter());
+                skipSpaces();
+            } else if (c == '(') {
+                // a list of filters without an operator is accepted by some servers as an AND filter
+                node = new AndNode(parseFilterList());
+            } else {
+                node = parseItem();
+            }
+
+            expect(')');
+
+            return node;
+        }
+
+        private List<Node> parseFilterList() throws InvalidSearchFilterException {
+            List<Node> filters = new ArrayList<Node>();
+
+            skipSpaces();
+
+            while (peek() == '(') {
+                filters.add(parseFilter());
+                skipSpaces();
+            }
+
+            if (filters.isEmpty()) {
+                throw invalid("Empty filter list");
+            }
+
+            return filters;
+        }
+
+        private Node parseItem() throws InvalidSearchFilterException {
+            int start = this.position;
+
+            while (!isAtEnd() && "=~<>()".indexOf(peek()) == -1) {
+                this.position++;
+            }
+
+            String attributeName = this.filter.substring(start, this.position).trim();
+
+            if (!isAttributeDescription(attributeName)) {
+                throw invalid("Unsupported attribute description [" + attributeName + "]");
+            }
+
+            char type = peek();
+
+            if (type == '~' || type == '<' || type == '>') {
+                this.position++;
+            }
+
+            expect('=');
+
+            int valueStart = this.position;
+
+            while (!isAtEnd() && peek() != ')') {
+                if (peek() == '(') {
+                    throw invalid("Unescaped parenthesis in value");
+                }
+
+                this.position++;
+            }
+
+            String value = this.filter.substring(valueStart, this.position);
+
+            if (value.contains("<=") || value.contains(">=")) {
+                // probably a range like (x<=attribute<=y), which is not a valid filter
+                throw invalid("Unsupported assertion value [" + value + "]");
+            }
+
+            if (type == '<' || type == '>') {
+                return new OrderingNode(attributeName, LDAPFilter.toString(unescape(value)), type == '>');
+            }
+
+            if (type == '=' && "*".equals(value)) {
+                return new PresenceNode(attributeName);
+            }
+
+            if (type == '=' && value.indexOf('*') != -1) {
+                String[] substrings = value.split("\\*", -1);
+                List<String> any = new ArrayList<String>();
+
+                for (int i = 1; i < substrings.length - 1; i++) {
+                    if (substrings[i].length() > 0) {
+                        any.add(unescapeSubstring(substrings[i]));
+                    }
+                }
+
+                String initial = substrings[0].length() > 0 ? unescapeSubstring(substrings[0]) : null;
+                String last = substrings[substrings.length - 1].length() > 0 ? unescapeSubstring(substrings[substrings.length - 1]) : null;
+
+                return new SubstringNode(attributeName, initial, any, last);
+            }
+
+            return new EqualityNode(attributeName, unescape(value));
+        }
+
+        private String unescapeSubstring(String value) throws InvalidSearchFilterException {
+            return LDAPFilter.toString(unescape(value)).toLowerCase();
+        }
+
+        private byte[] unescape(String value) throws InvalidSearchFilterException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try {
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+
+                    if (c == '\\') {
+                        if (i + 2 >= value.length()) {
+                            throw invalid("Invalid escape sequence in value [" + value + "]");
+                        }
+
+                        try {
+                            bytes.write(Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                        } catch (NumberFormatException nfe) {
+                            throw invalid("Invalid escape sequence in value [" + value + "]");
+                        }
+
+                        i += 2;
+                    } else {
+                        bytes.write(String.valueOf(c).getBytes("UTF-8"));
+                    }
+                }
+            } catch (IOException e) {
+                throw invalid(e.getMessage());
+            }
+
+            return bytes.toByteArray();
+        }
+
+        private boolean isAttributeDescription(String attributeName) {
+            if (attributeName.length() == 0) {
+                return false;
+            }
+
+            if (Character.isLetter(attributeName.charAt(0))) {
+                for (int i = 1; i < attributeName.length(); i++) {
+                    char c = attributeName.charAt(i);
+
+                    if (!Character.isLetterOrDigit(c) && c != '-') {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            // numeric OIDs
+            return attributeName.matches("[0-9]+(\\.[0-9]+)+");
+        }
+
+        private char peek() throws InvalidSearchFilterException {
+            if (isAtEnd()) {
+                throw invalid("Unexpected end of filter");
+            }
+
+            return this.filter.charAt(this.position);
+        }
+
+        private void expect(char c) throws InvalidSearchFilterException {
+            if (peek() != c) {
+                throw invalid("Expected [" + c + "] at position " + this.position);
+            }
+
+            this.position++;
+        }
+
+        void skipSpaces() {
+            while (!isAtEnd() && this.filter.charAt(this.position) == ' ') {
+                this.position++;
+            }
+        }
+
+        boolean isAtEnd() {
+            return this.position >= this.filter.length();
+        }
+
+        InvalidSearchFilterException invalid(String message) {
+            return new InvalidSearchFilterException(message + " in filter [" + this.filter + "].");
+        }
+    }
+}
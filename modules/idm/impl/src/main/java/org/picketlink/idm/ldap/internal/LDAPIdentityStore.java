@@ -55,12 +55,17 @@ import javax.naming.directory.Attributes;
 import javax.naming.directory.BasicAttribute;
 import javax.naming.directory.BasicAttributes;
 import javax.naming.directory.SearchResult;
+import java.io.Closeable;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 import static java.util.Map.Entry;
 import static org.picketlink.common.constants.LDAPConstants.COMMA;
@@ -87,7 +92,7 @@ import static org.picketlink.idm.ldap.internal.LDAPUtil.parseDate;
  */
 @CredentialHandlers({LDAPPlainTextPasswordCredentialHandler.class})
 public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreConfiguration>
-        implements CredentialStore<LDAPIdentityStoreConfiguration> {
+        implements CredentialStore<LDAPIdentityStoreConfiguration>, Closeable {
 
     public static final String EMPTY_ATTRIBUTE_VALUE = " ";
     public static final String ENTRY_DN_ATTRIBUTE_NAME = "org.picketlink.idm.ldap.entry.dn";
@@ -109,6 +114,17 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
         }
     }
 
+    /**
+     * <p>Closes the pooled connections and stops updating the replica, if any. The store can not be used after it is
+     * closed.</p>
+     */
+    @Override
+    public void close() {
+        if (this.operationManager != null) {
+            this.operationManager.close();
+        }
+    }
+
     @Override
     public void addAttributedType(IdentityContext context, AttributedType attributedType) {
         if (Relationship.class.isInstance(attributedType)) {
@@ -222,8 +238,10 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
                     search = this.operationManager.search(getBaseDN(ldapEntryConfig), filter.toString(), ldapEntryConfig);
                 }
 
+                Map<String, List<SearchResult>> parentSearches = new HashMap<String, List<SearchResult>>();
+
                 for (SearchResult result : search) {
-                    results.add((V) populateAttributedType(result, null));
+                    results.add((V) populateAttributedType(result, null, parentSearches));
                 }
 
             }
@@ -338,74 +356,88 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
                 }
 
                 List<SearchResult> search = this.operationManager.search(baseDN, filter.toString(), relatedTypeConfig);
+                Map<String, List<SearchResult>> parentSearches = new HashMap<String, List<SearchResult>>();
+                List<RelationshipEntry> relationshipEntries = new ArrayList<RelationshipEntry>();
+                Set<String> memberDNs = new LinkedHashSet<String>();
 
                 for (SearchResult entry : search) {
                     if (LDAP_STORE_LOGGER.isTraceEnabled()) {
                         LDAP_STORE_LOGGER.tracef("Found entry [%s] for relationship ", entry.getNameInNamespace(), relationshipClass);
                     }
 
-                    Attributes ownerAttributes = entry.getAttributes();
-                    AttributedType ownerType = populateAttributedType(entry, null);
+                    RelationshipEntry relationshipEntry = new RelationshipEntry(populateAttributedType(entry, null, parentSearches));
 
                     for (Entry<String, String> memberAttribute : mappingConfig.getMappedProperties().entrySet()) {
                         String attributeName = memberAttribute.getValue();
-                        Attribute attribute = ownerAttributes.get(attributeName);
+                        List<String> members = new ArrayList<String>();
 
-                        if (attribute != null) {
-                            NamingEnumeration<?> attributeValues = attribute.getAll();
+                        for (String attributeValue : this.operationManager.getAttributeValues(entry.getNameInNamespace(), entry.getAttributes(), attributeName)) {
+                            if (!entriesToFilter.isEmpty() && !entriesToFilter.contains(attributeValue)) {
+                                continue;
+                            }
 
-                            while (attributeValues.hasMore()) {
-                                String attributeValue = attributeValues.next().toString();
+                            if (!isNullOrEmpty(attributeValue.trim())) {
+                                members.add(attributeValue);
+                                memberDNs.add(attributeValue);
+                            }
+                        }
 
-                                if (!entriesToFilter.isEmpty() && !entriesToFilter.contains(attributeValue)) {
-                                    continue;
-                                }
+                        relationshipEntry.members.put(memberAttribute.getKey(), members);
+                    }
 
-                                if (LDAP_STORE_LOGGER.isTraceEnabled()) {
-                                    LDAP_STORE_LOGGER
-                                        .tracef("Processing relationship [%s] from attribute [%s] with attributeValue [%s]", relationshipClass, attributeName, attributeValue);
-                                }
+                    relationshipEntries.add(relationshipEntry);
+                }
 
-                                if (!isNullOrEmpty(attributeValue.trim())) {
-                                    Property<AttributedType> associatedProperty = PropertyQueries
-                                        .<AttributedType>createQuery(relationshipClass)
-                                        .addCriteria(new NamedPropertyCriteria(memberAttribute.getKey()))
-                                        .getSingleResult();
+                // members are resolved in batches instead of searching each one of them
+                Map<String, SearchResult> memberEntries = this.operationManager.lookupByDN(memberDNs);
 
-                                    String memberBaseDN = attributeValue.substring(attributeValue.indexOf(",") + 1);
-                                    String dn = attributeValue.substring(0, attributeValue.indexOf(","));
+                Property<AttributedType> property = null;
 
-                                    List<SearchResult> result = this.operationManager.search(memberBaseDN, dn, null);
+                for (RelationshipEntry relationshipEntry : relationshipEntries) {
+                    AttributedType ownerType = relationshipEntry.owner;
 
-                                    if (result.isEmpty()) {
-                                        throw new IdentityManagementException("Associated entry does not exists [" + attributeValue + "].");
-                                    }
+                    for (Entry<String, List<String>> members : relationshipEntry.members.entrySet()) {
+                        String attributeName = mappingConfig.getMappedProperties().get(members.getKey());
+                        Property<AttributedType> associatedProperty = PropertyQueries
+                            .<AttributedType>createQuery(relationshipClass)
+                            .addCriteria(new NamedPropertyCriteria(members.getKey()))
+                            .getSingleResult();
 
-                                    Property<AttributedType> property = PropertyQueries
-                                        .<AttributedType>createQuery(relationshipClass)
-                                        .addCriteria(new TypedPropertyCriteria(mappingConfig.getRelatedAttributedType()))
-                                        .getSingleResult();
+                        for (String attributeValue : members.getValue()) {
+                            if (LDAP_STORE_LOGGER.isTraceEnabled()) {
+                                LDAP_STORE_LOGGER
+                                    .tracef("Processing relationship [%s] from attribute [%s] with attributeValue [%s]", relationshipClass, attributeName, attributeValue);
+                            }
+
+                            SearchResult member = memberEntries.get(attributeValue);
 
-                                    if (property.getJavaClass().isAssignableFrom(ownerType.getClass())) {
-                                        V relationship = newInstance(relationshipClass);
+                            if (member == null) {
+                                throw new IdentityManagementException("Associated entry does not exists [" + attributeValue + "].");
+                            }
 
-                                        property.setValue(relationship, ownerType);
+                            if (property == null) {
+                                property = PropertyQueries
+                                    .<AttributedType>createQuery(relationshipClass)
+                                    .addCriteria(new TypedPropertyCriteria(mappingConfig.getRelatedAttributedType()))
+                                    .getSingleResult();
+                            }
 
-                                        SearchResult member = result.get(0);
+                            if (property.getJavaClass().isAssignableFrom(ownerType.getClass())) {
+                                V relationship = newInstance(relationshipClass);
 
-                                        AttributedType relType = populateAttributedType(member, null);
+                                property.setValue(relationship, ownerType);
 
-                                        if (associatedProperty.getJavaClass().isAssignableFrom(relType.getClass())) {
-                                            associatedProperty.setValue(relationship, relType);
+                                AttributedType relType = populateAttributedType(member, null, parentSearches);
 
-                                            if (LDAP_STORE_LOGGER.isTraceEnabled()) {
-                                                LDAP_STORE_LOGGER
-                                                    .tracef("Relationship [%s] created from attribute [%s] with attributeValue [%s]", relationshipClass, attributeName, attributeValue);
-                                            }
+                                if (associatedProperty.getJavaClass().isAssignableFrom(relType.getClass())) {
+                                    associatedProperty.setValue(relationship, relType);
 
-                                            results.add(relationship);
-                                        }
+                                    if (LDAP_STORE_LOGGER.isTraceEnabled()) {
+                                        LDAP_STORE_LOGGER
+                                            .tracef("Relationship [%s] created from attribute [%s] with attributeValue [%s]", relationshipClass, attributeName, attributeValue);
                                     }
+
+                                    results.add(relationship);
                                 }
                             }
                         }
@@ -676,10 +708,21 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
     }
 
     private AttributedType populateAttributedType(SearchResult searchResult, AttributedType attributedType) {
-        return populateAttributedType(searchResult, attributedType, 0);
+        return populateAttributedType(searchResult, attributedType, new HashMap<String, List<SearchResult>>());
+    }
+
+    /**
+     * <p>Populates the given <code>attributedType</code> from the given <code>searchResult</code>. Searches for parent
+     * entries are memoised in <code>parentSearches</code>, keyed by their filter, so entries sharing the same parents
+     * do not search them again.</p>
+     */
+    private AttributedType populateAttributedType(SearchResult searchResult, AttributedType attributedType,
+                                                  Map<String, List<SearchResult>> parentSearches) {
+        return populateAttributedType(searchResult, attributedType, 0, parentSearches);
     }
 
-    private AttributedType populateAttributedType(SearchResult searchResult, AttributedType attributedType, int hierarchyDepthCount) {
+    private AttributedType populateAttributedType(SearchResult searchResult, AttributedType attributedType, int hierarchyDepthCount,
+                                                  Map<String, List<SearchResult>> parentSearches) {
         try {
             String entryDN = searchResult.getNameInNamespace();
             String entryBaseDN = entryDN.substring(entryDN.indexOf(COMMA) + 1);
@@ -778,7 +821,12 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
                     LDAP_STORE_LOGGER.tracef("Searching parent entry for DN [%s] using filter [%s].", entryDN, filter.toString());
                 }
 
-                List<SearchResult> search = this.operationManager.search(getConfig().getBaseDN(), filter.toString(), entryConfig);
+                List<SearchResult> search = parentSearches.get(filter.toString());
+
+                if (search == null) {
+                    search = this.operationManager.search(getConfig().getBaseDN(), filter.toString(), entryConfig);
+                    parentSearches.put(filter.toString(), search);
+                }
 
                 if (!search.isEmpty()) {
                     SearchResult next = search.get(0);
@@ -799,7 +847,7 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
 
                             int hierarchyDepthCount1 = ++hierarchyDepthCount;
 
-                            parentProperty.setValue(attributedType, populateAttributedType(next, null, hierarchyDepthCount1));
+                            parentProperty.setValue(attributedType, populateAttributedType(next, null, hierarchyDepthCount1, parentSearches));
                         }
                     }
                 } else {
@@ -1019,4 +1067,16 @@ public class LDAPIdentityStore extends AbstractIdentityStore<LDAPIdentityStoreCo
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * <p>An entry found when querying relationships, with the member DNs of each relationship property.</p>
+     */
+    private static class RelationshipEntry {
+
+        private final AttributedType owner;
+        private final Map<String, List<String>> members = new LinkedHashMap<String, List<String>>();
+
+        RelationshipEntry(AttributedType owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -22,42 +22,53 @@ import org.picketlink.common.constants.LDAPConstants;
 import org.picketlink.common.util.LDAPUtil;
 import org.picketlink.idm.IDMLog;
 import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.config.LDAPConnectionPoolConfiguration;
 import org.picketlink.idm.config.LDAPIdentityStoreConfiguration;
 import org.picketlink.idm.config.LDAPMappingConfiguration;
 import org.picketlink.idm.model.IdentityType;
 import org.picketlink.idm.query.IdentityQuery;
 
+import javax.naming.AuthenticationException;
 import javax.naming.Binding;
+import javax.naming.CommunicationException;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
+import javax.naming.directory.InvalidSearchFilterException;
 import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.naming.ldap.Control;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
 import javax.naming.ldap.PagedResultsControl;
 import javax.naming.ldap.PagedResultsResponseControl;
+import javax.naming.ldap.Rdn;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import static javax.naming.directory.SearchControls.OBJECT_SCOPE;
 import static javax.naming.directory.SearchControls.SUBTREE_SCOPE;
 import static org.picketlink.common.constants.LDAPConstants.CREATE_TIMESTAMP;
 import static org.picketlink.common.constants.LDAPConstants.EQUAL;
 import static org.picketlink.common.util.LDAPUtil.convertObjectGUIToByteString;
 import static org.picketlink.idm.IDMInternalLog.LDAP_STORE_LOGGER;
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
+import static org.picketlink.idm.ldap.internal.LDAPUtil.escapeFilterValue;
 
 /**
  * <p>This class provides a set of operations to manage LDAP trees.</p>
@@ -67,12 +78,47 @@ import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
  */
 public class LDAPOperationManager {
 
+    /**
+     * The maximum number of entries looked up by a single search when looking up entries by DN.
+     */
+    public static final int MAX_LOOKUP_BATCH_SIZE = 100;
+
+    private static final String RANGE_OPTION = ";range=";
+
     private final LDAPIdentityStoreConfiguration config;
     private final Map<String, Object> connectionProperties;
+    private final LDAPConnectionPool connectionPool;
+    private final LDAPConnectionPool authenticationPool;
+    private final LDAPReplica replica;
 
     public LDAPOperationManager(LDAPIdentityStoreConfiguration config) throws NamingException {
         this.config = config;
         this.connectionProperties = Collections.unmodifiableMap(createConnectionProperties());
+
+        LDAPConnectionPoolConfiguration connectionPoolConfig = config.getConnectionPoolConfig();
+
+        if (connectionPoolConfig != null) {
+            this.connectionPool = new LDAPConnectionPool("bind", this.connectionProperties, connectionPoolConfig);
+            this.connectionPool.prefill();
+        } else {
+            this.connectionPool = null;
+        }
+
+        LDAPConnectionPoolConfiguration authenticationPoolConfig = config.getAuthenticationPoolConfig();
+
+        if (authenticationPoolConfig != null) {
+            this.authenticationPool = new LDAPConnectionPool("authentication", this.connectionProperties, authenticationPoolConfig);
+            this.authenticationPool.prefill();
+        } else {
+            this.authenticationPool = null;
+        }
+
+        if (config.getReplicationConfig() != null) {
+            this.replica = new LDAPReplica(config, this.connectionProperties, this);
+            this.replica.start();
+        } else {
+            this.replica = null;
+        }
     }
 
     /**
@@ -186,6 +232,10 @@ public class LDAPOperationManager {
                             LDAP_STORE_LOGGER.debugf("]");
                         }
                         destroySubcontext(context, sr.getNameInNamespace());
+
+                        if (replica != null) {
+                            replica.removeSubtree(sr.getNameInNamespace());
+                        }
                     }
 
                     result.close();
@@ -200,6 +250,14 @@ public class LDAPOperationManager {
     }
 
     public List<SearchResult> search(final String baseDN, final String filter, LDAPMappingConfiguration mappingConfiguration) throws NamingException {
+        if (canUseReplica(baseDN)) {
+            try {
+                return this.replica.search(baseDN, filter, getReturningAttributes(mappingConfiguration));
+            } catch (InvalidSearchFilterException isfe) {
+                LDAP_STORE_LOGGER.debugf(isfe, "Filter [%s] can not be evaluated by the LDAP replica.", filter);
+            }
+        }
+
         final List<SearchResult> result = new ArrayList<SearchResult>();
         final SearchControls cons = getSearchControls(mappingConfiguration);
 
@@ -225,6 +283,27 @@ public class LDAPOperationManager {
     }
 
     public <V extends IdentityType> List<SearchResult> searchPaginated(final String baseDN, final String filter, LDAPMappingConfiguration mappingConfiguration, final IdentityQuery<V> identityQuery) throws NamingException {
+        Object paginationContext = identityQuery.getPaginationContext();
+
+        // pages served by the replica use the offset of the next page as the pagination context, instead of a cookie
+        if (canUseReplica(baseDN) && (paginationContext == null || Integer.class.isInstance(paginationContext))) {
+            try {
+                List<SearchResult> entries = this.replica.search(baseDN, filter, getReturningAttributes(mappingConfiguration));
+                int offset = paginationContext != null ? (Integer) paginationContext : 0;
+                int end = Math.min(offset + identityQuery.getLimit(), entries.size());
+
+                identityQuery.setPaginationContext(end < entries.size() ? Integer.valueOf(end) : null);
+
+                if (offset >= end) {
+                    return new ArrayList<SearchResult>();
+                }
+
+                return new ArrayList<SearchResult>(entries.subList(offset, end));
+            } catch (InvalidSearchFilterException isfe) {
+                LDAP_STORE_LOGGER.debugf(isfe, "Filter [%s] can not be evaluated by the LDAP replica.", filter);
+            }
+        }
+
         final List<SearchResult> result = new ArrayList<SearchResult>();
         final SearchControls cons = getSearchControls(mappingConfiguration);
 
@@ -269,6 +348,178 @@ public class LDAPOperationManager {
         }
     }
 
+    /**
+     * <p>Looks up the entries with the given DNs. Instead of searching each entry individually, entries with the same
+     * parent are searched together using OR filters with at most {@link #MAX_LOOKUP_BATCH_SIZE} terms.</p>
+     *
+     * @param dns The DNs of the entries.
+     *
+     * @return The entries found, keyed by the given DNs. DNs without a corresponding entry are not present.
+     *
+     * @throws NamingException
+     */
+    public Map<String, SearchResult> lookupByDN(Collection<String> dns) throws NamingException {
+        Map<String, SearchResult> entries = new HashMap<String, SearchResult>();
+        Map<LdapName, List<String>> dnsByBaseDN = new LinkedHashMap<LdapName, List<String>>();
+
+        for (String dn : dns) {
+            LdapName name = new LdapName(dn);
+
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            LdapName baseDN = (LdapName) name.getPrefix(name.size() - 1);
+            List<String> batch = dnsByBaseDN.get(baseDN);
+
+            if (batch == null) {
+                batch = new ArrayList<String>();
+                dnsByBaseDN.put(baseDN, batch);
+            }
+
+            batch.add(dn);
+        }
+
+        for (Map.Entry<LdapName, List<String>> entry : dnsByBaseDN.entrySet()) {
+            List<String> baseDNEntries = entry.getValue();
+
+            for (int i = 0; i < baseDNEntries.size(); i += MAX_LOOKUP_BATCH_SIZE) {
+                List<String> batch = baseDNEntries.subList(i, Math.min(i + MAX_LOOKUP_BATCH_SIZE, baseDNEntries.size()));
+                StringBuilder filter = new StringBuilder("(|");
+
+                for (String dn : batch) {
+                    filter.append(getFilterByRdn(getRdn(new LdapName(dn))));
+                }
+
+                filter.append(")");
+
+                Map<LdapName, SearchResult> found = new HashMap<LdapName, SearchResult>();
+                Map<Rdn, SearchResult> foundByRdn = new HashMap<Rdn, SearchResult>();
+
+                for (SearchResult result : search(entry.getKey().toString(), filter.toString(), null)) {
+                    LdapName resultName = new LdapName(result.getNameInNamespace());
+
+                    found.put(resultName, result);
+
+                    if (!foundByRdn.containsKey(getRdn(resultName))) {
+                        foundByRdn.put(getRdn(resultName), result);
+                    }
+                }
+
+                for (String dn : batch) {
+                    LdapName name = new LdapName(dn);
+                    SearchResult result = found.get(name);
+
+                    if (result == null) {
+                        // searches are performed in the subtree of the base DN, so the entry may be in a nested context
+                        result = foundByRdn.get(getRdn(name));
+                    }
+
+                    if (result != null) {
+                        entries.put(dn, result);
+                    }
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * <p>Returns all values of a multi-valued attribute of the entry with the given DN. Servers such as Active
+     * Directory return a limited number of values for large attributes like <code>member</code>, using a ranged
+     * attribute such as <code>member;range=0-1499</code>. In this case, the remaining values are retrieved range by
+     * range.</p>
+     *
+     * @param dn The DN of the entry.
+     * @param attributes The attributes of the entry, as returned by a search.
+     * @param attributeName The name of the attribute.
+     *
+     * @return The values of the attribute, or an empty list if the entry does not have the attribute.
+     *
+     * @throws NamingException
+     */
+    public List<String> getAttributeValues(final String dn, Attributes attributes, String attributeName) throws NamingException {
+        List<String> values = new ArrayList<String>();
+        Attribute attribute = attributes.get(attributeName);
+
+        if (attribute == null) {
+            attribute = getRangedAttribute(attributes, attributeName);
+        }
+
+        while (attribute != null) {
+            NamingEnumeration<?> attributeValues = attribute.getAll();
+
+            while (attributeValues.hasMore()) {
+                values.add(attributeValues.next().toString());
+            }
+
+            String attributeId = attribute.getID();
+            int rangeIndex = attributeId.toLowerCase().indexOf(RANGE_OPTION);
+
+            if (rangeIndex == -1) {
+                break;
+            }
+
+            String rangeEnd = attributeId.substring(attributeId.indexOf('-', rangeIndex) + 1);
+
+            if ("*".equals(rangeEnd)) {
+                break;
+            }
+
+            final String[] nextRange = new String[] {attributeName + RANGE_OPTION + (Long.parseLong(rangeEnd) + 1) + "-*"};
+
+            Attributes nextAttributes = execute(new LdapOperation<Attributes>() {
+                @Override
+                public Attributes execute(LdapContext context) throws NamingException {
+                    return context.getAttributes(dn, nextRange);
+                }
+            });
+
+            attribute = getRangedAttribute(nextAttributes, attributeName);
+        }
+
+        return values;
+    }
+
+    private Attribute getRangedAttribute(Attributes attributes, String attributeName) throws NamingException {
+        String rangedAttributePrefix = (attributeName + RANGE_OPTION).toLowerCase();
+        NamingEnumeration<String> attributeIds = attributes.getIDs();
+
+        while (attributeIds.hasMore()) {
+            String attributeId = attributeIds.next();
+
+            if (attributeId.toLowerCase().startsWith(rangedAttributePrefix)) {
+                return attributes.get(attributeId);
+            }
+        }
+
+        return null;
+    }
+
+    private Rdn getRdn(LdapName name) {
+        return name.getRdn(name.size() - 1);
+    }
+
+    private String getFilterByRdn(Rdn rdn) throws NamingException {
+        StringBuilder filter = new StringBuilder();
+        NamingEnumeration<? extends Attribute> rdnAttributes = rdn.toAttributes().getAll();
+
+        // multi-valued RDNs require all their values to match
+        filter.append("(&");
+
+        while (rdnAttributes.hasMore()) {
+            Attribute rdnAttribute = rdnAttributes.next();
+
+            filter.append("(").append(rdnAttribute.getID()).append(EQUAL)
+                .append(escapeFilterValue(rdnAttribute.get().toString())).append(")");
+        }
+
+        filter.append(")");
+
+        return filter.toString();
+    }
+
     private SearchControls getSearchControls(LDAPMappingConfiguration mappingConfiguration) {
         final SearchControls cons = new SearchControls();
 
@@ -284,7 +535,21 @@ public class LDAPOperationManager {
     public String getFilterById(String baseDN, String id) {
         String filter = null;
 
-        if (this.config.isActiveDirectory()) {
+        if (this.config.isActiveDirectory() && canUseReplica(baseDN)) {
+            try {
+                SearchResult entry = this.replica.lookupById(baseDN, id, Collections.singletonList(getUniqueIdentifierAttributeName()));
+
+                if (entry != null) {
+                    byte[] objectGUID = (byte[]) entry.getAttributes().get(getUniqueIdentifierAttributeName()).get();
+
+                    return "(&(objectClass=*)(" + getUniqueIdentifierAttributeName() + EQUAL + convertObjectGUIToByteString(objectGUID) + "))";
+                }
+            } catch (NamingException ignore) {
+                // the server is queried instead
+            }
+        }
+
+        if (filter == null && this.config.isActiveDirectory()) {
             final String strObjectGUID = "<GUID=" + id + ">";
 
             try {
@@ -311,6 +576,14 @@ public class LDAPOperationManager {
     }
 
     public SearchResult lookupById(final String baseDN, final String id, final LDAPMappingConfiguration mappingConfiguration) {
+        if (canUseReplica(baseDN)) {
+            try {
+                return this.replica.lookupById(baseDN, id, getReturningAttributes(mappingConfiguration));
+            } catch (NamingException e) {
+                LDAP_STORE_LOGGER.debugf(e, "Could not look up entry with id [%s] in the LDAP replica.", id);
+            }
+        }
+
         final String filter = getFilterById(baseDN, id);
 
         try {
@@ -393,6 +666,10 @@ public class LDAPOperationManager {
      * @return
      */
     public boolean authenticate(String dn, String password) {
+        if (this.authenticationPool != null) {
+            return authenticateWithPooledContext(dn, password);
+        }
+
         InitialContext authCtx = null;
 
         try {
@@ -424,6 +701,62 @@ public class LDAPOperationManager {
         }
     }
 
+    /**
+     * <p>Performs a simple authentication reusing a context from the authentication pool. The context is rebound
+     * using the given DN and password over its existing connection.</p>
+     *
+     * @param dn
+     * @param password
+     *
+     * @return
+     */
+    private boolean authenticateWithPooledContext(String dn, String password) {
+        LdapContext authCtx = null;
+        boolean invalidContext = false;
+
+        try {
+            authCtx = this.authenticationPool.borrow();
+
+            authCtx.addToEnvironment(Context.SECURITY_PRINCIPAL, dn);
+            authCtx.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+
+            authCtx.reconnect(null);
+
+            return true;
+        } catch (AuthenticationException ae) {
+            // invalid credentials are rejected by the server but leave the connection open, it can be rebound
+            if (LDAP_STORE_LOGGER.isDebugEnabled()) {
+                LDAP_STORE_LOGGER.debugf(ae, "Authentication failed for DN [%s]", dn);
+            }
+
+            return false;
+        } catch (Exception e) {
+            // any other failure may leave the connection in an unusable state, it must not be returned to the pool
+            invalidContext = true;
+
+            if (LDAP_STORE_LOGGER.isDebugEnabled()) {
+                LDAP_STORE_LOGGER.debugf(e, "Authentication failed for DN [%s]", dn);
+            }
+
+            return false;
+        } finally {
+            if (authCtx != null) {
+                try {
+                    // don't keep the user credentials around while the context is idle
+                    authCtx.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+                } catch (NamingException ignore) {
+                    invalidContext = true;
+                }
+
+                if (invalidContext) {
+                    this.authenticationPool.invalidate(authCtx);
+                } else {
+                    this.authenticationPool.release(authCtx);
+                }
+            }
+        }
+    }
+
     private void modifyAttributes(final String dn, final ModificationItem[] mods) {
         try {
             if (LDAP_STORE_LOGGER.isDebugEnabled()) {
@@ -455,6 +788,8 @@ public class LDAPOperationManager {
             LDAP_STORE_LOGGER.errorf(e, "Could not modify attribute for DN [%s].", dn);
             throw new IdentityManagementException("Could not modify attribute for DN [" + dn + "]", e);
         }
+
+        replicate(dn);
     }
 
     public void createSubContext(final String name, final Attributes attributes) {
@@ -487,6 +822,55 @@ public class LDAPOperationManager {
             LDAP_STORE_LOGGER.errorf(e, "Could not create entry [%s].", name);
             throw new IdentityManagementException("Error creating subcontext [" + name + "]", e);
         }
+
+        replicate(name);
+    }
+
+    private boolean canUseReplica(String baseDN) {
+        return this.replica != null && this.replica.canServe(baseDN);
+    }
+
+    /**
+     * <p>Reads the entry with the given DN, after being written to the server, and updates the replica.</p>
+     *
+     * @param dn
+     */
+    private void replicate(final String dn) {
+        if (this.replica == null) {
+            return;
+        }
+
+        try {
+            final SearchControls cons = new SearchControls();
+
+            cons.setSearchScope(OBJECT_SCOPE);
+            cons.setReturningObjFlag(false);
+            cons.setReturningAttributes(this.replica.getReplicatedAttributes());
+
+            SearchResult entry = execute(new LdapOperation<SearchResult>() {
+                @Override
+                public SearchResult execute(LdapContext context) throws NamingException {
+                    NamingEnumeration<SearchResult> search = context.search(dn, "(objectClass=*)", cons);
+
+                    try {
+                        if (search.hasMore()) {
+                            return search.next();
+                        }
+                    } finally {
+                        search.close();
+                    }
+
+                    return null;
+                }
+            });
+
+            if (entry != null) {
+                this.replica.put(entry);
+            }
+        } catch (NamingException ne) {
+            // the replica is updated when the change is received from the server
+            LDAP_STORE_LOGGER.debugf(ne, "Could not update entry [%s] in the LDAP replica.", dn);
+        }
     }
 
     private String getUniqueIdentifierAttributeName() {
@@ -545,9 +929,43 @@ public class LDAPOperationManager {
     }
 
     private LdapContext createLdapContext() throws NamingException {
+        if (this.connectionPool != null) {
+            return this.connectionPool.borrow();
+        }
+
         return new InitialLdapContext(new Hashtable<Object, Object>(this.connectionProperties), null);
     }
 
+    private void closeLdapContext(LdapContext context, boolean invalidContext) throws NamingException {
+        if (this.connectionPool != null) {
+            if (invalidContext) {
+                this.connectionPool.invalidate(context);
+            } else {
+                this.connectionPool.release(context);
+            }
+        } else {
+            context.close();
+        }
+    }
+
+    /**
+     * <p>Closes the pooled connections, if connection pooling is enabled, and stops updating the replica, if
+     * replication is enabled.</p>
+     */
+    public void close() {
+        if (this.replica != null) {
+            this.replica.close();
+        }
+
+        if (this.connectionPool != null) {
+            this.connectionPool.close();
+        }
+
+        if (this.authenticationPool != null) {
+            this.authenticationPool.close();
+        }
+    }
+
     private Map<String, Object> createConnectionProperties() {
         HashMap<String, Object> env = new HashMap<String, Object>();
 
@@ -603,17 +1021,20 @@ public class LDAPOperationManager {
 
     private <R> R execute(LdapOperation<R> operation) throws NamingException {
         LdapContext context = null;
+        boolean invalidContext = false;
 
         try {
             context = createLdapContext();
             return operation.execute(context);
         } catch (NamingException ne) {
+            // pooled contexts are discarded if their connection is broken
+            invalidContext = CommunicationException.class.isInstance(ne) || ServiceUnavailableException.class.isInstance(ne);
             IDMLog.IDENTITY_STORE_LOGGER.error("Could not create Ldap context.", ne);
             throw ne;
         } finally {
             if (context != null) {
                 try {
-                    context.close();
+                    closeLdapContext(context, invalidContext);
                 } catch (NamingException ne) {
                     IDMLog.IDENTITY_STORE_LOGGER.error("Could not close Ldap context.", ne);
                 }
@@ -0,0 +1,1212 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.ldap.internal;
+
+import org.picketlink.idm.config.LDAPIdentityStoreConfiguration;
+import org.picketlink.idm.config.LDAPMappingConfiguration;
+import org.picketlink.idm.config.LDAPReplicationConfiguration;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.BasicControl;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.HasControls;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static javax.naming.directory.SearchControls.SUBTREE_SCOPE;
+import static org.picketlink.common.constants.LDAPConstants.CREATE_TIMESTAMP;
+import static org.picketlink.common.constants.LDAPConstants.MODIFY_TIMESTAMP;
+import static org.picketlink.common.constants.LDAPConstants.OBJECT_CLASS;
+import static org.picketlink.idm.IDMInternalLog.LDAP_STORE_LOGGER;
+
+/**
+ * <p>An in-memory replica of the entries managed by the LDAP store.</p>
+ *
+ * <p>The entries with the object classes of the configured mappings are loaded from the base DN of the store, and
+ * from the base DNs of the mappings outside of it, using paged searches. The replica is then kept up to date by a
+ * background thread, which applies the changes received through a persistent search if the server supports it, or
+ * polls the server for entries created or modified since the last check. When polling, entries removed from the
+ * server are detected by comparing the DNs of the replicated entries with the ones on the server, at a separate and
+ * longer interval, given that it requires listing all the replicated DNs. The persistent search is started before
+ * the replica is loaded, so changes made by other clients while loading are queued and applied once it is loaded.</p>
+ *
+ * <p>Changes made through the store are applied to the replica as soon as they are written to the server, using
+ * {@link #put(SearchResult)} and {@link #removeSubtree(String)}. The replica can only serve searches while it is
+ * current. When the connection used to receive changes is lost, the replica stops serving searches until it is
+ * reloaded.</p>
+ *
+ * <p>The background thread does not prevent the replica from being garbage collected, it stops once the replica is no
+ * longer referenced or when {@link #close()} is invoked.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPReplica {
+
+    private static final String NO_ATTRIBUTES = "1.1";
+    private static final String RANGE_OPTION = ";range=";
+    private static final String SUPPORTED_CONTROL = "supportedControl";
+    private static final String PERSISTENT_SEARCH_CONTROL = "2.16.840.1.113730.3.4.3";
+    private static final String ENTRY_CHANGE_NOTIFICATION_CONTROL = "2.16.840.1.113730.3.4.7";
+
+    /**
+     * <p>The value of the persistent search control: all change types, changes only and entry change notifications
+     * returned.</p>
+     */
+    private static final byte[] PERSISTENT_SEARCH_CONTROL_VALUE = new byte[] {
+        0x30, 0x09, 0x02, 0x01, 0x0F, 0x01, 0x01, (byte) 0xFF, 0x01, 0x01, (byte) 0xFF
+    };
+
+    /**
+     * <p>Makes JNDI return from a search as soon as the request is sent, instead of waiting for the first result.</p>
+     */
+    private static final String WAIT_FOR_REPLY = "com.sun.jndi.ldap.search.waitForReply";
+
+    private static final int CHANGE_TYPE_DELETE = 2;
+    private static final int CHANGE_TYPE_MODDN = 8;
+
+    private final LDAPOperationManager operationManager;
+    private final LDAPReplicationConfiguration configuration;
+    private final Hashtable<Object, Object> environment;
+    private final String uniqueIdentifierAttributeName;
+    private final LdapName baseDN;
+    private final List<LdapName> rootDNs;
+    private final String entryFilter;
+    private final LDAPFilter parsedEntryFilter;
+    private final String[] replicatedAttributes;
+    private final Set<String> indexedAttributes;
+    private final Object mutationLock = new Object();
+
+    private volatile Entries entries = new Entries();
+    private Entries loadingEntries;
+    private Set<String> changedWhileLoading;
+    private volatile boolean current;
+    private volatile String watermark;
+    private volatile Date watermarkDate;
+    private volatile Set<String> reconciledEntries;
+    private volatile long reconciledAt;
+    private Synchronizer synchronizer;
+
+    public LDAPReplica(LDAPIdentityStoreConfiguration config, Map<String, Object> connectionProperties,
+                       LDAPOperationManager operationManager) throws NamingException {
+        this.operationManager = operationManager;
+        this.configuration = config.getReplicationConfig();
+        this.environment = new Hashtable<Object, Object>(connectionProperties);
+        // the connections used by the replica are long lived and must not be shared
+        this.environment.put("com.sun.jndi.ldap.connect.pool", "false");
+        this.environment.remove("com.sun.jndi.ldap.read.timeout");
+        this.uniqueIdentifierAttributeName = config.getUniqueIdentifierAttributeName();
+        this.baseDN = new LdapName(config.getBaseDN());
+        this.rootDNs = new ArrayList<LdapName>();
+        this.rootDNs.add(this.baseDN);
+
+        Set<String> objectClasses = new LinkedHashSet<String>();
+
+        this.indexedAttributes = new HashSet<String>();
+        this.indexedAttributes.add(this.uniqueIdentifierAttributeName.toLowerCase());
+
+        for (LDAPMappingConfiguration mappingConfig : config.getMappingConfig().values()) {
+            if (mappingConfig.getBaseDN() != null) {
+                addRootDN(new LdapName(mappingConfig.getBaseDN()));
+            }
+
+            objectClasses.addAll(mappingConfig.getObjectClasses());
+
+            for (String attributeName : mappingConfig.getMappedProperties().values()) {
+                this.indexedAttributes.add(attributeName.toLowerCase());
+            }
+
+            if (mappingConfig.getParentMembershipAttributeName() != null) {
+                this.indexedAttributes.add(mappingConfig.getParentMembershipAttributeName().toLowerCase());
+            }
+        }
+
+        StringBuilder filter = new StringBuilder("(|");
+
+        for (String objectClass : objectClasses) {
+            filter.append("(").append(OBJECT_CLASS).append("=").append(LDAPUtil.escapeFilterValue(objectClass)).append(")");
+        }
+
+        if (objectClasses.isEmpty()) {
+            filter.append("(").append(OBJECT_CLASS).append("=*)");
+        }
+
+        filter.append(")");
+
+        this.entryFilter = filter.toString();
+        this.parsedEntryFilter = LDAPFilter.parse(this.entryFilter);
+        this.replicatedAttributes = new String[] {"*", this.uniqueIdentifierAttributeName, CREATE_TIMESTAMP, MODIFY_TIMESTAMP};
+    }
+
+    private void addRootDN(LdapName rootDN) {
+        for (LdapName existing : new ArrayList<LdapName>(this.rootDNs)) {
+            if (rootDN.startsWith(existing)) {
+                return;
+            }
+
+            if (existing.startsWith(rootDN)) {
+                this.rootDNs.remove(existing);
+            }
+        }
+
+        this.rootDNs.add(rootDN);
+    }
+
+    /**
+     * <p>Loads the replica and starts the thread that keeps it up to date. If the replica can not be loaded, it is
+     * loaded later by the background thread.</p>
+     */
+    public void start() {
+        this.synchronizer = new Synchronizer(this);
+
+        try {
+            this.synchronizer.initialize(this);
+        } catch (Exception e) {
+            LDAP_STORE_LOGGER.warnf(e, "Could not load the LDAP replica. Searches are going to be performed on the server until it is loaded.");
+        }
+
+        Thread thread = new Thread(this.synchronizer, "PicketLink LDAP Replica [" + this.baseDN + "]");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * <p>Stops keeping the replica up to date. The replica no longer serves searches.</p>
+     */
+    public void close() {
+        this.current = false;
+
+        if (this.synchronizer != null) {
+            this.synchronizer.stop();
+        }
+    }
+
+    /**
+     * <p>Indicates if the replica is loaded and up to date.</p>
+     *
+     * @return
+     */
+    public boolean isCurrent() {
+        return this.current;
+    }
+
+    /**
+     * <p>Checks if searches under the given base DN can be served by the replica.</p>
+     *
+     * @param baseDN
+     * @return
+     */
+    public boolean canServe(String baseDN) {
+        if (!this.current || baseDN == null) {
+            return false;
+        }
+
+        try {
+            LdapName name = new LdapName(baseDN);
+
+            for (LdapName rootDN : this.rootDNs) {
+                if (name.startsWith(rootDN)) {
+                    return true;
+                }
+            }
+        } catch (NamingException ignore) {
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>The attributes to retrieve when reading an entry to put it in the replica.</p>
+     *
+     * @return
+     */
+    public String[] getReplicatedAttributes() {
+        return this.replicatedAttributes.clone();
+    }
+
+    /**
+     * <p>Searches the subtree of the given base DN.</p>
+     *
+     * @param baseDN
+     * @param filter
+     * @param returningAttributes The attributes to include in the results, or <code>*</code> for all of them.
+     * @return
+     * @throws javax.naming.directory.InvalidSearchFilterException If the filter is not supported by the replica.
+     * @throws NamingException
+     */
+    public List<SearchResult> search(String baseDN, String filter, Collection<String> returningAttributes) throws NamingException {
+        LDAPFilter searchFilter = LDAPFilter.parse(filter);
+        Entries entries = this.entries;
+        String base = LDAPFilter.normalizeDN(new LdapName(baseDN));
+        List<SearchResult> results = new ArrayList<SearchResult>();
+
+        for (String key : getCandidates(entries, searchFilter, base)) {
+            SearchResult entry = entries.byDN.get(key);
+
+            if (entry != null && isInSubtree(key, base) && searchFilter.matches(entry.getAttributes())) {
+                results.add(copy(entry, returningAttributes));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * <p>Looks up the entry with the given identifier in the subtree of the given base DN.</p>
+     *
+     * @param baseDN
+     * @param id The decoded value of the unique identifier attribute.
+     * @param returningAttributes The attributes to include in the result, or <code>*</code> for all of them.
+     * @return
+     * @throws NamingException
+     */
+    public SearchResult lookupById(String baseDN, String id, Collection<String> returningAttributes) throws NamingException {
+        Entries entries = this.entries;
+        String key = entries.byId.get(id);
+
+        if (key == null || !isInSubtree(key, LDAPFilter.normalizeDN(new LdapName(baseDN)))) {
+            return null;
+        }
+
+        SearchResult entry = entries.byDN.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        return copy(entry, returningAttributes);
+    }
+
+    /**
+     * <p>Adds the given entry to the replica, or replaces it if already present. Entries without the object classes
+     * of the mappings are removed from the replica.</p>
+     *
+     * @param result An entry read with the attributes returned by {@link #getReplicatedAttributes()}.
+     * @throws NamingException
+     */
+    public void put(SearchResult result) throws NamingException {
+        String dn = result.getNameInNamespace();
+        Attributes attributes = resolveRangedAttributes(dn, result.getAttributes());
+
+        if (!this.parsedEntryFilter.matches(attributes)) {
+            remove(new LdapName(dn));
+            return;
+        }
+
+        SearchResult entry = new SearchResult(dn, null, attributes, false);
+
+        entry.setNameInNamespace(dn);
+
+        synchronized (this.mutationLock) {
+            put(this.entries, entry);
+
+            if (this.loadingEntries != null) {
+                put(this.loadingEntries, entry);
+                this.changedWhileLoading.add(LDAPFilter.normalizeDN(new LdapName(dn)));
+            }
+
+            Set<String> reconciledEntries = this.reconciledEntries;
+
+            if (reconciledEntries != null) {
+                reconciledEntries.add(LDAPFilter.normalizeDN(new LdapName(dn)));
+            }
+        }
+
+        updateWatermark(attributes);
+    }
+
+    /**
+     * <p>Removes the entry with the given DN and all its children from the replica.</p>
+     *
+     * @param dn
+     * @return The number of entries removed.
+     * @throws NamingException
+     */
+    public int removeSubtree(String dn) throws NamingException {
+        String base = LDAPFilter.normalizeDN(new LdapName(dn));
+        int removed = 0;
+
+        synchronized (this.mutationLock) {
+            for (String key : new ArrayList<String>(getSubtree(this.entries, base))) {
+                if (remove(this.entries, key)) {
+                    removed++;
+                }
+            }
+
+            if (this.loadingEntries != null) {
+                for (String key : new ArrayList<String>(getSubtree(this.loadingEntries, base))) {
+                    remove(this.loadingEntries, key);
+                    this.changedWhileLoading.add(key);
+                }
+
+                this.changedWhileLoading.add(base);
+            }
+        }
+
+        return removed;
+    }
+
+    private void remove(LdapName name) throws NamingException {
+        removeSubtree(name.toString());
+    }
+
+    private Collection<String> getCandidates(Entries entries, LDAPFilter filter, String base) {
+        Set<String> candidates = null;
+
+        for (String[] equality : filter.getRequiredEqualities()) {
+            Map<String, Set<String>> index = entries.indexes.get(equality[0].toLowerCase());
+
+            if (index != null) {
+                Set<String> indexed = index.get(equality[1]);
+
+                if (indexed == null) {
+                    return Collections.emptyList();
+                }
+
+                if (candidates == null || indexed.size() < candidates.size()) {
+                    candidates = indexed;
+                }
+            }
+        }
+
+        if (candidates == null) {
+            return getSubtree(entries, base);
+        }
+
+        // keep the results in the same order as when searching the subtree, so they can be paginated
+        List<String> sorted = new ArrayList<String>(candidates);
+
+        Collections.sort(sorted);
+
+        return sorted;
+    }
+
+    private Collection<String> getSubtree(Entries entries, String base) {
+        if (base.length() == 0) {
+            return entries.byDN.keySet();
+        }
+
+        return entries.byDN.subMap(base, true, base + ",\uffff", false).keySet();
+    }
+
+    private boolean isInSubtree(String key, String base) {
+        return base.length() == 0 || key.equals(base) || key.startsWith(base + ",");
+    }
+
+    private SearchResult copy(SearchResult entry, Collection<String> returningAttributes) throws NamingException {
+        Attributes attributes = entry.getAttributes();
+        Attributes copy = new BasicAttributes(true);
+
+        if (returningAttributes.contains("*")) {
+            NamingEnumeration<? extends Attribute> all = attributes.getAll();
+
+            while (all.hasMore()) {
+                copy.put((Attribute) all.next().clone());
+            }
+        }
+
+        for (String attributeName : returningAttributes) {
+            if (attributeName == null) {
+                continue;
+            }
+
+            Attribute attribute = attributes.get(attributeName);
+
+            if (attribute != null) {
+                copy.put((Attribute) attribute.clone());
+            }
+        }
+
+        SearchResult result = new SearchResult(entry.getName(), null, copy, false);
+
+        result.setNameInNamespace(entry.getNameInNamespace());
+
+        return result;
+    }
+
+    private void put(Entries entries, SearchResult entry) throws NamingException {
+        String key = LDAPFilter.normalizeDN(new LdapName(entry.getNameInNamespace()));
+
+        remove(entries, key);
+
+        entries.byDN.put(key, entry);
+
+        Attributes attributes = entry.getAttributes();
+        Attribute id = attributes.get(this.uniqueIdentifierAttributeName);
+
+        if (id != null && id.get() != null) {
+            entries.byId.put(this.operationManager.decodeEntryUUID(id.get()), key);
+        }
+
+        for (String attributeName : this.indexedAttributes) {
+            Attribute attribute = attributes.get(attributeName);
+
+            if (attribute == null) {
+                continue;
+            }
+
+            ConcurrentMap<String, Set<String>> index = entries.indexes.get(attributeName);
+
+            if (index == null) {
+                index = new ConcurrentHashMap<String, Set<String>>();
+                entries.indexes.put(attributeName, index);
+            }
+
+            NamingEnumeration<?> values = attribute.getAll();
+
+            while (values.hasMore()) {
+                String value = getIndexValue(values.next());
+
+                if (value == null) {
+                    continue;
+                }
+
+                Set<String> keys = index.get(value);
+
+                if (keys == null) {
+                    keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                    index.put(value, keys);
+                }
+
+                keys.add(key);
+            }
+        }
+    }
+
+    private boolean remove(Entries entries, String key) {
+        SearchResult entry = entries.byDN.remove(key);
+
+        if (entry == null) {
+            return false;
+        }
+
+        try {
+            Attributes attributes = entry.getAttributes();
+            Attribute id = attributes.get(this.uniqueIdentifierAttributeName);
+
+            if (id != null && id.get() != null) {
+                entries.byId.remove(this.operationManager.decodeEntryUUID(id.get()));
+            }
+
+            for (String attributeName : this.indexedAttributes) {
+                Attribute attribute = attributes.get(attributeName);
+                Map<String, Set<String>> index = entries.indexes.get(attributeName);
+
+                if (attribute == null || index == null) {
+                    continue;
+                }
+
+                NamingEnumeration<?> values = attribute.getAll();
+
+                while (values.hasMore()) {
+                    String value = getIndexValue(values.next());
+                    Set<String> keys = value != null ? index.get(value) : null;
+
+                    if (keys != null) {
+                        keys.remove(key);
+
+                        if (keys.isEmpty()) {
+                            index.remove(value);
+                        }
+                    }
+                }
+            }
+        } catch (NamingException ne) {
+            LDAP_STORE_LOGGER.debugf(ne, "Could not remove entry [%s] from the indexes of the LDAP replica.", key);
+        }
+
+        return true;
+    }
+
+    private String getIndexValue(Object value) {
+        // binary values are not indexed, filters on them are evaluated against all the entries
+        if (value == null || byte[].class.isInstance(value)) {
+            return null;
+        }
+
+        return LDAPFilter.normalize(value.toString());
+    }
+
+    private Attributes resolveRangedAttributes(String dn, Attributes attributes) throws NamingException {
+        NamingEnumeration<String> attributeIds = attributes.getIDs();
+        List<String> rangedAttributeIds = new ArrayList<String>();
+
+        while (attributeIds.hasMore()) {
+            String attributeId = attributeIds.next();
+
+            if (attributeId.toLowerCase().contains(RANGE_OPTION)) {
+                rangedAttributeIds.add(attributeId);
+            }
+        }
+
+        for (String rangedAttributeId : rangedAttributeIds) {
+            String attributeName = rangedAttributeId.substring(0, rangedAttributeId.toLowerCase().indexOf(RANGE_OPTION));
+            Attribute attribute = new BasicAttribute(attributeName);
+
+            for (String value : this.operationManager.getAttributeValues(dn, attributes, attributeName)) {
+                attribute.add(value);
+            }
+
+            attributes.remove(rangedAttributeId);
+            attributes.put(attribute);
+        }
+
+        return attributes;
+    }
+
+    private void updateWatermark(Attributes attributes) throws NamingException {
+        for (String attributeName : new String[] {MODIFY_TIMESTAMP, CREATE_TIMESTAMP}) {
+            Attribute attribute = attributes.get(attributeName);
+
+            if (attribute != null && attribute.get() != null) {
+                String timestamp = attribute.get().toString();
+
+                try {
+                    Date date = LDAPUtil.parseDate(timestamp);
+
+                    synchronized (this.mutationLock) {
+                        if (this.watermarkDate == null || date.after(this.watermarkDate)) {
+                            this.watermarkDate = date;
+                            this.watermark = timestamp;
+                        }
+                    }
+                } catch (Exception e) {
+                    LDAP_STORE_LOGGER.debugf(e, "Invalid timestamp [%s].", timestamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Loads all the entries from the server, replacing the current ones.</p>
+     *
+     * @param context
+     * @throws NamingException
+     */
+    void load(LdapContext context) throws NamingException {
+        long start = System.currentTimeMillis();
+        Entries loaded = new Entries();
+        SearchControls controls = new SearchControls();
+
+        controls.setSearchScope(SUBTREE_SCOPE);
+        controls.setReturningObjFlag(false);
+        controls.setReturningAttributes(this.replicatedAttributes);
+
+        this.current = false;
+
+        synchronized (this.mutationLock) {
+            this.watermark = null;
+            this.watermarkDate = null;
+            // changes written while loading are applied to both the current and the loaded entries
+            this.loadingEntries = loaded;
+            this.changedWhileLoading = new HashSet<String>();
+        }
+
+        try {
+            for (LdapName rootDN : this.rootDNs) {
+                for (SearchResult result : searchPaged(context, rootDN.toString(), this.entryFilter, controls)) {
+                    String dn = result.getNameInNamespace();
+                    Attributes attributes = resolveRangedAttributes(dn, result.getAttributes());
+                    SearchResult entry = new SearchResult(dn, null, attributes, false);
+                    String key = LDAPFilter.normalizeDN(new LdapName(dn));
+
+                    entry.setNameInNamespace(dn);
+
+                    synchronized (this.mutationLock) {
+                        // the entry was read before being changed, the changed one is kept
+                        if (!this.changedWhileLoading.contains(key)) {
+                            put(loaded, entry);
+                        }
+                    }
+
+                    updateWatermark(attributes);
+                }
+            }
+
+            synchronized (this.mutationLock) {
+                this.entries = loaded;
+            }
+
+            // a load also removes the entries that no longer exist
+            this.reconciledAt = start;
+        } finally {
+            synchronized (this.mutationLock) {
+                this.loadingEntries = null;
+                this.changedWhileLoading = null;
+            }
+        }
+
+        this.current = true;
+
+        if (LDAP_STORE_LOGGER.isDebugEnabled()) {
+            LDAP_STORE_LOGGER.debugf("LDAP replica loaded with [%s] entries in [%s] ms.", loaded.byDN.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * <p>Applies the changes made to the server since the last check. Entries removed from the server are only
+     * checked once the reconcile interval has elapsed.</p>
+     *
+     * @param context
+     * @throws NamingException
+     */
+    void poll(LdapContext context) throws NamingException {
+        SearchControls controls = new SearchControls();
+
+        controls.setSearchScope(SUBTREE_SCOPE);
+        controls.setReturningObjFlag(false);
+        controls.setReturningAttributes(this.replicatedAttributes);
+
+        String watermark = this.watermark;
+
+        if (watermark != null) {
+            String filter = "(&" + this.entryFilter + "(|(" + MODIFY_TIMESTAMP + ">=" + watermark + ")(" + CREATE_TIMESTAMP + ">=" + watermark + ")))";
+
+            for (LdapName rootDN : this.rootDNs) {
+                for (SearchResult result : searchPaged(context, rootDN.toString(), filter, controls)) {
+                    put(result);
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (now - this.reconciledAt >= this.configuration.getReconcileInterval()) {
+            reconcile(context);
+            this.reconciledAt = now;
+        }
+    }
+
+    /**
+     * <p>Removes the entries that no longer exist on the server.</p>
+     *
+     * @param context
+     * @throws NamingException
+     */
+    private void reconcile(LdapContext context) throws NamingException {
+        Set<String> existing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        SearchControls controls = new SearchControls();
+
+        controls.setSearchScope(SUBTREE_SCOPE);
+        controls.setReturningObjFlag(false);
+        controls.setReturningAttributes(new String[] {NO_ATTRIBUTES});
+
+        // entries added while reconciling must not be removed
+        this.reconciledEntries = existing;
+
+        try {
+            for (LdapName rootDN : this.rootDNs) {
+                for (SearchResult result : searchPaged(context, rootDN.toString(), this.entryFilter, controls)) {
+                    existing.add(LDAPFilter.normalizeDN(new LdapName(result.getNameInNamespace())));
+                }
+            }
+
+            Entries entries = this.entries;
+
+            synchronized (this.mutationLock) {
+                for (String key : new ArrayList<String>(entries.byDN.keySet())) {
+                    if (!existing.contains(key)) {
+                        remove(entries, key);
+                    }
+                }
+            }
+        } finally {
+            this.reconciledEntries = null;
+        }
+    }
+
+    /**
+     * <p>Applies a change received through the persistent search.</p>
+     *
+     * @param result
+     * @return False if the change can not be applied and the replica must be reloaded.
+     * @throws NamingException
+     */
+    boolean apply(SearchResult result) throws NamingException {
+        int changeType = 0;
+        String previousDN = null;
+
+        if (HasControls.class.isInstance(result)) {
+            Control[] controls = ((HasControls) result).getControls();
+
+            if (controls != null) {
+                for (Control control : controls) {
+                    if (ENTRY_CHANGE_NOTIFICATION_CONTROL.equals(control.getID())) {
+                        EntryChangeNotification notification = EntryChangeNotification.decode(control.getEncodedValue());
+
+                        changeType = notification.changeType;
+                        previousDN = notification.previousDN;
+                    }
+                }
+            }
+        }
+
+        String dn = result.getNameInNamespace();
+
+        if (LDAP_STORE_LOGGER.isTraceEnabled()) {
+            LDAP_STORE_LOGGER.tracef("LDAP replica received change [%s] for entry [%s].", changeType, dn);
+        }
+
+        if (changeType == CHANGE_TYPE_DELETE) {
+            removeSubtree(dn);
+        } else {
+            if (changeType == CHANGE_TYPE_MODDN && previousDN != null && removeSubtree(previousDN) > 1) {
+                // the children of the entry were renamed too
+                return false;
+            }
+
+            put(result);
+        }
+
+        return true;
+    }
+
+    boolean supportsPersistentSearch(LdapContext context) throws NamingException {
+        Attribute supportedControls = context.getAttributes("", new String[] {SUPPORTED_CONTROL}).get(SUPPORTED_CONTROL);
+
+        return supportedControls != null && supportedControls.contains(PERSISTENT_SEARCH_CONTROL) && isBaseDNRoot();
+    }
+
+    /**
+     * <p>A single persistent search is performed from the base DN of the store, the replica is polled if mappings
+     * have base DNs outside of it.</p>
+     *
+     * @return
+     */
+    private boolean isBaseDNRoot() {
+        return this.rootDNs.size() == 1 && this.rootDNs.get(0).equals(this.baseDN);
+    }
+
+    private List<SearchResult> searchPaged(LdapContext context, String baseDN, String filter, SearchControls controls) throws NamingException {
+        List<SearchResult> results = new ArrayList<SearchResult>();
+        byte[] cookie = null;
+
+        try {
+            do {
+                context.setRequestControls(new Control[] {new PagedResultsControl(this.configuration.getPageSize(), cookie, Control.CRITICAL)});
+
+                NamingEnumeration<SearchResult> search = context.search(baseDN, filter, controls);
+
+                try {
+                    while (search.hasMore()) {
+                        results.add(search.next());
+                    }
+                } finally {
+                    search.close();
+                }
+
+                cookie = null;
+
+                Control[] responseControls = context.getResponseControls();
+
+                if (responseControls != null) {
+                    for (Control responseControl : responseControls) {
+                        if (responseControl instanceof PagedResultsResponseControl) {
+                            cookie = ((PagedResultsResponseControl) responseControl).getCookie();
+                        }
+                    }
+                }
+            } while (cookie != null && cookie.length > 0);
+        } catch (IOException ioe) {
+            throw new NamingException(ioe.getMessage());
+        } finally {
+            context.setRequestControls(null);
+        }
+
+        return results;
+    }
+
+    LdapContext createContext() throws NamingException {
+        return new InitialLdapContext(this.environment, null);
+    }
+
+    /**
+     * <p>Creates a context for the persistent search. Searches return once they are sent to the server, so the
+     * replica can be loaded while the changes are queued.</p>
+     *
+     * @return
+     * @throws NamingException
+     */
+    LdapContext createListenerContext() throws NamingException {
+        Hashtable<Object, Object> environment = new Hashtable<Object, Object>(this.environment);
+
+        environment.put(WAIT_FOR_REPLY, "false");
+
+        return new InitialLdapContext(environment, null);
+    }
+
+    long getPollInterval() {
+        return this.configuration.getPollInterval();
+    }
+
+    void invalidate() {
+        this.current = false;
+    }
+
+    /**
+     * <p>The entries of the replica and their indexes, keyed by their normalized DN.</p>
+     */
+    private static class Entries {
+        final ConcurrentSkipListMap<String, SearchResult> byDN = new ConcurrentSkipListMap<String, SearchResult>();
+        final ConcurrentMap<String, String> byId = new ConcurrentHashMap<String, String>();
+        final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> indexes = new ConcurrentHashMap<String, ConcurrentMap<String, Set<String>>>();
+    }
+
+    /**
+     * <p>The value of the entry change notification control, as defined by draft-ietf-ldapext-psearch.</p>
+     */
+    private static class EntryChangeNotification {
+
+        private int changeType;
+        private String previousDN;
+
+        static EntryChangeNotification decode(byte[] value) {
+            EntryChangeNotification notification = new EntryChangeNotification();
+
+            if (value == null || value.length < 2 || value[0] != 0x30) {
+                return notification;
+            }
+
+            int[] position = new int[] {1};
+            int end = readLength(value, position) + position[0];
+
+            while (position[0] < end && position[0] < value.length) {
+                int tag = value[position[0]++] & 0xFF;
+                int length = readLength(value, position);
+
+                if (tag == 0x0A) {
+                    int changeType = 0;
+
+                    for (int i = 0; i < length; i++) {
+                        changeType = (changeType << 8) | (value[position[0] + i] & 0xFF);
+                    }
+
+                    notification.changeType = changeType;
+                } else if (tag == 0x04) {
+                    try {
+                        notification.previousDN = new String(value, position[0], length, "UTF-8");
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                position[0] += length;
+            }
+
+            return notification;
+        }
+
+        private static int readLength(byte[] value, int[] position) {
+            int length = value[position[0]++] & 0xFF;
+
+            if ((length & 0x80) != 0) {
+                int octets = length & 0x7F;
+
+                length = 0;
+
+                for (int i = 0; i < octets; i++) {
+                    length = (length << 8) | (value[position[0]++] & 0xFF);
+                }
+            }
+
+            return length;
+        }
+    }
+
+    /**
+     * <p>Keeps the replica up to date. Only a weak reference to the replica is kept, so it can be garbage collected
+     * when the store is no longer used.</p>
+     */
+    private static class Synchronizer implements Runnable {
+
+        private final WeakReference<LDAPReplica> replica;
+        private final long pollInterval;
+        private final String baseDN;
+        private final String filter;
+        private final String[] replicatedAttributes;
+        private volatile boolean stopped;
+        private volatile LdapContext context;
+        private volatile LdapContext loadContext;
+        private volatile NamingEnumeration<SearchResult> changes;
+        private boolean loaded;
+        private boolean persistentSearch;
+
+        Synchronizer(LDAPReplica replica) {
+            this.replica = new WeakReference<LDAPReplica>(replica);
+            this.pollInterval = replica.getPollInterval();
+            this.baseDN = replica.baseDN.toString();
+            this.filter = replica.entryFilter;
+            this.replicatedAttributes = replica.getReplicatedAttributes();
+        }
+
+        /**
+         * <p>Checks if the server supports persistent searches and loads the replica. The persistent search is
+         * started before loading, so that no change made after the entries are read is missed.</p>
+         *
+         * @param replica
+         * @throws NamingException
+         */
+        void initialize(LDAPReplica replica) throws NamingException {
+            LdapContext loadContext = replica.createContext();
+
+            this.loadContext = loadContext;
+
+            try {
+                this.persistentSearch = replica.supportsPersistentSearch(loadContext);
+
+                if (this.persistentSearch) {
+                    search(replica);
+                }
+
+                replica.load(loadContext);
+            } catch (NamingException ne) {
+                closeConnection();
+                throw ne;
+            } catch (RuntimeException re) {
+                closeConnection();
+                throw re;
+            } finally {
+                this.loadContext = null;
+
+                try {
+                    loadContext.close();
+                } catch (NamingException ignore) {
+                }
+            }
+
+            this.loaded = true;
+
+            if (LDAP_STORE_LOGGER.isDebugEnabled()) {
+                LDAP_STORE_LOGGER.debugf("LDAP replica kept up to date using %s.", this.persistentSearch ? "a persistent search" : "polling");
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!this.stopped) {
+                try {
+                    if (!this.loaded) {
+                        LDAPReplica replica = this.replica.get();
+
+                        if (replica == null) {
+                            break;
+                        }
+
+                        initialize(replica);
+                    }
+
+                    if (this.persistentSearch) {
+                        listen();
+                    } else {
+                        waitPollInterval();
+                        poll();
+                    }
+                } catch (Exception e) {
+                    if (this.stopped) {
+                        break;
+                    }
+
+                    LDAP_STORE_LOGGER.warnf(e, "Could not update the LDAP replica. Searches are going to be performed on the server until it is reloaded.");
+
+                    LDAPReplica replica = this.replica.get();
+
+                    if (replica != null) {
+                        replica.invalidate();
+                    }
+
+                    this.loaded = false;
+                    closeConnection();
+                    waitPollInterval();
+                }
+
+                if (this.replica.get() == null) {
+                    break;
+                }
+            }
+
+            closeConnection();
+        }
+
+        /**
+         * <p>Sends the persistent search to the server. Changes are queued until {@link #listen()} is invoked.</p>
+         *
+         * @param replica
+         * @throws NamingException
+         */
+        private void search(LDAPReplica replica) throws NamingException {
+            LdapContext context = replica.createListenerContext();
+
+            this.context = context;
+
+            SearchControls controls = new SearchControls();
+
+            controls.setSearchScope(SUBTREE_SCOPE);
+            controls.setReturningObjFlag(false);
+            controls.setReturningAttributes(this.replicatedAttributes);
+
+            context.setRequestControls(new Control[] {new BasicControl(PERSISTENT_SEARCH_CONTROL, true, PERSISTENT_SEARCH_CONTROL_VALUE)});
+
+            this.changes = context.search(this.baseDN, this.filter, controls);
+        }
+
+        /**
+         * <p>Applies the changes received through the persistent search until it ends. The replica is not referenced
+         * while waiting for changes.</p>
+         *
+         * @throws NamingException
+         */
+        private void listen() throws NamingException {
+            NamingEnumeration<SearchResult> changes = this.changes;
+
+            if (changes == null || this.stopped) {
+                this.loaded = false;
+                closeConnection();
+                return;
+            }
+
+            while (!this.stopped && changes.hasMore()) {
+                if (!apply(changes.next())) {
+                    break;
+                }
+            }
+
+            // the persistent search ended, or the replica must be reloaded
+            this.loaded = false;
+            closeConnection();
+        }
+
+        private boolean apply(SearchResult change) throws NamingException {
+            LDAPReplica replica = this.replica.get();
+
+            if (replica == null) {
+                this.stopped = true;
+                return false;
+            }
+
+            return replica.apply(change);
+        }
+
+        private LdapContext createContext() throws NamingException {
+            LDAPReplica replica = this.replica.get();
+
+            if (replica == null || this.stopped) {
+                return null;
+            }
+
+            return replica.createContext();
+        }
+
+        private void poll() throws NamingException {
+            LdapContext context = createContext();
+            LDAPReplica replica = this.replica.get();
+
+            if (context == null || replica == null) {
+                return;
+            }
+
+            this.context = context;
+
+            try {
+                replica.poll(context);
+            } finally {
+                closeConnection();
+            }
+        }
+
+        private synchronized void waitPollInterval() {
+            if (!this.stopped) {
+                try {
+                    wait(this.pollInterval);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    this.stopped = true;
+                }
+            }
+        }
+
+        void stop() {
+            this.stopped = true;
+
+            synchronized (this) {
+                notifyAll();
+            }
+
+            closeConnection();
+        }
+
+        void closeConnection() {
+            NamingEnumeration<SearchResult> changes = this.changes;
+            LdapContext context = this.context;
+            LdapContext loadContext = this.loadContext;
+
+            this.changes = null;
+            this.context = null;
+
+            if (loadContext != null) {
+                try {
+                    // aborts a load in progress
+                    loadContext.close();
+                } catch (NamingException ignore) {
+                }
+            }
+
+            if (changes != null) {
+                try {
+                    // abandons the persistent search, which unblocks the thread waiting for changes
+                    changes.close();
+                } catch (NamingException ignore) {
+                }
+            }
+
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (NamingException ignore) {
+                }
+            }
+        }
+    }
+}
@@ -63,5 +63,41 @@ public class LDAPUtil {
         }
     }
 
+    /**
+     * <p>Escapes the given value to be used as an assertion value in a search filter, as defined by RFC 4515.</p>
+     *
+     * @param value The value to escape.
+     *
+     * @return The escaped value.
+     */
+    public static final String escapeFilterValue(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '*':
+                    escaped.append("\\2a");
+                    break;
+                case '(':
+                    escaped.append("\\28");
+                    break;
+                case ')':
+                    escaped.append("\\29");
+                    break;
+                case '\\':
+                    escaped.append("\\5c");
+                    break;
+                case '\0':
+                    escaped.append("\\00");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
 
 }
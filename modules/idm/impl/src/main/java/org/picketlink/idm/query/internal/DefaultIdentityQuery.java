@@ -18,8 +18,16 @@
 
 package org.picketlink.idm.query.internal;
 
+import org.picketlink.idm.IdentityCache;
 import org.picketlink.idm.PartitionManager;
 import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Partition;
+import org.picketlink.idm.model.basic.Agent;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.AttributeParameter;
 import org.picketlink.idm.query.Condition;
 import org.picketlink.idm.query.IdentityQuery;
 import org.picketlink.idm.query.IdentityQueryBuilder;
@@ -39,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import static java.util.Collections.unmodifiableSet;
 import static org.picketlink.idm.IDMInternalMessages.MESSAGES;
@@ -53,6 +62,12 @@ import static org.picketlink.idm.util.IDMUtil.configureDefaultPartition;
  */
 public class DefaultIdentityQuery<T extends IdentityType> implements IdentityQuery<T> {
 
+    /**
+     * <p>The name of the context parameter holding the {@link ExecutorService} used to query multiple stores
+     * concurrently. If not set, stores are queried sequentially.</p>
+     */
+    public static final String QUERY_EXECUTOR_CTX_PARAMETER = "QUERY_EXECUTOR_CTX_PARAMETER";
+
     private final Map<QueryParameter, Object[]> parameters = new LinkedHashMap<QueryParameter, Object[]>();
     private final IdentityContext context;
     private final Class<T> identityType;
@@ -165,6 +180,7 @@ public class DefaultIdentityQuery<T extends IdentityType> implements IdentityQue
         return sortAscending;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public List<T> getResultList() {
 
@@ -181,25 +197,54 @@ public class DefaultIdentityQuery<T extends IdentityType> implements IdentityQue
 
         List<T> result = new ArrayList<T>();
 
+        IdentityCache identityCache = this.context.getParameter(IdentityCache.IDENTITY_CACHE_CTX_PARAMETER);
+        String cacheKey = null;
+
+        if (identityCache != null) {
+            cacheKey = getCacheKey();
+
+            if (cacheKey != null) {
+                IdentityType cachedType = lookupCachedType(identityCache, cacheKey);
+
+                if (cachedType != null) {
+                    result.add((T) cachedType);
+                    return result;
+                }
+            }
+        }
+
         try {
             Set<IdentityStore<?>> identityStores = this.storeSelector.getStoresForIdentityQuery(this.context, this.getIdentityType());
             AttributeStore<?> attributeStore = this.storeSelector.getStoreForAttributeOperation(context);
 
-            for (IdentityStore<?> store : identityStores) {
-                for (T identityType : store.fetchQueryResults(this.context, this)) {
-                    configureDefaultPartition(identityType, store, getPartitionManager());
+            boolean attributesLoaded = false;
 
-                    if (attributeStore != null) {
-                        attributeStore.loadAttributes(this.context, identityType);
-                    }
+            if (identityStores.size() > 1 && this.paginationContext == null) {
+                // results from multiple stores are merged and paginated as a whole
+                IdentityQueryExecutor<T> executor = createExecutor(attributeStore);
 
-                    result.add(identityType);
+                result.addAll(executor.getResultList(new ArrayList<IdentityStore<?>>(identityStores)));
+                attributesLoaded = executor.isAttributesLoaded();
+            } else {
+                for (IdentityStore<?> store : identityStores) {
+                    for (T identityType : store.fetchQueryResults(this.context, this)) {
+                        configureDefaultPartition(identityType, store, getPartitionManager());
+                        result.add(identityType);
+                    }
                 }
             }
+
+            if (attributeStore != null && !attributesLoaded && !result.isEmpty()) {
+                attributeStore.loadAttributes(this.context, result);
+            }
         } catch (Exception e) {
             throw MESSAGES.queryIdentityTypeFailed(this, e);
         }
 
+        if (cacheKey != null && result.size() == 1) {
+            cacheType(identityCache, result.get(0));
+        }
+
         return result;
     }
 
@@ -209,6 +254,16 @@ public class DefaultIdentityQuery<T extends IdentityType> implements IdentityQue
 
         Set<IdentityStore<?>> identityStores = this.storeSelector.getStoresForIdentityQuery(this.context, this.getIdentityType());
 
+        if (identityStores.size() > 1) {
+            try {
+                return createExecutor(null).getResultCount(new ArrayList<IdentityStore<?>>(identityStores));
+            } catch (RuntimeException re) {
+                throw re;
+            } catch (Exception e) {
+                throw MESSAGES.queryIdentityTypeFailed(this, e);
+            }
+        }
+
         for (IdentityStore<?> store : identityStores) {
             count = count + store.countQueryResults(this.context, this);
         }
@@ -255,4 +310,115 @@ public class DefaultIdentityQuery<T extends IdentityType> implements IdentityQue
         return (PartitionManager) this.storeSelector;
     }
 
+    private IdentityQueryExecutor<T> createExecutor(AttributeStore<?> attributeStore) {
+        ExecutorService executor = this.context.getParameter(QUERY_EXECUTOR_CTX_PARAMETER);
+
+        return new IdentityQueryExecutor<T>(this, this.context, getPartitionManager(), executor, attributeStore);
+    }
+
+    /**
+     * <p>Returns a copy of this query with the given offset and limit. Sorting parameters are already converted to
+     * {@link Sort} instances and are not copied.</p>
+     *
+     * @param offset
+     * @param limit
+     *
+     * @return
+     */
+    DefaultIdentityQuery<T> copy(int offset, int limit) {
+        DefaultIdentityQuery<T> copy = new DefaultIdentityQuery<T>(this.queryBuilder, this.context, this.identityType,
+            this.storeSelector);
+
+        copy.parameters.putAll(this.parameters);
+        copy.conditions.addAll(this.conditions);
+        copy.ordering.addAll(this.ordering);
+        copy.sortAscending = this.sortAscending;
+        copy.offset = offset;
+        copy.limit = limit;
+
+        return copy;
+    }
+
+    /**
+     * <p>Returns the key used to resolve the results of this query from the {@link IdentityCache}. Only queries looking
+     * up a single {@link Agent} or {@link User} by login name, {@link Role} by name or {@link Group} by path are
+     * cacheable, otherwise this method returns null.</p>
+     *
+     * @return
+     */
+    private String getCacheKey() {
+        if (this.offset > 0 || this.limit > 0 || this.paginationContext != null || !this.ordering.isEmpty()
+            || this.conditions.size() != 1) {
+            return null;
+        }
+
+        Condition condition = this.conditions.iterator().next();
+
+        if (!EqualCondition.class.isInstance(condition)) {
+            return null;
+        }
+
+        Object value = ((EqualCondition) condition).getValue();
+
+        if (!String.class.isInstance(value)) {
+            return null;
+        }
+
+        QueryParameter parameter = condition.getParameter();
+
+        if ((Agent.class.equals(this.identityType) || User.class.equals(this.identityType))
+            && isSameParameter(Agent.LOGIN_NAME, parameter)) {
+            return (String) value;
+        }
+
+        if (Role.class.equals(this.identityType) && isSameParameter(Role.NAME, parameter)) {
+            return (String) value;
+        }
+
+        if (Group.class.equals(this.identityType) && isSameParameter(Group.PATH, parameter)) {
+            return (String) value;
+        }
+
+        return null;
+    }
+
+    private boolean isSameParameter(QueryParameter expected, QueryParameter parameter) {
+        if (expected.equals(parameter)) {
+            return true;
+        }
+
+        return AttributeParameter.class.isInstance(parameter)
+            && ((AttributeParameter) expected).getName().equals(((AttributeParameter) parameter).getName());
+    }
+
+    private IdentityType lookupCachedType(IdentityCache identityCache, String key) {
+        Partition partition = this.context.getPartition();
+
+        if (User.class.equals(this.identityType)) {
+            return Realm.class.isInstance(partition) ? identityCache.lookupUser((Realm) partition, key) : null;
+        } else if (Agent.class.equals(this.identityType)) {
+            return Realm.class.isInstance(partition) ? identityCache.lookupAgent((Realm) partition, key) : null;
+        } else if (Role.class.equals(this.identityType)) {
+            return identityCache.lookupRole(partition, key);
+        } else if (Group.class.equals(this.identityType)) {
+            return identityCache.lookupGroup(partition, key);
+        }
+
+        return null;
+    }
+
+    private void cacheType(IdentityCache identityCache, IdentityType identityType) {
+        Partition partition = identityType.getPartition();
+
+        if (Agent.class.isInstance(identityType)) {
+            if (Realm.class.isInstance(partition)) {
+                identityCache.putAgent((Realm) partition, (Agent) identityType);
+            }
+        } else if (Role.class.isInstance(identityType)) {
+            identityCache.putRole(partition, (Role) identityType);
+        } else if (Group.class.isInstance(identityType)) {
+            identityCache.putGroup(partition, (Group) identityType);
+        }
+    }
+
 }
@@ -131,13 +131,13 @@ public class DefaultRelationshipQuery<T extends Relationship> implements Relatio
                         relationship = (T) reference.getRelationship();
                     }
 
-                    if (attributeStore != null) {
-                        attributeStore.loadAttributes(context, relationship);
-                    }
-
                     result.add(relationship);
                 }
             }
+
+            if (attributeStore != null && !result.isEmpty()) {
+                attributeStore.loadAttributes(context, result);
+            }
         } catch (Exception e) {
             throw MESSAGES.queryRelationshipFailed(this, e);
         }
@@ -0,0 +1,318 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.query.internal;
+
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.spi.AttributeStore;
+import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.picketlink.idm.util.IDMUtil.configureDefaultPartition;
+
+/**
+ * <p>Executes a {@link DefaultIdentityQuery} against multiple {@link IdentityStore} instances.</p>
+ *
+ * <p>Each store is queried for the first <code>offset + limit</code> results, ordered by the sorting of the query.
+ * If an {@link ExecutorService} is provided, all stores but one are queried concurrently using the executor, while
+ * the remaining store is queried by the calling thread. The partial results are then merged using a k-way merge and
+ * the offset and limit of the query are applied once to the merged results, so pagination is consistent regardless
+ * the number of stores.</p>
+ *
+ * <p>If the query is sorted by an ad-hoc attribute, the attributes of the partial results are loaded from the
+ * {@link AttributeStore} before they are merged. Otherwise, attributes are loaded later and only for the returned
+ * page.</p>
+ *
+ * <p>Stores queried by the executor run outside the calling thread. They must not depend on resources bound to it,
+ * such as a transaction or a non thread-safe <code>EntityManager</code> shared with other stores.</p>
+ *
+ * @author Pedro Igor
+ */
+class IdentityQueryExecutor<T extends IdentityType> {
+
+    private final DefaultIdentityQuery<T> query;
+    private final IdentityContext context;
+    private final PartitionManager partitionManager;
+    private final ExecutorService executor;
+    private final AttributeStore<?> attributeStore;
+    private boolean attributesLoaded;
+
+    IdentityQueryExecutor(DefaultIdentityQuery<T> query, IdentityContext context, PartitionManager partitionManager,
+                          ExecutorService executor, AttributeStore<?> attributeStore) {
+        this.query = query;
+        this.context = context;
+        this.partitionManager = partitionManager;
+        this.executor = executor;
+        this.attributeStore = attributeStore;
+    }
+
+    /**
+     * <p>Indicates if the attributes of the results returned by {@link #getResultList(java.util.List)} were already
+     * loaded, because they were needed to sort the results.</p>
+     *
+     * @return
+     */
+    boolean isAttributesLoaded() {
+        return this.attributesLoaded;
+    }
+
+    /**
+     * <p>Returns the results from all the given stores, after applying the sorting, offset and limit of the query.</p>
+     *
+     * @param stores
+     *
+     * @return
+     *
+     * @throws Exception If any of the stores failed to execute the query.
+     */
+    List<T> getResultList(List<IdentityStore<?>> stores) throws Exception {
+        int offset = Math.max(this.query.getOffset(), 0);
+        int limit = Math.max(this.query.getLimit(), 0);
+        int storeLimit = 0;
+
+        if (limit > 0) {
+            storeLimit = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        }
+
+        final DefaultIdentityQuery<T> storeQuery = this.query.copy(0, storeLimit);
+
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>();
+
+        for (final IdentityStore<?> store : stores) {
+            tasks.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return fetch(store, storeQuery);
+                }
+            });
+        }
+
+        List<List<T>> partialResults = execute(tasks);
+        IdentityTypeComparator<T> comparator = new IdentityTypeComparator<T>(this.query.getSorting());
+
+        if (this.attributeStore != null && isSortedByAttribute(comparator, partialResults)) {
+            // attributes must be loaded before merging, otherwise all results would have null values
+            for (List<T> partialResult : partialResults) {
+                if (!partialResult.isEmpty()) {
+                    this.attributeStore.loadAttributes(this.context, partialResult);
+                }
+            }
+
+            this.attributesLoaded = true;
+        }
+
+        List<T> result = merge(partialResults, comparator);
+
+        if (offset >= result.size()) {
+            return new ArrayList<T>();
+        }
+
+        int end = limit > 0 ? (int) Math.min((long) offset + limit, result.size()) : result.size();
+
+        if (offset == 0 && end == result.size()) {
+            return result;
+        }
+
+        return new ArrayList<T>(result.subList(offset, end));
+    }
+
+    /**
+     * <p>Returns the sum of the number of results from all the given stores.</p>
+     *
+     * @param stores
+     *
+     * @return
+     *
+     * @throws Exception If any of the stores failed to execute the query.
+     */
+    int getResultCount(List<IdentityStore<?>> stores) throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+
+        for (final IdentityStore<?> store : stores) {
+            tasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    // stores may change the offset and limit of the query when counting, each one uses its own copy
+                    return store.countQueryResults(context, query.copy(0, 0));
+                }
+            });
+        }
+
+        int count = 0;
+
+        for (Integer storeCount : execute(tasks)) {
+            count = count + storeCount;
+        }
+
+        return count;
+    }
+
+    private List<T> fetch(IdentityStore<?> store, DefaultIdentityQuery<T> storeQuery) {
+        List<T> result = new ArrayList<T>(store.fetchQueryResults(this.context, storeQuery));
+
+        for (T identityType : result) {
+            configureDefaultPartition(identityType, store, this.partitionManager);
+        }
+
+        return result;
+    }
+
+    private <R> List<R> execute(List<Callable<R>> tasks) throws Exception {
+        List<R> results = new ArrayList<R>(tasks.size());
+
+        if (this.executor == null || tasks.size() < 2) {
+            for (Callable<R> task : tasks) {
+                results.add(task.call());
+            }
+
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<Future<R>>(tasks.size() - 1);
+
+        try {
+            for (Callable<R> task : tasks.subList(1, tasks.size())) {
+                futures.add(this.executor.submit(task));
+            }
+
+            // the calling thread is also used to query one of the stores, instead of just waiting for the others
+            results.add(tasks.get(0).call());
+
+            for (Future<R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+
+                    if (Exception.class.isInstance(cause)) {
+                        throw (Exception) cause;
+                    }
+
+                    if (Error.class.isInstance(cause)) {
+                        throw (Error) cause;
+                    }
+
+                    throw ee;
+                }
+            }
+        } finally {
+            // if any of the stores failed, there is no reason to wait for the others
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return results;
+    }
+
+    private boolean isSortedByAttribute(IdentityTypeComparator<T> comparator, List<List<T>> partialResults) {
+        Set<Class<?>> types = new HashSet<Class<?>>();
+
+        for (List<T> partialResult : partialResults) {
+            for (T identityType : partialResult) {
+                if (types.add(identityType.getClass()) && comparator.isSortedByAttribute(identityType.getClass())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private List<T> merge(List<List<T>> partialResults, final Comparator<T> comparator) {
+        if (this.query.getSorting().isEmpty()) {
+            List<T> result = new ArrayList<T>();
+
+            for (List<T> partialResult : partialResults) {
+                result.addAll(partialResult);
+            }
+
+            return result;
+        }
+
+        PriorityQueue<Cursor<T>> cursors = new PriorityQueue<Cursor<T>>(Math.max(partialResults.size(), 1),
+            new Comparator<Cursor<T>>() {
+                @Override
+                public int compare(Cursor<T> o1, Cursor<T> o2) {
+                    int result = comparator.compare(o1.current(), o2.current());
+
+                    // keeps the order of the stores for equal values, so the merge is stable
+                    return result != 0 ? result : o1.index - o2.index;
+                }
+            });
+        int size = 0;
+
+        for (int i = 0; i < partialResults.size(); i++) {
+            List<T> partialResult = partialResults.get(i);
+
+            if (!partialResult.isEmpty()) {
+                // stores may sort using different rules (eg.: LDAP server side sorting), what would break the merge
+                Collections.sort(partialResult, comparator);
+                cursors.add(new Cursor<T>(i, partialResult));
+                size = size + partialResult.size();
+            }
+        }
+
+        List<T> result = new ArrayList<T>(size);
+
+        while (!cursors.isEmpty()) {
+            Cursor<T> cursor = cursors.poll();
+
+            result.add(cursor.current());
+
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+
+        return result;
+    }
+
+    private static class Cursor<T> {
+
+        private final int index;
+        private final List<T> values;
+        private int position;
+
+        Cursor(int index, List<T> values) {
+            this.index = index;
+            this.values = values;
+        }
+
+        T current() {
+            return this.values.get(this.position);
+        }
+
+        boolean next() {
+            return ++this.position < this.values.size();
+        }
+    }
+}
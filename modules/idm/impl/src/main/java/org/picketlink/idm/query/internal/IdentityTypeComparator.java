@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.idm.query.internal;
+
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.NamedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.query.AttributeParameter;
+import org.picketlink.idm.query.QueryParameter;
+import org.picketlink.idm.query.Sort;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Compares {@link IdentityType} instances according to the {@link Sort}s of a query.</p>
+ *
+ * <p>Values are read from the property with the name of the sort parameter or, if the type does not have such
+ * property, from the ad-hoc attribute with the same name. Null values are ordered after any other value.</p>
+ *
+ * @author Pedro Igor
+ */
+class IdentityTypeComparator<T extends IdentityType> implements Comparator<T> {
+
+    private static final Property<Serializable> NO_PROPERTY = null;
+
+    private final List<Sort> sorting;
+
+    // properties are resolved only once for each type and parameter, instead of on every comparison
+    private final Map<String, List<Property<Serializable>>> properties = new ConcurrentHashMap<String, List<Property<Serializable>>>();
+
+    IdentityTypeComparator(Set<Sort> sorting) {
+        this.sorting = new ArrayList<Sort>(sorting);
+    }
+
+    @Override
+    public int compare(T o1, T o2) {
+        for (Sort sort : this.sorting) {
+            int result = compareValues(getValue(sort.getParameter(), o1), getValue(sort.getParameter(), o2));
+
+            if (result != 0) {
+                return sort.isAscending() ? result : -result;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * <p>Indicates if any of the sorting parameters is resolved from the ad-hoc attributes of the given type, instead
+     * of one of its properties.</p>
+     *
+     * @param type
+     *
+     * @return
+     */
+    boolean isSortedByAttribute(Class<?> type) {
+        for (Sort sort : this.sorting) {
+            QueryParameter parameter = sort.getParameter();
+
+            if (AttributeParameter.class.isInstance(parameter)
+                && getProperty(type, ((AttributeParameter) parameter).getName()) == NO_PROPERTY) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compareValues(Object value1, Object value2) {
+        if (value1 == value2) {
+            return 0;
+        }
+
+        if (value1 == null) {
+            return 1;
+        }
+
+        if (value2 == null) {
+            return -1;
+        }
+
+        if (Comparable.class.isInstance(value1) && value1.getClass().isInstance(value2)) {
+            return ((Comparable<Object>) value1).compareTo(value2);
+        }
+
+        return value1.toString().compareTo(value2.toString());
+    }
+
+    private Object getValue(QueryParameter parameter, T identityType) {
+        if (!AttributeParameter.class.isInstance(parameter)) {
+            return null;
+        }
+
+        String name = ((AttributeParameter) parameter).getName();
+        Property<Serializable> property = getProperty(identityType.getClass(), name);
+
+        if (property != NO_PROPERTY) {
+            return property.getValue(identityType);
+        }
+
+        Attribute<Serializable> attribute = identityType.getAttribute(name);
+
+        if (attribute != null) {
+            return attribute.getValue();
+        }
+
+        return null;
+    }
+
+    private Property<Serializable> getProperty(Class<?> type, String name) {
+        String key = type.getName() + "#" + name;
+        List<Property<Serializable>> typeProperties = this.properties.get(key);
+
+        if (typeProperties == null) {
+            typeProperties = PropertyQueries
+                .<Serializable>createQuery(type)
+                .addCriteria(new NamedPropertyCriteria(name)).getResultList();
+
+            this.properties.put(key, typeProperties);
+        }
+
+        return typeProperties.isEmpty() ? NO_PROPERTY : typeProperties.get(0);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.internal.DefaultIdentityCache;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.internal.PartitionManagerOptions;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <p>Test case for the {@link DefaultIdentityCache} when configured with a {@link DefaultPartitionManager}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class IdentityCacheTestCase {
+
+    private DefaultIdentityCache identityCache;
+    private DefaultPartitionManager partitionManager;
+
+    @Before
+    public void onBefore() {
+        this.identityCache = new DefaultIdentityCache(2, 0);
+        this.partitionManager = createPartitionManager(this.identityCache);
+    }
+
+    @Test
+    public void testLookupFromCache() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+        identityManager.add(new Role("admin"));
+
+        User storedUser = BasicModel.getUser(identityManager, "john");
+
+        assertNotNull(storedUser);
+        assertEquals(0, this.identityCache.getHitCount());
+
+        assertEquals(storedUser, BasicModel.getUser(identityManager, "john"));
+        assertEquals(storedUser, BasicModel.getAgent(this.partitionManager.createIdentityManager(), "john"));
+
+        Role storedRole = BasicModel.getRole(identityManager, "admin");
+
+        assertEquals(storedRole, BasicModel.getRole(identityManager, "admin"));
+        assertEquals(3, this.identityCache.getHitCount());
+    }
+
+    @Test
+    public void testGroupLookupByPath() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        Group parentGroup = new Group("parent");
+
+        identityManager.add(parentGroup);
+        identityManager.add(new Group("child", parentGroup));
+
+        Group storedGroup = lookupGroupByPath(identityManager, "/parent/child");
+
+        assertNotNull(storedGroup);
+        assertEquals(storedGroup, lookupGroupByPath(identityManager, "/parent/child"));
+        assertEquals(1, this.identityCache.getHitCount());
+    }
+
+    @Test
+    public void testLookupReturnsCopies() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+
+        User storedUser = BasicModel.getUser(identityManager, "john");
+
+        storedUser.setEmail("john@picketlink.org");
+
+        User cachedUser = BasicModel.getUser(identityManager, "john");
+
+        assertEquals(1, this.identityCache.getHitCount());
+        assertNull(cachedUser.getEmail());
+
+        cachedUser.setLoginName("mary");
+
+        assertEquals("john", BasicModel.getUser(identityManager, "john").getLoginName());
+    }
+
+    @Test
+    public void testLookupCopiesAttributesAndParentGroups() {
+        Realm realm = this.partitionManager.getPartition(Realm.class, Realm.DEFAULT_REALM);
+        Group parentGroup = new Group("parent");
+        Group childGroup = new Group("child", parentGroup);
+
+        parentGroup.setId("parent");
+        parentGroup.setPartition(realm);
+        childGroup.setId("child");
+        childGroup.setPartition(realm);
+        childGroup.setAttribute(new Attribute<String>("department", "sales"));
+
+        this.identityCache.putGroup(realm, childGroup);
+
+        Group cachedGroup = this.identityCache.lookupGroup(realm, "/parent/child");
+
+        cachedGroup.<String>getAttribute("department").setValue("finance");
+        cachedGroup.getParentGroup().setName("changed");
+        cachedGroup.getPartition().setAttribute(new Attribute<String>("changed", "true"));
+
+        cachedGroup = this.identityCache.lookupGroup(realm, "/parent/child");
+
+        assertEquals("sales", cachedGroup.getAttribute("department").getValue());
+        assertEquals("parent", cachedGroup.getParentGroup().getName());
+        assertNull(cachedGroup.getPartition().getAttribute("changed"));
+        assertEquals("sales", childGroup.getAttribute("department").getValue());
+    }
+
+    @Test
+    public void testInvalidateChildGroupsOnUpdate() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        Group parentGroup = new Group("parent");
+
+        identityManager.add(parentGroup);
+        identityManager.add(new Group("child", parentGroup));
+
+        Realm realm = this.partitionManager.getPartition(Realm.class, Realm.DEFAULT_REALM);
+
+        lookupGroupByPath(identityManager, "/parent/child");
+
+        assertNotNull(this.identityCache.lookupGroup(realm, "/parent/child"));
+
+        parentGroup = lookupGroupByPath(identityManager, "/parent");
+        parentGroup.setName("renamed");
+
+        identityManager.update(parentGroup);
+
+        assertNull(this.identityCache.lookupGroup(realm, "/parent/child"));
+    }
+
+    @Test
+    public void testInvalidateOnUpdate() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+
+        User storedUser = BasicModel.getUser(identityManager, "john");
+
+        storedUser.setEmail("john@picketlink.org");
+
+        identityManager.update(storedUser);
+
+        User updatedUser = BasicModel.getUser(identityManager, "john");
+
+        assertEquals(0, this.identityCache.getHitCount());
+        assertEquals("john@picketlink.org", updatedUser.getEmail());
+
+        storedUser.setLoginName("mary");
+
+        identityManager.update(storedUser);
+
+        assertNull(BasicModel.getUser(identityManager, "john"));
+        assertNotNull(BasicModel.getUser(identityManager, "mary"));
+    }
+
+    @Test
+    public void testInvalidateOnRemove() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new Role("admin"));
+
+        Role storedRole = BasicModel.getRole(identityManager, "admin");
+
+        identityManager.remove(storedRole);
+
+        assertNull(BasicModel.getRole(identityManager, "admin"));
+        assertEquals(0, this.identityCache.getHitCount());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+        identityManager.add(new User("mary"));
+        identityManager.add(new User("bill"));
+
+        BasicModel.getUser(identityManager, "john");
+        BasicModel.getUser(identityManager, "mary");
+        BasicModel.getUser(identityManager, "bill");
+
+        assertEquals(1, this.identityCache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        this.identityCache = new DefaultIdentityCache(10, 1);
+        this.partitionManager = createPartitionManager(this.identityCache);
+
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+
+        BasicModel.getUser(identityManager, "john");
+
+        Thread.sleep(10);
+
+        assertNotNull(BasicModel.getUser(identityManager, "john"));
+        assertEquals(0, this.identityCache.getHitCount());
+        assertEquals(1, this.identityCache.getEvictionCount());
+    }
+
+    private Group lookupGroupByPath(IdentityManager identityManager, String path) {
+        return identityManager.createIdentityQuery(Group.class).setParameter(Group.PATH, path).getResultList().get(0);
+    }
+
+    private DefaultPartitionManager createPartitionManager(DefaultIdentityCache identityCache) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        DefaultPartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll(), new PartitionManagerOptions()
+            .identityCache(identityCache));
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        return partitionManager;
+    }
+}
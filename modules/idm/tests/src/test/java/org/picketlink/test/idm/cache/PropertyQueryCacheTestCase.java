@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.cache;
+
+import org.junit.Test;
+import org.picketlink.common.properties.Property;
+import org.picketlink.common.properties.query.NamedPropertyCriteria;
+import org.picketlink.common.properties.query.PropertyCriteria;
+import org.picketlink.common.properties.query.PropertyQueries;
+import org.picketlink.common.properties.query.TypedPropertyCriteria;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <p>Test case for the caching of the results of {@link org.picketlink.common.properties.query.PropertyQuery}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class PropertyQueryCacheTestCase {
+
+    @Test
+    public void testEqualQueriesHitTheCache() {
+        List<Property<Object>> result = PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("name"))
+            .getResultList();
+
+        assertEquals(1, result.size());
+        assertEquals("name", result.get(0).getName());
+
+        assertSame(result, PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("name"))
+            .getResultList());
+    }
+
+    @Test
+    public void testDifferentQueriesMissTheCache() {
+        List<Property<Object>> byName = PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("age"))
+            .getResultList();
+        List<Property<Object>> byType = PropertyQueries.createQuery(Person.class)
+            .addCriteria(new TypedPropertyCriteria(Integer.class))
+            .getResultList();
+        List<Property<Object>> otherClass = PropertyQueries.createQuery(Employee.class)
+            .addCriteria(new NamedPropertyCriteria("age"))
+            .getResultList();
+
+        assertNotSame(byName, byType);
+        assertNotSame(byName, otherClass);
+        assertEquals(Person.class, byName.get(0).getDeclaringClass());
+        assertEquals(1, byType.size());
+        assertEquals(1, otherClass.size());
+
+        // the read only department is only returned when not asking for writable properties
+        assertEquals(3, PropertyQueries.createQuery(Employee.class)
+            .addCriteria(new TypedPropertyCriteria(String.class))
+            .getResultList().size());
+        assertEquals(2, PropertyQueries.createQuery(Employee.class)
+            .addCriteria(new TypedPropertyCriteria(String.class))
+            .getWritableResultList().size());
+    }
+
+    @Test
+    public void testCustomCriteriaAreNotCached() {
+        PropertyCriteria criteria = new PropertyCriteria() {
+            public boolean fieldMatches(Field f) {
+                return f.getName().equals("name");
+            }
+
+            public boolean methodMatches(Method m) {
+                return false;
+            }
+        };
+
+        List<Property<Object>> result = PropertyQueries.createQuery(Person.class).addCriteria(criteria).getResultList();
+
+        assertEquals(1, result.size());
+        assertNotSame(result, PropertyQueries.createQuery(Person.class).addCriteria(criteria).getResultList());
+    }
+
+    @Test
+    public void testClearCache() {
+        List<Property<Object>> result = PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("name"))
+            .getResultList();
+
+        // results of classes from other class loaders are kept
+        PropertyQueries.clearCache(new URLClassLoader(new URL[0]));
+
+        assertSame(result, PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("name"))
+            .getResultList());
+
+        PropertyQueries.clearCache(Person.class.getClassLoader());
+
+        List<Property<Object>> newResult = PropertyQueries.createQuery(Person.class)
+            .addCriteria(new NamedPropertyCriteria("name"))
+            .getResultList();
+
+        assertNotSame(result, newResult);
+        assertEquals(result.size(), newResult.size());
+        assertEquals(result.get(0).getName(), newResult.get(0).getName());
+    }
+
+    public static class Person {
+
+        private String name;
+        private Integer age;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Integer getAge() {
+            return this.age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+    }
+
+    public static class Employee extends Person {
+
+        private String employeeId;
+
+        public String getEmployeeId() {
+            return this.employeeId;
+        }
+
+        public void setEmployeeId(String employeeId) {
+            this.employeeId = employeeId;
+        }
+
+        public String getDepartment() {
+            return "sales";
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.config.StereotypeRegistry;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.internal.PartitionManagerOptions;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Grant;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.GroupMembership;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.GROUP;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.ROLE;
+import static org.picketlink.idm.model.annotation.IdentityStereotype.Stereotype.USER;
+import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereotype.GRANT;
+import static org.picketlink.idm.model.annotation.RelationshipStereotype.Stereotype.GROUP_MEMBERSHIP;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.IDENTITY_ROLE_NAME;
+import static org.picketlink.idm.model.annotation.StereotypeProperty.Property.RELATIONSHIP_GRANT_ROLE;
+
+/**
+ * <p>Test case for the {@link StereotypeRegistry} and the lookup of roles and groups by name provided by the
+ * {@link DefaultPartitionManager}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class StereotypeNameIndexTestCase {
+
+    private DefaultPartitionManager partitionManager;
+
+    @Before
+    public void onBefore() {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        this.partitionManager = new DefaultPartitionManager(builder.buildAll(), new PartitionManagerOptions()
+            .stereotypeNameIndex(60000));
+
+        this.partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+    }
+
+    @Test
+    public void testRegistry() {
+        StereotypeRegistry stereotypeRegistry = this.partitionManager.getStereotypeRegistry();
+
+        assertTrue(stereotypeRegistry.getIdentityTypes(ROLE).contains(Role.class));
+        assertTrue(stereotypeRegistry.getIdentityTypes(GROUP).contains(Group.class));
+        assertTrue(stereotypeRegistry.getIdentityTypes(USER).contains(User.class));
+        assertTrue(stereotypeRegistry.getRelationshipTypes(GRANT).contains(Grant.class));
+        assertTrue(stereotypeRegistry.getRelationshipTypes(GROUP_MEMBERSHIP).contains(GroupMembership.class));
+        assertEquals("name", stereotypeRegistry.getProperty(Role.class, IDENTITY_ROLE_NAME).getName());
+        assertEquals("role", stereotypeRegistry.getProperty(Grant.class, RELATIONSHIP_GRANT_ROLE).getName());
+        assertFalse(stereotypeRegistry.isIdentityType(User.class, ROLE));
+    }
+
+    @Test
+    public void testLookupFollowsChanges() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        assertTrue(this.partitionManager.lookupIdentityTypesByName(ROLE, "admin").isEmpty());
+
+        Role role = new Role("admin");
+
+        identityManager.add(role);
+
+        List<IdentityType> roles = this.partitionManager.lookupIdentityTypesByName(ROLE, "admin");
+
+        assertEquals(1, roles.size());
+        assertEquals(role.getId(), roles.get(0).getId());
+
+        role.setName("manager");
+
+        identityManager.update(role);
+
+        assertTrue(this.partitionManager.lookupIdentityTypesByName(ROLE, "admin").isEmpty());
+        assertEquals(1, this.partitionManager.lookupIdentityTypesByName(ROLE, "manager").size());
+
+        identityManager.remove(role);
+
+        assertTrue(this.partitionManager.lookupIdentityTypesByName(ROLE, "manager").isEmpty());
+    }
+
+    @Test
+    public void testLookupFromAllPartitions() {
+        this.partitionManager.createIdentityManager().add(new Group("managers"));
+
+        assertEquals(1, this.partitionManager.lookupIdentityTypesByName(GROUP, "managers").size());
+
+        Realm otherRealm = new Realm("other");
+
+        this.partitionManager.add(otherRealm);
+        this.partitionManager.createIdentityManager(otherRealm).add(new Group("managers"));
+
+        assertEquals(2, this.partitionManager.lookupIdentityTypesByName(GROUP, "managers").size());
+
+        this.partitionManager.remove(otherRealm);
+
+        List<IdentityType> groups = this.partitionManager.lookupIdentityTypesByName(GROUP, "managers");
+
+        assertEquals(1, groups.size());
+        assertNotNull(BasicModel.getGroup(this.partitionManager.createIdentityManager(), "/managers"));
+    }
+
+    @Test
+    public void testLookupReturnsCopies() {
+        this.partitionManager.createIdentityManager().add(new Role("admin"));
+
+        Role role = (Role) this.partitionManager.lookupIdentityTypesByName(ROLE, "admin").get(0);
+
+        role.setName("changed");
+
+        List<IdentityType> roles = this.partitionManager.lookupIdentityTypesByName(ROLE, "admin");
+
+        assertEquals(1, roles.size());
+        assertEquals("admin", ((Role) roles.get(0)).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLookupUnsupportedStereotype() {
+        this.partitionManager.lookupIdentityTypesByName(USER, "john");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.picketlink.test.idm.credential;
+
+import org.junit.After;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.Password;
+import org.picketlink.idm.credential.UsernamePasswordCredentials;
+import org.picketlink.idm.internal.CredentialValidationExecutor;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.internal.PartitionManagerOptions;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Test case for {@link IdentityManager#validateCredentialsAsync(Credentials)}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class AsyncCredentialValidationTestCase {
+
+    private CredentialValidationExecutor executor = new CredentialValidationExecutor(1, 1);
+
+    @After
+    public void onAfter() {
+        this.executor.shutdown();
+    }
+
+    @Test
+    public void testValidateCredentials() throws Exception {
+        IdentityManager identityManager = createIdentityManager(this.executor);
+
+        Future<Credentials> validation = identityManager.validateCredentialsAsync(createCredentials("john", "passwd"));
+
+        assertEquals(Credentials.Status.VALID, validation.get().getStatus());
+
+        validation = identityManager.validateCredentialsAsync(createCredentials("john", "invalid"));
+
+        assertEquals(Credentials.Status.INVALID, validation.get().getStatus());
+        assertEquals(2, this.executor.getCompletedCount());
+    }
+
+    @Test
+    public void testValidateCredentialsWithoutExecutor() throws Exception {
+        IdentityManager identityManager = createIdentityManager(null);
+
+        Future<Credentials> validation = identityManager.validateCredentialsAsync(createCredentials("john", "passwd"));
+
+        assertTrue(validation.isDone());
+        assertEquals(Credentials.Status.VALID, validation.get().getStatus());
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        IdentityManager identityManager = createIdentityManager(this.executor);
+        final CountDownLatch latch = new CountDownLatch(1);
+        Callable<Object> blockingTask = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                latch.await();
+                return null;
+            }
+        };
+
+        // one task running and one waiting in the queue
+        this.executor.submit(blockingTask);
+        this.executor.submit(blockingTask);
+
+        try {
+            identityManager.validateCredentialsAsync(createCredentials("john", "passwd"));
+            fail();
+        } catch (IdentityManagementException expected) {
+        } finally {
+            latch.countDown();
+        }
+
+        assertEquals(1, this.executor.getRejectedCount());
+    }
+
+    private IdentityManager createIdentityManager(CredentialValidationExecutor executor) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        PartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll(), new PartitionManagerOptions()
+            .credentialValidationExecutor(executor));
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+        User john = new User("john");
+
+        identityManager.add(john);
+        identityManager.updateCredential(john, new Password("passwd"));
+
+        return identityManager;
+    }
+
+    private UsernamePasswordCredentials createCredentials(String userName, String password) {
+        return new UsernamePasswordCredentials(userName, new Password(password));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.credential;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.config.LDAPIdentityStoreConfiguration;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.Password;
+import org.picketlink.idm.credential.UsernamePasswordCredentials;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.ldap.internal.LDAPConnectionPool;
+import org.picketlink.idm.model.basic.Agent;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.test.idm.util.LDAPEmbeddedServer;
+
+import javax.naming.Context;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.picketlink.common.constants.LDAPConstants.CN;
+import static org.picketlink.common.constants.LDAPConstants.CREATE_TIMESTAMP;
+import static org.picketlink.common.constants.LDAPConstants.EMAIL;
+import static org.picketlink.common.constants.LDAPConstants.SN;
+import static org.picketlink.common.constants.LDAPConstants.UID;
+
+/**
+ * <p>Test case for the LDAP store when connection pooling is enabled.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPConnectionPoolTestCase {
+
+    private final LDAPEmbeddedServer embeddedServer = new LDAPEmbeddedServer();
+
+    @Before
+    public void onBefore() throws Exception {
+        this.embeddedServer.setup();
+        this.embeddedServer.importLDIF("ldap/users.ldif");
+    }
+
+    @After
+    public void onAfter() throws Exception {
+        this.embeddedServer.tearDown();
+    }
+
+    @Test
+    public void testPasswordValidationReusingConnections() throws Exception {
+        final PartitionManager partitionManager = new DefaultPartitionManager(createConfiguration(0, 2).buildAll());
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+
+        for (int i = 0; i < 5; i++) {
+            User user = new User("user" + i);
+
+            identityManager.add(user);
+            identityManager.updateCredential(user, new Password(("password" + i).toCharArray()));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(5);
+
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+            for (int i = 0; i < 50; i++) {
+                final int index = i % 5;
+                final boolean useValidPassword = i % 2 == 0;
+
+                results.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials();
+
+                        credentials.setUsername("user" + index);
+                        credentials.setPassword(new Password((useValidPassword ? "password" + index : "invalid").toCharArray()));
+
+                        partitionManager.createIdentityManager().validateCredentials(credentials);
+
+                        if (useValidPassword) {
+                            return Credentials.Status.VALID.equals(credentials.getStatus())
+                                && credentials.getValidatedAccount() != null;
+                        }
+
+                        return Credentials.Status.INVALID.equals(credentials.getStatus());
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        IdentityConfigurationBuilder builder = createConfiguration(1, 1);
+
+        builder.named("default").stores().ldap().connectionPoolBorrowTimeout(100);
+
+        LDAPIdentityStoreConfiguration configuration = (LDAPIdentityStoreConfiguration) builder.build()
+            .getStoreConfiguration().get(0);
+
+        LDAPConnectionPool connectionPool = new LDAPConnectionPool("test", createEnvironment(),
+            configuration.getConnectionPoolConfig());
+
+        try {
+            LdapContext context = connectionPool.borrow();
+
+            assertEquals(1, connectionPool.getActiveCount());
+
+            try {
+                connectionPool.borrow();
+                fail("Pool should be exhausted.");
+            } catch (ServiceUnavailableException expected) {
+            }
+
+            connectionPool.release(context);
+
+            assertEquals(0, connectionPool.getActiveCount());
+            assertEquals(1, connectionPool.getIdleCount());
+
+            assertTrue(context == connectionPool.borrow());
+        } finally {
+            connectionPool.close();
+        }
+
+        assertEquals(0, connectionPool.getIdleCount());
+    }
+
+    private Map<String, Object> createEnvironment() {
+        Map<String, Object> environment = new HashMap<String, Object>();
+
+        environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        environment.put(Context.PROVIDER_URL, this.embeddedServer.getConnectionUrl());
+        environment.put(Context.SECURITY_AUTHENTICATION, "simple");
+        environment.put(Context.SECURITY_PRINCIPAL, this.embeddedServer.getBindDn());
+        environment.put(Context.SECURITY_CREDENTIALS, this.embeddedServer.getBindCredential());
+
+        return environment;
+    }
+
+    private IdentityConfigurationBuilder createConfiguration(int minSize, int maxSize) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .ldap()
+                        .baseDN(this.embeddedServer.getBaseDn())
+                        .bindDN(this.embeddedServer.getBindDn())
+                        .bindCredential(this.embeddedServer.getBindCredential())
+                        .url(this.embeddedServer.getConnectionUrl())
+                        .connectionPooling(true)
+                        .connectionPoolSize(minSize, maxSize)
+                        .authenticationPoolSize(minSize, maxSize)
+                        .supportAllFeatures()
+                        .mapping(Agent.class)
+                            .baseDN(this.embeddedServer.getAgentDnSuffix())
+                            .objectClasses("account")
+                            .attribute("loginName", UID, true)
+                            .readOnlyAttribute("createdDate", CREATE_TIMESTAMP)
+                        .mapping(User.class)
+                            .baseDN(this.embeddedServer.getUserDnSuffix())
+                            .objectClasses("inetOrgPerson", "organizationalPerson")
+                            .attribute("loginName", UID, true)
+                            .attribute("firstName", CN)
+                            .attribute("lastName", SN)
+                            .attribute("email", EMAIL)
+                            .readOnlyAttribute("createdDate", CREATE_TIMESTAMP);
+
+        return builder;
+    }
+}
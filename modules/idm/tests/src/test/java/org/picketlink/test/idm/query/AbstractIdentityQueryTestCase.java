@@ -165,6 +165,10 @@ public abstract class AbstractIdentityQueryTestCase<T extends IdentityType> exte
         List<T> invalidPage = query.getResultList();
 
         assertTrue(invalidPage.isEmpty());
+
+        query.setOffset(60);
+
+        assertTrue(query.getResultList().isEmpty());
     }
 
     @Test
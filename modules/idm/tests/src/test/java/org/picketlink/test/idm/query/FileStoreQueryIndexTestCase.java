@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.AttributeParameter;
+import org.picketlink.idm.query.Condition;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.query.QueryParameter;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>Test case for the indexes used by the file store when querying identity types. Queries are executed before and
+ * after each write to make sure the indexes are kept up to date.</p>
+ *
+ * @author Pedro Igor
+ */
+public class FileStoreQueryIndexTestCase {
+
+    private PartitionManager partitionManager;
+
+    @Before
+    public void onBefore() {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        this.partitionManager = new DefaultPartitionManager(builder.buildAll());
+
+        this.partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+    }
+
+    @Test
+    public void testEqualityAfterUpdateAndRemove() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        User john = new User("john");
+
+        identityManager.add(john);
+        identityManager.add(new User("mary"));
+
+        assertEquals(1, query(identityManager, User.LOGIN_NAME, "john").size());
+
+        john.setLoginName("johnny");
+
+        identityManager.update(john);
+
+        assertEquals(0, query(identityManager, User.LOGIN_NAME, "john").size());
+        assertEquals(1, query(identityManager, User.LOGIN_NAME, "johnny").size());
+
+        identityManager.add(new User("john"));
+
+        assertEquals(1, query(identityManager, User.LOGIN_NAME, "john").size());
+
+        identityManager.remove(john);
+
+        assertEquals(0, query(identityManager, User.LOGIN_NAME, "johnny").size());
+        assertEquals(1, query(identityManager, User.LOGIN_NAME, "mary").size());
+    }
+
+    @Test
+    public void testAttributeEquality() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        User john = new User("john");
+        User mary = new User("mary");
+
+        john.setAttribute(new Attribute<String>("department", "sales"));
+        mary.setAttribute(new Attribute<String>("department", "sales"));
+
+        identityManager.add(john);
+        identityManager.add(mary);
+
+        AttributeParameter department = User.QUERY_ATTRIBUTE.byName("department");
+
+        assertEquals(2, query(identityManager, department, "sales").size());
+
+        mary.setAttribute(new Attribute<String>("department", "marketing"));
+
+        identityManager.update(mary);
+
+        assertEquals(1, query(identityManager, department, "sales").size());
+        assertEquals(1, query(identityManager, department, "marketing").size());
+
+        john.removeAttribute("department");
+
+        identityManager.update(john);
+
+        assertEquals(0, query(identityManager, department, "sales").size());
+    }
+
+    @Test
+    public void testRangeConditions() {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        Date[] expirationDates = new Date[5];
+
+        for (int i = 0; i < expirationDates.length; i++) {
+            Calendar calendar = Calendar.getInstance();
+
+            calendar.add(Calendar.DATE, i + 1);
+
+            expirationDates[i] = calendar.getTime();
+
+            User user = new User("user" + i);
+
+            user.setExpirationDate(expirationDates[i]);
+
+            identityManager.add(user);
+        }
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        assertEquals(2, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.greaterThan(IdentityType.EXPIRY_DATE, expirationDates[2])).getResultList().size());
+        assertEquals(3, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.greaterThanOrEqualTo(IdentityType.EXPIRY_DATE, expirationDates[2])).getResultList().size());
+        assertEquals(1, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.lessThan(IdentityType.EXPIRY_DATE, expirationDates[1])).getResultList().size());
+        assertEquals(3, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.between(IdentityType.EXPIRY_DATE, expirationDates[1], expirationDates[3])).getResultList().size());
+
+        User user = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.equal(User.LOGIN_NAME, "user0")).getResultList().get(0);
+
+        user.setExpirationDate(expirationDates[4]);
+
+        identityManager.update(user);
+
+        assertEquals(0, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.lessThan(IdentityType.EXPIRY_DATE, expirationDates[1])).getResultList().size());
+        assertEquals(2, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.greaterThanOrEqualTo(IdentityType.EXPIRY_DATE, expirationDates[4]))
+            .where(queryBuilder.like(User.LOGIN_NAME, "%user%")).getResultList().size());
+    }
+
+    private List<User> query(IdentityManager identityManager, QueryParameter parameter, Object value) {
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+        Condition condition = queryBuilder.equal(parameter, value);
+
+        return queryBuilder.createIdentityQuery(User.class).where(condition).getResultList();
+    }
+}
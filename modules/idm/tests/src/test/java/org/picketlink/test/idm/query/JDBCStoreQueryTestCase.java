@@ -0,0 +1,213 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.query;
+
+import org.junit.Test;
+import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.basic.Grant;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.test.idm.AbstractPartitionManagerTestCase;
+import org.picketlink.test.idm.Configuration;
+import org.picketlink.test.idm.testers.IdentityConfigurationTester;
+import org.picketlink.test.idm.testers.JDBCStoreConfigurationTester;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Test case for the translation of queries to SQL by {@link org.picketlink.idm.jdbc.internal.JDBCIdentityStore}.</p>
+ *
+ * @author Pedro Igor
+ */
+@Configuration(include = JDBCStoreConfigurationTester.class)
+public class JDBCStoreQueryTestCase extends AbstractPartitionManagerTestCase {
+
+    public JDBCStoreQueryTestCase(IdentityConfigurationTester builder) {
+        super(builder);
+    }
+
+    @Test
+    public void testConditions() throws Exception {
+        User john = createUser("john");
+        User mary = createUser("mary");
+
+        createUser("bob");
+
+        john.setEmail("john@picketlink.org");
+        mary.setEmail("mary@picketlink.org");
+
+        IdentityManager identityManager = getIdentityManager();
+
+        identityManager.update(john);
+        identityManager.update(mary);
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        List<User> result = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.like(User.EMAIL, "%@picketlink.org"))
+            .getResultList();
+
+        assertEquals(2, result.size());
+
+        result = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.in(User.LOGIN_NAME, "john", "bob"), queryBuilder.equal(User.ENABLED, true))
+            .getResultList();
+
+        assertEquals(2, result.size());
+
+        result = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.equal(User.LOGIN_NAME, "mary"))
+            .getResultList();
+
+        assertEquals(1, result.size());
+        assertEquals(mary.getId(), result.get(0).getId());
+        assertEquals("mary@picketlink.org", result.get(0).getEmail());
+    }
+
+    @Test
+    public void testSortingAndPagination() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            createRole("role" + i);
+        }
+
+        IdentityManager identityManager = getIdentityManager();
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        IdentityQuery<Role> query = queryBuilder.createIdentityQuery(Role.class)
+            .where(queryBuilder.like(Role.NAME, "role%"))
+            .sortBy(queryBuilder.desc(Role.NAME))
+            .setOffset(2)
+            .setLimit(3);
+
+        List<Role> result = query.getResultList();
+
+        assertEquals(3, result.size());
+        assertEquals("role7", result.get(0).getName());
+        assertEquals("role6", result.get(1).getName());
+        assertEquals("role5", result.get(2).getName());
+        assertEquals(10, query.getResultCount());
+    }
+
+    @Test
+    public void testFindByAttribute() throws Exception {
+        User john = createUser("john");
+        User mary = createUser("mary");
+
+        john.setAttribute(new Attribute<String>("department", "IT"));
+        mary.setAttribute(new Attribute<String>("department", "Finance"));
+
+        IdentityManager identityManager = getIdentityManager();
+
+        identityManager.update(john);
+        identityManager.update(mary);
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        List<User> result = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.equal(User.QUERY_ATTRIBUTE.byName("department"), "IT"))
+            .getResultList();
+
+        assertEquals(1, result.size());
+        assertEquals(john.getId(), result.get(0).getId());
+        assertEquals("IT", result.get(0).getAttribute("department").getValue());
+
+        assertEquals(2, queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.in(User.QUERY_ATTRIBUTE.byName("department"), "IT", "Finance"))
+            .getResultCount());
+    }
+
+    @Test
+    public void testModifiedAfterIsNotMatchedAgainstAttributes() throws Exception {
+        User john = createUser("john");
+
+        john.setAttribute(new Attribute<Date>("modifyDate", new Date()));
+
+        IdentityManager identityManager = getIdentityManager();
+
+        identityManager.update(john);
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        try {
+            queryBuilder.createIdentityQuery(User.class)
+                .where(queryBuilder.greaterThan(User.MODIFIED_AFTER, new Date(0)))
+                .getResultList();
+            fail("Modification dates are not stored by the JDBC store.");
+        } catch (IdentityManagementException expected) {
+            Throwable cause = expected;
+
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+
+            assertTrue(cause.getMessage().contains("Modification dates are not stored"));
+        }
+    }
+
+    @Test
+    public void testFindByParentGroup() throws Exception {
+        Group parent = createGroup("parent");
+        Group child = createGroupWithParent("child", parent);
+
+        IdentityManager identityManager = getIdentityManager();
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        List<Group> result = queryBuilder.createIdentityQuery(Group.class)
+            .where(queryBuilder.equal(Group.PARENT, parent))
+            .getResultList();
+
+        assertEquals(1, result.size());
+        assertEquals(child.getId(), result.get(0).getId());
+        assertEquals(parent.getId(), result.get(0).getParentGroup().getId());
+    }
+
+    @Test
+    public void testRemoveIdentityTypeRemovesRelationships() throws Exception {
+        User john = createUser("john");
+        Role admin = createRole("admin");
+        Role manager = createRole("manager");
+
+        RelationshipManager relationshipManager = getPartitionManager().createRelationshipManager();
+
+        relationshipManager.add(new Grant(john, admin));
+        relationshipManager.add(new Grant(john, manager));
+
+        RelationshipQuery<Grant> query = relationshipManager.createRelationshipQuery(Grant.class)
+            .setParameter(Grant.ROLE, admin);
+
+        assertEquals(1, query.getResultCount());
+
+        getIdentityManager().remove(john);
+
+        assertTrue(query.getResultList().isEmpty());
+        assertTrue(relationshipManager.createRelationshipQuery(Grant.class)
+            .setParameter(Grant.ROLE, manager).getResultList().isEmpty());
+    }
+}
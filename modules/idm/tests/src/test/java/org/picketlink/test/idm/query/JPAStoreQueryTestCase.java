@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.query;
+
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.test.idm.AbstractPartitionManagerTestCase;
+import org.picketlink.test.idm.Configuration;
+import org.picketlink.test.idm.testers.IdentityConfigurationTester;
+import org.picketlink.test.idm.testers.JPAStoreConfigurationTester;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * <p>Test case for the batched loading of query results by {@link org.picketlink.idm.jpa.internal.JPAIdentityStore}.</p>
+ *
+ * @author Pedro Igor
+ */
+@Configuration(include = JPAStoreConfigurationTester.class)
+public class JPAStoreQueryTestCase extends AbstractPartitionManagerTestCase {
+
+    // more than the number of identifiers loaded by a single query
+    private static final int USER_COUNT = 510;
+
+    public JPAStoreQueryTestCase(IdentityConfigurationTester builder) {
+        super(builder);
+    }
+
+    @Test
+    public void testBatchedResultsKeepSortOrder() throws Exception {
+        IdentityManager identityManager = getIdentityManager();
+
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = new User(String.format("user%04d", i));
+
+            user.setEmail(user.getLoginName() + "@picketlink.org");
+            user.setAttribute(new Attribute<Integer>("index", i));
+
+            identityManager.add(user);
+        }
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+
+        List<User> result = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.like(User.LOGIN_NAME, "user%"))
+            .sortBy(queryBuilder.desc(User.LOGIN_NAME))
+            .getResultList();
+
+        assertEquals(USER_COUNT, result.size());
+
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = result.get(i);
+            int index = USER_COUNT - 1 - i;
+
+            assertEquals(String.format("user%04d", index), user.getLoginName());
+            assertEquals(user.getLoginName() + "@picketlink.org", user.getEmail());
+            assertEquals(index, user.getAttribute("index").getValue());
+        }
+    }
+
+    @Test
+    public void testBatchedResultsWithPagination() throws Exception {
+        for (int i = 0; i < USER_COUNT; i++) {
+            createUser(String.format("user%04d", i));
+        }
+
+        IdentityQueryBuilder queryBuilder = getIdentityManager().getQueryBuilder();
+
+        IdentityQuery<User> query = queryBuilder.createIdentityQuery(User.class)
+            .where(queryBuilder.like(User.LOGIN_NAME, "user%"))
+            .sortBy(queryBuilder.asc(User.LOGIN_NAME))
+            .setOffset(498)
+            .setLimit(4);
+
+        List<User> result = query.getResultList();
+
+        assertEquals(4, result.size());
+        assertEquals("user0498", result.get(0).getLoginName());
+        assertEquals("user0499", result.get(1).getLoginName());
+        assertEquals("user0500", result.get(2).getLoginName());
+        assertEquals("user0501", result.get(3).getLoginName());
+    }
+
+    @Test
+    public void testBatchedResultsResolveParentGroups() throws Exception {
+        Group parent = createGroup("parent");
+
+        for (int i = 0; i < 5; i++) {
+            createGroupWithParent("child" + i, parent);
+        }
+
+        IdentityQueryBuilder queryBuilder = getIdentityManager().getQueryBuilder();
+
+        List<Group> result = queryBuilder.createIdentityQuery(Group.class)
+            .where(queryBuilder.equal(Group.PARENT, parent))
+            .sortBy(queryBuilder.asc(Group.NAME))
+            .getResultList();
+
+        assertEquals(5, result.size());
+
+        for (int i = 0; i < 5; i++) {
+            Group child = result.get(i);
+
+            assertEquals("child" + i, child.getName());
+            assertNotNull(child.getParentGroup());
+            assertEquals(parent.getId(), child.getParentGroup().getId());
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.query;
+
+import org.junit.After;
+import org.junit.Test;
+import org.picketlink.idm.IdGenerator;
+import org.picketlink.idm.IdentityManagementException;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.AbstractIdentityStoreConfiguration;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.config.IdentityStoreConfiguration.IdentityOperation;
+import org.picketlink.idm.config.IdentityStoreConfigurationBuilder;
+import org.picketlink.idm.config.IdentityStoresConfigurationBuilder;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.handler.CredentialHandler;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.internal.PartitionManagerOptions;
+import org.picketlink.idm.model.Account;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.AttributedType;
+import org.picketlink.idm.model.IdentityType;
+import org.picketlink.idm.model.Relationship;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.IdentityQueryBuilder;
+import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.idm.spi.ContextInitializer;
+import org.picketlink.idm.spi.IdentityContext;
+import org.picketlink.idm.spi.IdentityStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>Test case for queries executed against multiple identity stores. Results from all stores must be merged
+ * before applying the sorting, offset and limit of the query.</p>
+ *
+ * @author Pedro Igor
+ */
+public class MultiStoreQueryTestCase {
+
+    private ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void onAfter() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testSortedPagination() {
+        assertSortedPagination(createPartitionManager(this.executor, false));
+    }
+
+    @Test
+    public void testSortedPaginationWithoutExecutor() {
+        assertSortedPagination(createPartitionManager(null, false));
+    }
+
+    @Test
+    public void testSortedByAttribute() {
+        IdentityManager identityManager = createPartitionManager(this.executor, false).createIdentityManager();
+
+        addGroup(identityManager, "a", "rank-c");
+        addGroup(identityManager, "b", "rank-b");
+        addGroup(identityManager, "c", "rank-a");
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+        IdentityQuery<IdentityType> query = queryBuilder.createIdentityQuery(IdentityType.class);
+
+        query.sortBy(queryBuilder.asc(IdentityType.QUERY_ATTRIBUTE.byName("rank")));
+        query.setLimit(2);
+
+        // users do not have the attribute, so they are ordered after the groups
+        List<IdentityType> result = query.getResultList();
+
+        assertEquals(2, result.size());
+        assertEquals("c", ((Group) result.get(0)).getName());
+        assertEquals("b", ((Group) result.get(1)).getName());
+        assertEquals("rank-a", result.get(0).getAttribute("rank").getValue());
+
+        query.setOffset(2);
+        query.setLimit(2);
+
+        result = query.getResultList();
+
+        assertEquals(2, result.size());
+        assertEquals("a", ((Group) result.get(0)).getName());
+        assertTrue(User.class.isInstance(result.get(1)));
+    }
+
+    @Test
+    public void testResultCount() {
+        IdentityManager identityManager = createPartitionManager(this.executor, false).createIdentityManager();
+
+        identityManager.add(new Group("a"));
+        identityManager.add(new Group("b"));
+
+        assertEquals(5, identityManager.createIdentityQuery(IdentityType.class).getResultCount());
+        assertEquals(5, identityManager.createIdentityQuery(IdentityType.class).getResultList().size());
+    }
+
+    @Test
+    public void testStoreFailure() {
+        IdentityManager identityManager = createPartitionManager(this.executor, true).createIdentityManager();
+
+        try {
+            identityManager.createIdentityQuery(IdentityType.class).getResultList();
+            fail();
+        } catch (IdentityManagementException expected) {
+        }
+    }
+
+    private void assertSortedPagination(PartitionManager partitionManager) {
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+
+        identityManager.add(new Group("a"));
+        identityManager.add(new Group("b"));
+        identityManager.add(new Group("c"));
+
+        IdentityQueryBuilder queryBuilder = identityManager.getQueryBuilder();
+        IdentityQuery<IdentityType> query = queryBuilder.createIdentityQuery(IdentityType.class);
+
+        query.sortBy(queryBuilder.asc(IdentityType.ID));
+
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6"), getIdentifiers(query.getResultList()));
+
+        query.setOffset(1);
+        query.setLimit(3);
+
+        assertEquals(Arrays.asList("2", "3", "4"), getIdentifiers(query.getResultList()));
+
+        query = queryBuilder.createIdentityQuery(IdentityType.class);
+
+        query.sortBy(queryBuilder.desc(IdentityType.ID));
+        query.setOffset(4);
+
+        assertEquals(Arrays.asList("2", "1"), getIdentifiers(query.getResultList()));
+    }
+
+    private void addGroup(IdentityManager identityManager, String name, String rank) {
+        Group group = new Group(name);
+
+        group.setAttribute(new Attribute<String>("rank", rank));
+
+        identityManager.add(group);
+    }
+
+    private List<String> getIdentifiers(List<IdentityType> identityTypes) {
+        List<String> identifiers = new ArrayList<String>();
+
+        for (IdentityType identityType : identityTypes) {
+            identifiers.add(identityType.getId());
+        }
+
+        return identifiers;
+    }
+
+    /**
+     * <p>Groups are stored in a file store and users in a {@link ReadOnlyStore}, so queries for {@link IdentityType}
+     * are executed against both stores. Identifiers of the stored groups are even numbers and identifiers of the users
+     * are odd numbers, so the results of both stores are interleaved when sorting by identifier.</p>
+     */
+    private PartitionManager createPartitionManager(ExecutorService executor, boolean failing) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("multiple-stores")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportType(Realm.class, Group.class)
+                        .supportAttributes(true)
+                    .add(ReadOnlyStoreConfiguration.class, ReadOnlyStoreConfigurationBuilder.class)
+                        .failing(failing)
+                        .supportType(User.class);
+
+        IdGenerator idGenerator = new IdGenerator() {
+            private int sequence = 0;
+
+            @Override
+            public String generate() {
+                String id = String.valueOf(this.sequence);
+
+                this.sequence = this.sequence + 2;
+
+                return id;
+            }
+        };
+
+        DefaultPartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll(), new PartitionManagerOptions()
+            .idGenerator(idGenerator)
+            .queryExecutor(executor));
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        return partitionManager;
+    }
+
+    public static class ReadOnlyStoreConfigurationBuilder extends
+            IdentityStoreConfigurationBuilder<ReadOnlyStoreConfiguration, ReadOnlyStoreConfigurationBuilder> {
+
+        private boolean failing;
+
+        public ReadOnlyStoreConfigurationBuilder(IdentityStoresConfigurationBuilder builder) {
+            super(builder);
+        }
+
+        @Override
+        public ReadOnlyStoreConfiguration create() {
+            return new ReadOnlyStoreConfiguration(getSupportedTypes(), getUnsupportedTypes(), getContextInitializers(),
+                getCredentialHandlerProperties(), getCredentialHandlers(), this.failing);
+        }
+
+        public ReadOnlyStoreConfigurationBuilder failing(boolean failing) {
+            this.failing = failing;
+            return this;
+        }
+    }
+
+    public static class ReadOnlyStoreConfiguration extends AbstractIdentityStoreConfiguration {
+
+        private final boolean failing;
+
+        protected ReadOnlyStoreConfiguration(Map<Class<? extends AttributedType>,
+                Set<IdentityOperation>> supportedTypes, Map<Class<? extends AttributedType>,
+                Set<IdentityOperation>> unsupportedTypes, List<ContextInitializer> contextInitializers, Map<String,
+                Object> credentialHandlerProperties, Set<Class<? extends CredentialHandler>> credentialHandlers,
+                boolean failing) {
+            super(supportedTypes, unsupportedTypes, contextInitializers, credentialHandlerProperties,
+                    credentialHandlers, false, false, false);
+            this.failing = failing;
+        }
+
+        @Override
+        public Class<? extends IdentityStore> getIdentityStoreType() {
+            return ReadOnlyStore.class;
+        }
+
+        @Override
+        public boolean supportsPartition() {
+            return false;
+        }
+
+        public boolean isFailing() {
+            return this.failing;
+        }
+    }
+
+    /**
+     * <p>A store holding a fixed set of users, returned in no particular order.</p>
+     */
+    public static class ReadOnlyStore implements IdentityStore<ReadOnlyStoreConfiguration> {
+
+        private ReadOnlyStoreConfiguration config;
+
+        @Override
+        public void setup(ReadOnlyStoreConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public ReadOnlyStoreConfiguration getConfig() {
+            return this.config;
+        }
+
+        @Override
+        public void add(IdentityContext context, AttributedType value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(IdentityContext context, AttributedType value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void remove(IdentityContext context, AttributedType value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <V extends IdentityType> List<V> fetchQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
+            if (getConfig().isFailing()) {
+                throw new IllegalStateException("Store is not available.");
+            }
+
+            List<V> result = new ArrayList<V>();
+
+            for (String id : Arrays.asList("5", "1", "3")) {
+                User user = new User("user" + id);
+
+                user.setId(id);
+
+                result.add((V) user);
+            }
+
+            return result;
+        }
+
+        @Override
+        public <V extends IdentityType> int countQueryResults(IdentityContext context, IdentityQuery<V> identityQuery) {
+            return 3;
+        }
+
+        @Override
+        public <V extends Relationship> List<V> fetchQueryResults(IdentityContext context, RelationshipQuery<V> query) {
+            return new ArrayList<V>();
+        }
+
+        @Override
+        public <V extends Relationship> int countQueryResults(IdentityContext context, RelationshipQuery<V> query) {
+            return 0;
+        }
+
+        @Override
+        public void validateCredentials(IdentityContext context, Credentials credentials) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateCredential(IdentityContext context, Account account, Object credential, Date effectiveDate,
+                Date expiryDate) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -39,7 +39,9 @@ import org.picketlink.test.idm.testers.SingleConfigLDAPJPAStoreConfigurationTest
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
@@ -584,6 +586,37 @@ public class GroupMembershipTestCase extends AbstractPartitionManagerTestCase {
         assertTrue(contains(result, "someImportantGroup"));
     }
 
+    @Test
+    public void testFindGroupMembers() throws Exception {
+        Group someGroup = createGroup("someGroup", null);
+        RelationshipManager relationshipManager = getPartitionManager().createRelationshipManager();
+        Set<String> expectedMembers = new HashSet<String>();
+
+        // more members than looked up by a single search in some stores
+        for (int i = 0; i < 150; i++) {
+            User user = createUser("someUser" + i);
+
+            BasicModel.addToGroup(relationshipManager, user, someGroup);
+
+            expectedMembers.add(user.getLoginName());
+        }
+
+        RelationshipQuery<GroupMembership> query = relationshipManager.createRelationshipQuery(GroupMembership.class);
+
+        query.setParameter(GroupMembership.GROUP, someGroup);
+
+        List<GroupMembership> result = query.getResultList();
+        Set<String> members = new HashSet<String>();
+
+        for (GroupMembership groupMembership : result) {
+            assertEquals(someGroup.getId(), groupMembership.getGroup().getId());
+            members.add(((User) groupMembership.getMember()).getLoginName());
+        }
+
+        assertEquals(150, result.size());
+        assertEquals(expectedMembers, members);
+    }
+
     private Group createGroup() {
         return createGroup("someGroup", null);
     }
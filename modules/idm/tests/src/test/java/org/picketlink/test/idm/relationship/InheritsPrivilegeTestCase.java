@@ -20,6 +20,7 @@ package org.picketlink.test.idm.relationship;
 
 import org.junit.Test;
 import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.model.basic.BasicModel;
 import org.picketlink.idm.model.basic.Grant;
 import org.picketlink.idm.model.basic.Group;
 import org.picketlink.idm.model.basic.GroupMembership;
@@ -32,6 +33,7 @@ import org.picketlink.test.idm.testers.IdentityConfigurationTester;
 import org.picketlink.test.idm.testers.JPAPermissionStoreConfigurationTester;
 import org.picketlink.test.idm.testers.LDAPStoreConfigurationTester;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -102,4 +104,63 @@ public class InheritsPrivilegeTestCase extends AbstractPartitionManagerTestCase
         assertTrue(relationshipManager.inheritsPrivileges(pmGroup, operator));
     }
 
+    @Test
+    public void testInheritedPrivilegesFollowRelationshipChanges() throws Exception {
+        Role operator = createRole("Operator");
+        Group itGroup = createGroup("IT");
+        Group employees = createGroupWithParent("Employees", itGroup);
+        User john = createUser("john");
+
+        RelationshipManager relationshipManager = getPartitionManager().createRelationshipManager();
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+
+        GroupMembership membership = new GroupMembership(john, employees);
+
+        relationshipManager.add(membership);
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+
+        Grant grant = new Grant(itGroup, operator);
+
+        relationshipManager.add(grant);
+
+        assertTrue(relationshipManager.inheritsPrivileges(john, operator));
+        assertTrue(relationshipManager.inheritsPrivileges(employees, operator));
+        assertTrue(BasicModel.hasRole(relationshipManager, john, operator));
+
+        relationshipManager.remove(grant);
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+        assertFalse(relationshipManager.inheritsPrivileges(employees, operator));
+        assertFalse(BasicModel.hasRole(relationshipManager, john, operator));
+
+        relationshipManager.add(new Grant(employees, operator));
+
+        assertTrue(relationshipManager.inheritsPrivileges(john, operator));
+
+        relationshipManager.remove(membership);
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+        assertTrue(relationshipManager.inheritsPrivileges(employees, operator));
+    }
+
+    @Test
+    public void testInheritedPrivilegesFollowIdentityRemoval() throws Exception {
+        Role operator = createRole("Operator");
+        Group employees = createGroup("Employees");
+        User john = createUser("john");
+
+        RelationshipManager relationshipManager = getPartitionManager().createRelationshipManager();
+
+        relationshipManager.add(new GroupMembership(john, employees));
+        relationshipManager.add(new Grant(employees, operator));
+
+        assertTrue(relationshipManager.inheritsPrivileges(john, operator));
+
+        getIdentityManager().remove(employees);
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+    }
+
 }
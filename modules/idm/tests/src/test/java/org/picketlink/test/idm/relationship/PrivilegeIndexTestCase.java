@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.relationship;
+
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.internal.PartitionManagerOptions;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Grant;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.GroupMembership;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.Role;
+import org.picketlink.idm.model.basic.User;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Test case for the privilege index enabled in a {@link DefaultPartitionManager}.</p>
+ *
+ * @author Pedro Igor
+ */
+public class PrivilegeIndexTestCase {
+
+    @Test
+    public void testCreatedRelationshipInvalidatesPrivileges() {
+        DefaultPartitionManager partitionManager = createPartitionManager(60000, 100);
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = partitionManager.createRelationshipManager();
+
+        Role operator = new Role("Operator");
+        Group itGroup = new Group("IT");
+        User john = new User("john");
+
+        identityManager.add(operator);
+        identityManager.add(itGroup);
+        identityManager.add(john);
+
+        relationshipManager.add(new GroupMembership(john, itGroup));
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+
+        Grant grant = new Grant(itGroup, operator);
+
+        relationshipManager.add(grant);
+
+        assertTrue(relationshipManager.inheritsPrivileges(john, operator));
+        assertTrue(BasicModel.hasRole(relationshipManager, john, operator));
+
+        relationshipManager.remove(grant);
+
+        assertFalse(relationshipManager.inheritsPrivileges(john, operator));
+        assertFalse(BasicModel.hasRole(relationshipManager, john, operator));
+    }
+
+    @Test
+    public void testPrivilegesEvictedFromBoundedIndex() {
+        DefaultPartitionManager partitionManager = createPartitionManager(60000, 2);
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = partitionManager.createRelationshipManager();
+
+        Role operator = new Role("Operator");
+        Group itGroup = new Group("IT");
+
+        identityManager.add(operator);
+        identityManager.add(itGroup);
+
+        relationshipManager.add(new Grant(itGroup, operator));
+
+        User[] users = new User[5];
+
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User("user" + i);
+            identityManager.add(users[i]);
+
+            if (i % 2 == 0) {
+                relationshipManager.add(new GroupMembership(users[i], itGroup));
+            }
+        }
+
+        // more identities than the index keeps, the evicted ones are queried from the stores again
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < users.length; i++) {
+                assertEquals(i % 2 == 0, relationshipManager.inheritsPrivileges(users[i], operator));
+            }
+        }
+
+        relationshipManager.add(new GroupMembership(users[1], itGroup));
+
+        assertTrue(relationshipManager.inheritsPrivileges(users[1], operator));
+    }
+
+    private DefaultPartitionManager createPartitionManager(long privilegeIndexMaxStaleness, int privilegeIndexMaxEntries) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .file()
+                        .preserveState(false)
+                        .supportAllFeatures();
+
+        DefaultPartitionManager partitionManager = new DefaultPartitionManager(builder.buildAll(), new PartitionManagerOptions()
+            .privilegeIndex(privilegeIndexMaxStaleness, privilegeIndexMaxEntries));
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        return partitionManager;
+    }
+}
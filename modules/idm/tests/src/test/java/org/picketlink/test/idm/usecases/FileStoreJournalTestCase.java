@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.usecases;
+
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.credential.Credentials;
+import org.picketlink.idm.credential.Password;
+import org.picketlink.idm.credential.UsernamePasswordCredentials;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.model.Attribute;
+import org.picketlink.idm.model.basic.Realm;
+import org.picketlink.idm.model.basic.User;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>Test case for the file store when journaling is enabled. Changes are written to the journal and must be
+ * restored when the store is opened again, before and after the journal is compacted.</p>
+ *
+ * @author Pedro Igor
+ */
+public class FileStoreJournalTestCase {
+
+    private static final String WORKING_DIR = System.getProperty("java.io.tmpdir") + File.separator + "pl-idm-journal";
+
+    @Test
+    public void testRestoreFromJournal() {
+        PartitionManager partitionManager = createPartitionManager(false, 1000, 60000);
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+        User john = new User("john");
+        User mary = new User("mary");
+        User removed = new User("removed");
+
+        identityManager.add(john);
+        identityManager.add(mary);
+        identityManager.add(removed);
+
+        john.setEmail("john@picketlink.org");
+        john.setAttribute(new Attribute<String>("department", "sales"));
+
+        identityManager.update(john);
+        identityManager.remove(removed);
+        identityManager.updateCredential(mary, new Password("mary123"));
+
+        partitionManager = createPartitionManager(true, 1000, 60000);
+        identityManager = partitionManager.createIdentityManager();
+
+        User storedJohn = identityManager.lookupIdentityById(User.class, john.getId());
+
+        assertNotNull(storedJohn);
+        assertEquals("john@picketlink.org", storedJohn.getEmail());
+        assertEquals("sales", storedJohn.getAttribute("department").getValue());
+        assertNull(identityManager.lookupIdentityById(User.class, removed.getId()));
+
+        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials("mary", new Password("mary123"));
+
+        identityManager.validateCredentials(credentials);
+
+        assertEquals(Credentials.Status.VALID, credentials.getStatus());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        PartitionManager partitionManager = createPartitionManager(false, 5, 50);
+
+        Realm realm = new Realm(Realm.DEFAULT_REALM);
+
+        partitionManager.add(realm);
+
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+
+        for (int i = 0; i < 10; i++) {
+            identityManager.add(new User("user" + i));
+        }
+
+        File journal = new File(WORKING_DIR + File.separator + realm.getId() + File.separator
+            + "pl-idm-identity-types.db.journal");
+
+        assertTrue(journal.exists());
+
+        long timeout = System.currentTimeMillis() + 5000;
+
+        while (journal.length() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(0, journal.length());
+
+        partitionManager = createPartitionManager(true, 5, 50);
+        identityManager = partitionManager.createIdentityManager();
+
+        assertEquals(10, identityManager.createIdentityQuery(User.class).getResultCount());
+    }
+
+    @Test
+    public void testAsynchronousWritesCompletedOnClose() {
+        DefaultPartitionManager partitionManager = createPartitionManager(false, 1000, 60000, true);
+
+        partitionManager.add(new Realm(Realm.DEFAULT_REALM));
+
+        IdentityManager identityManager = partitionManager.createIdentityManager();
+
+        for (int i = 0; i < 10; i++) {
+            identityManager.add(new User("user" + i));
+        }
+
+        partitionManager.close();
+
+        partitionManager = createPartitionManager(true, 1000, 60000, false);
+        identityManager = partitionManager.createIdentityManager();
+
+        assertEquals(10, identityManager.createIdentityQuery(User.class).getResultCount());
+
+        partitionManager.close();
+    }
+
+    private DefaultPartitionManager createPartitionManager(boolean preserveState, int compactionThreshold, long compactionInterval) {
+        return createPartitionManager(preserveState, compactionThreshold, compactionInterval, false);
+    }
+
+    private DefaultPartitionManager createPartitionManager(boolean preserveState, int compactionThreshold,
+                                                           long compactionInterval, boolean asyncWrite) {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("file-store-journal")
+                .stores()
+                    .file()
+                        .preserveState(preserveState)
+                        .workingDirectory(WORKING_DIR)
+                        .journal(true)
+                        .journalCompactionThreshold(compactionThreshold)
+                        .journalCompactionInterval(compactionInterval)
+                        .asyncWrite(asyncWrite)
+                        .supportAllFeatures();
+
+        return new DefaultPartitionManager(builder.buildAll());
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.idm.usecases;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.idm.IdentityManager;
+import org.picketlink.idm.PartitionManager;
+import org.picketlink.idm.RelationshipManager;
+import org.picketlink.idm.config.IdentityConfigurationBuilder;
+import org.picketlink.idm.internal.DefaultPartitionManager;
+import org.picketlink.idm.ldap.internal.LDAPFilter;
+import org.picketlink.idm.model.basic.BasicModel;
+import org.picketlink.idm.model.basic.Group;
+import org.picketlink.idm.model.basic.GroupMembership;
+import org.picketlink.idm.model.basic.User;
+import org.picketlink.idm.query.IdentityQuery;
+import org.picketlink.idm.query.RelationshipQuery;
+import org.picketlink.test.idm.util.LDAPEmbeddedServer;
+
+import javax.naming.Context;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InvalidSearchFilterException;
+import javax.naming.directory.ModificationItem;
+import javax.naming.ldap.InitialLdapContext;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.picketlink.common.constants.LDAPConstants.CN;
+import static org.picketlink.common.constants.LDAPConstants.CREATE_TIMESTAMP;
+import static org.picketlink.common.constants.LDAPConstants.EMAIL;
+import static org.picketlink.common.constants.LDAPConstants.GROUP_OF_NAMES;
+import static org.picketlink.common.constants.LDAPConstants.SN;
+import static org.picketlink.common.constants.LDAPConstants.UID;
+
+/**
+ * <p>Test case for the LDAP store when the LDAP entries are replicated in memory.</p>
+ *
+ * @author Pedro Igor
+ */
+public class LDAPReplicationTestCase {
+
+    private static final long REPLICATION_TIMEOUT = 10000;
+
+    private final LDAPEmbeddedServer embeddedServer = new LDAPEmbeddedServer();
+    private PartitionManager partitionManager;
+
+    @Before
+    public void onBefore() throws Exception {
+        this.embeddedServer.setup();
+        this.embeddedServer.importLDIF("ldap/users.ldif");
+        this.partitionManager = new DefaultPartitionManager(createConfiguration().buildAll());
+    }
+
+    @After
+    public void onAfter() throws Exception {
+        this.embeddedServer.tearDown();
+    }
+
+    @Test
+    public void testChangesMadeThroughTheStore() throws Exception {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+        RelationshipManager relationshipManager = this.partitionManager.createRelationshipManager();
+
+        for (int i = 0; i < 10; i++) {
+            User user = new User("user" + i);
+
+            user.setLastName("Replicated " + i);
+
+            identityManager.add(user);
+        }
+
+        Group group = new Group("Replicated Group");
+
+        identityManager.add(group);
+
+        User user = BasicModel.getUser(identityManager, "user5");
+
+        assertNotNull(user);
+        assertEquals("Replicated 5", user.getLastName());
+
+        user.setLastName("Changed");
+
+        identityManager.update(user);
+
+        assertEquals("Changed", identityManager.lookupIdentityById(User.class, user.getId()).getLastName());
+
+        relationshipManager.add(new GroupMembership(user, group));
+
+        RelationshipQuery<GroupMembership> query = relationshipManager.createRelationshipQuery(GroupMembership.class);
+
+        query.setParameter(GroupMembership.GROUP, group);
+
+        List<GroupMembership> memberships = query.getResultList();
+
+        assertEquals(1, memberships.size());
+        assertEquals(user.getId(), memberships.get(0).getMember().getId());
+        assertTrue(BasicModel.isMember(relationshipManager, user, group));
+
+        IdentityQuery<User> userQuery = identityManager.createIdentityQuery(User.class);
+
+        userQuery.setParameter(User.LAST_NAME, "Replicated 1");
+
+        assertEquals(1, userQuery.getResultList().size());
+
+        identityManager.remove(user);
+
+        assertNull(BasicModel.getUser(identityManager, "user5"));
+        assertNull(identityManager.lookupIdentityById(User.class, user.getId()));
+        assertTrue(relationshipManager.createRelationshipQuery(GroupMembership.class)
+            .setParameter(GroupMembership.GROUP, group).getResultList().isEmpty());
+    }
+
+    @Test
+    public void testPagination() throws Exception {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        for (int i = 0; i < 25; i++) {
+            identityManager.add(new User("user" + i));
+        }
+
+        IdentityQuery<User> query = identityManager.createIdentityQuery(User.class);
+        List<String> loginNames = new ArrayList<String>();
+
+        query.setLimit(10);
+
+        List<User> page = query.getResultList();
+
+        while (!page.isEmpty()) {
+            for (User user : page) {
+                loginNames.add(user.getLoginName());
+            }
+
+            if (query.getPaginationContext() == null) {
+                break;
+            }
+
+            page = query.getResultList();
+        }
+
+        assertEquals(25, loginNames.size());
+    }
+
+    @Test
+    public void testChangesMadeByOtherClients() throws Exception {
+        IdentityManager identityManager = this.partitionManager.createIdentityManager();
+
+        identityManager.add(new User("john"));
+
+        DirContext context = new InitialLdapContext(createEnvironment(), null);
+
+        try {
+            String johnDN = UID + "=john," + this.embeddedServer.getUserDnSuffix();
+
+            context.modifyAttributes(johnDN, new ModificationItem[] {
+                new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute(SN, "Modified"))
+            });
+
+            BasicAttributes attributes = new BasicAttributes(true);
+            BasicAttribute objectClass = new BasicAttribute("objectClass");
+
+            objectClass.add("top");
+            objectClass.add("inetOrgPerson");
+            objectClass.add("organizationalPerson");
+            objectClass.add("person");
+
+            attributes.put(objectClass);
+            attributes.put(UID, "mary");
+            attributes.put(CN, "mary");
+            attributes.put(SN, "mary");
+
+            context.createSubcontext(UID + "=mary," + this.embeddedServer.getUserDnSuffix(), attributes);
+
+            long timeout = System.currentTimeMillis() + REPLICATION_TIMEOUT;
+
+            while (!"Modified".equals(BasicModel.getUser(identityManager, "john").getLastName())
+                || BasicModel.getUser(identityManager, "mary") == null) {
+                if (System.currentTimeMillis() > timeout) {
+                    fail("Changes were not replicated.");
+                }
+
+                Thread.sleep(100);
+            }
+
+            context.unbind(johnDN);
+
+            timeout = System.currentTimeMillis() + REPLICATION_TIMEOUT;
+
+            while (BasicModel.getUser(identityManager, "john") != null) {
+                if (System.currentTimeMillis() > timeout) {
+                    fail("Removal was not replicated.");
+                }
+
+                Thread.sleep(100);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testFilterEvaluation() throws Exception {
+        BasicAttributes attributes = new BasicAttributes(true);
+        BasicAttribute objectClass = new BasicAttribute("objectClass");
+
+        objectClass.add("inetOrgPerson");
+        objectClass.add("person");
+
+        attributes.put(objectClass);
+        attributes.put(UID, "John");
+        attributes.put(SN, "Smith (IT)");
+        attributes.put("member", "uid=john, ou=People,dc=jboss,dc=org");
+        attributes.put(CREATE_TIMESTAMP, "20130801120000Z");
+
+        assertTrue(LDAPFilter.parse("(&(objectClass=person)(uid=john))").matches(attributes));
+        assertTrue(LDAPFilter.parse("(&((uid=john)(objectClass=inetOrgPerson)))").matches(attributes));
+        assertTrue(LDAPFilter.parse("(|(uid=mary)(sn=smith \\28it\\29))").matches(attributes));
+        assertTrue(LDAPFilter.parse("(sn=sm*it*)").matches(attributes));
+        assertTrue(LDAPFilter.parse("(member=UID=John,ou=people,dc=jboss,dc=org)").matches(attributes));
+        assertTrue(LDAPFilter.parse("(createTimestamp>=20130101000000.0Z)").matches(attributes));
+        assertFalse(LDAPFilter.parse("(createTimestamp<=20130101000000.0Z)").matches(attributes));
+        assertFalse(LDAPFilter.parse("(!(uid=*))").matches(attributes));
+        assertFalse(LDAPFilter.parse("(mail=*)").matches(attributes));
+
+        try {
+            LDAPFilter.parse("(20130101000000.0Z<=createTimestamp<=20140101000000.0Z)");
+            fail("Range filters are not valid.");
+        } catch (InvalidSearchFilterException expected) {
+        }
+    }
+
+    private Hashtable<Object, Object> createEnvironment() {
+        Hashtable<Object, Object> environment = new Hashtable<Object, Object>();
+
+        environment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        environment.put(Context.PROVIDER_URL, this.embeddedServer.getConnectionUrl());
+        environment.put(Context.SECURITY_AUTHENTICATION, "simple");
+        environment.put(Context.SECURITY_PRINCIPAL, this.embeddedServer.getBindDn());
+        environment.put(Context.SECURITY_CREDENTIALS, this.embeddedServer.getBindCredential());
+
+        return environment;
+    }
+
+    private IdentityConfigurationBuilder createConfiguration() {
+        IdentityConfigurationBuilder builder = new IdentityConfigurationBuilder();
+
+        builder
+            .named("default")
+                .stores()
+                    .ldap()
+                        .baseDN(this.embeddedServer.getBaseDn())
+                        .bindDN(this.embeddedServer.getBindDn())
+                        .bindCredential(this.embeddedServer.getBindCredential())
+                        .url(this.embeddedServer.getConnectionUrl())
+                        .pagination(true)
+                        .replication(true)
+                        .replicationPollInterval(500)
+                        .replicationReconcileInterval(500)
+                        .supportAllFeatures()
+                        .mapping(User.class)
+                            .baseDN(this.embeddedServer.getUserDnSuffix())
+                            .objectClasses("inetOrgPerson", "organizationalPerson")
+                            .attribute("loginName", UID, true)
+                            .attribute("firstName", CN)
+                            .attribute("lastName", SN)
+                            .attribute("email", EMAIL)
+                            .readOnlyAttribute("createdDate", CREATE_TIMESTAMP)
+                        .mapping(Group.class)
+                            .baseDN(this.embeddedServer.getGroupDnSuffix())
+                            .objectClasses(GROUP_OF_NAMES)
+                            .attribute("name", CN, true)
+                            .readOnlyAttribute("createdDate", CREATE_TIMESTAMP)
+                            .parentMembershipAttributeName("member")
+                        .mapping(GroupMembership.class)
+                            .forMapping(Group.class)
+                            .attribute("member", "member");
+
+        return builder;
+    }
+}
@@ -24,6 +24,7 @@ package org.picketlink.json.jose;
 import org.picketlink.json.JsonConstants;
 import org.picketlink.json.JsonException;
 import org.picketlink.json.jose.crypto.Algorithm;
+import org.picketlink.json.jose.crypto.CryptoEngine;
 import org.picketlink.json.jwt.JWTBuilder;
 
 import javax.json.JsonObject;
@@ -230,7 +231,7 @@ public abstract class AbstractJWSBuilder<T extends JWS, B extends AbstractJWSBui
                     }
 
                     try {
-                        this.key = jwk.toRSAPublicKey().getEncoded();
+                        this.key = CryptoEngine.getRSAPublicKey(jwk).getEncoded();
                     } catch (Exception e) {
                         throw MESSAGES.cryptoCouldNotParseKey(jwk.toString(), e);
                     }
@@ -30,7 +30,6 @@ import javax.crypto.SecretKey;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.params.KeyParameter;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 /**
  * AES encryption, decryption and key generation methods.
@@ -48,7 +47,7 @@ public class AES {
      */
     public static KeyGenerator createKeyGenerator() {
         try {
-            return KeyGenerator.getInstance("AES", new BouncyCastleProvider());
+            return KeyGenerator.getInstance("AES", CryptoEngine.getProvider());
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
@@ -30,7 +30,6 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.picketlink.json.util.JOSEUtil;
 
 /**
@@ -81,7 +80,7 @@ public class AESCBC {
         Cipher cipher;
 
         try {
-            cipher = Cipher.getInstance("AES/CBC/PKCS5Padding", new BouncyCastleProvider());
+            cipher = CryptoEngine.getCipher("AES/CBC/PKCS5Padding");
             SecretKeySpec keyspec = new SecretKeySpec(secretKey.getEncoded(), "AES");
             IvParameterSpec ivSpec = new IvParameterSpec(iv);
             if (forEncryption) {
@@ -0,0 +1,297 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.picketlink.json.jose.crypto;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.picketlink.json.jose.JWK;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Shared cryptographic resources used by the JOSE crypto operations.
+ * </p>
+ *
+ * <p>
+ * A single Bouncy Castle {@link Provider} is used by all operations, instead of creating a new provider for each of them.
+ * Decoded RSA keys are cached by their encoded form, and keys parsed from a {@link JWK} are cached by their key identifier.
+ * {@link Signature}, {@link Mac} and {@link Cipher} instances are not thread-safe, so they are kept per thread and must be
+ * initialized with a key before each use.
+ * </p>
+ *
+ * @author Pedro Igor
+ */
+public final class CryptoEngine {
+
+    /** The maximum number of keys kept by each cache. */
+    private static final int MAX_CACHED_KEYS = 256;
+
+    private static final String RSA = "RSA";
+
+    private static final Provider PROVIDER;
+
+    static {
+        Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+
+        if (provider == null) {
+            provider = new BouncyCastleProvider();
+        }
+
+        PROVIDER = provider;
+    }
+
+    private static final Map<ByteBuffer, PublicKey> PUBLIC_KEYS = createKeyCache();
+    private static final Map<ByteBuffer, PrivateKey> PRIVATE_KEYS = createKeyCache();
+    private static final Map<String, CachedJWK> JWK_KEYS = createKeyCache();
+
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = new ThreadLocal<Map<String, Signature>>() {
+        @Override
+        protected Map<String, Signature> initialValue() {
+            return new HashMap<String, Signature>();
+        }
+    };
+
+    private static final ThreadLocal<Map<String, Mac>> MACS = new ThreadLocal<Map<String, Mac>>() {
+        @Override
+        protected Map<String, Mac> initialValue() {
+            return new HashMap<String, Mac>();
+        }
+    };
+
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = new ThreadLocal<Map<String, Cipher>>() {
+        @Override
+        protected Map<String, Cipher> initialValue() {
+            return new HashMap<String, Cipher>();
+        }
+    };
+
+    /**
+     * Gets the Bouncy Castle provider shared by all JOSE crypto operations.
+     *
+     * @return the provider
+     */
+    public static Provider getProvider() {
+        return PROVIDER;
+    }
+
+    /**
+     * Gets the {@link Signature} for the given algorithm owned by the calling thread.
+     *
+     * @param algorithm the JCA signature algorithm
+     * @return the signature, which must be initialized before use
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public static Signature getSignature(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signatures.put(algorithm, signature);
+        }
+
+        return signature;
+    }
+
+    /**
+     * Gets the {@link Mac} for the given algorithm owned by the calling thread.
+     *
+     * @param algorithm the JCA MAC algorithm
+     * @return the MAC, which must be initialized before use
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Mac> macs = MACS.get();
+        Mac mac = macs.get(algorithm);
+
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm);
+            macs.put(algorithm, mac);
+        }
+
+        return mac;
+    }
+
+    /**
+     * Gets the {@link Cipher} for the given transformation owned by the calling thread, backed by the shared provider.
+     *
+     * @param transformation the JCA cipher transformation
+     * @return the cipher, which must be initialized before use
+     * @throws NoSuchAlgorithmException if the transformation is not supported
+     * @throws NoSuchPaddingException if the padding scheme is not supported
+     */
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        return getCipher(transformation, true);
+    }
+
+    /**
+     * Gets the {@link Cipher} for the given transformation owned by the calling thread.
+     *
+     * @param transformation the JCA cipher transformation
+     * @param useProvider if {@code true} the cipher is backed by the shared provider, otherwise by the default JCA providers
+     * @return the cipher, which must be initialized before use
+     * @throws NoSuchAlgorithmException if the transformation is not supported
+     * @throws NoSuchPaddingException if the padding scheme is not supported
+     */
+    public static Cipher getCipher(String transformation, boolean useProvider) throws NoSuchAlgorithmException,
+        NoSuchPaddingException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        String cipherKey = useProvider ? PROVIDER.getName() + ":" + transformation : transformation;
+        Cipher cipher = ciphers.get(cipherKey);
+
+        if (cipher == null) {
+            if (useProvider) {
+                cipher = Cipher.getInstance(transformation, PROVIDER);
+            } else {
+                cipher = Cipher.getInstance(transformation);
+            }
+
+            ciphers.put(cipherKey, cipher);
+        }
+
+        return cipher;
+    }
+
+    /**
+     * Gets the RSA {@link PublicKey} for the given X.509 encoded key.
+     *
+     * @param encodedKey the encoded key
+     * @return the public key
+     * @throws GeneralSecurityException if the key could not be decoded
+     */
+    public static PublicKey getPublicKey(byte[] encodedKey) throws GeneralSecurityException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(encodedKey.clone());
+        PublicKey publicKey = PUBLIC_KEYS.get(cacheKey);
+
+        if (publicKey == null) {
+            publicKey = KeyFactory.getInstance(RSA).generatePublic(new X509EncodedKeySpec(encodedKey));
+            PUBLIC_KEYS.put(cacheKey, publicKey);
+        }
+
+        return publicKey;
+    }
+
+    /**
+     * Gets the RSA {@link PrivateKey} for the given PKCS#8 encoded key.
+     *
+     * @param encodedKey the encoded key
+     * @return the private key
+     * @throws GeneralSecurityException if the key could not be decoded
+     */
+    public static PrivateKey getPrivateKey(byte[] encodedKey) throws GeneralSecurityException {
+        ByteBuffer cacheKey = ByteBuffer.wrap(encodedKey.clone());
+        PrivateKey privateKey = PRIVATE_KEYS.get(cacheKey);
+
+        if (privateKey == null) {
+            privateKey = KeyFactory.getInstance(RSA).generatePrivate(new PKCS8EncodedKeySpec(encodedKey));
+            PRIVATE_KEYS.put(cacheKey, privateKey);
+        }
+
+        return privateKey;
+    }
+
+    /**
+     * <p>
+     * Gets the {@link RSAPublicKey} represented by the given {@link JWK}.
+     * </p>
+     *
+     * <p>
+     * Keys are cached by their key identifier. A cached key is only returned if its modulus and exponent match the ones from
+     * the given JWK, otherwise the key is parsed again and replaces the cached one.
+     * </p>
+     *
+     * @param jwk the JWK
+     * @return the RSA public key
+     */
+    public static RSAPublicKey getRSAPublicKey(JWK jwk) {
+        String keyIdentifier = jwk.getKeyIdentifier();
+
+        if (keyIdentifier == null) {
+            return jwk.toRSAPublicKey();
+        }
+
+        CachedJWK cached = JWK_KEYS.get(keyIdentifier);
+
+        if (cached == null || !cached.matches(jwk)) {
+            cached = new CachedJWK(jwk);
+            JWK_KEYS.put(keyIdentifier, cached);
+        }
+
+        return cached.publicKey;
+    }
+
+    private static <K, V> Map<K, V> createKeyCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_CACHED_KEYS;
+            }
+        });
+    }
+
+    private static class CachedJWK {
+
+        private final String modulus;
+        private final String publicExponent;
+        private final RSAPublicKey publicKey;
+
+        CachedJWK(JWK jwk) {
+            this.modulus = jwk.getModulus();
+            this.publicExponent = jwk.getPublicExponent();
+            this.publicKey = jwk.toRSAPublicKey();
+        }
+
+        boolean matches(JWK jwk) {
+            return equals(this.modulus, jwk.getModulus()) && equals(this.publicExponent, jwk.getPublicExponent());
+        }
+
+        private static boolean equals(String cached, String value) {
+            return cached == null ? value == null : cached.equals(value);
+        }
+    }
+
+    /**
+     * Prevents public instantiation.
+     */
+    private CryptoEngine() {
+    }
+}
@@ -69,7 +69,7 @@ public class HMAC {
         Mac mac;
 
         try {
-            mac = Mac.getInstance(secretKey.getAlgorithm());
+            mac = CryptoEngine.getMac(secretKey.getAlgorithm());
             mac.init(secretKey);
 
         } catch (NoSuchAlgorithmException e) {
@@ -62,7 +62,7 @@ public class HMACSignatureProvider implements SignatureProvider {
      */
     public byte[] sign(byte[] data, Algorithm algorithm, byte[] key) {
         try {
-            Mac mac = Mac.getInstance(algorithm.getAlgorithm());
+            Mac mac = CryptoEngine.getMac(algorithm.getAlgorithm());
             SecretKeySpec keySpec = new SecretKeySpec(key, mac.getAlgorithm());
 
             mac.init(keySpec);
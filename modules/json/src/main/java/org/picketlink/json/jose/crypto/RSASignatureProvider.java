@@ -21,12 +21,7 @@
  */
 package org.picketlink.json.jose.crypto;
 
-import java.security.KeyFactory;
-import java.security.PrivateKey;
-import java.security.PublicKey;
 import java.security.Signature;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 
 import static org.picketlink.json.JsonMessages.MESSAGES;
 
@@ -37,9 +32,6 @@ import static org.picketlink.json.JsonMessages.MESSAGES;
  */
 public class RSASignatureProvider implements SignatureProvider {
 
-    /** The Constant ALGORITHM. */
-    private static final String ALGORITHM = "RSA";
-
     /** The signature provider instance. */
     private static RSASignatureProvider instance;
 
@@ -61,12 +53,9 @@ public class RSASignatureProvider implements SignatureProvider {
      */
     public byte[] sign(byte[] data, Algorithm algorithm, byte[] key) {
         try {
-            PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(key);
-            KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
-            PrivateKey privateKey = keyFactory.generatePrivate(privateKeySpec);
-            Signature signature = Signature.getInstance(algorithm.getAlgorithm());
+            Signature signature = CryptoEngine.getSignature(algorithm.getAlgorithm());
 
-            signature.initSign(privateKey);
+            signature.initSign(CryptoEngine.getPrivateKey(key));
             signature.update(data);
 
             return signature.sign();
@@ -81,12 +70,9 @@ public class RSASignatureProvider implements SignatureProvider {
      */
     public boolean verify(byte[] data, Algorithm algorithm, byte[] signature, byte[] key) {
         try {
-            X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(key);
-            KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
-            Signature verifier = Signature.getInstance(algorithm.getAlgorithm());
-            PublicKey publicKey = keyFactory.generatePublic(publicKeySpec);
+            Signature verifier = CryptoEngine.getSignature(algorithm.getAlgorithm());
 
-            verifier.initVerify(publicKey);
+            verifier.initVerify(CryptoEngine.getPublicKey(key));
             verifier.update(data);
 
             return verifier.verify(signature);
@@ -49,7 +49,7 @@ public class RSA_OAEP {
     public static byte[] encryptCEK(final RSAPublicKey pub, final SecretKey cek) {
 
         try {
-            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-1AndMGF1Padding");
+            Cipher cipher = CryptoEngine.getCipher("RSA/ECB/OAEPWithSHA-1AndMGF1Padding", false);
             cipher.init(Cipher.ENCRYPT_MODE, pub, new SecureRandom());
             return cipher.doFinal(cek.getEncoded());
 
@@ -77,7 +77,7 @@ public class RSA_OAEP {
         final byte[] encryptedCEK) {
 
         try {
-            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-1AndMGF1Padding");
+            Cipher cipher = CryptoEngine.getCipher("RSA/ECB/OAEPWithSHA-1AndMGF1Padding", false);
             cipher.init(Cipher.DECRYPT_MODE, priv);
             return new SecretKeySpec(cipher.doFinal(encryptedCEK), "AES");
 
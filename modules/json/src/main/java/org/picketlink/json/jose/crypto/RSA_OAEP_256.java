@@ -21,10 +21,8 @@
  */
 package org.picketlink.json.jose.crypto;
 
-import java.security.AlgorithmParameters;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
-import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.MGF1ParameterSpec;
 
 import javax.crypto.Cipher;
@@ -33,8 +31,6 @@ import javax.crypto.spec.OAEPParameterSpec;
 import javax.crypto.spec.PSource;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-
 /**
  * RSAES OAEP (SHA-256) methods for Content Encryption Key (CEK) encryption and decryption.
  *
@@ -42,6 +38,12 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
  */
 public class RSA_OAEP_256 {
 
+    /**
+     * The OAEP parameters, using SHA-256 for both the message digest and the mask generation function.
+     */
+    private static final OAEPParameterSpec OAEP_PARAMETERS = new OAEPParameterSpec("SHA-256", "MGF1",
+        MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
     /**
      * Encrypts the specified Content Encryption Key (CEK).
      *
@@ -55,11 +57,8 @@ public class RSA_OAEP_256 {
     public static byte[] encryptCEK(final RSAPublicKey pub, final SecretKey cek) {
 
         try {
-            AlgorithmParameters algp = AlgorithmParameters.getInstance("OAEP", new BouncyCastleProvider());
-            AlgorithmParameterSpec paramSpec = new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
-            algp.init(paramSpec);
-            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding", new BouncyCastleProvider());
-            cipher.init(Cipher.ENCRYPT_MODE, pub, algp);
+            Cipher cipher = CryptoEngine.getCipher("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, pub, OAEP_PARAMETERS);
             return cipher.doFinal(cek.getEncoded());
 
         } catch (Exception e) {
@@ -86,11 +85,8 @@ public class RSA_OAEP_256 {
         final byte[] encryptedCEK) {
 
         try {
-            AlgorithmParameters algp = AlgorithmParameters.getInstance("OAEP", new BouncyCastleProvider());
-            AlgorithmParameterSpec paramSpec = new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
-            algp.init(paramSpec);
-            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding", new BouncyCastleProvider());
-            cipher.init(Cipher.DECRYPT_MODE, priv, algp);
+            Cipher cipher = CryptoEngine.getCipher("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+            cipher.init(Cipher.DECRYPT_MODE, priv, OAEP_PARAMETERS);
             return new SecretKeySpec(cipher.doFinal(encryptedCEK), "AES");
 
         } catch (Exception e) {
@@ -34,9 +34,16 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 import static org.picketlink.json.JsonConstants.RSA;
 
 /**
@@ -373,4 +380,80 @@ public class JWSRSAAPITestCase {
         // token was signed with key 1 but is referencing key 2.
         new JWSBuilder().build(token.encode());
     }
-}
\ No newline at end of file
+
+    /**
+     * Test signing and validating tokens concurrently.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testConcurrentSignatureValidation() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<JWS>> results = new ArrayList<Future<JWS>>();
+
+            for (int i = 0; i < 40; i++) {
+                final String kid = String.valueOf(i % 2 + 1);
+                final PrivateKey privateKey = "1".equals(kid) ? this.keyPair1.getPrivate() : this.keyPair2.getPrivate();
+                final String subject = "subject" + i;
+
+                results.add(executorService.submit(new Callable<JWS>() {
+                    @Override
+                    public JWS call() throws Exception {
+                        JWS token = new JWSBuilder()
+                            .rsa256(privateKey.getEncoded())
+                            .keys(keySet)
+                            .kid(kid)
+                            .subject(subject)
+                            .build();
+
+                        return new JWSBuilder().build(token.encode());
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("subject" + i, results.get(i).get().getSubject());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Test that a key replaced in the key set is used even if a previous key with the same identifier was already used.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testReplacedKey() throws Exception {
+        JWS token = new JWSBuilder()
+            .rsa256(this.keyPair1.getPrivate().getEncoded())
+            .keys(this.keySet)
+            .kid("1")
+            .subject("subject")
+            .build();
+
+        new JWSBuilder().build(token.encode());
+
+        KeyPair newKeyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        this.keySet = new JWKSet();
+
+        registerPublicKey("1", (RSAPublicKey) newKeyPair.getPublic());
+
+        token = new JWSBuilder()
+            .rsa256(this.keyPair1.getPrivate().getEncoded())
+            .keys(this.keySet)
+            .kid("1")
+            .subject("subject")
+            .build();
+
+        try {
+            new JWSBuilder().build(token.encode());
+            fail("Token was signed with a key that does not match the key set.");
+        } catch (JsonException expected) {
+        }
+    }
+}
@@ -55,6 +55,10 @@ public abstract class AccessTokenEnabledGrant extends OAuthGrant {
         return this;
     }
 
+    public long getAccessTokenExpiry() {
+        return accessTokenExpiry;
+    }
+
     public AccessTokenEnabledGrant setAccessToken(String code) {
         this.accessToken = code;
         return this;
@@ -74,6 +74,7 @@ public class RegistrationEndpoint extends BaseEndpoint {
             oauthApp.setAttribute(new Attribute<String>("clientSecret", generatedSecret));
 
             identityManager.add(oauthApp);
+            OAuthServerUtil.registerClient(oauthApp, generatedClientID, tokenStore);
 
             RegistrationResponse response = new RegistrationResponse();
             response.setStatusCode(HttpServletResponse.SC_OK);
@@ -115,6 +116,7 @@ public class RegistrationEndpoint extends BaseEndpoint {
             oauthApp.setAttribute(new Attribute<String>("clientSecret", generatedSecret));
 
             identityManager.add(oauthApp);
+            OAuthServerUtil.registerClient(oauthApp, generatedClientID, tokenStore);
 
             RegistrationResponse response = new RegistrationResponse();
             response.setStatusCode(HttpServletResponse.SC_OK);
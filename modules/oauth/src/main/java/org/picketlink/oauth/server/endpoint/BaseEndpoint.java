@@ -18,6 +18,7 @@
 package org.picketlink.oauth.server.endpoint;
 
 import org.picketlink.idm.IdentityManager;
+import org.picketlink.oauth.server.token.OAuthTokenStore;
 import org.picketlink.oauth.server.util.OAuthServerUtil;
 
 import javax.inject.Inject;
@@ -41,6 +42,8 @@ public class BaseEndpoint implements Serializable {
     @Inject
     protected IdentityManager identityManager = null;
 
+    protected OAuthTokenStore tokenStore = null;
+
     @Context
     protected ServletContext context;
 
@@ -59,6 +62,9 @@ public class BaseEndpoint implements Serializable {
                 throw new RuntimeException("Identity Manager has not been created");
             }
         }
+        if (tokenStore == null) {
+            tokenStore = OAuthServerUtil.handleTokenStore(context);
+        }
     }
 
 }
\ No newline at end of file
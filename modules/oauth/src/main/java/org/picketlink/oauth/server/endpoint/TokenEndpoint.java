@@ -50,7 +50,7 @@ public class TokenEndpoint extends BaseEndpoint {
 
         OAuthResponse response = null;
         try {
-            response = OAuthServerUtil.tokenRequest(request, identityManager);
+            response = OAuthServerUtil.tokenRequest(request, identityManager, tokenStore);
         } catch (Exception e) {
             log.log(Level.SEVERE, "OAuth Server Token Processing:", e);
             return Response.serverError().build();
@@ -66,7 +66,7 @@ public class TokenEndpoint extends BaseEndpoint {
 
         OAuthResponse response = null;
         try {
-            response = OAuthServerUtil.tokenRequest(request, identityManager);
+            response = OAuthServerUtil.tokenRequest(request, identityManager, tokenStore);
         } catch (Exception e) {
             log.log(Level.SEVERE, "OAuth Server Token Processing:", e);
             return Response.serverError().build();
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link OAuthTokenStore} that keeps tokens in memory
+ *
+ * <p>Tokens are kept in a {@link ConcurrentHashMap} whose segments shard them across independent locks, so lookups
+ * never block and writes only contend within a shard. Expired tokens are dropped when they are looked up, and all
+ * shards are swept for expired tokens every {@link #DEFAULT_SWEEP_INTERVAL} stores.</p>
+ *
+ * @author Pedro Igor
+ */
+public class InMemoryOAuthTokenStore implements OAuthTokenStore {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    public static final int DEFAULT_SWEEP_INTERVAL = 1024;
+
+    private final ConcurrentMap<String, OAuthToken> tokens;
+    private final int sweepInterval;
+    private final AtomicInteger storesSinceSweep = new AtomicInteger();
+
+    public InMemoryOAuthTokenStore() {
+        this(DEFAULT_CONCURRENCY_LEVEL, DEFAULT_SWEEP_INTERVAL);
+    }
+
+    /**
+     * Create a store
+     *
+     * @param concurrencyLevel the number of shards
+     * @param sweepInterval the number of stores between sweeps for expired tokens
+     */
+    public InMemoryOAuthTokenStore(int concurrencyLevel, int sweepInterval) {
+        if (sweepInterval <= 0) {
+            throw new IllegalArgumentException("sweepInterval must be positive");
+        }
+        this.tokens = new ConcurrentHashMap<String, OAuthToken>(16, 0.75f, concurrencyLevel);
+        this.sweepInterval = sweepInterval;
+    }
+
+    @Override
+    public void store(OAuthToken token) {
+        if (token == null) {
+            throw new IllegalArgumentException("token is null");
+        }
+
+        tokens.put(token.getValue(), token);
+
+        if (storesSinceSweep.incrementAndGet() >= sweepInterval) {
+            storesSinceSweep.set(0);
+            removeExpired();
+        }
+    }
+
+    @Override
+    public OAuthToken get(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        OAuthToken token = tokens.get(value);
+
+        if (token != null && token.isExpired(System.currentTimeMillis())) {
+            tokens.remove(value, token);
+            return null;
+        }
+
+        return token;
+    }
+
+    @Override
+    public OAuthToken remove(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        OAuthToken token = tokens.remove(value);
+
+        if (token != null && token.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+
+        return token;
+    }
+
+    @Override
+    public void removeExpired() {
+        long currentTime = System.currentTimeMillis();
+
+        for (OAuthToken token : tokens.values()) {
+            if (token.isExpired(currentTime)) {
+                // only remove the token we saw, it may have been replaced in the meantime
+                tokens.remove(token.getValue(), token);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * An {@link OAuthTokenStore} that keeps tokens in a database table, so they are shared by all nodes and survive
+ * restarts
+ *
+ * <p>Tokens are looked up by primary key. The table is expected to exist with the following columns:</p>
+ *
+ * <pre>
+ * TOKEN_VALUE VARCHAR (primary key)
+ * TOKEN_TYPE VARCHAR
+ * CLIENT_ID VARCHAR
+ * AGENT_ID VARCHAR
+ * EXPIRATION BIGINT
+ * </pre>
+ *
+ * <p>Storing a token updates the row with the same value, or inserts it when there is none. Each statement runs on
+ * its own, so concurrent calls for the same value never fail on the primary key.</p>
+ *
+ * <p>Expired tokens are never returned, but they are only deleted by {@link #removeExpired()}, which is expected to
+ * be called periodically.</p>
+ *
+ * @author Pedro Igor
+ */
+public class JDBCOAuthTokenStore implements OAuthTokenStore {
+    private static Logger log = Logger.getLogger(JDBCOAuthTokenStore.class.getName());
+
+    public static final String DEFAULT_TABLE_NAME = "OAUTH_TOKEN";
+
+    private final DataSource dataSource;
+    private final String insertSql;
+    private final String updateSql;
+    private final String selectSql;
+    private final String deleteSql;
+    private final String deleteExpiredSql;
+
+    public JDBCOAuthTokenStore(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE_NAME);
+    }
+
+    public JDBCOAuthTokenStore(DataSource dataSource, String tableName) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("dataSource is null");
+        }
+        if (tableName == null) {
+            throw new IllegalArgumentException("tableName is null");
+        }
+        this.dataSource = dataSource;
+        this.insertSql = "insert into " + tableName
+                + " (TOKEN_VALUE, TOKEN_TYPE, CLIENT_ID, AGENT_ID, EXPIRATION) values (?, ?, ?, ?, ?)";
+        this.updateSql = "update " + tableName
+                + " set TOKEN_TYPE = ?, CLIENT_ID = ?, AGENT_ID = ?, EXPIRATION = ? where TOKEN_VALUE = ?";
+        this.selectSql = "select TOKEN_TYPE, CLIENT_ID, AGENT_ID, EXPIRATION from " + tableName + " where TOKEN_VALUE = ?";
+        this.deleteSql = "delete from " + tableName + " where TOKEN_VALUE = ?";
+        this.deleteExpiredSql = "delete from " + tableName + " where EXPIRATION > 0 and EXPIRATION <= ?";
+    }
+
+    @Override
+    public void store(OAuthToken token) {
+        if (token == null) {
+            throw new IllegalArgumentException("token is null");
+        }
+
+        Connection connection = null;
+
+        try {
+            connection = dataSource.getConnection();
+
+            // replace any token with the same value
+            if (update(connection, token) == 0) {
+                try {
+                    insert(connection, token);
+                } catch (SQLException e) {
+                    if (!isIntegrityConstraintViolation(e)) {
+                        throw e;
+                    }
+
+                    // the token was inserted concurrently, replace it
+                    update(connection, token);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not store token", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public OAuthToken get(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        Connection connection = null;
+
+        try {
+            connection = dataSource.getConnection();
+
+            OAuthToken token = select(connection, value);
+
+            if (token == null || token.isExpired(System.currentTimeMillis())) {
+                return null;
+            }
+
+            return token;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not load token", e);
+        } finally {
+            close(connection);
+        }
+    }
+
+    @Override
+    public OAuthToken remove(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = dataSource.getConnection();
+
+            OAuthToken token = select(connection, value);
+
+            if (token == null) {
+                return null;
+            }
+
+            statement = connection.prepareStatement(deleteSql);
+            statement.setString(1, value);
+
+            // only the caller that actually deleted the row gets the token
+            if (statement.executeUpdate() == 0 || token.isExpired(System.currentTimeMillis())) {
+                return null;
+            }
+
+            return token;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not remove token", e);
+        } finally {
+            close(statement);
+            close(connection);
+        }
+    }
+
+    @Override
+    public void removeExpired() {
+        Connection connection = null;
+        PreparedStatement statement = null;
+
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.prepareStatement(deleteExpiredSql);
+            statement.setLong(1, System.currentTimeMillis());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not remove expired tokens", e);
+        } finally {
+            close(statement);
+            close(connection);
+        }
+    }
+
+    private int update(Connection connection, OAuthToken token) throws SQLException {
+        PreparedStatement statement = null;
+
+        try {
+            statement = connection.prepareStatement(updateSql);
+            statement.setString(1, token.getType().name());
+            statement.setString(2, token.getClientID());
+            statement.setString(3, token.getAgentId());
+            statement.setLong(4, token.getExpiration());
+            statement.setString(5, token.getValue());
+            return statement.executeUpdate();
+        } finally {
+            close(statement);
+        }
+    }
+
+    private void insert(Connection connection, OAuthToken token) throws SQLException {
+        PreparedStatement statement = null;
+
+        try {
+            statement = connection.prepareStatement(insertSql);
+            statement.setString(1, token.getValue());
+            statement.setString(2, token.getType().name());
+            statement.setString(3, token.getClientID());
+            statement.setString(4, token.getAgentId());
+            statement.setLong(5, token.getExpiration());
+            statement.executeUpdate();
+        } finally {
+            close(statement);
+        }
+    }
+
+    private boolean isIntegrityConstraintViolation(SQLException e) {
+        // SQL state class 23 is integrity constraint violation
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    private OAuthToken select(Connection connection, String value) throws SQLException {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = connection.prepareStatement(selectSql);
+            statement.setString(1, value);
+            resultSet = statement.executeQuery();
+
+            if (!resultSet.next()) {
+                return null;
+            }
+
+            return new OAuthToken(value, OAuthToken.Type.valueOf(resultSet.getString(1)), resultSet.getString(2),
+                    resultSet.getString(3), resultSet.getLong(4));
+        } finally {
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } catch (SQLException e) {
+                    log.log(Level.FINE, "Could not close result set", e);
+                }
+            }
+            close(statement);
+        }
+    }
+
+    private void close(Statement statement) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.log(Level.FINE, "Could not close statement", e);
+            }
+        }
+    }
+
+    private void close(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.log(Level.FINE, "Could not close connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+import java.io.Serializable;
+
+/**
+ * A token issued by the OAuth server, as kept by an {@link OAuthTokenStore}
+ *
+ * @author Pedro Igor
+ */
+public class OAuthToken implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kinds of tokens kept by a {@link OAuthTokenStore}
+     */
+    public enum Type {
+        /**
+         * Maps a client identifier to the agent that represents the client application
+         */
+        CLIENT,
+        AUTHORIZATION_CODE,
+        ACCESS_TOKEN
+    }
+
+    private final String value;
+    private final Type type;
+    private final String clientID;
+    private final String agentId;
+    private final long expiration;
+
+    /**
+     * Create a token
+     *
+     * @param value the value issued to the client
+     * @param type
+     * @param clientID the identifier of the client the token was issued to
+     * @param agentId the identifier of the agent that represents the client application
+     * @param expiration the time, in milliseconds, after which the token is no longer valid, or 0 if it does not expire
+     */
+    public OAuthToken(String value, Type type, String clientID, String agentId, long expiration) {
+        if (value == null) {
+            throw new IllegalArgumentException("value is null");
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("type is null");
+        }
+        this.value = value;
+        this.type = type;
+        this.clientID = clientID;
+        this.agentId = agentId;
+        this.expiration = expiration;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getClientID() {
+        return clientID;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    /**
+     * Check if the token is expired at the given time
+     *
+     * @param currentTime the time, in milliseconds
+     * @return
+     */
+    public boolean isExpired(long currentTime) {
+        return expiration > 0 && expiration <= currentTime;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.oauth.server.token;
+
+/**
+ * Keeps the tokens issued by the OAuth server, indexed by their value
+ *
+ * <p>Implementations are shared by all requests and must be thread-safe. Expired tokens must never be returned.</p>
+ *
+ * @author Pedro Igor
+ */
+public interface OAuthTokenStore {
+
+    /**
+     * Store a token, replacing any token with the same value
+     *
+     * @param token
+     */
+    void store(OAuthToken token);
+
+    /**
+     * Get the token with the given value
+     *
+     * @param value
+     * @return the token, or null if the token is unknown or expired
+     */
+    OAuthToken get(String value);
+
+    /**
+     * Remove the token with the given value. When multiple callers remove the same token concurrently, only one of
+     * them gets the token back, which makes this method suitable to consume single-use tokens.
+     *
+     * @param value
+     * @return the removed token, or null if the token is unknown or expired
+     */
+    OAuthToken remove(String value);
+
+    /**
+     * Remove all expired tokens
+     */
+    void removeExpired();
+}
@@ -18,6 +18,7 @@
 package org.picketlink.oauth.server.util;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -66,6 +67,9 @@ import org.picketlink.oauth.messages.ErrorResponse.ErrorResponseCode;
 import org.picketlink.oauth.messages.OAuthResponse;
 import org.picketlink.oauth.messages.RegistrationRequest;
 import org.picketlink.oauth.messages.ResourceAccessRequest;
+import org.picketlink.oauth.server.token.InMemoryOAuthTokenStore;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.OAuthTokenStore;
 
 /**
  * Utility
@@ -79,6 +83,33 @@ public class OAuthServerUtil {
     private static EntityManagerFactory entityManagerFactory;
     private static ThreadLocal<EntityManager> entityManagerThreadLocal = new ThreadLocal<EntityManager>();
 
+    /**
+     * Authorization codes are short lived, 10 minutes as recommended by the OAuth 2.0 specification
+     */
+    private static final long AUTHORIZATION_CODE_EXPIRY = 600L;
+
+    /**
+     * Centralize the token store setup. Applications can provide their own {@link OAuthTokenStore}, such as a
+     * {@link org.picketlink.oauth.server.token.JDBCOAuthTokenStore}, by setting the "oauthTokenStore" attribute of the
+     * servlet context. Otherwise tokens are kept in memory.
+     *
+     * @param context
+     * @return
+     */
+    public static OAuthTokenStore handleTokenStore(ServletContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("context is null");
+        }
+        synchronized (context) {
+            OAuthTokenStore tokenStore = (OAuthTokenStore) context.getAttribute("oauthTokenStore");
+            if (tokenStore == null) {
+                tokenStore = new InMemoryOAuthTokenStore();
+                context.setAttribute("oauthTokenStore", tokenStore);
+            }
+            return tokenStore;
+        }
+    }
+
     /**
      * Centralize the IDM setup
      *
@@ -146,9 +177,11 @@ public class OAuthServerUtil {
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static OAuthResponse authorizationCodeRequest(HttpServletRequest request, IdentityManager identityManager) {
+    public static OAuthResponse authorizationCodeRequest(HttpServletRequest request, IdentityManager identityManager,
+            OAuthTokenStore tokenStore) {
 
         AuthorizationCodeGrant grant = new AuthorizationCodeGrant();
 
@@ -177,10 +210,7 @@ public class OAuthServerUtil {
                 return errorResponse;
             }
 
-            IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
-            agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("clientID"), passedClientID);
-
-            List<Agent> agents = agentQuery.getResultList();
+            List<Agent> agents = findClients(passedClientID, identityManager, tokenStore);
             if (agents.size() == 0) {
                 log.error(passedClientID + " not found");
 
@@ -220,8 +250,8 @@ public class OAuthServerUtil {
             String authorizationCode = grant.getValueGenerator().value();
             grant.setAuthorizationCode(authorizationCode);
 
-            clientApp.setAttribute(new Attribute<String>("authorizationCode", authorizationCode));
-            identityManager.update(clientApp);
+            tokenStore.store(new OAuthToken(authorizationCode, OAuthToken.Type.AUTHORIZATION_CODE, clientID, clientApp.getId(),
+                    System.currentTimeMillis() + AUTHORIZATION_CODE_EXPIRY * 1000));
 
             oauthResponse = grant.authorizationResponse();
             oauthResponse.setStatusCode(HttpServletResponse.SC_FOUND);
@@ -245,13 +275,15 @@ public class OAuthServerUtil {
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static OAuthResponse tokenRequest(HttpServletRequest request, IdentityManager identityManager) {
+    public static OAuthResponse tokenRequest(HttpServletRequest request, IdentityManager identityManager,
+            OAuthTokenStore tokenStore) {
         String grantType = request.getParameter(OAuthConstants.GRANT_TYPE);
         // Authorization Code Grant
         if (grantType.equals(AuthorizationCodeGrant.GRANT_TYPE)) {
-            return authorizationCodeGrantTypeTokenRequest(request, identityManager);
+            return authorizationCodeGrantTypeTokenRequest(request, identityManager, tokenStore);
         }
         if (grantType.equals(OAuthConstants.PASSWORD)) {
             return passwordGrantTypeTokenRequest(request, identityManager);
@@ -266,20 +298,39 @@ public class OAuthServerUtil {
      * Validate the access token
      *
      * @param passedAccessToken
-     * @param identityManager
+     * @param tokenStore
      * @return
      */
-    public static boolean validateAccessToken(String passedAccessToken, IdentityManager identityManager) {
-        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
-        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("accessToken"), passedAccessToken);
+    public static boolean validateAccessToken(String passedAccessToken, OAuthTokenStore tokenStore) {
+        return getAccessToken(passedAccessToken, tokenStore) != null;
+    }
 
-        List<Agent> agents = agentQuery.getResultList();
-        int size = agents.size();
+    /**
+     * Get a valid access token
+     *
+     * @param passedAccessToken
+     * @param tokenStore
+     * @return the access token, or null if it is unknown or expired
+     */
+    public static OAuthToken getAccessToken(String passedAccessToken, OAuthTokenStore tokenStore) {
+        OAuthToken token = tokenStore.get(passedAccessToken);
 
-        if (size == 0 || size != 1) {
-            return false;
+        if (token == null || token.getType() != OAuthToken.Type.ACCESS_TOKEN) {
+            return null;
         }
-        return true;
+        return token;
+    }
+
+    /**
+     * Register a client application, so that it can be found by its client identifier without querying the
+     * identity store
+     *
+     * @param clientApp
+     * @param clientID
+     * @param tokenStore
+     */
+    public static void registerClient(Agent clientApp, String clientID, OAuthTokenStore tokenStore) {
+        tokenStore.store(new OAuthToken(clientID, OAuthToken.Type.CLIENT, clientID, clientApp.getId(), 0));
     }
 
     /**
@@ -333,6 +384,39 @@ public class OAuthServerUtil {
 
     // Private Methods
 
+    /**
+     * Find the client applications with the given client identifier. Clients are looked up by identifier in the token
+     * store first, and only queried by attribute if they were not registered yet.
+     *
+     * @param clientID
+     * @param identityManager
+     * @param tokenStore
+     * @return
+     */
+    private static List<Agent> findClients(String clientID, IdentityManager identityManager, OAuthTokenStore tokenStore) {
+        OAuthToken clientToken = tokenStore.get(clientID);
+
+        if (clientToken != null && clientToken.getType() == OAuthToken.Type.CLIENT) {
+            Agent clientApp = identityManager.lookupIdentityById(Agent.class, clientToken.getAgentId());
+
+            if (clientApp != null) {
+                return Collections.singletonList(clientApp);
+            }
+
+            tokenStore.remove(clientID);
+        }
+
+        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
+        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("clientID"), clientID);
+
+        List<Agent> agents = agentQuery.getResultList();
+
+        if (agents.size() == 1) {
+            registerClient(agents.get(0), clientID, tokenStore);
+        }
+        return agents;
+    }
+
     /**
      * Refresh Token Request
      *
@@ -399,10 +483,11 @@ public class OAuthServerUtil {
      *
      * @param request
      * @param identityManager
+     * @param tokenStore
      * @return
      */
     private static OAuthResponse authorizationCodeGrantTypeTokenRequest(HttpServletRequest request,
-            IdentityManager identityManager) {
+            IdentityManager identityManager, OAuthTokenStore tokenStore) {
         OAuthResponse oauthResponse = null;
 
         AuthorizationCodeGrant grant = new AuthorizationCodeGrant();
@@ -420,10 +505,7 @@ public class OAuthServerUtil {
             return errorResponse;
         }
 
-        IdentityQuery<Agent> agentQuery = identityManager.createIdentityQuery(Agent.class);
-        agentQuery.setParameter(AttributedType.QUERY_ATTRIBUTE.byName("clientID"), passedClientID);
-
-        List<Agent> agents = agentQuery.getResultList();
+        List<Agent> agents = findClients(passedClientID, identityManager, tokenStore);
         if (agents.size() == 0) {
             log.error(passedClientID + " not found");
 
@@ -448,8 +530,7 @@ public class OAuthServerUtil {
         // Get the values from DB
         Attribute<String> clientIDAttr = clientApp.getAttribute("clientID");
         String clientID = clientIDAttr.getValue();
-        Attribute<String> authorizationCodeAttr = clientApp.getAttribute("authorizationCode");
-        if (authorizationCodeAttr == null) {
+        if (accessTokenRequest.getCode() == null) {
             log.error("authorization code is null");
 
             ErrorResponse errorResponse = new ErrorResponse();
@@ -458,7 +539,6 @@ public class OAuthServerUtil {
 
             return errorResponse;
         }
-        String authorizationCode = authorizationCodeAttr.getValue();
 
         // check if clientid is valid
         if (!clientID.equals(passedClientID)) {
@@ -472,7 +552,13 @@ public class OAuthServerUtil {
         }
 
         if (accessTokenRequest.getGrantType().equals(AuthorizationCodeGrant.GRANT_TYPE)) {
-            if (!authorizationCode.equals(accessTokenRequest.getCode())) {
+            // clients, codes and tokens share the same store, check the code before consuming it
+            OAuthToken authorizationCode = tokenStore.get(accessTokenRequest.getCode());
+
+            if (authorizationCode == null || authorizationCode.getType() != OAuthToken.Type.AUTHORIZATION_CODE
+                    || !clientID.equals(authorizationCode.getClientID())
+                    // authorization codes can only be used once
+                    || tokenStore.remove(accessTokenRequest.getCode()) == null) {
 
                 log.error("authorization_code does not match");
 
@@ -484,8 +570,8 @@ public class OAuthServerUtil {
         }
 
         String accessToken = grant.getValueGenerator().value();
-        clientApp.setAttribute(new Attribute<String>("accessToken", accessToken));
-        identityManager.update(clientApp);
+        tokenStore.store(new OAuthToken(accessToken, OAuthToken.Type.ACCESS_TOKEN, clientID, clientApp.getId(),
+                System.currentTimeMillis() + grant.getAccessTokenExpiry() * 1000));
 
         grant.setAccessToken(accessToken);
 
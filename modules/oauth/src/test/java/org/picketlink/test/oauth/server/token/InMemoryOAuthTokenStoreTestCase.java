@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.oauth.server.token;
+
+import org.junit.Test;
+import org.picketlink.oauth.server.token.InMemoryOAuthTokenStore;
+import org.picketlink.oauth.server.token.OAuthToken;
+import org.picketlink.oauth.server.token.OAuthTokenStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test the {@link InMemoryOAuthTokenStore}
+ *
+ * @author Pedro Igor
+ */
+public class InMemoryOAuthTokenStoreTestCase {
+
+    @Test
+    public void testStoreAndGet() {
+        OAuthTokenStore tokenStore = new InMemoryOAuthTokenStore();
+
+        tokenStore.store(new OAuthToken("token", OAuthToken.Type.ACCESS_TOKEN, "client", "agent",
+                System.currentTimeMillis() + 60000));
+
+        OAuthToken token = tokenStore.get("token");
+
+        assertNotNull(token);
+        assertEquals(OAuthToken.Type.ACCESS_TOKEN, token.getType());
+        assertEquals("client", token.getClientID());
+        assertEquals("agent", token.getAgentId());
+        assertNull(tokenStore.get("unknown"));
+        assertNull(tokenStore.get(null));
+    }
+
+    @Test
+    public void testExpiredTokensAreNotReturned() {
+        OAuthTokenStore tokenStore = new InMemoryOAuthTokenStore();
+
+        tokenStore.store(new OAuthToken("expired", OAuthToken.Type.ACCESS_TOKEN, "client", "agent",
+                System.currentTimeMillis() - 1));
+        tokenStore.store(new OAuthToken("client", OAuthToken.Type.CLIENT, "client", "agent", 0));
+
+        assertNull(tokenStore.get("expired"));
+        assertNull(tokenStore.remove("expired"));
+        assertNotNull(tokenStore.get("client"));
+    }
+
+    @Test
+    public void testRemoveConsumesToken() {
+        OAuthTokenStore tokenStore = new InMemoryOAuthTokenStore();
+
+        tokenStore.store(new OAuthToken("code", OAuthToken.Type.AUTHORIZATION_CODE, "client", "agent",
+                System.currentTimeMillis() + 60000));
+
+        assertNotNull(tokenStore.remove("code"));
+        assertNull(tokenStore.remove("code"));
+        assertNull(tokenStore.get("code"));
+    }
+
+    @Test
+    public void testRemoveExpired() {
+        InMemoryOAuthTokenStore tokenStore = new InMemoryOAuthTokenStore(4, 2);
+
+        tokenStore.store(new OAuthToken("expired", OAuthToken.Type.ACCESS_TOKEN, "client", "agent",
+                System.currentTimeMillis() - 1));
+        tokenStore.store(new OAuthToken("valid", OAuthToken.Type.ACCESS_TOKEN, "client", "agent", 0));
+
+        tokenStore.removeExpired();
+
+        assertNull(tokenStore.get("expired"));
+        assertNotNull(tokenStore.get("valid"));
+    }
+}
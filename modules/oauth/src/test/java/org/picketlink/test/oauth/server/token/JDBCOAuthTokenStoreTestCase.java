@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.picketlink.test.oauth.server.token;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.picketlink.oauth.server.token.JDBCOAuthTokenStore;
+import org.picketlink.oauth.server.token.OAuthToken;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test the {@link JDBCOAuthTokenStore}
+ *
+ * @author Pedro Igor
+ */
+public class JDBCOAuthTokenStoreTestCase {
+
+    private JdbcDataSource dataSource;
+    private Connection connection;
+    private JDBCOAuthTokenStore tokenStore;
+
+    @Before
+    public void onSetup() throws Exception {
+        this.dataSource = new JdbcDataSource();
+        this.dataSource.setURL("jdbc:h2:mem:oauth-tokens");
+
+        // keeps the in-memory database open during the test
+        this.connection = this.dataSource.getConnection();
+
+        Statement statement = this.connection.createStatement();
+
+        statement.execute("create table " + JDBCOAuthTokenStore.DEFAULT_TABLE_NAME + " (TOKEN_VALUE varchar(255) primary key, "
+                + "TOKEN_TYPE varchar(50), CLIENT_ID varchar(255), AGENT_ID varchar(255), EXPIRATION bigint)");
+        statement.close();
+
+        this.tokenStore = new JDBCOAuthTokenStore(this.dataSource);
+    }
+
+    @After
+    public void onFinish() throws Exception {
+        this.connection.close();
+    }
+
+    @Test
+    public void testStoreAndGet() {
+        this.tokenStore.store(new OAuthToken("token", OAuthToken.Type.ACCESS_TOKEN, "client", "agent",
+                System.currentTimeMillis() + 60000));
+
+        OAuthToken token = this.tokenStore.get("token");
+
+        assertNotNull(token);
+        assertEquals(OAuthToken.Type.ACCESS_TOKEN, token.getType());
+        assertEquals("client", token.getClientID());
+        assertEquals("agent", token.getAgentId());
+        assertNull(this.tokenStore.get("unknown"));
+        assertNull(this.tokenStore.get(null));
+    }
+
+    @Test
+    public void testStoreReplacesToken() {
+        this.tokenStore.store(new OAuthToken("token", OAuthToken.Type.AUTHORIZATION_CODE, "client", "agent",
+                System.currentTimeMillis() + 60000));
+        this.tokenStore.store(new OAuthToken("token", OAuthToken.Type.ACCESS_TOKEN, "other", "agent", 0));
+
+        OAuthToken token = this.tokenStore.get("token");
+
+        assertEquals(OAuthToken.Type.ACCESS_TOKEN, token.getType());
+        assertEquals("other", token.getClientID());
+    }
+
+    @Test
+    public void testConcurrentStore() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+            for (int i = 0; i < 20; i++) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        tokenStore.store(new OAuthToken("token", OAuthToken.Type.ACCESS_TOKEN, "client", "agent", 0));
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> result : results) {
+                // fails if any of the calls failed
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertNotNull(this.tokenStore.get("token"));
+    }
+
+    @Test
+    public void testRemoveConsumesToken() {
+        this.tokenStore.store(new OAuthToken("code", OAuthToken.Type.AUTHORIZATION_CODE, "client", "agent",
+                System.currentTimeMillis() + 60000));
+
+        assertNotNull(this.tokenStore.remove("code"));
+        assertNull(this.tokenStore.remove("code"));
+        assertNull(this.tokenStore.get("code"));
+    }
+
+    @Test
+    public void testRemoveExpired() {
+        this.tokenStore.store(new OAuthToken("expired", OAuthToken.Type.ACCESS_TOKEN, "client", "agent",
+                System.currentTimeMillis() - 1));
+        this.tokenStore.store(new OAuthToken("valid", OAuthToken.Type.ACCESS_TOKEN, "client", "agent", 0));
+
+        assertNull(this.tokenStore.get("expired"));
+
+        this.tokenStore.removeExpired();
+
+        assertNull(this.tokenStore.remove("expired"));
+        assertNotNull(this.tokenStore.get("valid"));
+    }
+}